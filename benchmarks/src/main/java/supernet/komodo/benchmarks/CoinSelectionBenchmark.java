@@ -0,0 +1,90 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import supernet.komodo.javakomododrpcclient.KomodoCoinSelector;
+
+/**
+ * Coin selection over a large wallet, with each selector's time budget; the
+ * sampled latencies show how far past the budget the sorting goes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoinSelectionBenchmark {
+
+  @Param({"1000", "100000"})
+  public int size;
+
+  @Param({"branchAndBound", "largestFirst", "smallestFirst", "randomImprove", "default"})
+  public String selector;
+
+  private long[] amounts;
+  private long target;
+  private KomodoCoinSelector s;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(1);
+    amounts = new long[size];
+    long total = 0;
+    for (int i = 0; i < size; i++)
+      total += amounts[i] = 10000 + (long) (Math.abs(random.nextGaussian()) * 100000000L);
+    // about an eighth of the wallet
+    target = total / 8 + 12345;
+    switch (selector) {
+      case "branchAndBound":
+        s = new KomodoCoinSelector.BranchAndBound(10000, 200);
+        break;
+      case "largestFirst":
+        s = new KomodoCoinSelector.LargestFirst(200);
+        break;
+      case "smallestFirst":
+        s = new KomodoCoinSelector.SmallestFirst(size, 200);
+        break;
+      case "randomImprove":
+        s = new KomodoCoinSelector.RandomImprove(200, new Random(1));
+        break;
+      default:
+        s = KomodoCoinSelector.DEFAULT;
+    }
+  }
+
+  @Benchmark
+  public int[] select() {
+    return s.select(amounts, target);
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import supernet.komodo.javakomododrpcclient.KomodoJSONRPCClient;
+import supernet.komodo.javakomododrpcclient.KomodoRpcTransport;
+
+/**
+ * Whole client calls against canned responses: the typed decoders of the
+ * client methods next to the untyped query of the same RPC
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+
+  @Param({"getblock", "listtransactions", "listunspent"})
+  public String payload;
+
+  private KomodoJSONRPCClient client;
+
+  @Setup
+  public void setUp() {
+    final byte[] response = Payloads.responseBytes(payload);
+    client = new KomodoJSONRPCClient(false);
+    client.setMetrics(null);
+    client.setTransport(new KomodoRpcTransport() {
+      @Override
+      public <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+        return handler.handle(200, "OK", new ByteArrayInputStream(response));
+      }
+
+      @Override
+      public void close() {
+      }
+    });
+  }
+
+  @Benchmark
+  public Object typed() {
+    switch (payload) {
+      case "getblock":
+        return client.getBlock("00");
+      case "listtransactions":
+        return client.listTransactions("*", 10000);
+      default:
+        return client.listUnspent();
+    }
+  }
+
+  @Benchmark
+  public Object untyped() {
+    return client.query(payload);
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import supernet.komodo.krotjson.JSON;
+import supernet.komodo.krotjson.JSONStreamParser;
+
+/**
+ * Parsing of whole responses into maps and lists
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+  @Param({"getblock", "getrawtransaction", "listtransactions", "listunspent", "getpeerinfo"})
+  public String payload;
+
+  private String text;
+  private byte[] bytes;
+
+  @Setup
+  public void setUp() {
+    text = Payloads.response(payload);
+    bytes = text.getBytes(Payloads.CHARSET);
+  }
+
+  @Benchmark
+  public Object parseString() {
+    return JSON.parse(text);
+  }
+
+  @Benchmark
+  public Object parseStream() throws IOException {
+    return JSON.parse(new ByteArrayInputStream(bytes));
+  }
+
+  /**
+   * Passes over the response without building it, the floor of any decoder
+   */
+  @Benchmark
+  public JSONStreamParser skipStream() throws IOException {
+    JSONStreamParser p = new JSONStreamParser(new ByteArrayInputStream(bytes));
+    p.skipValue();
+    return p;
+  }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.benchmarks;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+import supernet.komodo.javakomododrpcclient.KomodoUtil;
+
+/**
+ * JSON-RPC responses shaped like komodod's, with the fields and sizes of
+ * mainnet data, generated from fixed seeds so that runs compare
+ */
+public class Payloads {
+
+  public static final Charset CHARSET = Charset.forName("UTF-8");
+
+  public static final String[] NAMES = {"getblock", "getrawtransaction", "listtransactions", "listunspent", "getpeerinfo"};
+
+  private final Random random;
+  private final StringBuilder b = new StringBuilder();
+
+  private Payloads(long seed) {
+    random = new Random(seed);
+  }
+
+  /**
+   * @param name one of {@link #NAMES}
+   * @return the whole response, envelope included
+   */
+  public static String response(String name) {
+    Payloads p = new Payloads(name.hashCode());
+    p.b.append("{\"result\":");
+    switch (name) {
+      case "getblock":
+        p.block(2000);
+        break;
+      case "getrawtransaction":
+        p.transaction(50, 50);
+        break;
+      case "listtransactions":
+        p.transactions(10000);
+        break;
+      case "listunspent":
+        p.unspent(100000);
+        break;
+      case "getpeerinfo":
+        p.peers(64);
+        break;
+      default:
+        throw new IllegalArgumentException(name);
+    }
+    return p.b.append(",\"error\":null,\"id\":\"1\"}").toString();
+  }
+
+  public static byte[] responseBytes(String name) {
+    return response(name).getBytes(CHARSET);
+  }
+
+  public String hex(int bytes) {
+    byte[] h = new byte[bytes];
+    random.nextBytes(h);
+    return KomodoUtil.encodeHex(h);
+  }
+
+  /**
+   * @return a valid P2PKH address of a random key hash
+   */
+  public String address() {
+    byte[] payload = new byte[21];
+    random.nextBytes(payload);
+    payload[0] = 60;
+    return KomodoUtil.encodeBase58Check(payload);
+  }
+
+  private String amount() {
+    long satoshis = (long) (Math.abs(random.nextGaussian()) * 5e8) + 1000;
+    return KomodoUtil.toAmount(satoshis).toPlainString();
+  }
+
+  private Payloads field(String name, Object value, boolean first) {
+    if (!first)
+      b.append(',');
+    b.append('"').append(name).append("\":");
+    if (value instanceof String)
+      b.append('"').append(value).append('"');
+    else
+      b.append(value);
+    return this;
+  }
+
+  private Payloads field(String name, Object value) {
+    return field(name, value, false);
+  }
+
+  private Payloads raw(String name, String json) {
+    b.append(",\"").append(name).append("\":").append(json);
+    return this;
+  }
+
+  private void block(int txs) {
+    int height = 1500000 + random.nextInt(100000);
+    b.append('{');
+    field("hash", hex(32), true).field("confirmations", 1 + random.nextInt(1000)).field("rawconfirmations", 1 + random.nextInt(1000))
+        .field("size", 300000 + random.nextInt(100000)).field("height", height).field("version", 4)
+        .field("merkleroot", hex(32)).field("segid", -1).field("finalsaplingroot", hex(32));
+    b.append(",\"tx\":[");
+    for (int i = 0; i < txs; i++)
+      b.append(i == 0 ? "" : ",").append('"').append(hex(32)).append('"');
+    b.append(']');
+    field("time", 1560000000 + random.nextInt(10000000)).field("nonce", hex(32)).field("solution", hex(1344))
+        .field("bits", "1d0" + hex(3).substring(1)).raw("difficulty", "108741629.5913727").field("chainwork", hex(32))
+        .field("anchor", hex(32)).field("blocktype", "mined")
+        .raw("valuePools", "[{\"id\":\"sprout\",\"monitored\":true,\"chainValue\":0.0,\"chainValueZat\":0,\"valueDelta\":0.0,\"valueDeltaZat\":0},"
+            + "{\"id\":\"sapling\",\"monitored\":true,\"chainValue\":50.12345678,\"chainValueZat\":5012345678,\"valueDelta\":0.0,\"valueDeltaZat\":0}]")
+        .field("previousblockhash", hex(32)).field("nextblockhash", hex(32));
+    b.append('}');
+  }
+
+  private void script(String address) {
+    String hash = hex(20);
+    b.append("{\"asm\":\"OP_DUP OP_HASH160 ").append(hash).append(" OP_EQUALVERIFY OP_CHECKSIG\",\"hex\":\"76a914").append(hash)
+        .append("88ac\",\"reqSigs\":1,\"type\":\"pubkeyhash\",\"addresses\":[\"").append(address).append("\"]}");
+  }
+
+  private void transaction(int inputs, int outputs) {
+    b.append('{');
+    field("hex", hex(inputs * 148 + outputs * 34 + 40), true).field("txid", hex(32)).field("overwintered", true)
+        .field("version", 4).field("versiongroupid", "892f2085").field("locktime", 0).field("expiryheight", 1600020);
+    b.append(",\"vin\":[");
+    for (int i = 0; i < inputs; i++) {
+      String sig = hex(71);
+      String key = hex(33);
+      b.append(i == 0 ? "" : ",").append("{\"txid\":\"").append(hex(32)).append("\",\"vout\":").append(random.nextInt(4))
+          .append(",\"address\":\"").append(address()).append("\",\"scriptSig\":{\"asm\":\"").append(sig).append("[ALL] ").append(key)
+          .append("\",\"hex\":\"47").append(sig).append("0121").append(key).append("\"},\"value\":").append(amount())
+          .append(",\"valueSat\":").append(random.nextInt(1000000000)).append(",\"sequence\":4294967295}");
+    }
+    b.append("],\"vout\":[");
+    for (int i = 0; i < outputs; i++) {
+      b.append(i == 0 ? "" : ",").append("{\"value\":").append(amount()).append(",\"interest\":0.0,\"valueSat\":")
+          .append(random.nextInt(1000000000)).append(",\"n\":").append(i).append(",\"scriptPubKey\":");
+      script(address());
+      b.append('}');
+    }
+    b.append(']');
+    raw("vjoinsplit", "[]").field("valueBalance", 0.0).raw("vShieldedSpend", "[]").raw("vShieldedOutput", "[]")
+        .field("blockhash", hex(32)).field("height", 1600000).field("confirmations", 12).field("rawconfirmations", 12)
+        .field("time", 1570000000).field("blocktime", 1570000000);
+    b.append('}');
+  }
+
+  private void transactions(int count) {
+    b.append('[');
+    for (int i = 0; i < count; i++) {
+      b.append(i == 0 ? "{" : ",{");
+      boolean send = random.nextInt(3) == 0;
+      field("involvesWatchonly", false, true).field("account", "").field("address", address())
+          .field("category", send ? "send" : "receive").raw("amount", (send ? "-" : "") + amount())
+          .field("vout", random.nextInt(3));
+      if (send)
+        field("fee", -0.0001);
+      field("rawconfirmations", 1 + random.nextInt(10000)).field("confirmations", 1 + random.nextInt(10000))
+          .field("blockhash", hex(32)).field("blockindex", random.nextInt(50)).field("blocktime", 1560000000 + random.nextInt(10000000))
+          .field("expiryheight", 0).field("txid", hex(32)).raw("walletconflicts", "[]")
+          .field("time", 1560000000 + random.nextInt(10000000)).field("timereceived", 1560000000 + random.nextInt(10000000))
+          .raw("vjoinsplit", "[]").field("size", 200 + random.nextInt(2000));
+      b.append('}');
+    }
+    b.append(']');
+  }
+
+  private void unspent(int count) {
+    b.append('[');
+    for (int i = 0; i < count; i++) {
+      b.append(i == 0 ? "{" : ",{");
+      field("txid", hex(32), true).field("vout", random.nextInt(3)).field("generated", random.nextInt(50) == 0)
+          .field("address", address()).field("account", "").field("scriptPubKey", "76a914" + hex(20) + "88ac")
+          .raw("amount", amount()).field("interest", 0.0).field("rawconfirmations", 1 + random.nextInt(100000))
+          .field("confirmations", 1 + random.nextInt(100000)).field("spendable", true);
+      b.append('}');
+    }
+    b.append(']');
+  }
+
+  private void peers(int count) {
+    b.append('[');
+    for (int i = 0; i < count; i++) {
+      String ip = (random.nextInt(223) + 1) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+      b.append(i == 0 ? "{" : ",{");
+      field("id", i, true).field("addr", ip + ":7770").field("addrlocal", "10.0.0.2:" + (30000 + i)).field("services", "0000000070000005")
+          .field("lastsend", 1570000000 + random.nextInt(100)).field("lastrecv", 1570000000 + random.nextInt(100))
+          .field("bytessent", random.nextInt(100000000)).field("bytesrecv", random.nextInt(100000000))
+          .field("conntime", 1560000000 + random.nextInt(10000000)).field("timeoffset", random.nextInt(3) - 1)
+          .field("pingtime", random.nextDouble()).field("version", 170009).field("subver", "/MagicBean:3.0.0/")
+          .field("inbound", random.nextBoolean()).field("startingheight", 1600000 + random.nextInt(100))
+          .field("banscore", 0).field("synced_headers", 1600100).field("synced_blocks", 1600100)
+          .raw("inflight", "[]").raw("whitelisted", "false");
+      b.append('}');
+    }
+    b.append(']');
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import supernet.komodo.javakomododrpcclient.KomodoJSONRPCClient;
+import supernet.komodo.javakomododrpcclient.KomodoRawTxSerializer;
+import supernet.komodo.javakomododrpcclient.KomodoRpcTransport;
+import supernet.komodo.javakomododrpcclient.KomodoUtil;
+import supernet.komodo.javakomododrpcclient.KomododRpcClient;
+import supernet.komodo.krotjson.JSON;
+
+/**
+ * Writing of large createrawtransaction and signrawtransaction requests
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+
+  @Param({"10", "1000"})
+  public int size;
+
+  private List<KomododRpcClient.TxInput> inputs;
+  private List<KomododRpcClient.ExtendedTxInput> signInputs;
+  private List<KomododRpcClient.TxOutput> outputs;
+  private List<String> privateKeys;
+  private Map<String, Object> params;
+  private String hex;
+  private KomodoJSONRPCClient client;
+  private final KomodoRawTxSerializer serializer = new KomodoRawTxSerializer();
+  // the size of the last request, so that writing it cannot be optimized away
+  public int requestBytes;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(size);
+    inputs = new ArrayList<>();
+    signInputs = new ArrayList<>();
+    outputs = new ArrayList<>();
+    privateKeys = new ArrayList<>();
+    List<Map<String, Object>> pInputs = new ArrayList<>();
+    Map<String, Object> pOutputs = new LinkedHashMap<>();
+    for (int i = 0; i < size; i++) {
+      byte[] h = new byte[32];
+      random.nextBytes(h);
+      String txid = KomodoUtil.encodeHex(h);
+      String script = "76a914" + KomodoUtil.encodeHex(h, 0, 20) + "88ac";
+      inputs.add(new KomododRpcClient.BasicTxInput(txid, i % 4));
+      signInputs.add(new KomododRpcClient.ExtendedTxInput(txid, i % 4, script, null, BigDecimal.valueOf(random.nextInt(1000000000), 8)));
+      byte[] a = new byte[21];
+      random.nextBytes(a);
+      a[0] = 60;
+      String address = KomodoUtil.encodeBase58Check(a);
+      long satoshis = 1000 + random.nextInt(1000000000);
+      outputs.add(new KomododRpcClient.SatoshiTxOutput(address, satoshis));
+      byte[] k = new byte[34];
+      random.nextBytes(k);
+      k[0] = (byte) 188;
+      k[33] = 1;
+      privateKeys.add(KomodoUtil.encodeBase58Check(k));
+      Map<String, Object> in = new LinkedHashMap<>();
+      in.put("txid", txid);
+      in.put("vout", i % 4);
+      pInputs.add(in);
+      pOutputs.put(address, KomodoUtil.toAmount(satoshis));
+    }
+    params = new LinkedHashMap<>();
+    params.put("inputs", pInputs);
+    params.put("outputs", pOutputs);
+    hex = serializer.serializeHex(inputs, outputs, 0, 0);
+
+    client = new KomodoJSONRPCClient(false);
+    client.setMetrics(null);
+    final byte[] created = ("{\"result\":\"" + hex + "\",\"error\":null,\"id\":\"1\"}").getBytes(Payloads.CHARSET);
+    final byte[] signed = ("{\"result\":{\"hex\":\"" + hex + "\",\"complete\":true},\"error\":null,\"id\":\"1\"}").getBytes(Payloads.CHARSET);
+    client.setTransport(new KomodoRpcTransport() {
+      @Override
+      public <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+        requestBytes = request.length;
+        // "{"method":"s..." for signrawtransaction
+        return handler.handle(200, "OK", new ByteArrayInputStream(request[11] == 's' ? signed : created));
+      }
+
+      @Override
+      public void close() {
+      }
+    });
+  }
+
+  @Benchmark
+  public String createRawTransaction() {
+    return client.createRawTransaction(inputs, outputs);
+  }
+
+  @Benchmark
+  public String signRawTransaction() {
+    return client.signRawTransaction(hex, signInputs, privateKeys, "ALL");
+  }
+
+  @Benchmark
+  public String stringify() {
+    return JSON.stringify(params);
+  }
+
+  @Benchmark
+  public byte[] prepareRequest() {
+    return client.prepareRequest("createrawtransaction", params.get("inputs"), params.get("outputs"));
+  }
+
+  /**
+   * The local alternative to createrawtransaction
+   */
+  @Benchmark
+  public String serializeLocally() {
+    return serializer.serializeHex(inputs, outputs, 0, 0);
+  }
+
+}
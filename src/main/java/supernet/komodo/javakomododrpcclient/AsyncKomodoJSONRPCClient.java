@@ -0,0 +1,627 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link AsyncKomododRpcClient} sending requests through a
+ * {@link KomodoAsyncTransport}.
+ *
+ * Requests are encoded and responses decoded as a {@link KomodoJSONRPCClient}
+ * for the same node does, which also serves the blocking lazy accessors of
+ * the returned objects.
+ *
+ * <pre>
+ * AsyncKomodoJSONRPCClient komodo = new AsyncKomodoJSONRPCClient(url, 256);
+ * komodo.getBlockHash(height).thenCompose(komodo::getBlock).thenAccept(...);
+ * </pre>
+ */
+public class AsyncKomodoJSONRPCClient implements AsyncKomododRpcClient, AutoCloseable {
+
+  public final KomodoJSONRPCClient client;
+  public final KomodoAsyncTransport transport;
+
+  public AsyncKomodoJSONRPCClient(KomodoJSONRPCClient client, KomodoAsyncTransport transport) {
+    this.client = client;
+    this.transport = transport;
+  }
+
+  /**
+   * @param rpc the komodod endpoint, credentials included
+   * @param maxInFlight the maximum number of requests sent concurrently, the
+   * others wait in a queue
+   */
+  public AsyncKomodoJSONRPCClient(URL rpc, int maxInFlight) {
+    this(new KomodoJSONRPCClient(rpc), new KomodoAsyncTransport(rpc, maxInFlight));
+  }
+
+  public AsyncKomodoJSONRPCClient(String rpcUrl, int maxInFlight) throws MalformedURLException {
+    this(new URL(rpcUrl), maxInFlight);
+  }
+
+  public CompletableFuture<Object> query(final String method, final Object... params) {
+    return query(KomodoJSONRPCClient.valueDecoder, method, params);
+  }
+
+  /**
+   * Like {@link #query(String, Object...)}, but decodes the result while it
+   * is read
+   */
+  public <T> CompletableFuture<T> query(final KomodoJSONRPCClient.ResultDecoder<T> decoder, final String method, final Object... params) {
+    final CompletableFuture<T> f = new CompletableFuture<>();
+    byte[] r = client.prepareRequest(method, params);
+    KomodoRpcMetrics metrics = client.getMetrics();
+    final KomodoRpcMetrics.Method m = metrics == null ? null : metrics.method(method);
+    final KomodoRpcMetrics.CountingHandler<T> counted = new KomodoRpcMetrics.CountingHandler<>(new KomodoRpcTransport.ResponseHandler<T>() {
+      @Override
+      public T handle(int responseCode, String responseMessage, InputStream in) throws IOException {
+        if (responseCode != 200)
+          throw new KomodoRPC2Exception(method, Arrays.deepToString(params), responseCode, responseMessage, new String(KomodoJSONRPCClient.loadStream(in, false)));
+        return client.loadResponse(decoder, in);
+      }
+    });
+    final long start = m == null ? 0 : m.start(r.length);
+    transport.post(r, counted).whenComplete((result, ex) -> {
+      if (ex instanceof IOException)
+        ex = new KomodoRPC2Exception(method, Arrays.deepToString(params), ex);
+      if (m != null) {
+        if (ex == null)
+          m.succeeded(start, counted.bytes);
+        else
+          m.failed(start, counted.bytes, KomodoRpcMetrics.responseCode(ex));
+      }
+      if (ex == null)
+        f.complete(result);
+      else
+        f.completeExceptionally(ex);
+    });
+    return f;
+  }
+
+  /**
+   * Sends the method, its result converted like {@link #client} does
+   */
+  protected <T> CompletableFuture<T> call(String method, Object... params) {
+    return query(client.<T>decoder(method), method, params);
+  }
+
+  protected CompletableFuture<Void> run(String method, Object... params) {
+    return query(method, params).thenApply(result -> null);
+  }
+
+  @Override
+  public CompletableFuture<String> createRawTransaction(List<KomododRpcClient.TxInput> inputs, List<KomododRpcClient.TxOutput> outputs) {
+    return call("createrawtransaction", KomodoJSONRPCClient.createRawTransactionParams(inputs, outputs));
+  }
+
+  @Override
+  public CompletableFuture<String> dumpPrivKey(String address) {
+    return call("dumpprivkey", address);
+  }
+
+  @Override
+  public CompletableFuture<String> getAccount(String address) {
+    return call("getaccount", address);
+  }
+
+  @Override
+  public CompletableFuture<String> getAccountAddress(String address) {
+    return call("getaccountaddress", address);
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getAddressesByAccount(String account) {
+    return call("getaddressesbyaccount", account);
+  }
+
+  @Override
+  public CompletableFuture<Double> getBalance() {
+    return call("getbalance");
+  }
+
+  @Override
+  public CompletableFuture<Double> getBalance(String account) {
+    return call("getbalance", account);
+  }
+
+  @Override
+  public CompletableFuture<Double> getBalance(String account, int minConf) {
+    return call("getbalance", account, minConf);
+  }
+
+  @Override
+  public CompletableFuture<Double> z_getBalance() {
+    return call("z_getbalance");
+  }
+
+  @Override
+  public CompletableFuture<Double> z_getBalance(String address) {
+    return call("z_getbalance", address);
+  }
+
+  @Override
+  public CompletableFuture<Double> z_getBalance(String address, int minConf) {
+    return call("z_getbalance", address, minConf);
+  }
+
+  @Override
+  public CompletableFuture<Double> z_getTotalBalance(int minConf) {
+    return call("z_gettotalbalance", minConf);
+  }
+
+  @Override
+  public CompletableFuture<List<String>> z_listAddresses() {
+    return call("z_listaddresses");
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.Info> getInfo() {
+    return call("getinfo");
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.MiningInfo> getMiningInfo() {
+    return call("getmininginfo");
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.MultiSig> createMultiSig(int nRequired, List<String> keys) {
+    return call("createmultisig", nRequired, keys);
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.NetworkInfo> getNetworkInfo() {
+    return call("getnetworkinfo");
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.TxOutSetInfo> getTxOutSetInfo() {
+    return call("gettxoutsetinfo");
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.WalletInfo> getWalletInfo() {
+    return call("getwalletinfo");
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.Block> getBlock(int height) {
+    return getBlockHash(height).thenCompose(this::getBlock);
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.Block> getBlock(String blockHash) {
+    return call("getblock", blockHash);
+  }
+
+  @Override
+  public CompletableFuture<String> getBlockHash(int height) {
+    return call("getblockhash", height);
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.BlockChainInfo> getBlockChainInfo() {
+    return call("getblockchaininfo");
+  }
+
+  @Override
+  public CompletableFuture<Integer> getBlockCount() {
+    return call("getblockcount");
+  }
+
+  @Override
+  public CompletableFuture<String> getNewAddress() {
+    return call("getnewaddress");
+  }
+
+  @Override
+  public CompletableFuture<String> getNewAddress(String account) {
+    return call("getnewaddress", account);
+  }
+
+  @Override
+  public CompletableFuture<String> z_getNewAddress() {
+    return call("z_getnewaddress");
+  }
+
+  @Override
+  public CompletableFuture<List<String>> getRawMemPool() {
+    return call("getrawmempool");
+  }
+
+  @Override
+  public CompletableFuture<String> getBestBlockHash() {
+    return call("getbestblockhash");
+  }
+
+  @Override
+  public CompletableFuture<String> getRawTransactionHex(String txId) {
+    return call("getrawtransaction", txId);
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.RawTransaction> getRawTransaction(String txId) {
+    return call("getrawtransaction", txId, 1);
+  }
+
+  @Override
+  public CompletableFuture<Double> getReceivedByAddress(String address) {
+    return call("getreceivedbyaddress", address);
+  }
+
+  @Override
+  public CompletableFuture<Double> getReceivedByAddress(String address, int minConf) {
+    return call("getreceivedbyaddress", address, minConf);
+  }
+
+  @Override
+  public CompletableFuture<Void> importPrivKey(String komodoPrivKey) {
+    return run("importprivkey", komodoPrivKey);
+  }
+
+  @Override
+  public CompletableFuture<Void> importPrivKey(String komodoPrivKey, String label) {
+    return run("importprivkey", komodoPrivKey, label);
+  }
+
+  @Override
+  public CompletableFuture<Void> importPrivKey(String komodoPrivKey, String label, boolean rescan) {
+    return run("importprivkey", komodoPrivKey, label, rescan);
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Number>> listAccounts() {
+    return call("listaccounts");
+  }
+
+  @Override
+  public CompletableFuture<Map<String, Number>> listAccounts(int minConf) {
+    return call("listaccounts", minConf);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.z_ReceivedAddress>> z_listReceivedByAddress(String address) {
+    return call("z_listreceivedbyaddress", address);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.z_ReceivedAddress>> z_listReceivedByAddress(String address, int minConf) {
+    return call("z_listreceivedbyaddress", address, minConf);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.ReceivedAddress>> listReceivedByAddress() {
+    return call("listreceivedbyaddress");
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.ReceivedAddress>> listReceivedByAddress(int minConf) {
+    return call("listreceivedbyaddress", minConf);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.ReceivedAddress>> listReceivedByAddress(int minConf, boolean includeEmpty) {
+    return call("listreceivedbyaddress", minConf, includeEmpty);
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.TransactionsSinceBlock> listSinceBlock() {
+    return call("listsinceblock");
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.TransactionsSinceBlock> listSinceBlock(String blockHash) {
+    return call("listsinceblock", blockHash);
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.TransactionsSinceBlock> listSinceBlock(String blockHash, int targetConfirmations) {
+    return call("listsinceblock", blockHash, targetConfirmations);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.Transaction>> listTransactions() {
+    return call("listtransactions");
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.Transaction>> listTransactions(String account) {
+    return call("listtransactions", account);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.Transaction>> listTransactions(String account, int count) {
+    return call("listtransactions", account, count);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.Transaction>> listTransactions(String account, int count, int from) {
+    return call("listtransactions", account, count, from);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.Unspent>> listUnspent() {
+    return call("listunspent");
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.Unspent>> listUnspent(int minConf) {
+    return call("listunspent", minConf);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.Unspent>> listUnspent(int minConf, int maxConf) {
+    return call("listunspent", minConf, maxConf);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.Unspent>> listUnspent(int minConf, int maxConf, String... addresses) {
+    return call("listunspent", minConf, maxConf, addresses);
+  }
+
+  @Override
+  public CompletableFuture<String> move(String fromAccount, String toKomodoAddress, double amount) {
+    return call("move", fromAccount, toKomodoAddress, amount);
+  }
+
+  @Override
+  public CompletableFuture<String> move(String fromAccount, String toKomodoAddress, double amount, int minConf) {
+    return call("move", fromAccount, toKomodoAddress, amount, minConf);
+  }
+
+  @Override
+  public CompletableFuture<String> move(String fromAccount, String toKomodoAddress, double amount, int minConf, String comment) {
+    return call("move", fromAccount, toKomodoAddress, amount, minConf, comment);
+  }
+
+  @Override
+  public CompletableFuture<String> sendFrom(String fromAccount, String toKomodoAddress, double amount) {
+    return call("sendfrom", fromAccount, toKomodoAddress, amount);
+  }
+
+  @Override
+  public CompletableFuture<String> sendFrom(String fromAccount, String toKomodoAddress, double amount, int minConf) {
+    return call("sendfrom", fromAccount, toKomodoAddress, amount, minConf);
+  }
+
+  @Override
+  public CompletableFuture<String> sendFrom(String fromAccount, String toKomodoAddress, double amount, int minConf, String comment) {
+    return call("sendfrom", fromAccount, toKomodoAddress, amount, minConf, comment);
+  }
+
+  @Override
+  public CompletableFuture<String> sendFrom(String fromAccount, String toKomodoAddress, double amount, int minConf, String comment, String commentTo) {
+    return call("sendfrom", fromAccount, toKomodoAddress, amount, minConf, comment, commentTo);
+  }
+
+  @Override
+  public CompletableFuture<String> sendRawTransaction(String hex) {
+    return call("sendrawtransaction", hex);
+  }
+
+  @Override
+  public CompletableFuture<String> sendToAddress(String toAddress, double amount) {
+    return call("sendtoaddress", toAddress, amount);
+  }
+
+  @Override
+  public CompletableFuture<String> sendToAddress(String toAddress, double amount, String comment) {
+    return call("sendtoaddress", toAddress, amount, comment);
+  }
+
+  @Override
+  public CompletableFuture<String> sendToAddress(String toAddress, double amount, String comment, String commentTo) {
+    return call("sendtoaddress", toAddress, amount, comment, commentTo);
+  }
+
+  @Override
+  public CompletableFuture<String> signRawTransaction(String hex, List<KomododRpcClient.ExtendedTxInput> inputs, List<String> privateKeys) {
+    return call("signrawtransaction", KomodoJSONRPCClient.signRawTransactionParams(hex, inputs, privateKeys, "ALL"));
+  }
+
+  @Override
+  public CompletableFuture<Void> setGenerate(boolean doGenerate) {
+    return run("setgenerate", doGenerate);
+  }
+
+  @Override
+  public CompletableFuture<List<String>> generate(int numBlocks) {
+    return call("generate", numBlocks);
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.AddressValidationResult> validateAddress(String address) {
+    return call("validateaddress", address);
+  }
+
+  @Override
+  public CompletableFuture<Double> getEstimateFee(int nBlocks) {
+    return call("estimatefee", nBlocks);
+  }
+
+  @Override
+  public CompletableFuture<Double> getEstimatePriority(int nBlocks) {
+    return call("estimatepriority", nBlocks);
+  }
+
+  @Override
+  public CompletableFuture<Void> invalidateBlock(String hash) {
+    return run("invalidateblock", hash);
+  }
+
+  @Override
+  public CompletableFuture<Void> reconsiderBlock(String hash) {
+    return run("reconsiderblock", hash);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.PeerInfoResult>> getPeerInfo() {
+    return call("getpeerinfo");
+  }
+
+  @Override
+  public CompletableFuture<Void> stop() {
+    return run("stop");
+  }
+
+  @Override
+  public CompletableFuture<String> getRawChangeAddress() {
+    return call("getrawchangeaddress");
+  }
+
+  @Override
+  public CompletableFuture<Long> getConnectionCount() {
+    return call("getconnectioncount");
+  }
+
+  @Override
+  public CompletableFuture<Double> getUnconfirmedBalance() {
+    return call("getunconfirmedbalance");
+  }
+
+  @Override
+  public CompletableFuture<Double> getDifficulty() {
+    return call("getdifficulty");
+  }
+
+  @Override
+  public CompletableFuture<Void> ping() {
+    return run("ping");
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.DecodedScript> decodeScript(String hex) {
+    return call("decodescript", hex);
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.NetTotals> getNetTotals() {
+    return call("getnettotals");
+  }
+
+  @Override
+  public CompletableFuture<Boolean> getGenerate() {
+    return call("getgenerate");
+  }
+
+  @Override
+  public CompletableFuture<Double> getNetworkHashPs() {
+    return call("getnetworkhashps");
+  }
+
+  @Override
+  public CompletableFuture<Boolean> setTxFee(BigDecimal amount) {
+    return call("settxfee", amount);
+  }
+
+  @Override
+  public CompletableFuture<Void> addNode(String node, String command) {
+    return run("addnode", node, command);
+  }
+
+  @Override
+  public CompletableFuture<Void> backupWallet(String destination) {
+    return run("backupwallet", destination);
+  }
+
+  @Override
+  public CompletableFuture<String> signMessage(String komodoAdress, String message) {
+    return call("signmessage", komodoAdress, message);
+  }
+
+  @Override
+  public CompletableFuture<Void> dumpWallet(String filename) {
+    return run("dumpwallet", filename);
+  }
+
+  @Override
+  public CompletableFuture<Void> importWallet(String filename) {
+    return run("importwallet", filename);
+  }
+
+  @Override
+  public CompletableFuture<Void> keyPoolRefill() {
+    return run("keypoolrefill", 100L);
+  }
+
+  @Override
+  public CompletableFuture<BigDecimal> getReceivedByAccount(String account) {
+    return call("getreceivedbyaccount", account, 1);
+  }
+
+  @Override
+  public CompletableFuture<Void> encryptWallet(String passPhrase) {
+    return run("encryptwallet", passPhrase);
+  }
+
+  @Override
+  public CompletableFuture<Void> walletPassPhrase(String passPhrase, long timeOut) {
+    return run("walletpassphrase", passPhrase, timeOut);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> verifyMessage(String komodoAddress, String signature, String message) {
+    return call("verifymessage", komodoAddress, signature, message);
+  }
+
+  @Override
+  public CompletableFuture<String> addMultiSigAddress(int nRequired, List<String> keyObject) {
+    return call("addmultisigaddress", nRequired, keyObject);
+  }
+
+  @Override
+  public CompletableFuture<String> addMultiSigAddress(int nRequired, List<String> keyObject, String account) {
+    return call("addmultisigaddress", nRequired, keyObject, account);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> verifyChain() {
+    return call("verifychain", 3, 6);
+  }
+
+  @Override
+  public CompletableFuture<List<KomododRpcClient.NodeInfo>> getAddedNodeInfo(boolean dummy, String node) {
+    return call("getaddednodeinfo", dummy, node);
+  }
+
+  @Override
+  public CompletableFuture<Void> submitBlock(String hexData) {
+    return run("submitblock", hexData);
+  }
+
+  @Override
+  public CompletableFuture<KomododRpcClient.TxOut> getTxOut(String txId, long vout) {
+    return call("gettxout", txId, vout);
+  }
+
+  @Override
+  public void close() {
+    transport.close();
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link KomododRpcClient}: every method sends the
+ * same RPC and returns a future completed with the value the blocking method
+ * would return, or exceptionally with the {@link KomodoRpcException} it would
+ * throw.
+ *
+ * Lazy accessors of the returned objects which need further RPCs, such as
+ * {@link KomododRpcClient.Block#previous()}, stay blocking.
+ */
+public interface AsyncKomododRpcClient {
+
+  public CompletableFuture<String> createRawTransaction(List<KomododRpcClient.TxInput> inputs, List<KomododRpcClient.TxOutput> outputs);
+
+  public CompletableFuture<String> dumpPrivKey(String address);
+
+  public CompletableFuture<String> getAccount(String address);
+
+  public CompletableFuture<String> getAccountAddress(String address);
+
+  public CompletableFuture<List<String>> getAddressesByAccount(String account);
+
+  public CompletableFuture<Double> getBalance();
+
+  public CompletableFuture<Double> getBalance(String account);
+
+  public CompletableFuture<Double> getBalance(String account, int minConf);
+
+  public CompletableFuture<Double> z_getBalance();
+
+  public CompletableFuture<Double> z_getBalance(String address);
+
+  public CompletableFuture<Double> z_getBalance(String address, int minConf);
+
+  public CompletableFuture<Double> z_getTotalBalance(int minConf);
+
+  public CompletableFuture<List<String>> z_listAddresses();
+
+  public CompletableFuture<KomododRpcClient.Info> getInfo();
+
+  public CompletableFuture<KomododRpcClient.MiningInfo> getMiningInfo();
+
+  public CompletableFuture<KomododRpcClient.MultiSig> createMultiSig(int nRequired, List<String> keys);
+
+  public CompletableFuture<KomododRpcClient.NetworkInfo> getNetworkInfo();
+
+  public CompletableFuture<KomododRpcClient.TxOutSetInfo> getTxOutSetInfo();
+
+  public CompletableFuture<KomododRpcClient.WalletInfo> getWalletInfo();
+
+  public CompletableFuture<KomododRpcClient.Block> getBlock(int height);
+
+  public CompletableFuture<KomododRpcClient.Block> getBlock(String blockHash);
+
+  public CompletableFuture<String> getBlockHash(int height);
+
+  public CompletableFuture<KomododRpcClient.BlockChainInfo> getBlockChainInfo();
+
+  public CompletableFuture<Integer> getBlockCount();
+
+  public CompletableFuture<String> getNewAddress();
+
+  public CompletableFuture<String> getNewAddress(String account);
+
+  public CompletableFuture<String> z_getNewAddress();
+
+  public CompletableFuture<List<String>> getRawMemPool();
+
+  public CompletableFuture<String> getBestBlockHash();
+
+  public CompletableFuture<String> getRawTransactionHex(String txId);
+
+  public CompletableFuture<KomododRpcClient.RawTransaction> getRawTransaction(String txId);
+
+  public CompletableFuture<Double> getReceivedByAddress(String address);
+
+  public CompletableFuture<Double> getReceivedByAddress(String address, int minConf);
+
+  public CompletableFuture<Void> importPrivKey(String komodoPrivKey);
+
+  public CompletableFuture<Void> importPrivKey(String komodoPrivKey, String label);
+
+  public CompletableFuture<Void> importPrivKey(String komodoPrivKey, String label, boolean rescan);
+
+  public CompletableFuture<Map<String, Number>> listAccounts();
+
+  public CompletableFuture<Map<String, Number>> listAccounts(int minConf);
+
+  public CompletableFuture<List<KomododRpcClient.z_ReceivedAddress>> z_listReceivedByAddress(String address);
+
+  public CompletableFuture<List<KomododRpcClient.z_ReceivedAddress>> z_listReceivedByAddress(String address, int minConf);
+
+  public CompletableFuture<List<KomododRpcClient.ReceivedAddress>> listReceivedByAddress();
+
+  public CompletableFuture<List<KomododRpcClient.ReceivedAddress>> listReceivedByAddress(int minConf);
+
+  public CompletableFuture<List<KomododRpcClient.ReceivedAddress>> listReceivedByAddress(int minConf, boolean includeEmpty);
+
+  public CompletableFuture<KomododRpcClient.TransactionsSinceBlock> listSinceBlock();
+
+  public CompletableFuture<KomododRpcClient.TransactionsSinceBlock> listSinceBlock(String blockHash);
+
+  public CompletableFuture<KomododRpcClient.TransactionsSinceBlock> listSinceBlock(String blockHash, int targetConfirmations);
+
+  public CompletableFuture<List<KomododRpcClient.Transaction>> listTransactions();
+
+  public CompletableFuture<List<KomododRpcClient.Transaction>> listTransactions(String account);
+
+  public CompletableFuture<List<KomododRpcClient.Transaction>> listTransactions(String account, int count);
+
+  public CompletableFuture<List<KomododRpcClient.Transaction>> listTransactions(String account, int count, int from);
+
+  public CompletableFuture<List<KomododRpcClient.Unspent>> listUnspent();
+
+  public CompletableFuture<List<KomododRpcClient.Unspent>> listUnspent(int minConf);
+
+  public CompletableFuture<List<KomododRpcClient.Unspent>> listUnspent(int minConf, int maxConf);
+
+  public CompletableFuture<List<KomododRpcClient.Unspent>> listUnspent(int minConf, int maxConf, String... addresses);
+
+  public CompletableFuture<String> move(String fromAccount, String toKomodoAddress, double amount);
+
+  public CompletableFuture<String> move(String fromAccount, String toKomodoAddress, double amount, int minConf);
+
+  public CompletableFuture<String> move(String fromAccount, String toKomodoAddress, double amount, int minConf, String comment);
+
+  public CompletableFuture<String> sendFrom(String fromAccount, String toKomodoAddress, double amount);
+
+  public CompletableFuture<String> sendFrom(String fromAccount, String toKomodoAddress, double amount, int minConf);
+
+  public CompletableFuture<String> sendFrom(String fromAccount, String toKomodoAddress, double amount, int minConf, String comment);
+
+  public CompletableFuture<String> sendFrom(String fromAccount, String toKomodoAddress, double amount, int minConf, String comment, String commentTo);
+
+  public CompletableFuture<String> sendRawTransaction(String hex);
+
+  public CompletableFuture<String> sendToAddress(String toAddress, double amount);
+
+  public CompletableFuture<String> sendToAddress(String toAddress, double amount, String comment);
+
+  public CompletableFuture<String> sendToAddress(String toAddress, double amount, String comment, String commentTo);
+
+  public CompletableFuture<String> signRawTransaction(String hex, List<KomododRpcClient.ExtendedTxInput> inputs, List<String> privateKeys);
+
+  public CompletableFuture<Void> setGenerate(boolean doGenerate);
+
+  public CompletableFuture<List<String>> generate(int numBlocks);
+
+  public CompletableFuture<KomododRpcClient.AddressValidationResult> validateAddress(String address);
+
+  public CompletableFuture<Double> getEstimateFee(int nBlocks);
+
+  public CompletableFuture<Double> getEstimatePriority(int nBlocks);
+
+  public CompletableFuture<Void> invalidateBlock(String hash);
+
+  public CompletableFuture<Void> reconsiderBlock(String hash);
+
+  public CompletableFuture<List<KomododRpcClient.PeerInfoResult>> getPeerInfo();
+
+  public CompletableFuture<Void> stop();
+
+  public CompletableFuture<String> getRawChangeAddress();
+
+  public CompletableFuture<Long> getConnectionCount();
+
+  public CompletableFuture<Double> getUnconfirmedBalance();
+
+  public CompletableFuture<Double> getDifficulty();
+
+  public CompletableFuture<Void> ping();
+
+  public CompletableFuture<KomododRpcClient.DecodedScript> decodeScript(String hex);
+
+  public CompletableFuture<KomododRpcClient.NetTotals> getNetTotals();
+
+  public CompletableFuture<Boolean> getGenerate();
+
+  public CompletableFuture<Double> getNetworkHashPs();
+
+  public CompletableFuture<Boolean> setTxFee(BigDecimal amount);
+
+  public CompletableFuture<Void> addNode(String node, String command);
+
+  public CompletableFuture<Void> backupWallet(String destination);
+
+  public CompletableFuture<String> signMessage(String komodoAdress, String message);
+
+  public CompletableFuture<Void> dumpWallet(String filename);
+
+  public CompletableFuture<Void> importWallet(String filename);
+
+  public CompletableFuture<Void> keyPoolRefill();
+
+  public CompletableFuture<BigDecimal> getReceivedByAccount(String account);
+
+  public CompletableFuture<Void> encryptWallet(String passPhrase);
+
+  public CompletableFuture<Void> walletPassPhrase(String passPhrase, long timeOut);
+
+  public CompletableFuture<Boolean> verifyMessage(String komodoAddress, String signature, String message);
+
+  public CompletableFuture<String> addMultiSigAddress(int nRequired, List<String> keyObject);
+
+  public CompletableFuture<String> addMultiSigAddress(int nRequired, List<String> keyObject, String account);
+
+  public CompletableFuture<Boolean> verifyChain();
+
+  public CompletableFuture<List<KomododRpcClient.NodeInfo>> getAddedNodeInfo(boolean dummy, String node);
+
+  public CompletableFuture<Void> submitBlock(String hexData);
+
+  public CompletableFuture<KomododRpcClient.TxOut> getTxOut(String txId, long vout);
+
+}
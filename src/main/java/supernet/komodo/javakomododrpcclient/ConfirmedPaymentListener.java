@@ -3,8 +3,6 @@
  */
 package supernet.komodo.javakomododrpcclient;
 
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
 import supernet.komodo.javakomododrpcclient.KomododRpcClient.Transaction;
 
@@ -15,17 +13,49 @@ import supernet.komodo.javakomododrpcclient.KomododRpcClient.Transaction;
  
 public abstract class ConfirmedPaymentListener extends SimpleKomodoPaymentListener {
 
+    /**
+     * Komodo's target block interval in milliseconds
+     */
+    public static final long BLOCK_INTERVAL = 60000;
+
     public int minConf;
 
-    public ConfirmedPaymentListener(int minConf) {
+    /**
+     * @param minConf confirmations after which a transaction is confirmed
+     * @param maxEntries how many txids to remember per generation; the table
+     * takes up to 160 bytes per entry
+     * @param window milliseconds for which a txid is remembered at least,
+     * while fewer than maxEntries transactions are confirmed
+     */
+    public ConfirmedPaymentListener(int minConf, int maxEntries, long window) {
         this.minConf = minConf;
+        this.processedIds = new KomodoTxIdTable(maxEntries, window);
+        this.processed = processedIds.asSet();
+    }
+
+    /**
+     * Remembers confirmed txids for the time of about 100 blocks past minConf
+     */
+    public ConfirmedPaymentListener(int minConf) {
+        this(minConf, 1 << 16, (minConf + 100) * BLOCK_INTERVAL);
     }
 
     public ConfirmedPaymentListener() {
         this(6);
     }
 
-    protected Set<String> processed = Collections.synchronizedSet(new HashSet<String>());
+    /**
+     * The txids already passed to {@link #confirmed(Transaction)}; one seen
+     * again is remembered for a further window
+     */
+    protected final KomodoTxIdTable processedIds;
+
+    /**
+     * {@link #processedIds} as a set, which subclasses may replace with their
+     * own. It supports add, contains, remove and clear, but cannot be
+     * iterated, nor can the bulk operations relying on iteration be used.
+     */
+    protected Set<String> processed;
 
     protected boolean markProcess(String txId) {
         return processed.add(txId);
@@ -18,13 +18,14 @@
 
 package supernet.komodo.javakomododrpcclient;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class KomodoAcceptor implements Runnable {
+public class KomodoAcceptor implements Runnable, KomodoNotifyServer.Listener {
     
     private static final Logger logger = Logger.getLogger(KomodoAcceptor.class.getCanonicalName());
 
@@ -83,22 +84,132 @@ public class KomodoAcceptor implements Runnable {
         listeners.remove(listener);
     }
 
-    private HashSet<String> seen = new HashSet<String>();
+    /**
+     * Confirmations plus one of the transactions already passed to the
+     * listeners. Rotated on every new block; the transactions still listed
+     * are put back each poll, so they stay for as long as they are in the
+     * monitor window.
+     */
+    private final KomodoTxIdTable seen = new KomodoTxIdTable(1 << 20, 0);
+
+    /**
+     * Hashes of the recent blocks, indexed by height modulo the capacity
+     */
+    private static class HeaderRing {
+
+        final int[] heights;
+        final String[] hashes;
+        final String[] previous;
+
+        HeaderRing(int capacity) {
+            heights = new int[capacity];
+            hashes = new String[capacity];
+            previous = new String[capacity];
+            Arrays.fill(heights, -1);
+        }
+
+        void put(int height, String hash, String previousHash) {
+            int i = height % heights.length;
+            heights[i] = height;
+            hashes[i] = hash;
+            previous[i] = previousHash;
+        }
+
+        String hash(int height) {
+            int i = height % heights.length;
+            return heights[i] == height ? hashes[i] : null;
+        }
+
+        String previous(int height) {
+            int i = height % heights.length;
+            return heights[i] == height ? previous[i] : null;
+        }
+    }
+
+    private HeaderRing headers = null;
 
     private void updateMonitorBlock() throws KomodoRpcException {
         monitorBlock = lastBlock;
-        for(int i = 0; i < monitorDepth && monitorBlock != null; i++) {
-            KomododRpcClient.Block b = komodo.getBlock(monitorBlock);
-            monitorBlock = b == null ? null : b.previousHash();
+        if (lastBlock == null || monitorDepth <= 0)
+            return;
+        if (headers == null || headers.heights.length < monitorDepth + 1)
+            headers = new HeaderRing(Math.max(2 * monitorDepth + 2, 16));
+
+        int height;
+        String previousHash;
+        if (komodo instanceof KomodoJSONRPCClient) {
+            Map header = (Map) ((KomodoJSONRPCClient) komodo).query("getblockheader", lastBlock);
+            height = ((Number) header.get("height")).intValue();
+            previousHash = (String) header.get("previousblockhash");
+        } else {
+            KomododRpcClient.Block b = komodo.getBlock(lastBlock);
+            height = b.height();
+            previousHash = b.previousHash();
+        }
+        headers.put(height, lastBlock, previousHash);
+
+        int target = height - monitorDepth;
+        if (target < 0) {
+            monitorBlock = null;
+            return;
         }
+        // follow the links while the ring has them
+        int h = height;
+        while (h > target && headers.previous(h) != null && headers.previous(h).equals(headers.hash(h - 1)))
+            h--;
+        if (h > target && !fillHeaders(target, h - 1)) {
+            // the chain changed while filling, walk back as a last resort
+            monitorBlock = headers.previous(height);
+            for (int i = 1; i < monitorDepth && monitorBlock != null; i++)
+                monitorBlock = komodo.getBlock(monitorBlock).previousHash();
+            return;
+        }
+        monitorBlock = headers.hash(target);
+    }
+
+    /**
+     * Fetches the hashes of the heights from first to last, inclusive, in one
+     * batch when possible
+     *
+     * @return true if they link up to the headers already in the ring
+     */
+    private boolean fillHeaders(int first, int last) throws KomodoRpcException {
+        String[] hashes = new String[last - first + 1];
+        if (komodo instanceof KomodoJSONRPCClient) {
+            KomodoJSONRPCClient.Batch b = ((KomodoJSONRPCClient) komodo).batch();
+            for (int h = first; h <= last; h++)
+                b.getBlockHash(h);
+            List<KomodoJSONRPCClient.BatchResult> r = b.execute();
+            for (int i = 0; i < hashes.length; i++)
+                hashes[i] = r.get(i).get();
+        } else
+            for (int i = 0; i < hashes.length; i++)
+                hashes[i] = komodo.getBlockHash(first + i);
+        if (!hashes[hashes.length - 1].equals(headers.previous(last + 1)))
+            return false;
+        for (int i = 0; i < hashes.length; i++)
+            headers.put(first + i, hashes[i], i > 0 ? hashes[i - 1]
+                    : hashes[0].equals(headers.hash(first)) ? headers.previous(first) : null);
+        return true;
     }
 
     public synchronized void checkPayments() throws KomodoRpcException {
+        check();
+    }
+
+    /**
+     * @return true if a new transaction or block was seen
+     */
+    private synchronized boolean check() throws KomodoRpcException {
+        boolean changed = false;
         KomododRpcClient.TransactionsSinceBlock t = monitorBlock == null ? komodo.listSinceBlock() : komodo.listSinceBlock(monitorBlock);
         for (KomododRpcClient.Transaction transaction : t.transactions()) {
             if ("receive".equals(transaction.category())) {
-                if (!seen.add(transaction.txId()))
+                // passed again only when its confirmations change
+                int confirmations = Math.max(transaction.confirmations() + 1, 0);
+                if (seen.put(transaction.txId(), confirmations) == confirmations)
                     continue;
+                changed = true;
                 for (KomodoPaymentListener listener : listeners) {
                     try {
                         listener.transaction(transaction);
@@ -109,7 +220,8 @@ public class KomodoAcceptor implements Runnable {
             }
         }
         if (!t.lastBlock().equals(lastBlock)) {
-            seen.clear();
+            changed = true;
+            seen.rotate();
             lastBlock = t.lastBlock();
             updateMonitorBlock();
             for (KomodoPaymentListener listener : listeners) {
@@ -120,12 +232,16 @@ public class KomodoAcceptor implements Runnable {
                 }
             }
         }
+        return changed;
     }
 
-    private boolean stop = false;
+    private volatile boolean stop = false;
     
     public void stopAccepting() {
         stop = true;
+        synchronized (wakeup) {
+            wakeup.notifyAll();
+        }
     }
     
     private long checkInterval = 5000;
@@ -148,24 +264,100 @@ public class KomodoAcceptor implements Runnable {
         this.checkInterval = checkInterval;
     }
 
+    private long maxCheckInterval = 30000;
+
+    public long getMaxCheckInterval() {
+        return maxCheckInterval;
+    }
+
+    /**
+     * Polls double their interval, starting from checkInterval, each time
+     * nothing new is found, up to maxCheckInterval. While notifications keep
+     * arriving polls are only made every maxCheckInterval.
+     *
+     * @param maxCheckInterval the longest interval between two polls
+     */
+    public void setMaxCheckInterval(long maxCheckInterval) {
+        this.maxCheckInterval = maxCheckInterval;
+    }
+
+    private long notifyDelay = 50;
+
+    public long getNotifyDelay() {
+        return notifyDelay;
+    }
+
+    /**
+     * @param notifyDelay milliseconds to wait after a notification for
+     * further ones, so that a burst triggers a single check
+     */
+    public void setNotifyDelay(long notifyDelay) {
+        this.notifyDelay = notifyDelay;
+    }
+
+    private final Object wakeup = new Object();
+    private boolean notified = false;
+    private long lastNotification = 0;
+
+    /**
+     * Makes {@link #run()} check payments now, typically called from
+     * komodod's blocknotify or walletnotify through a
+     * {@link KomodoNotifyServer}
+     */
+    public void wakeUp() {
+        synchronized (wakeup) {
+            notified = true;
+            lastNotification = System.currentTimeMillis();
+            wakeup.notifyAll();
+        }
+    }
+
+    @Override
+    public void notification(String type, String argument) {
+        if ("block".equals(type) || "wallet".equals(type))
+            wakeUp();
+    }
+
     @Override
     public void run() {
         stop = false;
         long nextCheck = 0;
+        long interval = checkInterval;
         while(!(Thread.interrupted() || stop)) {
-            if (nextCheck <= System.currentTimeMillis())
-                try {
-                    nextCheck = System.currentTimeMillis() + checkInterval;
-                    checkPayments();
-                } catch (KomodoRpcException ex) {
-                    Logger.getLogger(KomodoAcceptor.class.getName()).log(Level.SEVERE, null, ex);
+            boolean notifications;
+            try {
+                synchronized (wakeup) {
+                    long wait;
+                    while (!notified && !stop && (wait = nextCheck - System.currentTimeMillis()) > 0)
+                        wakeup.wait(wait);
+                    if (notified && notifyDelay > 0) {
+                        // coalesce a burst of notifications
+                        long end = System.currentTimeMillis() + notifyDelay;
+                        for (long w = notifyDelay; w > 0 && !stop; w = end - System.currentTimeMillis())
+                            wakeup.wait(w);
+                    }
+                    notified = false;
+                    notifications = System.currentTimeMillis() - lastNotification < maxCheckInterval;
                 }
+            } catch (InterruptedException ex) {
+                Logger.getLogger(KomodoAcceptor.class.getName()).log(Level.WARNING, null, ex);
+                break;
+            }
+            if (stop)
+                break;
+            boolean changed = false;
+            try {
+                changed = check();
+            } catch (KomodoRpcException ex) {
+                Logger.getLogger(KomodoAcceptor.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            if (notifications)
+                interval = maxCheckInterval;
+            else if (changed)
+                interval = checkInterval;
             else
-                try {
-                    Thread.sleep(Math.max(nextCheck - System.currentTimeMillis(), 100));
-                } catch (InterruptedException ex) {
-                    Logger.getLogger(KomodoAcceptor.class.getName()).log(Level.WARNING, null, ex);
-                }
+                interval = Math.min(Math.max(interval, checkInterval) * 2, Math.max(maxCheckInterval, checkInterval));
+            nextCheck = System.currentTimeMillis() + interval;
         }
     }
 
@@ -0,0 +1,311 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Checks addresses without asking komodod: transparent base58check
+ * addresses by version byte and checksum, and Sapling addresses by bech32
+ * checksum and length.
+ *
+ * Like komodod's <code>validateaddress</code>, {@link #isValid(String)} and
+ * {@link #validate(String)} only accept transparent addresses;
+ * {@link #z_isValid(String)} and {@link #z_validate(String)} also accept
+ * Sapling ones, like <code>z_validateaddress</code>.
+ *
+ * The results answer {@link KomododRpcClient.AddressValidationResult#isValid()},
+ * {@link KomododRpcClient.AddressValidationResult#address()} and
+ * {@link KomododRpcClient.AddressValidationResult#isScript()} locally. The
+ * wallet's view of a valid address, whether it is mine, its public key and
+ * account, is fetched with <code>validateaddress</code>, or
+ * <code>z_validateaddress</code> for Sapling, the first time one of them is
+ * asked for.
+ */
+public class KomodoAddressValidator {
+
+  public static final String SAPLING_HRP = "zs";
+
+  private static final String BECH32 = "qpzry9x8gf2tvdw0s3jn54khce6mua7l";
+  private static final int[] BECH32_DIGITS = new int[128];
+  private static final int[] BECH32_GENERATOR = {0x3b6a57b2, 0x26508e6d, 0x1ea119fa, 0x3d4233dd, 0x2a1462b3};
+
+  static {
+    for (int i = 0; i < BECH32_DIGITS.length; i++)
+      BECH32_DIGITS[i] = -1;
+    for (int i = 0; i < BECH32.length(); i++)
+      BECH32_DIGITS[BECH32.charAt(i)] = i;
+  }
+
+  // diversifier and transmission key
+  private static final int SAPLING_ADDRESS_BYTES = 43;
+
+  private static class Scratch {
+
+    final byte[] address = new byte[25];
+    final byte[] hash = new byte[32];
+    final MessageDigest sha256;
+
+    Scratch() {
+      try {
+        sha256 = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+  }
+
+  private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
+  private final KomodoJSONRPCClient komodo;
+  public final int pubKeyAddress;
+  public final int scriptAddress;
+  public final String saplingHrp;
+
+  /**
+   * Validates Komodo addresses
+   *
+   * @param komodo the client asked for the wallet's fields, or null if they
+   * are never needed
+   */
+  public KomodoAddressValidator(KomodoJSONRPCClient komodo) {
+    this(komodo, KomodoRawTxSerializer.PUBKEY_ADDRESS, KomodoRawTxSerializer.SCRIPT_ADDRESS, SAPLING_HRP);
+  }
+
+  public KomodoAddressValidator(KomodoJSONRPCClient komodo, int pubKeyAddress, int scriptAddress, String saplingHrp) {
+    this.komodo = komodo;
+    this.pubKeyAddress = pubKeyAddress;
+    this.scriptAddress = scriptAddress;
+    this.saplingHrp = saplingHrp;
+  }
+
+  /**
+   * @return the version byte of a valid transparent address, or -1
+   */
+  private int transparentVersion(String address) {
+    int l = address.length();
+    if (l < 26 || l > 35)
+      return -1;
+    Scratch s = scratch.get();
+    byte[] b = s.address;
+    Arrays.fill(b, (byte) 0);
+    int ones = 0;
+    while (ones < l && address.charAt(ones) == '1')
+      ones++;
+    for (int i = ones; i < l; i++) {
+      int carry = KomodoUtil.base58Digit(address.charAt(i));
+      if (carry < 0)
+        return -1;
+      for (int j = b.length - 1; j >= 0; j--) {
+        carry += 58 * (b[j] & 0xff);
+        b[j] = (byte) carry;
+        carry >>>= 8;
+      }
+      if (carry != 0)
+        return -1;
+    }
+    // each leading 1 stands for a zero byte, and only those do
+    for (int i = 0; i < b.length; i++)
+      if (b[i] != 0) {
+        if (i != ones)
+          return -1;
+        break;
+      }
+    try {
+      MessageDigest d = s.sha256;
+      d.update(b, 0, 21);
+      d.digest(s.hash, 0, 32);
+      d.update(s.hash, 0, 32);
+      d.digest(s.hash, 0, 32);
+    } catch (DigestException ex) {
+      throw new IllegalStateException(ex);
+    }
+    for (int i = 0; i < 4; i++)
+      if (s.hash[i] != b[21 + i])
+        return -1;
+    return b[0] & 0xff;
+  }
+
+  private static int polymod(int chk, int v) {
+    int top = chk >>> 25;
+    chk = ((chk & 0x1ffffff) << 5) ^ v;
+    for (int i = 0; i < 5; i++)
+      if (((top >>> i) & 1) != 0)
+        chk ^= BECH32_GENERATOR[i];
+    return chk;
+  }
+
+  private boolean isSapling(String address) {
+    int h = saplingHrp.length();
+    int l = address.length();
+    // separator, the data and six checksum digits
+    int groups = l - h - 1 - 6;
+    if (groups * 5 / 8 != SAPLING_ADDRESS_BYTES || groups * 5 % 8 >= 5)
+      return false;
+    if (!address.regionMatches(true, 0, saplingHrp, 0, h) || address.charAt(h) != '1')
+      return false;
+    int chk = 1;
+    for (int i = 0; i < h; i++)
+      chk = polymod(chk, Character.toLowerCase(address.charAt(i)) >> 5);
+    chk = polymod(chk, 0);
+    for (int i = 0; i < h; i++)
+      chk = polymod(chk, Character.toLowerCase(address.charAt(i)) & 31);
+    boolean lower = false, upper = false;
+    int last = 0;
+    for (int i = h + 1; i < l; i++) {
+      char c = address.charAt(i);
+      lower |= Character.isLowerCase(c);
+      upper |= Character.isUpperCase(c);
+      c = Character.toLowerCase(c);
+      int v = c < 128 ? BECH32_DIGITS[c] : -1;
+      if (v < 0)
+        return false;
+      chk = polymod(chk, v);
+      if (i == l - 7)
+        last = v;
+    }
+    // no mixed case, and the padding bits of the last data digit are zero
+    int padding = groups * 5 % 8;
+    return chk == 1 && !(lower && upper) && (last & ((1 << padding) - 1)) == 0;
+  }
+
+  /**
+   * Checks a transparent address without allocating
+   */
+  public boolean isValid(String address) {
+    if (address == null)
+      return false;
+    int v = transparentVersion(address);
+    return v == pubKeyAddress || v == scriptAddress;
+  }
+
+  /**
+   * Checks a transparent or Sapling address without allocating
+   */
+  public boolean z_isValid(String address) {
+    return isValid(address) || address != null && isSapling(address);
+  }
+
+  /**
+   * Validates a transparent address, as <code>validateaddress</code> does
+   */
+  public KomododRpcClient.AddressValidationResult validate(String address) {
+    int v = address == null ? -1 : transparentVersion(address);
+    if (v == pubKeyAddress || v == scriptAddress)
+      return new Result(komodo, address, true, v == scriptAddress, false);
+    return new Result(komodo, address, false, false, false);
+  }
+
+  /**
+   * Validates a transparent or Sapling address, as
+   * <code>z_validateaddress</code> does
+   */
+  public KomododRpcClient.AddressValidationResult z_validate(String address) {
+    if (address != null && isSapling(address))
+      return new Result(komodo, address, true, false, true);
+    return validate(address);
+  }
+
+  private static class Result implements KomododRpcClient.AddressValidationResult {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient KomodoJSONRPCClient komodo;
+    private final String address;
+    private final boolean valid;
+    private final boolean script;
+    private final boolean sapling;
+    private transient Map wallet;
+
+    Result(KomodoJSONRPCClient komodo, String address, boolean valid, boolean script, boolean sapling) {
+      this.komodo = komodo;
+      this.address = address;
+      this.valid = valid;
+      this.script = script;
+      this.sapling = sapling;
+    }
+
+    private synchronized Map wallet() {
+      if (wallet == null) {
+        if (komodo == null)
+          throw new IllegalStateException("No client to ask for the wallet's fields of " + address);
+        wallet = (Map) komodo.query(sapling ? "z_validateaddress" : "validateaddress", address);
+      }
+      return wallet;
+    }
+
+    private boolean walletFlag(String key) {
+      return valid && Boolean.TRUE.equals(wallet().get(key));
+    }
+
+    private String walletString(String key) {
+      return valid && !sapling ? (String) wallet().get(key) : null;
+    }
+
+    @Override
+    public boolean isValid() {
+      return valid;
+    }
+
+    @Override
+    public String address() {
+      return valid ? address : null;
+    }
+
+    @Override
+    public boolean isMine() {
+      return walletFlag("ismine");
+    }
+
+    @Override
+    public boolean isScript() {
+      return script;
+    }
+
+    @Override
+    public String pubKey() {
+      return walletString("pubkey");
+    }
+
+    @Override
+    public boolean isCompressed() {
+      return !sapling && walletFlag("iscompressed");
+    }
+
+    @Override
+    public String account() {
+      return walletString("account");
+    }
+
+    @Override
+    public String toString() {
+      return "{isvalid=" + valid + (valid ? ", address=" + address + ", isscript=" + script : "") + "}";
+    }
+  }
+
+}
@@ -0,0 +1,503 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import supernet.komodo.krotjson.Base64Coder;
+
+/**
+ * Non-blocking HTTP/1.1 transport for a single komodod endpoint built on
+ * {@link AsynchronousSocketChannel}.
+ *
+ * At most {@link #getMaxInFlight()} requests are on the wire at the same
+ * time, each on its own keep-alive connection; further requests are queued
+ * without holding a thread. Responses are read and handed to the
+ * {@link KomodoRpcTransport.ResponseHandler} on the channel group threads, so
+ * a handful of threads serve any number of pending requests. Only plain
+ * <code>http</code> endpoints are supported.
+ */
+public class KomodoAsyncTransport implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(KomodoAsyncTransport.class.getCanonicalName());
+
+  private static final Charset HEADER_CHARSET = Charset.forName("ISO8859-1");
+
+  public final URL rpcURL;
+
+  private final InetSocketAddress address;
+  private final byte[] requestHead;
+  private final AsynchronousChannelGroup group;
+  private final boolean ownGroup;
+
+  private final int maxInFlight;
+  private long idleTimeout = 15000;
+  private long readTimeout = 0;
+
+  private final ArrayDeque<Exchange> pending = new ArrayDeque<>();
+  private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+  private int inFlight = 0;
+  private boolean closed = false;
+
+  public KomodoAsyncTransport(URL rpc, int maxInFlight, AsynchronousChannelGroup group) {
+    if (!"http".equals(rpc.getProtocol()))
+      throw new IllegalArgumentException("Only http is supported: " + rpc);
+    if (maxInFlight < 1)
+      throw new IllegalArgumentException("maxInFlight: " + maxInFlight);
+    this.rpcURL = rpc;
+    this.maxInFlight = maxInFlight;
+    int port = rpc.getPort() == -1 ? rpc.getDefaultPort() : rpc.getPort();
+    this.address = new InetSocketAddress(rpc.getHost(), port);
+
+    String path = rpc.getPath() == null || rpc.getPath().isEmpty() ? "/" : rpc.getPath();
+    if (rpc.getQuery() != null)
+      path += "?" + rpc.getQuery();
+    StringBuilder b = new StringBuilder();
+    b.append("POST ").append(path).append(" HTTP/1.1\r\n");
+    b.append("Host: ").append(rpc.getHost()).append(':').append(port).append("\r\n");
+    if (rpc.getUserInfo() != null)
+      b.append("Authorization: Basic ").append(Base64Coder.encode(rpc.getUserInfo().getBytes(HEADER_CHARSET))).append("\r\n");
+    b.append("Content-Type: application/json\r\n");
+    b.append("Connection: keep-alive\r\n");
+    b.append("Content-Length: ");
+    this.requestHead = b.toString().getBytes(HEADER_CHARSET);
+
+    if (group == null)
+      try {
+        this.group = AsynchronousChannelGroup.withFixedThreadPool(2, new ThreadFactory() {
+          private final AtomicInteger n = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "komodo-async-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+        });
+      } catch (IOException ex) {
+        throw new IllegalStateException(ex);
+      }
+    else
+      this.group = group;
+    this.ownGroup = group == null;
+  }
+
+  /**
+   * @param rpc the komodod endpoint, credentials included
+   * @param maxInFlight the maximum number of requests sent concurrently
+   */
+  public KomodoAsyncTransport(URL rpc, int maxInFlight) {
+    this(rpc, maxInFlight, null);
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  public synchronized int getQueued() {
+    return pending.size();
+  }
+
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public void setIdleTimeout(long idleTimeout) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  public long getReadTimeout() {
+    return readTimeout;
+  }
+
+  /**
+   * @param readTimeout milliseconds to wait for a response, 0 to wait forever
+   */
+  public void setReadTimeout(long readTimeout) {
+    this.readTimeout = readTimeout;
+  }
+
+  private class Exchange<T> {
+
+    final byte[] request;
+    final KomodoRpcTransport.ResponseHandler<T> handler;
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    boolean retried = false;
+    // bytes of the request written on the current connection
+    long written = 0;
+
+    Exchange(byte[] request, KomodoRpcTransport.ResponseHandler<T> handler) {
+      this.request = request;
+      this.handler = handler;
+    }
+
+    void complete(int responseCode, String responseMessage, byte[] body) {
+      try {
+        future.complete(handler.handle(responseCode, responseMessage, new ByteArrayInputStream(body)));
+      } catch (Throwable ex) {
+        future.completeExceptionally(ex);
+      }
+    }
+  }
+
+  private static class Connection {
+
+    final AsynchronousSocketChannel channel;
+    long lastUsed;
+    long requests = 0;
+    ByteBuffer in = ByteBuffer.allocate(8192);
+
+    Connection(AsynchronousSocketChannel channel) {
+      this.channel = channel;
+    }
+
+    void close() {
+      try {
+        channel.close();
+      } catch (IOException ex) {
+        logger.log(Level.FINE, null, ex);
+      }
+    }
+  }
+
+  /**
+   * Queues a request
+   *
+   * @return a future completed with the value returned by the handler, or
+   * exceptionally with the I/O error or the exception thrown by the handler
+   */
+  public <T> CompletableFuture<T> post(byte[] request, KomodoRpcTransport.ResponseHandler<T> handler) {
+    Exchange<T> e = new Exchange<>(request, handler);
+    synchronized (this) {
+      if (closed) {
+        e.future.completeExceptionally(new IOException("Transport closed"));
+        return e.future;
+      }
+      if (inFlight >= maxInFlight) {
+        pending.add(e);
+        return e.future;
+      }
+      inFlight++;
+    }
+    start(e);
+    return e.future;
+  }
+
+  private void start(final Exchange e) {
+    Connection c;
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      for (Iterator<Connection> i = idle.iterator(); i.hasNext();) {
+        Connection ic = i.next();
+        if (now - ic.lastUsed >= idleTimeout) {
+          i.remove();
+          ic.close();
+        }
+      }
+      c = idle.pollFirst();
+    }
+    if (c != null) {
+      send(c, e);
+      return;
+    }
+    final AsynchronousSocketChannel channel;
+    try {
+      channel = AsynchronousSocketChannel.open(group);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+    } catch (IOException ex) {
+      finish(null, e, ex);
+      return;
+    }
+    channel.connect(address, null, new CompletionHandler<Void, Void>() {
+      @Override
+      public void completed(Void result, Void attachment) {
+        send(new Connection(channel), e);
+      }
+
+      @Override
+      public void failed(Throwable ex, Void attachment) {
+        finish(new Connection(channel), e, ex);
+      }
+    });
+  }
+
+  private void send(final Connection c, final Exchange e) {
+    c.requests++;
+    e.written = 0;
+    byte[] length = String.valueOf(e.request.length).getBytes(HEADER_CHARSET);
+    final ByteBuffer out = ByteBuffer.allocate(requestHead.length + length.length + 4 + e.request.length);
+    out.put(requestHead).put(length).put((byte) '\r').put((byte) '\n').put((byte) '\r').put((byte) '\n').put(e.request);
+    out.flip();
+    c.channel.write(out, null, new CompletionHandler<Integer, Void>() {
+      @Override
+      public void completed(Integer result, Void attachment) {
+        e.written += result;
+        if (out.hasRemaining())
+          c.channel.write(out, null, this);
+        else
+          receive(c, e, new ResponseParser());
+      }
+
+      @Override
+      public void failed(Throwable ex, Void attachment) {
+        finish(c, e, ex);
+      }
+    });
+  }
+
+  private void receive(final Connection c, final Exchange e, final ResponseParser p) {
+    if (!c.in.hasRemaining()) {
+      ByteBuffer larger = ByteBuffer.allocate(c.in.capacity() * 2);
+      c.in.flip();
+      larger.put(c.in);
+      c.in = larger;
+    }
+    c.channel.read(c.in, readTimeout, TimeUnit.MILLISECONDS, null, new CompletionHandler<Integer, Void>() {
+      @Override
+      public void completed(Integer nr, Void attachment) {
+        try {
+          if (nr == -1) {
+            if (p.closeDelimited && p.headerEnd >= 0) {
+              p.keepAlive = false;
+              p.bodyEnd = c.in.position();
+              respond(c, e, p);
+            } else
+              finish(c, e, new IOException(c.in.position() == 0 ? "Connection closed by " + address : "Premature end of response"));
+            return;
+          }
+          if (p.parse(c.in))
+            respond(c, e, p);
+          else
+            receive(c, e, p);
+        } catch (IOException | RuntimeException ex) {
+          finish(c, e, ex);
+        }
+      }
+
+      @Override
+      public void failed(Throwable ex, Void attachment) {
+        finish(c, e, ex);
+      }
+    });
+  }
+
+  private void respond(Connection c, Exchange e, ResponseParser p) {
+    byte[] body = p.body(c.in);
+    c.in.clear();
+    if (p.keepAlive) {
+      c.lastUsed = System.currentTimeMillis();
+      synchronized (this) {
+        if (!closed) {
+          idle.addFirst(c);
+          c = null;
+        }
+      }
+    }
+    if (c != null)
+      c.close();
+    next();
+    e.complete(p.responseCode, p.responseMessage, body);
+  }
+
+  private void finish(Connection c, Exchange e, Throwable ex) {
+    boolean retry = false;
+    if (c != null) {
+      // a kept alive connection closed by komodod before it answered; unless
+      // nothing of the request went out, komodod may have run it, so only
+      // read-only calls go again
+      retry = c.requests > 1 && c.in.position() == 0 && !e.retried
+          && (e.written == 0 || KomodoRpcTransport.isRetryable(e.request));
+      c.close();
+    }
+    if (retry) {
+      logger.log(Level.FINE, "Retrying request on a fresh connection", ex);
+      e.retried = true;
+      start(e);
+      return;
+    }
+    next();
+    e.future.completeExceptionally(ex);
+  }
+
+  private void next() {
+    Exchange n;
+    synchronized (this) {
+      n = pending.poll();
+      if (n == null) {
+        inFlight--;
+        return;
+      }
+    }
+    start(n);
+  }
+
+  /**
+   * Incremental HTTP response parser working on the connection buffer
+   */
+  private static class ResponseParser {
+
+    int headerEnd = -1;
+    int responseCode;
+    String responseMessage;
+    boolean keepAlive;
+    boolean closeDelimited = false;
+    boolean chunked = false;
+    long contentLength = -1;
+    int bodyEnd = -1;
+
+    // chunked decoding state
+    int chunkCursor;
+    ByteArrayOutputStream chunks;
+
+    boolean parse(ByteBuffer in) throws IOException {
+      byte[] b = in.array();
+      int end = in.position();
+      if (headerEnd < 0) {
+        int i = indexOfCrLfCrLf(b, end);
+        if (i < 0)
+          return false;
+        headerEnd = i + 4;
+        String[] lines = new String(b, 0, i, HEADER_CHARSET).split("\r\n");
+        String status = lines[0];
+        if (!status.startsWith("HTTP/1.") || status.length() < 12)
+          throw new IOException("Invalid HTTP status line: " + status);
+        responseCode = Integer.parseInt(status.substring(9, 12));
+        responseMessage = status.length() > 13 ? status.substring(13) : "";
+        keepAlive = status.startsWith("HTTP/1.1");
+        for (int l = 1; l < lines.length; l++) {
+          int c = lines[l].indexOf(':');
+          if (c == -1)
+            continue;
+          String name = lines[l].substring(0, c).trim();
+          String value = lines[l].substring(c + 1).trim();
+          if ("Content-Length".equalsIgnoreCase(name))
+            contentLength = Long.parseLong(value);
+          else if ("Transfer-Encoding".equalsIgnoreCase(name))
+            chunked = "chunked".equalsIgnoreCase(value);
+          else if ("Connection".equalsIgnoreCase(name))
+            keepAlive = "keep-alive".equalsIgnoreCase(value) || (keepAlive && !"close".equalsIgnoreCase(value));
+        }
+        if (chunked) {
+          chunkCursor = headerEnd;
+          chunks = new ByteArrayOutputStream();
+        } else if (contentLength < 0)
+          closeDelimited = true;
+      }
+      if (chunked) {
+        for (;;) {
+          int eol = indexOfCrLf(b, chunkCursor, end);
+          if (eol < 0)
+            return false;
+          String size = new String(b, chunkCursor, eol - chunkCursor, HEADER_CHARSET);
+          int sc = size.indexOf(';');
+          int chunk = Integer.parseInt((sc == -1 ? size : size.substring(0, sc)).trim(), 16);
+          if (chunk == 0) {
+            int t = eol + 2;
+            for (;;) {
+              int tl = indexOfCrLf(b, t, end);
+              if (tl < 0)
+                return false;
+              if (tl == t) {
+                bodyEnd = tl + 2;
+                return true;
+              }
+              t = tl + 2;
+            }
+          }
+          if (end < eol + 2 + chunk + 2)
+            return false;
+          chunks.write(b, eol + 2, chunk);
+          chunkCursor = eol + 2 + chunk + 2;
+        }
+      }
+      if (closeDelimited)
+        return false;
+      if (end - headerEnd < contentLength)
+        return false;
+      bodyEnd = (int) (headerEnd + contentLength);
+      return true;
+    }
+
+    byte[] body(ByteBuffer in) {
+      if (chunked)
+        return chunks.toByteArray();
+      byte[] body = new byte[bodyEnd - headerEnd];
+      System.arraycopy(in.array(), headerEnd, body, 0, body.length);
+      return body;
+    }
+
+    private static int indexOfCrLf(byte[] b, int from, int end) {
+      for (int i = from; i + 1 < end; i++)
+        if (b[i] == '\r' && b[i + 1] == '\n')
+          return i;
+      return -1;
+    }
+
+    private static int indexOfCrLfCrLf(byte[] b, int end) {
+      for (int i = 0; i + 3 < end; i++)
+        if (b[i] == '\r' && b[i + 1] == '\n' && b[i + 2] == '\r' && b[i + 3] == '\n')
+          return i;
+      return -1;
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      for (Connection c : idle)
+        c.close();
+      idle.clear();
+      for (Exchange e : pending)
+        e.future.completeExceptionally(new IOException("Transport closed"));
+      pending.clear();
+    }
+    if (ownGroup)
+      try {
+        group.shutdownNow();
+      } catch (IOException ex) {
+        logger.log(Level.FINE, null, ex);
+      }
+  }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Local copy of the height to block hash mapping of the active chain.
+ *
+ * Hashes are kept as 32 raw bytes per height in pages of
+ * {@link #PAGE_SIZE} heights, so the whole Komodo chain takes about 32 bytes
+ * per block. Missing heights are fetched with batched getblockhash calls of
+ * {@link #getBatchSize()} heights at a time.
+ *
+ * At most every {@link #getSyncInterval()} milliseconds a lookup checks the
+ * tip with getblockchaininfo, which reports its hash and height together;
+ * when the tip changed the stored hashes are compared with the node from the
+ * top down and everything above the fork point is dropped.
+ *
+ * No RPC is sent while holding the monitor of the index, so lookups of
+ * stored heights never wait for the node.
+ *
+ * Usage:
+ * <pre>
+ * client.setBlockIndex(new KomodoBlockIndex(client));
+ * client.getBlock(height); // one getblock, or none with a cache
+ * </pre>
+ */
+public class KomodoBlockIndex {
+
+  public static final int PAGE_SIZE = 4096;
+
+  private static final int HASH_SIZE = 32;
+
+  public final KomodoJSONRPCClient client;
+
+  private byte[][] pages = new byte[16][];
+  private int highest = -1;
+  private int size = 0;
+  private int tipHeight = -1;
+  private String tipHash = null;
+  private long lastSync = 0;
+  private long generation = 0;
+
+  // serializes syncs, which compare the stored hashes with the node in steps
+  private final Object syncLock = new Object();
+
+  private int batchSize = 1000;
+  private long syncInterval = 1000;
+
+  public KomodoBlockIndex(KomodoJSONRPCClient client) {
+    this.client = client;
+  }
+
+  public synchronized int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @param batchSize heights fetched per getblockhash batch
+   */
+  public synchronized void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public synchronized long getSyncInterval() {
+    return syncInterval;
+  }
+
+  /**
+   * @param syncInterval minimum milliseconds between two tip checks, 0 to
+   * check on every lookup
+   */
+  public synchronized void setSyncInterval(long syncInterval) {
+    this.syncInterval = syncInterval;
+  }
+
+  /**
+   * @return the height of the tip at the last sync, -1 before the first one
+   */
+  public synchronized int getTipHeight() {
+    return tipHeight;
+  }
+
+  /**
+   * @return the number of heights whose hash is known
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  private boolean contains(int height) {
+    byte[] page = height < 0 || height > highest ? null : pages[height / PAGE_SIZE];
+    if (page == null)
+      return false;
+    int o = (height % PAGE_SIZE) * HASH_SIZE;
+    for (int i = 0; i < HASH_SIZE; i++)
+      if (page[o + i] != 0)
+        return true;
+    return false;
+  }
+
+  /**
+   * @return the highest known height up to the given one, or -1
+   */
+  private int lowerKnown(int height) {
+    for (int h = Math.min(height, highest); h >= 0; h--) {
+      if (pages[h / PAGE_SIZE] == null)
+        h -= h % PAGE_SIZE;
+      else if (contains(h))
+        return h;
+    }
+    return -1;
+  }
+
+  private String get(int height) {
+    return contains(height) ? KomodoUtil.encodeHex(pages[height / PAGE_SIZE], (height % PAGE_SIZE) * HASH_SIZE, HASH_SIZE) : null;
+  }
+
+  private void set(int height, String hash) {
+    int p = height / PAGE_SIZE;
+    if (p >= pages.length)
+      pages = Arrays.copyOf(pages, Math.max(pages.length * 2, p + 1));
+    if (pages[p] == null)
+      pages[p] = new byte[PAGE_SIZE * HASH_SIZE];
+    if (!contains(height))
+      size++;
+    KomodoUtil.decodeHex(hash, pages[p], (height % PAGE_SIZE) * HASH_SIZE);
+    highest = Math.max(highest, height);
+  }
+
+  /**
+   * Forgets the hashes of the given height and above
+   */
+  public synchronized void invalidateFrom(int height) {
+    height = Math.max(height, 0);
+    for (int h = highest; h >= height; h--)
+      if (contains(h)) {
+        generation++;
+        Arrays.fill(pages[h / PAGE_SIZE], (h % PAGE_SIZE) * HASH_SIZE, (h % PAGE_SIZE + 1) * HASH_SIZE, (byte) 0);
+        size--;
+      }
+    for (int p = height / PAGE_SIZE + (height % PAGE_SIZE == 0 ? 0 : 1); p < pages.length; p++)
+      pages[p] = null;
+    highest = Math.min(highest, height - 1);
+  }
+
+  /**
+   * @return the hash of the block at the given height in the active chain
+   */
+  public String getBlockHash(int height) throws KomodoRpcException {
+    syncIfDue();
+    String hash;
+    int tip;
+    synchronized (this) {
+      hash = get(height);
+      tip = tipHeight;
+    }
+    if (hash != null)
+      return hash;
+    if (height < 0 || height > tip)
+      return (String) client.query("getblockhash", height);
+    fill(height, Math.min(height + getBatchSize() - 1, tip));
+    synchronized (this) {
+      hash = get(height);
+    }
+    return hash != null ? hash : (String) client.query("getblockhash", height);
+  }
+
+  /**
+   * Fetches the missing hashes of the heights from first to last, inclusive
+   */
+  public void fill(int first, int last) throws KomodoRpcException {
+    syncIfDue();
+    int batch = getBatchSize();
+    for (int from = first; from <= last; from += batch) {
+      int to = Math.min(last, from + batch - 1);
+      KomodoJSONRPCClient.Batch b = client.batch();
+      int[] heights = new int[to - from + 1];
+      int n = 0;
+      long g;
+      synchronized (this) {
+        g = generation;
+        for (int h = from; h <= to; h++)
+          if (!contains(h)) {
+            heights[n++] = h;
+            b.getBlockHash(h);
+          }
+      }
+      if (n == 0)
+        continue;
+      List<KomodoJSONRPCClient.BatchResult> r = b.execute();
+      synchronized (this) {
+        // drop the results if a reorg was noticed meanwhile
+        if (g != generation)
+          return;
+        for (int i = 0; i < n; i++)
+          if (heights[i] <= tipHeight)
+            set(heights[i], r.get(i).<String>get());
+      }
+    }
+  }
+
+  private synchronized boolean isSyncDue() {
+    return tipHash == null || System.currentTimeMillis() - lastSync >= syncInterval;
+  }
+
+  private void syncIfDue() {
+    if (isSyncDue())
+      synchronized (syncLock) {
+        // unless another thread synced while this one waited
+        if (isSyncDue())
+          sync();
+      }
+  }
+
+  /**
+   * Checks the tip of the node and drops the hashes above the fork point if
+   * the chain was reorganized
+   */
+  public void sync() throws KomodoRpcException {
+    synchronized (syncLock) {
+      synchronized (this) {
+        lastSync = System.currentTimeMillis();
+      }
+      KomododRpcClient.BlockChainInfo info = client.getBlockChainInfo();
+      String best = info.bestBlockHash();
+      int height = info.blocks();
+      int h;
+      synchronized (this) {
+        if (best.equals(tipHash) && height == tipHeight)
+          return;
+        if (highest > height)
+          invalidateFrom(height + 1);
+        h = lowerKnown(highest);
+      }
+      // compare the stored hashes from the top, one first as usually the old
+      // tip is still in the chain, then 16 at a time
+      int window = 1;
+      while (h >= 0) {
+        int[] heights = new int[window];
+        String[] stored = new String[window];
+        int n = 0;
+        KomodoJSONRPCClient.Batch b = client.batch();
+        synchronized (this) {
+          for (; n < window && h >= 0; h = lowerKnown(h - 1)) {
+            heights[n] = h;
+            stored[n++] = get(h);
+            b.getBlockHash(h);
+          }
+        }
+        List<KomodoJSONRPCClient.BatchResult> node = b.execute();
+        int fork = -1;
+        for (int i = 0; i < n && fork < 0; i++)
+          if (node.get(i).<String>get().equals(stored[i]))
+            fork = heights[i];
+        synchronized (this) {
+          if (fork >= 0) {
+            invalidateFrom(fork + 1);
+            break;
+          }
+          invalidateFrom(heights[n - 1]);
+          h = lowerKnown(h);
+        }
+        window = 16;
+      }
+      synchronized (this) {
+        tipHeight = height;
+        tipHash = best;
+        set(height, best);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches a range of blocks concurrently and hands them to a consumer one by
+ * one in height order.
+ *
+ * At most {@link #getPrefetch()} blocks are fetched ahead of the one being
+ * consumed, so memory use does not depend on the length of the range and a
+ * slow consumer slows the fetching down.
+ *
+ * Usage:
+ * <pre>
+ * KomodoBlockScanner scanner = new KomodoBlockScanner(client, 8);
+ * scanner.setFetchTransactions(true);
+ * scanner.scan(1000000, 1100000, new KomodoBlockScanner.BlockConsumer() {
+ *   public void block(Block block, List&lt;RawTransaction&gt; transactions) {
+ *     ...
+ *   }
+ * });
+ * </pre>
+ */
+public class KomodoBlockScanner {
+
+  public static interface BlockConsumer {
+
+    /**
+     * Called on the thread running {@link #scan}, in height order
+     *
+     * @param block the block
+     * @param transactions the transactions of the block in block order, or
+     * null unless {@link #setFetchTransactions(boolean)} is enabled
+     * @throws Exception to stop the scan
+     */
+    void block(KomododRpcClient.Block block, List<KomododRpcClient.RawTransaction> transactions) throws Exception;
+  }
+
+  public final KomododRpcClient komodo;
+  public final int parallelism;
+
+  private int prefetch;
+  private boolean fetchTransactions = false;
+
+  /**
+   * @param komodo the client, which should be safe to use from several
+   * threads
+   * @param parallelism the number of threads fetching blocks
+   */
+  public KomodoBlockScanner(KomododRpcClient komodo, int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism: " + parallelism);
+    this.komodo = komodo;
+    this.parallelism = parallelism;
+    this.prefetch = parallelism * 4;
+  }
+
+  public int getPrefetch() {
+    return prefetch;
+  }
+
+  /**
+   * @param prefetch how many blocks may be fetched ahead of the one being
+   * consumed, at least the parallelism
+   */
+  public void setPrefetch(int prefetch) {
+    this.prefetch = Math.max(prefetch, parallelism);
+  }
+
+  public boolean isFetchTransactions() {
+    return fetchTransactions;
+  }
+
+  /**
+   * @param fetchTransactions whether to fetch every transaction of the blocks
+   * with getrawtransaction, which needs a node with -txindex
+   */
+  public void setFetchTransactions(boolean fetchTransactions) {
+    this.fetchTransactions = fetchTransactions;
+  }
+
+  private static class Item {
+
+    final KomododRpcClient.Block block;
+    final List<KomododRpcClient.RawTransaction> transactions;
+
+    Item(KomododRpcClient.Block block, List<KomododRpcClient.RawTransaction> transactions) {
+      this.block = block;
+      this.transactions = transactions;
+    }
+  }
+
+  private Item fetch(int height, boolean withTransactions) {
+    KomododRpcClient.Block block = komodo.getBlock(height);
+    if (!withTransactions)
+      return new Item(block, null);
+    List<String> txIds = block.tx();
+    if (komodo instanceof KomodoJSONRPCClient)
+      // one request for the whole block
+      return new Item(block, ((KomodoJSONRPCClient) komodo).getRawTransactions(txIds));
+    List<KomododRpcClient.RawTransaction> transactions = new ArrayList<>(txIds.size());
+    for (String txId : txIds)
+      transactions.add(komodo.getRawTransaction(txId));
+    return new Item(block, transactions);
+  }
+
+  /**
+   * Fetches the blocks from first to last, inclusive, and passes them to the
+   * consumer in height order. Returns when all the blocks have been consumed.
+   *
+   * @throws KomodoRpcException if fetching a block or a transaction fails, or
+   * wrapping the exception thrown by the consumer
+   */
+  public void scan(int first, int last, BlockConsumer consumer) throws KomodoRpcException {
+    final AtomicInteger n = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "komodo-block-scanner-" + n.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    final boolean withTransactions = fetchTransactions;
+    int window = prefetch;
+    @SuppressWarnings("unchecked")
+    Future<Item>[] ring = new Future[window];
+    int next = first;
+    try {
+      for (int height = first; height <= last; height++) {
+        while (next <= last && next < height + window) {
+          final int h = next++;
+          ring[h % window] = executor.submit(new Callable<Item>() {
+            @Override
+            public Item call() {
+              return fetch(h, withTransactions);
+            }
+          });
+        }
+        Item item;
+        try {
+          item = ring[height % window].get();
+        } catch (ExecutionException ex) {
+          if (ex.getCause() instanceof KomodoRpcException)
+            throw (KomodoRpcException) ex.getCause();
+          throw new KomodoRpcException("Fetching block " + height + " failed", ex.getCause());
+        }
+        ring[height % window] = null;
+        try {
+          consumer.block(item.block, item.transactions);
+        } catch (KomodoRpcException ex) {
+          throw ex;
+        } catch (Exception ex) {
+          throw new KomodoRpcException("Consumer failed at block " + height, ex);
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new KomodoRpcException("Interrupted", ex);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
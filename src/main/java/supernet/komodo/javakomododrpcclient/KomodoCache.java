@@ -0,0 +1,400 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache for values that never change once known, like blocks and
+ * confirmed transactions looked up by hash.
+ *
+ * The bound is a total weight: the number of entries with {@link #ENTRIES},
+ * or an estimate of the retained bytes with {@link #ESTIMATED_BYTES}. Entries
+ * are evicted least recently used first with {@link Policy#LRU}, or with
+ * {@link Policy#TINY_LFU} by a W-TinyLFU policy: new entries go to a small
+ * LRU window and only enter the main segmented LRU area when they have been
+ * requested more often than the entry they would evict, which keeps one-off
+ * scans from flushing the frequently used entries.
+ *
+ * With soft values the garbage collector may also drop values under memory
+ * pressure; such entries count as misses.
+ *
+ * All methods are thread safe.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class KomodoCache<K, V> {
+
+  public static enum Policy {
+    LRU, TINY_LFU
+  }
+
+  public static interface Weigher<K, V> {
+
+    long weigh(K key, V value);
+  }
+
+  /**
+   * A value which knows its own heap size, like a typed response
+   */
+  public static interface Weighable {
+
+    long estimateSize();
+  }
+
+  public static final Weigher<Object, Object> ENTRIES = new Weigher<Object, Object>() {
+    @Override
+    public long weigh(Object key, Object value) {
+      return 1;
+    }
+  };
+
+  public static final Weigher<Object, Object> ESTIMATED_BYTES = new Weigher<Object, Object>() {
+    @Override
+    public long weigh(Object key, Object value) {
+      return estimateSize(key) + estimateSize(value) + 64;
+    }
+  };
+
+  /**
+   * Rough heap size of a parsed JSON value or a {@link Weighable}
+   */
+  public static long estimateSize(Object o) {
+    if (o == null)
+      return 0;
+    if (o instanceof String)
+      return 40 + 2 * ((String) o).length();
+    if (o instanceof Weighable)
+      return ((Weighable) o).estimateSize();
+    if (o instanceof Map) {
+      long s = 64;
+      for (Map.Entry e : ((Map<?, ?>) o).entrySet())
+        s += 48 + estimateSize(e.getKey()) + estimateSize(e.getValue());
+      return s;
+    }
+    if (o instanceof List) {
+      long s = 40;
+      for (Object e : (List) o)
+        s += 8 + estimateSize(e);
+      return s;
+    }
+    return 24;
+  }
+
+  private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+  private static class Entry<V> {
+
+    Object value;
+    long weight;
+    int segment;
+
+    V value() {
+      return value instanceof SoftReference ? ((SoftReference<V>) value).get() : (V) value;
+    }
+  }
+
+  public final long maximumWeight;
+  public final Policy policy;
+  private final Weigher<? super K, ? super V> weigher;
+  private final boolean softValues;
+
+  // with LRU only the window is used, as the whole cache
+  private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<K, Entry<V>> protect = new LinkedHashMap<>(16, 0.75f, true);
+  private final long windowMax, protectedMax;
+  private long windowWeight = 0, probationWeight = 0, protectedWeight = 0;
+  private final FrequencySketch sketch;
+
+  private long hits = 0, misses = 0, evictions = 0;
+
+  /**
+   * @param maximumWeight the bound of the total weight
+   * @param weigher how entries are weighed, {@link #ENTRIES} or
+   * {@link #ESTIMATED_BYTES}
+   * @param policy the eviction policy
+   * @param softValues whether the values are softly referenced
+   */
+  public KomodoCache(long maximumWeight, Weigher<? super K, ? super V> weigher, Policy policy, boolean softValues) {
+    if (maximumWeight <= 0)
+      throw new IllegalArgumentException("maximumWeight: " + maximumWeight);
+    this.maximumWeight = maximumWeight;
+    this.weigher = weigher;
+    this.policy = policy;
+    this.softValues = softValues;
+    if (policy == Policy.LRU) {
+      windowMax = maximumWeight;
+      protectedMax = 0;
+      sketch = null;
+    } else {
+      windowMax = Math.max(1, maximumWeight / 100);
+      protectedMax = (maximumWeight - windowMax) * 4 / 5;
+      long entries = weigher == ENTRIES ? maximumWeight : maximumWeight / 4096;
+      sketch = new FrequencySketch((int) Math.max(16, Math.min(entries, 1 << 24)));
+    }
+  }
+
+  /**
+   * A W-TinyLFU cache of up to the given number of entries
+   */
+  public KomodoCache(int maximumEntries) {
+    this(maximumEntries, ENTRIES, Policy.TINY_LFU, false);
+  }
+
+  private Entry<V> find(K key) {
+    Entry<V> e = window.get(key);
+    if (e == null && policy != Policy.LRU) {
+      e = probation.get(key);
+      if (e == null)
+        e = protect.get(key);
+    }
+    return e;
+  }
+
+  /**
+   * @return the cached value, or null if there is none
+   */
+  public synchronized V get(K key) {
+    if (sketch != null)
+      sketch.increment(key.hashCode());
+    Entry<V> e = find(key);
+    V v = e == null ? null : e.value();
+    if (v == null) {
+      if (e != null)
+        remove(key, e);
+      misses++;
+      return null;
+    }
+    hits++;
+    if (e.segment == PROBATION) {
+      probation.remove(key);
+      probationWeight -= e.weight;
+      e.segment = PROTECTED;
+      protect.put(key, e);
+      protectedWeight += e.weight;
+      while (protectedWeight > protectedMax && protect.size() > 1) {
+        Map.Entry<K, Entry<V>> d = protect.entrySet().iterator().next();
+        protect.remove(d.getKey());
+        protectedWeight -= d.getValue().weight;
+        d.getValue().segment = PROBATION;
+        probation.put(d.getKey(), d.getValue());
+        probationWeight += d.getValue().weight;
+      }
+    }
+    return v;
+  }
+
+  public synchronized void put(K key, V value) {
+    if (value == null)
+      throw new NullPointerException();
+    Entry<V> old = find(key);
+    if (old != null)
+      remove(key, old);
+    Entry<V> e = new Entry<>();
+    e.value = softValues ? new SoftReference<>(value) : value;
+    e.weight = weigher.weigh(key, value);
+    if (e.weight > maximumWeight)
+      return;
+    if (sketch != null)
+      sketch.increment(key.hashCode());
+    e.segment = WINDOW;
+    window.put(key, e);
+    windowWeight += e.weight;
+    evict();
+  }
+
+  public synchronized void invalidate(K key) {
+    Entry<V> e = find(key);
+    if (e != null)
+      remove(key, e);
+  }
+
+  public synchronized void invalidateAll() {
+    window.clear();
+    probation.clear();
+    protect.clear();
+    windowWeight = probationWeight = protectedWeight = 0;
+  }
+
+  private void remove(K key, Entry<V> e) {
+    switch (e.segment) {
+      case WINDOW:
+        window.remove(key);
+        windowWeight -= e.weight;
+        break;
+      case PROBATION:
+        probation.remove(key);
+        probationWeight -= e.weight;
+        break;
+      default:
+        protect.remove(key);
+        protectedWeight -= e.weight;
+    }
+  }
+
+  private void evict() {
+    if (policy == Policy.LRU) {
+      Iterator<Entry<V>> i = window.values().iterator();
+      while (windowWeight > windowMax && i.hasNext()) {
+        windowWeight -= i.next().weight;
+        i.remove();
+        evictions++;
+      }
+      return;
+    }
+    long mainMax = maximumWeight - windowMax;
+    while (windowWeight > windowMax && !window.isEmpty()) {
+      // the window's eldest entry is admitted to the main area only if it
+      // is more popular than the entries it would push out
+      Map.Entry<K, Entry<V>> c = window.entrySet().iterator().next();
+      K key = c.getKey();
+      Entry<V> candidate = c.getValue();
+      window.remove(key);
+      windowWeight -= candidate.weight;
+      if (!admits(sketch.frequency(key.hashCode()), probationWeight + protectedWeight + candidate.weight - mainMax)) {
+        evictions++;
+        continue;
+      }
+      while (probationWeight + protectedWeight + candidate.weight > mainMax) {
+        LinkedHashMap<K, Entry<V>> victims = probation.isEmpty() ? protect : probation;
+        Map.Entry<K, Entry<V>> v = victims.entrySet().iterator().next();
+        remove(v.getKey(), v.getValue());
+        evictions++;
+      }
+      candidate.segment = PROBATION;
+      probation.put(key, candidate);
+      probationWeight += candidate.weight;
+    }
+  }
+
+  /**
+   * @param excess the weight to free in the main area
+   * @return whether the candidate is more popular than each of the entries
+   * it would push out, those whose soft value was collected being free
+   */
+  private boolean admits(int frequency, long excess) {
+    for (int s = 0; s < 2 && excess > 0; s++)
+      for (Map.Entry<K, Entry<V>> v : (s == 0 ? probation : protect).entrySet()) {
+        if (excess <= 0)
+          break;
+        Entry<V> victim = v.getValue();
+        if (victim.value() != null && sketch.frequency(v.getKey().hashCode()) >= frequency)
+          return false;
+        excess -= victim.weight;
+      }
+    return excess <= 0;
+  }
+
+  public synchronized int size() {
+    return window.size() + probation.size() + protect.size();
+  }
+
+  public synchronized long weight() {
+    return windowWeight + probationWeight + protectedWeight;
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  public synchronized double getHitRate() {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  public synchronized void resetStats() {
+    hits = misses = evictions = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "KomodoCache{" + policy + ", size=" + size() + ", weight=" + weight() + "/" + maximumWeight
+        + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+  }
+
+  /**
+   * Count-min sketch of 4 bit counters estimating how often keys were
+   * requested recently; all counters are halved periodically so that old
+   * popularity fades.
+   */
+  static class FrequencySketch {
+
+    private static final long[] SEEDS = {0x97cb3127L, 0xab8b8d4dL, 0xc2b2ae35L, 0x27d4eb2fL};
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions = 0;
+
+    FrequencySketch(int entries) {
+      int n = Integer.highestOneBit(Math.max(entries, 16) - 1) << 1;
+      table = new long[Math.max(1, n >>> 2)];
+      mask = table.length - 1;
+      sampleSize = 10 * n;
+    }
+
+    private int index(int hash, int i) {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h ^= h >>> 32;
+      return (int) h;
+    }
+
+    int frequency(int hash) {
+      int f = 15;
+      for (int i = 0; i < 4; i++) {
+        int h = index(hash, i);
+        int shift = (h & 15) << 2;
+        f = Math.min(f, (int) ((table[(h >>> 4) & mask] >>> shift) & 15));
+      }
+      return f;
+    }
+
+    void increment(int hash) {
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        int h = index(hash, i);
+        int slot = (h >>> 4) & mask;
+        int shift = (h & 15) << 2;
+        if (((table[slot] >>> shift) & 15) < 15) {
+          table[slot] += 1L << shift;
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        for (int i = 0; i < table.length; i++)
+          table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+        additions >>>= 1;
+      }
+    }
+  }
+
+}
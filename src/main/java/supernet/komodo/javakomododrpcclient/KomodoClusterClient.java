@@ -0,0 +1,451 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client fronting several komodod nodes.
+ *
+ * Read-only chain queries ({@link #READ_ONLY_METHODS}) are spread over the
+ * healthy nodes and retried on another node when one fails. Every other
+ * method, in particular the wallet ones, is pinned to the wallet node and
+ * never retried elsewhere.
+ *
+ * A node is ejected when a request to it fails at the transport or HTTP
+ * level, or when its block count falls more than {@link #getMaxLag()} blocks
+ * behind the best node. A background task polls getblockcount on every node
+ * each {@link #getCheckInterval()} milliseconds and brings ejected nodes back
+ * after {@link #getReinstateAfter()} consecutive good probes.
+ *
+ * Usage:
+ * <pre>
+ * KomodoClusterClient cluster = new KomodoClusterClient(walletUrl, replica1Url, replica2Url);
+ * Block b = cluster.getBlock(height);       // any healthy node
+ * cluster.sendToAddress(address, amount);   // always walletUrl
+ * cluster.close();
+ * </pre>
+ */
+public class KomodoClusterClient extends KomodoJSONRPCClient implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(KomodoClusterClient.class.getCanonicalName());
+
+  /**
+   * Methods whose result does not depend on the wallet or on which node
+   * serves them, as long as the nodes agree on the chain
+   */
+  public static final Set<String> READ_ONLY_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+      "getbestblockhash", "getblock", "getblockchaininfo", "getblockcount", "getblockhash", "getblockheader",
+      "getchaintips", "getdifficulty", "getmempoolinfo", "getrawmempool", "getrawtransaction", "gettxout",
+      "gettxoutproof", "gettxoutsetinfo", "decoderawtransaction", "decodescript", "estimatefee", "estimatepriority",
+      "getconnectioncount", "getnetworkinfo", "getmininginfo", "getnettotals")));
+
+  public static enum Balancing {
+    /**
+     * Pick the node with the fewest requests in flight
+     */
+    LEAST_OUTSTANDING,
+    /**
+     * Pick the node with the lowest average latency times the requests in
+     * flight plus one
+     */
+    LATENCY_WEIGHTED
+  }
+
+  public static class Node {
+
+    public final KomodoJSONRPCClient client;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile double latency = 0;
+    private volatile boolean healthy = true;
+    private volatile int goodProbes = 0;
+    private volatile int blockCount = -1;
+    private volatile Throwable lastError = null;
+
+    Node(KomodoJSONRPCClient client) {
+      this.client = client;
+    }
+
+    /**
+     * @return requests currently in flight
+     */
+    public int getOutstanding() {
+      return outstanding.get();
+    }
+
+    /**
+     * @return moving average of the response time in nanoseconds
+     */
+    public double getLatency() {
+      return latency;
+    }
+
+    public boolean isHealthy() {
+      return healthy;
+    }
+
+    /**
+     * @return the block count seen by the last probe, -1 before the first one
+     */
+    public int getBlockCount() {
+      return blockCount;
+    }
+
+    public Throwable getLastError() {
+      return lastError;
+    }
+
+    private void record(long nanos) {
+      double l = latency;
+      latency = l == 0 ? nanos : l + (nanos - l) * 0.2;
+    }
+
+    @Override
+    public String toString() {
+      return client.rpcURL.getHost() + ":" + client.rpcURL.getPort() + (healthy ? "" : " (ejected)");
+    }
+  }
+
+  private final List<Node> nodes;
+  private final Node walletNode;
+  private final AtomicInteger rotation = new AtomicInteger();
+
+  private volatile Balancing balancing = Balancing.LEAST_OUTSTANDING;
+  private volatile int maxLag = 2;
+  private volatile int reinstateAfter = 2;
+  private long checkInterval = 5000;
+
+  private final ScheduledExecutorService scheduler;
+  private ScheduledFuture<?> check;
+
+  /**
+   * @param nodes the clients of every node, configured with their own
+   * transports
+   * @param walletNode index of the node serving wallet and other non read-only
+   * methods
+   */
+  public KomodoClusterClient(List<? extends KomodoJSONRPCClient> nodes, int walletNode) {
+    super(nodes.get(walletNode).rpcURL);
+    List<Node> l = new ArrayList<>();
+    for (KomodoJSONRPCClient c : nodes)
+      l.add(new Node(c));
+    this.nodes = Collections.unmodifiableList(l);
+    this.walletNode = l.get(walletNode);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "komodo-cluster-check");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    schedule();
+  }
+
+  /**
+   * @param walletNode the node serving wallet methods, also used for reads
+   * @param readNodes further nodes for read-only methods
+   */
+  public KomodoClusterClient(URL walletNode, URL... readNodes) {
+    this(clients(walletNode, readNodes), 0);
+  }
+
+  private static List<KomodoJSONRPCClient> clients(URL walletNode, URL... readNodes) {
+    List<KomodoJSONRPCClient> l = new ArrayList<>();
+    l.add(new KomodoJSONRPCClient(walletNode));
+    for (URL u : readNodes)
+      l.add(new KomodoJSONRPCClient(u));
+    return l;
+  }
+
+  public List<Node> getNodes() {
+    return nodes;
+  }
+
+  public Node getWalletNode() {
+    return walletNode;
+  }
+
+  public Balancing getBalancing() {
+    return balancing;
+  }
+
+  public void setBalancing(Balancing balancing) {
+    this.balancing = balancing;
+  }
+
+  public int getMaxLag() {
+    return maxLag;
+  }
+
+  /**
+   * @param maxLag how many blocks a node may be behind the best one before it
+   * is ejected
+   */
+  public void setMaxLag(int maxLag) {
+    this.maxLag = maxLag;
+  }
+
+  public int getReinstateAfter() {
+    return reinstateAfter;
+  }
+
+  /**
+   * @param reinstateAfter consecutive successful probes needed to bring an
+   * ejected node back
+   */
+  public void setReinstateAfter(int reinstateAfter) {
+    this.reinstateAfter = reinstateAfter;
+  }
+
+  public synchronized long getCheckInterval() {
+    return checkInterval;
+  }
+
+  /**
+   * @param checkInterval milliseconds between two node checks, 0 to disable
+   * the background checks
+   */
+  public synchronized void setCheckInterval(long checkInterval) {
+    this.checkInterval = checkInterval;
+    schedule();
+  }
+
+  private synchronized void schedule() {
+    if (check != null)
+      check.cancel(false);
+    check = null;
+    if (checkInterval > 0 && !scheduler.isShutdown())
+      check = scheduler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          checkNodes();
+        }
+      }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Polls getblockcount on every node, ejecting the unreachable and lagging
+   * ones and reinstating the recovered ones. Called periodically in the
+   * background.
+   */
+  public void checkNodes() {
+    int best = -1;
+    for (Node n : nodes) {
+      try {
+        n.blockCount = ((Number) n.client.query("getblockcount")).intValue();
+        best = Math.max(best, n.blockCount);
+      } catch (RuntimeException ex) {
+        n.blockCount = -1;
+        eject(n, ex);
+      }
+    }
+    for (Node n : nodes) {
+      if (n.blockCount < 0)
+        continue;
+      if (n.blockCount < best - maxLag)
+        eject(n, new KomodoRpcException("Node at block " + n.blockCount + ", best is " + best));
+      else if (!n.healthy && ++n.goodProbes >= reinstateAfter) {
+        n.healthy = true;
+        n.lastError = null;
+        logger.log(Level.INFO, "Reinstated komodod node {0}", n);
+      }
+    }
+  }
+
+  private void eject(Node n, Throwable cause) {
+    n.goodProbes = 0;
+    n.lastError = cause;
+    if (n.healthy) {
+      logger.log(Level.WARNING, "Ejected komodod node " + n, cause);
+      n.healthy = false;
+    }
+  }
+
+  /**
+   * @return true if the exception means the node could not serve the
+   * request, false if komodod answered with an error
+   */
+  protected boolean isNodeFailure(KomodoRpcException ex) {
+    if (!(ex instanceof KomodoRPC2Exception))
+      return false;
+    int code = ((KomodoRPC2Exception) ex).getResponseCode();
+    // 0: no HTTP response or an unparsable one; komodod reports RPC errors with 404 and 500
+    return code == 0 || code == 401 || code == 403 || code >= 502;
+  }
+
+  /**
+   * @return the healthy nodes in order of preference, or all of them if none
+   * is healthy
+   */
+  protected List<Node> select() {
+    List<Node> l = new ArrayList<>(nodes.size());
+    for (Node n : nodes)
+      if (n.healthy)
+        l.add(n);
+    if (l.isEmpty())
+      l.addAll(nodes);
+    Collections.rotate(l, rotation.getAndIncrement() % l.size());
+    final boolean weighted = balancing == Balancing.LATENCY_WEIGHTED;
+    Collections.sort(l, (a, b) -> weighted
+        ? Double.compare(a.latency * (a.outstanding.get() + 1), b.latency * (b.outstanding.get() + 1))
+        : Integer.compare(a.outstanding.get(), b.outstanding.get()));
+    return l;
+  }
+
+  // decoder null for the untyped query
+  @SuppressWarnings("unchecked")
+  private <T> T query(Node n, ResultDecoder<T> decoder, String method, Object... o) {
+    n.outstanding.incrementAndGet();
+    long start = System.nanoTime();
+    try {
+      T r = decoder == null ? (T) n.client.query(method, o) : n.client.query(decoder, method, o);
+      n.record(System.nanoTime() - start);
+      return r;
+    } catch (KomodoRpcException ex) {
+      if (isNodeFailure(ex))
+        eject(n, ex);
+      else
+        n.record(System.nanoTime() - start);
+      throw ex;
+    } finally {
+      n.outstanding.decrementAndGet();
+    }
+  }
+
+  private <T> T route(ResultDecoder<T> decoder, String method, Object... o) throws KomodoRpcException {
+    if (!READ_ONLY_METHODS.contains(method))
+      return query(walletNode, decoder, method, o);
+    KomodoRpcException failure = null;
+    for (Node n : select()) {
+      try {
+        return query(n, decoder, method, o);
+      } catch (KomodoRpcException ex) {
+        if (!isNodeFailure(ex))
+          throw ex;
+        failure = ex;
+      }
+    }
+    throw failure;
+  }
+
+  // shares calls like KomodoJSONRPCClient does, then routes them
+  private <T> T coalesce(final ResultDecoder<T> decoder, final String method, final Object... o) throws KomodoRpcException {
+    KomodoCoalescer c = getCoalescer();
+    if (c == null || !c.coalesces(method))
+      return route(decoder, method, o);
+    return c.call(decoder, method, o, new Callable<T>() {
+      @Override
+      public T call() throws KomodoRpcException {
+        return route(decoder, method, o);
+      }
+    });
+  }
+
+  @Override
+  public Object query(String method, Object... o) throws KomodoRpcException {
+    return coalesce(null, method, o);
+  }
+
+  @Override
+  public <T> T query(ResultDecoder<T> decoder, String method, Object... o) throws KomodoRpcException {
+    return coalesce(decoder, method, o);
+  }
+
+  private final KomodoRpcTransport clusterTransport = new KomodoRpcTransport() {
+    @Override
+    public <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+      if (!KomodoRpcTransport.isRetryable(request))
+        return post(walletNode, request, handler);
+      IOException failure = null;
+      for (Node n : select()) {
+        try {
+          return post(n, request, handler);
+        } catch (IOException ex) {
+          failure = ex;
+        }
+      }
+      throw failure;
+    }
+
+    private <T> T post(Node n, byte[] request, ResponseHandler<T> handler) throws IOException {
+      n.outstanding.incrementAndGet();
+      long start = System.nanoTime();
+      try {
+        T r = n.client.getTransport().post(request, handler);
+        n.record(System.nanoTime() - start);
+        return r;
+      } catch (IOException ex) {
+        eject(n, ex);
+        throw ex;
+      } finally {
+        n.outstanding.decrementAndGet();
+      }
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  /**
+   * Batches of read-only calls go to the healthy nodes like read-only
+   * queries; any other batch goes to the wallet node and is never retried.
+   * Transports are configured on the node clients.
+   *
+   * @return a transport spreading requests over the nodes
+   */
+  @Override
+  public KomodoRpcTransport getTransport() {
+    return clusterTransport;
+  }
+
+  /**
+   * Stops the background checks and closes the transports of the nodes
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (check != null)
+        check.cancel(false);
+      scheduler.shutdownNow();
+    }
+    for (Node n : nodes)
+      n.client.getTransport().close();
+  }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight layer for read-only calls: concurrent calls of a method with
+ * equal params share one request to komodod and its result, which is then
+ * reused for a short time to live.
+ *
+ * By default the chain tip methods (getbestblockhash, getblockcount,
+ * getinfo...) live for {@link #TIP_TTL} milliseconds, so a new block shows
+ * at most that late, and lookups by hash or height (getblock,
+ * getblockhash, getblockheader, getrawtransaction) for {@link #LOOKUP_TTL}
+ * milliseconds. Wallet methods are not coalesced, as a caller must see the
+ * effect of its own sends. A {@link KomodoNotifyServer} listener can call
+ * {@link #invalidateAll()} when a block arrives.
+ *
+ * Callers share the result objects, which must not be modified.
+ *
+ * <pre>
+ * client.setCoalescer(new KomodoCoalescer());
+ * </pre>
+ */
+public class KomodoCoalescer {
+
+  public static final long TIP_TTL = 100;
+  public static final long LOOKUP_TTL = 1000;
+
+  private static final String[] TIP_METHODS = {"getbestblockhash", "getblockcount", "getinfo", "getblockchaininfo", "getmininginfo",
+    "getnetworkinfo", "getdifficulty", "getconnectioncount", "getrawmempool", "getmempoolinfo"};
+  private static final String[] LOOKUP_METHODS = {"getblock", "getblockhash", "getblockheader", "getrawtransaction"};
+
+  // completed flights checked for expiry once every that many calls
+  private static final int SWEEP_INTERVAL = 256;
+
+  private static final class Key {
+
+    final Object variant;
+    final String method;
+    final Object[] params;
+    final int hash;
+
+    Key(Object variant, String method, Object[] params) {
+      this.variant = variant;
+      this.method = method;
+      this.params = params;
+      this.hash = (System.identityHashCode(variant) * 31 + method.hashCode()) * 31 + Arrays.deepHashCode(params);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key))
+        return false;
+      Key k = (Key) obj;
+      return variant == k.variant && method.equals(k.method) && Arrays.deepEquals(params, k.params);
+    }
+  }
+
+  private static final class Flight {
+
+    // a latch rather than a monitor, so that waiting virtual threads unmount
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile Object result;
+    // a RuntimeException or an Error, as run lets nothing else through
+    volatile Throwable error;
+    volatile long expires;
+  }
+
+  // nanoseconds per coalesced method
+  private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+  private final Map<Key, Flight> flights = new ConcurrentHashMap<>();
+
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong shared = new AtomicLong();
+  private final AtomicLong cached = new AtomicLong();
+
+  /**
+   * Coalesces the chain tip and lookup methods with the default times to
+   * live
+   */
+  public KomodoCoalescer() {
+    for (String m : TIP_METHODS)
+      setTtl(m, TIP_TTL);
+    for (String m : LOOKUP_METHODS)
+      setTtl(m, LOOKUP_TTL);
+  }
+
+  /**
+   * @param ttl milliseconds a result is reused after it arrived, 0 to only
+   * share calls in flight, negative to stop coalescing the method
+   */
+  public KomodoCoalescer setTtl(String method, long ttl) {
+    if (ttl < 0)
+      ttls.remove(method);
+    else
+      ttls.put(method, ttl * 1000000);
+    return this;
+  }
+
+  /**
+   * @return milliseconds the results of the method are reused, or -1 if it
+   * is not coalesced
+   */
+  public long getTtl(String method) {
+    Long ttl = ttls.get(method);
+    return ttl == null ? -1 : ttl / 1000000;
+  }
+
+  public boolean coalesces(String method) {
+    return ttls.containsKey(method);
+  }
+
+  /**
+   * Makes the following calls go to komodod; calls in flight still share
+   * their results
+   */
+  public void invalidateAll() {
+    for (Iterator<Flight> i = flights.values().iterator(); i.hasNext();)
+      if (i.next().done.getCount() == 0)
+        i.remove();
+  }
+
+  /**
+   * Runs a call, or joins an equal one in flight, or returns the result of
+   * one which completed within the time to live
+   *
+   * @param variant what else tells results apart, such as the decoder of a
+   * typed query, compared by identity
+   */
+  public <T> T call(Object variant, String method, Object[] params, Callable<T> call) throws KomodoRpcException {
+    Long ttl = ttls.get(method);
+    if (ttl == null)
+      return run(call);
+    Key k = new Key(variant, method, params);
+    for (;;) {
+      Flight f = flights.get(k);
+      if (f != null) {
+        if (f.done.getCount() != 0) {
+          shared.incrementAndGet();
+          return await(f);
+        }
+        if (f.error == null && f.expires - System.nanoTime() > 0) {
+          cached.incrementAndGet();
+          return (T) f.result;
+        }
+        flights.remove(k, f);
+        continue;
+      }
+      Flight mine = new Flight();
+      if (flights.putIfAbsent(k, mine) != null)
+        continue;
+      if (calls.incrementAndGet() % SWEEP_INTERVAL == 0)
+        sweep();
+      try {
+        T result = run(call);
+        mine.result = result;
+        mine.expires = System.nanoTime() + ttl;
+        return result;
+      } catch (Throwable ex) {
+        mine.error = ex;
+        throw ex;
+      } finally {
+        if (mine.error != null || ttl == 0)
+          flights.remove(k, mine);
+        mine.done.countDown();
+      }
+    }
+  }
+
+  private static <T> T run(Callable<T> call) throws KomodoRpcException {
+    try {
+      return call.call();
+    } catch (RuntimeException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new KomodoRpcException(ex);
+    }
+  }
+
+  private static <T> T await(Flight f) throws KomodoRpcException {
+    try {
+      f.done.await();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new KomodoRpcException("Interrupted", ex);
+    }
+    Throwable e = f.error;
+    if (e instanceof Error)
+      throw (Error) e;
+    if (e != null)
+      throw (RuntimeException) e;
+    return (T) f.result;
+  }
+
+  private void sweep() {
+    long now = System.nanoTime();
+    for (Iterator<Flight> i = flights.values().iterator(); i.hasNext();) {
+      Flight f = i.next();
+      if (f.done.getCount() == 0 && f.expires - now <= 0)
+        i.remove();
+    }
+  }
+
+  /**
+   * @return the calls of coalesced methods which went to komodod
+   */
+  public long getCallCount() {
+    return calls.get();
+  }
+
+  /**
+   * @return the calls which joined an equal one in flight
+   */
+  public long getSharedCount() {
+    return shared.get();
+  }
+
+  /**
+   * @return the calls answered with a result still alive
+   */
+  public long getCachedCount() {
+    return cached.get();
+  }
+
+}
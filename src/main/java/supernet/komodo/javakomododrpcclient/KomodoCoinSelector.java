@@ -0,0 +1,310 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Strategy picking the outputs to spend for a payment.
+ *
+ * Selectors work on a plain array of amounts in satoshis and return the
+ * indexes of the amounts picked, so they are independent of where the
+ * outputs come from. Each selector gives up after its time budget and then
+ * returns the best selection found so far, if any.
+ */
+public abstract class KomodoCoinSelector {
+
+  /**
+   * Branch and bound for an exact match, falling back to the largest outputs
+   */
+  public static final KomodoCoinSelector DEFAULT = orElse(new BranchAndBound(10000, 50), new LargestFirst(50));
+
+  /**
+   * Milliseconds after which the selector returns what it has
+   */
+  public final long timeBudget;
+
+  protected KomodoCoinSelector(long timeBudget) {
+    this.timeBudget = timeBudget;
+  }
+
+  /**
+   * @param amounts the amounts of the candidate outputs in satoshis
+   * @param target the satoshis to cover
+   * @return the indexes of the amounts picked, or null if the selector found
+   * no selection covering the target
+   */
+  public int[] select(long[] amounts, long target) {
+    return select(amounts, target, System.nanoTime() + timeBudget * 1000000L);
+  }
+
+  protected abstract int[] select(long[] amounts, long target, long deadline);
+
+  /**
+   * @return the satoshis a change output costs; change up to them is left
+   * to the fee, as a selection without change may leave them
+   */
+  public long costOfChange() {
+    return 0;
+  }
+
+  protected static boolean expired(long deadline) {
+    return System.nanoTime() - deadline > 0;
+  }
+
+  /**
+   * @return a selector trying the first one, then the second one if the
+   * first found nothing
+   */
+  public static KomodoCoinSelector orElse(final KomodoCoinSelector first, final KomodoCoinSelector second) {
+    return new KomodoCoinSelector(first.timeBudget + second.timeBudget) {
+      @Override
+      public int[] select(long[] amounts, long target) {
+        int[] s = first.select(amounts, target);
+        return s != null ? s : second.select(amounts, target);
+      }
+
+      @Override
+      protected int[] select(long[] amounts, long target, long deadline) {
+        return select(amounts, target);
+      }
+
+      @Override
+      public long costOfChange() {
+        return Math.max(first.costOfChange(), second.costOfChange());
+      }
+    };
+  }
+
+  /**
+   * @return the indexes of the amounts, sorted by amount
+   */
+  protected static int[] order(long[] amounts, boolean descending) {
+    int n = amounts.length;
+    int[] a = new int[n];
+    for (int i = 0; i < n; i++)
+      a[i] = i;
+    int[] b = new int[n];
+    // bottom-up merge sort, stable
+    for (int width = 1; width < n; width *= 2) {
+      for (int lo = 0; lo < n; lo += 2 * width) {
+        int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) {
+          long x = amounts[a[i]], y = amounts[a[j]];
+          b[k++] = (descending ? y > x : y < x) ? a[j++] : a[i++];
+        }
+        while (i < mid)
+          b[k++] = a[i++];
+        while (j < hi)
+          b[k++] = a[j++];
+      }
+      int[] t = a;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  private static int[] accumulate(long[] amounts, int[] order, long target, long deadline) {
+    long v = 0;
+    int n = 0;
+    while (n < order.length && v < target) {
+      v += amounts[order[n++]];
+      if ((n & 1023) == 0 && expired(deadline))
+        return null;
+    }
+    return v < target ? null : Arrays.copyOf(order, n);
+  }
+
+  /**
+   * Takes the largest outputs first, for the fewest inputs
+   */
+  public static class LargestFirst extends KomodoCoinSelector {
+
+    public LargestFirst(long timeBudget) {
+      super(timeBudget);
+    }
+
+    @Override
+    protected int[] select(long[] amounts, long target, long deadline) {
+      return accumulate(amounts, order(amounts, true), target, deadline);
+    }
+  }
+
+  /**
+   * Takes the smallest outputs first, consolidating dust while it pays
+   */
+  public static class SmallestFirst extends KomodoCoinSelector {
+
+    public final int maxInputs;
+
+    /**
+     * @param maxInputs the most inputs to take; if the smallest outputs do
+     * not cover the target within it, nothing is selected
+     */
+    public SmallestFirst(int maxInputs, long timeBudget) {
+      super(timeBudget);
+      this.maxInputs = maxInputs;
+    }
+
+    @Override
+    protected int[] select(long[] amounts, long target, long deadline) {
+      int[] s = accumulate(amounts, order(amounts, false), target, deadline);
+      return s == null || s.length > maxInputs ? null : s;
+    }
+  }
+
+  /**
+   * Depth first search for the outputs summing up to the target, without
+   * change. A sum exceeding the target by up to the cost of change, which is
+   * left to the fee, counts as a match; the match wasting the least is
+   * returned.
+   */
+  public static class BranchAndBound extends KomodoCoinSelector {
+
+    public final long costOfChange;
+
+    /**
+     * @param costOfChange the satoshis a change output would cost
+     */
+    public BranchAndBound(long costOfChange, long timeBudget) {
+      super(timeBudget);
+      this.costOfChange = costOfChange;
+    }
+
+    @Override
+    public long costOfChange() {
+      return costOfChange;
+    }
+
+    @Override
+    protected int[] select(long[] amounts, long target, long deadline) {
+      int n = amounts.length;
+      int[] order = order(amounts, true);
+      long available = 0;
+      for (long a : amounts)
+        available += a;
+      if (available < target)
+        return null;
+      // positions in order of the outputs included on the current branch
+      int[] selection = new int[n];
+      int depth = 0;
+      long value = 0;
+      int[] best = null;
+      long bestWaste = Long.MAX_VALUE;
+      for (int p = 0, tries = 0;; p++, tries++) {
+        boolean backtrack = false;
+        if (value + available < target || value > target + costOfChange)
+          backtrack = true;
+        else if (value >= target) {
+          long waste = value - target;
+          if (waste <= bestWaste) {
+            best = Arrays.copyOf(selection, depth);
+            bestWaste = waste;
+            if (waste == 0)
+              break;
+          }
+          backtrack = true;
+        }
+        if ((tries & 1023) == 0 && expired(deadline))
+          break;
+        if (backtrack) {
+          if (depth == 0)
+            break;
+          // give back the outputs left out, then leave out the last included
+          for (p--; p > selection[depth - 1]; p--)
+            available += amounts[order[p]];
+          value -= amounts[order[p]];
+          depth--;
+        } else {
+          long a = amounts[order[p]];
+          available -= a;
+          // leaving out an output and including an equal one next is the same
+          if (depth == 0 || p - 1 == selection[depth - 1] || a != amounts[order[p - 1]]) {
+            selection[depth++] = p;
+            value += a;
+          }
+        }
+      }
+      if (best == null)
+        return null;
+      for (int i = 0; i < best.length; i++)
+        best[i] = order[best[i]];
+      return best;
+    }
+  }
+
+  /**
+   * Random picks until the target is covered, then further random picks
+   * while they bring the sum closer to twice the target, so that the change
+   * is an output as useful as the payment
+   */
+  public static class RandomImprove extends KomodoCoinSelector {
+
+    private final Random random;
+
+    public RandomImprove(long timeBudget) {
+      this(timeBudget, new Random());
+    }
+
+    public RandomImprove(long timeBudget, Random random) {
+      super(timeBudget);
+      this.random = random;
+    }
+
+    @Override
+    protected int[] select(long[] amounts, long target, long deadline) {
+      int n = amounts.length;
+      // picked ones are swapped to the front
+      int[] pool = new int[n];
+      for (int i = 0; i < n; i++)
+        pool[i] = i;
+      int picked = 0;
+      long value = 0;
+      synchronized (random) {
+        while (value < target) {
+          if (picked == n || ((picked & 1023) == 1023 && expired(deadline)))
+            return null;
+          value += amounts[pick(pool, picked++)];
+        }
+        long ideal = target * 2, max = target * 3;
+        while (picked < n && !expired(deadline)) {
+          int i = pick(pool, picked);
+          long v = value + amounts[i];
+          if (v > max || Math.abs(ideal - v) >= Math.abs(ideal - value))
+            break;
+          value = v;
+          picked++;
+        }
+      }
+      return Arrays.copyOf(pool, picked);
+    }
+
+    private int pick(int[] pool, int picked) {
+      int j = picked + random.nextInt(pool.length - picked);
+      int t = pool[j];
+      pool[j] = pool[picked];
+      pool[picked] = t;
+      return t;
+    }
+  }
+
+}
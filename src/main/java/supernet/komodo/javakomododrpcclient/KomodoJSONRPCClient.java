@@ -36,12 +36,19 @@ import java.nio.charset.Charset;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.HostnameVerifier;
@@ -50,6 +57,8 @@ import javax.net.ssl.SSLSocketFactory;
 
 import supernet.komodo.krotjson.Base64Coder;
 import supernet.komodo.krotjson.JSON;
+import supernet.komodo.krotjson.JSONStreamParser;
+import supernet.komodo.krotjson.JSONWriter;
 import static supernet.komodo.javakomododrpcclient.MapWrapper.*;
 
 /**
@@ -153,87 +162,983 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   public static final Charset QUERY_CHARSET = Charset.forName("ISO8859-1");
 
+  private static final ThreadLocal<JSONWriter> requestWriter = new ThreadLocal<JSONWriter>() {
+    @Override
+    protected JSONWriter initialValue() {
+      return new JSONWriter();
+    }
+  };
+
   public byte[] prepareRequest(final String method, final Object... params) {
-    return JSON.stringify(new LinkedHashMap() {
-      {
-        put("method", method);
-        put("params", params);
-        put("id", "1");
+    return requestWriter.get().reset()
+        .writeRaw("{\"method\":").write(method)
+        .writeRaw(",\"params\":").write(params)
+        .writeRaw(",\"id\":\"1\"}")
+        .toByteArray();
+  }
+
+  static byte[] loadStream(InputStream in, boolean close) throws IOException {
+    ByteArrayOutputStream o = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    for (;;) {
+      int nr = in.read(buffer);
+
+      if (nr == -1)
+        break;
+      if (nr == 0)
+        throw new IOException("Read timed out");
+
+      o.write(buffer, 0, nr);
+    }
+    return o.toByteArray();
+  }
+
+  public Object loadResponse(InputStream in, Object expectedID, boolean close) throws IOException, KomodoRpcException {
+    try {
+      Object r;
+      if (logger.isLoggable(Level.FINE)) {
+        String s = new String(loadStream(in, close), QUERY_CHARSET);
+        logger.log(Level.FINE, "Komodo JSON-RPC response:\n{0}", s);
+        r = JSON.parse(s);
+      } else
+        r = JSON.parse(in);
+      try {
+        Map response = (Map) r;
+
+        if (!expectedID.equals(response.get("id")))
+          throw new KomodoRPC2Exception("Wrong response ID (expected: " + String.valueOf(expectedID) + ", response: " + response.get("id") + ")");
+
+        if (response.get("error") != null)
+          throw new KomodoRpcException(JSON.stringify(response.get("error")));
+
+        return response.get("result");
+      } catch (ClassCastException ex) {
+        throw new KomodoRPC2Exception("Invalid server response format (data: \"" + JSON.stringify(r) + "\")");
+      }
+    } finally {
+      if (close)
+        in.close();
+    }
+  }
+
+  private KomodoRpcTransport transport = null;
+
+  /**
+   * @return the transport used to reach komodod, by default a new
+   * HttpURLConnection for every request
+   */
+  public synchronized KomodoRpcTransport getTransport() {
+    if (transport == null)
+      transport = new URLConnectionTransport();
+    return transport;
+  }
+
+  /**
+   * Selects how requests reach komodod, for example a
+   * {@link KomodoPooledTransport} keeping persistent connections
+   *
+   * @param transport the new transport, or null to go back to the default one
+   */
+  public synchronized void setTransport(KomodoRpcTransport transport) {
+    this.transport = transport;
+  }
+
+  private volatile KomodoCache<String, Object> cache = null;
+
+  public KomodoCache<String, Object> getCache() {
+    return cache;
+  }
+
+  /**
+   * Caches blocks, confirmed transactions and raw transaction hex looked up
+   * by hash. Their content never changes, except for the confirmations
+   * count, which is the one seen when the value was first fetched, and the
+   * next block hash in case of a reorg.
+   *
+   * <pre>
+   * client.setCache(new KomodoCache&lt;String, Object&gt;(64 &lt;&lt; 20, KomodoCache.ESTIMATED_BYTES, KomodoCache.Policy.TINY_LFU, true));
+   * </pre>
+   *
+   * @param cache the cache, or null to always query komodod
+   */
+  public void setCache(KomodoCache<String, Object> cache) {
+    this.cache = cache;
+  }
+
+  private volatile ExecutorService executor = KomodoExecutors.perCallExecutor();
+
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Selects how {@link #getBlocks(Collection)} and
+   * {@link #getRawTransactions(Collection)} fan out. By default, on Java 21
+   * and later, every call runs on its own virtual thread; on older runtimes
+   * the calls go in batches.
+   *
+   * @param executor the executor running one blocking call per task, or null
+   * to send batches
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * komodod's default <code>-rpcthreads</code>
+   */
+  public static final int DEFAULT_CONCURRENCY = 4;
+
+  private volatile int maxConcurrency = 0;
+
+  /**
+   * @return how many calls of {@link #getBlocks(Collection)} and
+   * {@link #getRawTransactions(Collection)} are in flight at most: the set
+   * value, or else the connections of a {@link KomodoPooledTransport}, or
+   * else {@link #DEFAULT_CONCURRENCY}
+   */
+  public int getMaxConcurrency() {
+    int n = maxConcurrency;
+    if (n > 0)
+      return n;
+    KomodoRpcTransport t = getTransport();
+    return t instanceof KomodoPooledTransport ? ((KomodoPooledTransport) t).getMaxConnections() : DEFAULT_CONCURRENCY;
+  }
+
+  /**
+   * @param maxConcurrency the calls in flight at most, which should not
+   * exceed komodod's <code>-rpcthreads</code> plus
+   * <code>-rpcworkqueue</code>, or 0 for the default
+   */
+  public void setMaxConcurrency(int maxConcurrency) {
+    if (maxConcurrency < 0)
+      throw new IllegalArgumentException("maxConcurrency: " + maxConcurrency);
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  private volatile KomodoBlockIndex blockIndex = null;
+
+  public KomodoBlockIndex getBlockIndex() {
+    return blockIndex;
+  }
+
+  /**
+   * Resolves heights through a local index for {@link #getBlockHash(int)}
+   * and {@link #getBlock(int)}
+   *
+   * @param blockIndex an index built on this client, or null to always
+   * query komodod
+   */
+  public void setBlockIndex(KomodoBlockIndex blockIndex) {
+    this.blockIndex = blockIndex;
+  }
+
+  private volatile boolean localDecoding = false;
+
+  public boolean isLocalDecoding() {
+    return localDecoding;
+  }
+
+  /**
+   * Makes {@link #getRawTransaction(String)} and its batch counterpart fetch
+   * the transaction hex only and decode it with {@link KomodoRawTxView},
+   * which saves the node most of the work and the response most of its size.
+   * The transactions returned then have no block hash, confirmations or
+   * times.
+   */
+  public void setLocalDecoding(boolean localDecoding) {
+    this.localDecoding = localDecoding;
+  }
+
+  private volatile KomodoAddressValidator addressValidator = null;
+
+  public KomodoAddressValidator getAddressValidator() {
+    return addressValidator;
+  }
+
+  /**
+   * Sets the validator {@link #validateAddress(String)} checks addresses
+   * with locally, or null, the default, to have komodod validate every
+   * address. The validator's version bytes must be those of the node's
+   * chain, or addresses it accepts are reported invalid.
+   */
+  public void setAddressValidator(KomodoAddressValidator addressValidator) {
+    this.addressValidator = addressValidator;
+  }
+
+  private RawTransaction decode(String hex) {
+    KomodoRawTxView tx = KomodoRawTxView.decode(hex);
+    tx.komodo = this;
+    return tx;
+  }
+
+  private class URLConnectionTransport implements KomodoRpcTransport {
+
+    @Override
+    public <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+      HttpURLConnection conn = (HttpURLConnection) noAuthURL.openConnection();
+
+      conn.setDoOutput(true);
+      conn.setDoInput(true);
+
+      if (conn instanceof HttpsURLConnection) {
+        if (hostnameVerifier != null)
+          ((HttpsURLConnection) conn).setHostnameVerifier(hostnameVerifier);
+        if (sslSocketFactory != null)
+          ((HttpsURLConnection) conn).setSSLSocketFactory(sslSocketFactory);
+      }
+
+//            conn.connect();
+      ((HttpURLConnection) conn).setRequestProperty("Authorization", "Basic " + authStr);
+      conn.getOutputStream().write(request);
+      conn.getOutputStream().close();
+      int responseCode = conn.getResponseCode();
+      InputStream in = responseCode == 200 ? conn.getInputStream() : conn.getErrorStream();
+      try {
+        return handler.handle(responseCode, conn.getResponseMessage(), in);
+      } finally {
+        if (in != null)
+          in.close();
+      }
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private volatile KomodoRpcMetrics metrics = new KomodoRpcMetrics();
+
+  public KomodoRpcMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @param metrics where calls are recorded, or null to record none
+   */
+  public void setMetrics(KomodoRpcMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  private <T> T post(String method, Object[] o, byte[] r, KomodoRpcTransport.ResponseHandler<T> handler) throws KomodoRpcException {
+    return post(method, method, o, r, handler);
+  }
+
+  /**
+   * Posts a request, recording it in the metrics
+   *
+   * @param metric the method to record the call under
+   */
+  private <T> T post(String metric, String method, Object[] o, byte[] r, KomodoRpcTransport.ResponseHandler<T> handler) throws KomodoRpcException {
+    KomodoRpcMetrics mx = metrics;
+    if (mx == null)
+      try {
+        return getTransport().post(r, handler);
+      } catch (IOException ex) {
+        throw new KomodoRPC2Exception(method, o == null ? null : Arrays.deepToString(o), ex);
+      }
+    KomodoRpcMetrics.Method m = mx.method(metric);
+    KomodoRpcMetrics.CountingHandler<T> counted = KomodoRpcMetrics.counting(handler);
+    long start = m.start(r.length);
+    try {
+      T result;
+      try {
+        result = getTransport().post(r, counted);
+      } catch (IOException ex) {
+        throw new KomodoRPC2Exception(method, o == null ? null : Arrays.deepToString(o), ex);
+      }
+      m.succeeded(start, counted.bytes);
+      return result;
+    } catch (RuntimeException | Error ex) {
+      m.failed(start, counted.bytes, KomodoRpcMetrics.responseCode(ex));
+      throw ex;
+    } finally {
+      counted.release();
+    }
+  }
+
+  private volatile KomodoCoalescer coalescer = null;
+
+  public KomodoCoalescer getCoalescer() {
+    return coalescer;
+  }
+
+  /**
+   * Lets concurrent equal calls of read-only methods share one request
+   *
+   * @param coalescer the coalescer, or null to send every call
+   */
+  public void setCoalescer(KomodoCoalescer coalescer) {
+    this.coalescer = coalescer;
+  }
+
+  public Object query(final String method, final Object... o) throws KomodoRpcException {
+    KomodoCoalescer c = coalescer;
+    if (c == null || !c.coalesces(method))
+      return send(method, o);
+    return c.call(null, method, o, new Callable<Object>() {
+      @Override
+      public Object call() throws KomodoRpcException {
+        return send(method, o);
+      }
+    });
+  }
+
+  private Object send(final String method, final Object... o) throws KomodoRpcException {
+    byte[] r = prepareRequest(method, o);
+    if (logger.isLoggable(Level.FINE))
+      logger.log(Level.FINE, "Komodo JSON-RPC request:\n{0}", new String(r, QUERY_CHARSET));
+    return post(method, o, r, new KomodoRpcTransport.ResponseHandler<Object>() {
+      @Override
+      public Object handle(int responseCode, String responseMessage, InputStream in) throws IOException {
+        if (responseCode != 200)
+          throw new KomodoRPC2Exception(method, Arrays.deepToString(o), responseCode, responseMessage, in == null ? null : new String(loadStream(in, false)));
+        return loadResponse(in, "1", false);
+      }
+    });
+  }
+
+  /**
+   * Reads a result straight from the response, without building maps and
+   * lists first
+   */
+  public static interface ResultDecoder<T> {
+
+    /**
+     * @param p the parser, positioned before the result, which is not null
+     */
+    T decode(JSONStreamParser p) throws IOException;
+  }
+
+  // subclasses intercepting query(String, Object...) get their results
+  // decoded from what it returns
+  private final boolean legacyQuery = overridesQuery();
+
+  private boolean overridesQuery() {
+    try {
+      return getClass().getMethod("query", String.class, Object[].class).getDeclaringClass() != KomodoJSONRPCClient.class
+          && getClass().getMethod("query", ResultDecoder.class, String.class, Object[].class).getDeclaringClass() == KomodoJSONRPCClient.class;
+    } catch (NoSuchMethodException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Like {@link #query(String, Object...)}, but decodes the result while it
+   * is read
+   */
+  public <T> T query(final ResultDecoder<T> decoder, final String method, final Object... o) throws KomodoRpcException {
+    if (legacyQuery)
+      return decode(decoder, query(method, o));
+    KomodoCoalescer c = coalescer;
+    if (c == null || !c.coalesces(method))
+      return send(decoder, method, o);
+    return c.call(decoder, method, o, new Callable<T>() {
+      @Override
+      public T call() throws KomodoRpcException {
+        return send(decoder, method, o);
+      }
+    });
+  }
+
+  private <T> T send(final ResultDecoder<T> decoder, final String method, final Object... o) throws KomodoRpcException {
+    byte[] r = prepareRequest(method, o);
+    if (logger.isLoggable(Level.FINE))
+      logger.log(Level.FINE, "Komodo JSON-RPC request:\n{0}", new String(r, QUERY_CHARSET));
+    return post(method, o, r, new KomodoRpcTransport.ResponseHandler<T>() {
+      @Override
+      public T handle(int responseCode, String responseMessage, InputStream in) throws IOException {
+        if (responseCode != 200)
+          throw new KomodoRPC2Exception(method, Arrays.deepToString(o), responseCode, responseMessage, in == null ? null : new String(loadStream(in, false)));
+        return loadResponse(decoder, in);
+      }
+    });
+  }
+
+  <T> T loadResponse(ResultDecoder<T> decoder, InputStream in) throws IOException {
+    JSONStreamParser p;
+    if (logger.isLoggable(Level.FINE)) {
+      String s = new String(loadStream(in, false), QUERY_CHARSET);
+      logger.log(Level.FINE, "Komodo JSON-RPC response:\n{0}", s);
+      p = new JSONStreamParser(s);
+    } else
+      p = new JSONStreamParser(in);
+    T result = null;
+    Object error = null;
+    Object id = null;
+    try {
+      p.beginObject();
+      for (String key; (key = p.nextKey()) != null;)
+        switch (key) {
+          case "result":
+            result = p.nextNull() ? null : decoder.decode(p);
+            break;
+          case "error":
+            error = p.nextValue();
+            break;
+          case "id":
+            id = p.nextValue();
+            break;
+          default:
+            p.skipValue();
+        }
+    } catch (IllegalArgumentException | UnsupportedOperationException | ClassCastException ex) {
+      throw new KomodoRPC2Exception("Invalid server response format: " + ex.getMessage(), ex);
+    }
+    if (!"1".equals(id))
+      throw new KomodoRPC2Exception("Wrong response ID (expected: 1, response: " + id + ")");
+    if (error != null)
+      throw new KomodoRpcException(JSON.stringify(error));
+    return result;
+  }
+
+  /**
+   * Decodes a result parsed already, as batches and subclasses overriding
+   * {@link #query(String, Object...)} have them
+   */
+  private <T> T decode(ResultDecoder<T> decoder, Object parsed) throws KomodoRpcException {
+    if (parsed == null)
+      return null;
+    try {
+      return decoder.decode(new JSONStreamParser(JSON.stringify(parsed)));
+    } catch (IOException | IllegalArgumentException ex) {
+      throw new KomodoRPC2Exception("Invalid server response format (data: \"" + JSON.stringify(parsed) + "\")", ex);
+    }
+  }
+
+  private static <T> ResultDecoder<List<T>> listOf(final ResultDecoder<T> element) {
+    return new ResultDecoder<List<T>>() {
+      @Override
+      public List<T> decode(JSONStreamParser p) throws IOException {
+        List<T> l = new ArrayList<>();
+        p.beginArray();
+        while (p.hasNext())
+          l.add(element.decode(p));
+        return l;
       }
-    }).getBytes(QUERY_CHARSET);
+    };
+  }
+
+  private static Date cTime(long seconds) {
+    return seconds == Long.MIN_VALUE ? null : new Date(seconds * 1000);
+  }
+
+  /**
+   * Decodes a result parsed into maps and lists first, for the methods
+   * wrapping them
+   */
+  private static abstract class Converter<T> implements ResultDecoder<T> {
+
+    @Override
+    public T decode(JSONStreamParser p) throws IOException {
+      return convert(p.nextValue());
+    }
+
+    abstract T convert(Object result);
   }
 
-  private static byte[] loadStream(InputStream in, boolean close) throws IOException {
-    ByteArrayOutputStream o = new ByteArrayOutputStream();
-    byte[] buffer = new byte[1024];
-    for (;;) {
-      int nr = in.read(buffer);
+  static final ResultDecoder<Object> valueDecoder = new ResultDecoder<Object>() {
+    @Override
+    public Object decode(JSONStreamParser p) throws IOException {
+      return p.nextValue();
+    }
+  };
+
+  private static final ResultDecoder<Double> doubleDecoder = new ResultDecoder<Double>() {
+    @Override
+    public Double decode(JSONStreamParser p) throws IOException {
+      return p.nextDouble();
+    }
+  };
+
+  private static final ResultDecoder<Integer> intDecoder = new ResultDecoder<Integer>() {
+    @Override
+    public Integer decode(JSONStreamParser p) throws IOException {
+      return p.nextInt();
+    }
+  };
+
+  private static final ResultDecoder<Long> longDecoder = new ResultDecoder<Long>() {
+    @Override
+    public Long decode(JSONStreamParser p) throws IOException {
+      return p.nextLong();
+    }
+  };
+
+  // an amount, without going through a double
+  private static final ResultDecoder<Long> satoshisDecoder = new ResultDecoder<Long>() {
+    @Override
+    public Long decode(JSONStreamParser p) throws IOException {
+      return p.nextFixed(8);
+    }
+  };
+
+  private final Converter<BlockChainInfo> blockChainInfoConverter = new Converter<BlockChainInfo>() {
+    @Override
+    BlockChainInfo convert(Object result) {
+      return new BlockChainInfoMapWrapper((Map) result);
+    }
+  };
+
+  private final Converter<TxOutSetInfo> txOutSetInfoConverter = new Converter<TxOutSetInfo>() {
+    @Override
+    TxOutSetInfo convert(Object result) {
+      return new TxOutSetInfoWrapper((Map) result);
+    }
+  };
+
+  private final Converter<NetworkInfo> networkInfoConverter = new Converter<NetworkInfo>() {
+    @Override
+    NetworkInfo convert(Object result) {
+      return new NetworkInfoWrapper((Map) result);
+    }
+  };
+
+  private final Converter<MiningInfo> miningInfoConverter = new Converter<MiningInfo>() {
+    @Override
+    MiningInfo convert(Object result) {
+      return new MiningInfoWrapper((Map) result);
+    }
+  };
+
+  private final Converter<List<NodeInfo>> nodeInfoConverter = new Converter<List<NodeInfo>>() {
+    @Override
+    List<NodeInfo> convert(Object result) {
+      List<NodeInfo> nodeInfoList = new LinkedList<NodeInfo>();
+      for (Map m : (List<Map>) result)
+        nodeInfoList.add(new NodeInfoWrapper(m));
+      return nodeInfoList;
+    }
+  };
+
+  private final Converter<MultiSig> multiSigConverter = new Converter<MultiSig>() {
+    @Override
+    MultiSig convert(Object result) {
+      return new MultiSigWrapper((Map) result);
+    }
+  };
+
+  private final Converter<WalletInfo> walletInfoConverter = new Converter<WalletInfo>() {
+    @Override
+    WalletInfo convert(Object result) {
+      return new WalletInfoWrapper((Map) result);
+    }
+  };
+
+  // the verbose form, the hex is kept as is
+  private final ResultDecoder<Object> rawTransactionOrHexDecoder = new ResultDecoder<Object>() {
+    @Override
+    public Object decode(JSONStreamParser p) throws IOException {
+      return p.nextIsObject() ? rawTransactionDecoder.decode(p) : p.nextString();
+    }
+  };
+
+  private static final Converter<List<ReceivedAddress>> receivedAddressConverter = new Converter<List<ReceivedAddress>>() {
+    @Override
+    List<ReceivedAddress> convert(Object result) {
+      return new ReceivedAddressListWrapper((List) result);
+    }
+  };
+
+  private static final Converter<List<z_ReceivedAddress>> z_receivedAddressConverter = new Converter<List<z_ReceivedAddress>>() {
+    @Override
+    List<z_ReceivedAddress> convert(Object result) {
+      return new z_ReceivedAddressListWrapper((List) result);
+    }
+  };
+
+  private static final Converter<String> signedConverter = new Converter<String>() {
+    @Override
+    String convert(Object result) {
+      Map m = (Map) result;
+      if ((Boolean) m.get("complete"))
+        return (String) m.get("hex");
+      else
+        throw new KomodoRpcException("Incomplete");
+    }
+  };
+
+  private static final Converter<AddressValidationResult> addressValidationConverter = new Converter<AddressValidationResult>() {
+    @Override
+    AddressValidationResult convert(Object result) {
+      return new AddressValidationResultWrapper((Map) result);
+    }
+  };
+
+  private final Converter<List<PeerInfoResult>> peerInfoConverter = new Converter<List<PeerInfoResult>>() {
+    @Override
+    List<PeerInfoResult> convert(Object result) {
+      final List<Map> l = (List<Map>) result;
+      return new AbstractList<PeerInfoResult>() {
+
+        @Override
+        public PeerInfoResult get(int index) {
+          return new PeerInfoWrapper(l.get(index));
+        }
+
+        @Override
+        public int size() {
+          return l.size();
+        }
+      };
+    }
+  };
+
+  private final Converter<NetTotals> netTotalsConverter = new Converter<NetTotals>() {
+    @Override
+    NetTotals convert(Object result) {
+      return new NetTotalsImpl((Map) result);
+    }
+  };
+
+  private final Converter<DecodedScript> decodedScriptConverter = new Converter<DecodedScript>() {
+    @Override
+    DecodedScript convert(Object result) {
+      return new DecodedScriptImpl((Map) result);
+    }
+  };
+
+  private static final Converter<BigDecimal> bigDecimalConverter = new Converter<BigDecimal>() {
+    @Override
+    BigDecimal convert(Object result) {
+      return new BigDecimal(result.toString());
+    }
+  };
+
+  private final Converter<TxOut> txOutConverter = new Converter<TxOut>() {
+    @Override
+    TxOut convert(Object result) {
+      return new TxOutWrapper((Map) result);
+    }
+  };
+
+  /**
+   * @return the decoder of the results of the method into what the methods of
+   * {@link KomododRpcClient} calling it return, for clients sending their
+   * requests themselves; results of methods not converted are decoded as
+   * they are parsed
+   */
+  @SuppressWarnings("unchecked")
+  <T> ResultDecoder<T> decoder(String method) {
+    ResultDecoder<?> d;
+    switch (method) {
+      case "getbalance":
+      case "z_getbalance":
+      case "z_gettotalbalance":
+      case "getreceivedbyaddress":
+      case "estimatefee":
+      case "estimatepriority":
+      case "getunconfirmedbalance":
+      case "getdifficulty":
+      case "getnetworkhashps":
+        d = doubleDecoder;
+        break;
+      case "getblockcount":
+        d = intDecoder;
+        break;
+      case "getconnectioncount":
+        d = longDecoder;
+        break;
+      case "getblock":
+        d = blockDecoder;
+        break;
+      case "getblockchaininfo":
+        d = blockChainInfoConverter;
+        break;
+      case "getinfo":
+        d = infoDecoder;
+        break;
+      case "gettxoutsetinfo":
+        d = txOutSetInfoConverter;
+        break;
+      case "getnetworkinfo":
+        d = networkInfoConverter;
+        break;
+      case "getmininginfo":
+        d = miningInfoConverter;
+        break;
+      case "getaddednodeinfo":
+        d = nodeInfoConverter;
+        break;
+      case "createmultisig":
+        d = multiSigConverter;
+        break;
+      case "getwalletinfo":
+        d = walletInfoConverter;
+        break;
+      case "getrawtransaction":
+        d = rawTransactionOrHexDecoder;
+        break;
+      case "listreceivedbyaddress":
+        d = receivedAddressConverter;
+        break;
+      case "z_listreceivedbyaddress":
+        d = z_receivedAddressConverter;
+        break;
+      case "listsinceblock":
+        d = sinceBlockDecoder;
+        break;
+      case "listtransactions":
+        d = transactionsDecoder;
+        break;
+      case "listunspent":
+        d = unspentDecoder;
+        break;
+      case "signrawtransaction":
+        d = signedConverter;
+        break;
+      case "validateaddress":
+        d = addressValidationConverter;
+        break;
+      case "getpeerinfo":
+        d = peerInfoConverter;
+        break;
+      case "getnettotals":
+        d = netTotalsConverter;
+        break;
+      case "decodescript":
+        d = decodedScriptConverter;
+        break;
+      case "getreceivedbyaccount":
+        d = bigDecimalConverter;
+        break;
+      case "gettxout":
+        d = txOutConverter;
+        break;
+      default:
+        d = valueDecoder;
+    }
+    return (ResultDecoder<T>) d;
+  }
+
+  /**
+   * Starts a JSON-RPC batch: the queued calls are sent in a single HTTP
+   * request by {@link Batch#execute()}.
+   *
+   * <pre>
+   * List&lt;BatchResult&gt; r = client.batch().getBlockHash(h).getRawTransaction(txId).execute();
+   * String hash = r.get(0).get();
+   * </pre>
+   *
+   * @return a new, empty batch
+   */
+  public Batch batch() {
+    return new Batch();
+  }
+
+  private static class BatchCall {
+
+    final String method;
+    final Object[] params;
+
+    BatchCall(String method, Object[] params) {
+      this.method = method;
+      this.params = params;
+    }
+
+    Object convert(Object result) {
+      return result;
+    }
+  }
+
+  /**
+   * Result of a single call of a {@link Batch}, either a value or the error
+   * returned by komodod for that call
+   */
+  public static class BatchResult implements Serializable {
+
+    private final String method;
+    private final Object value;
+    private final KomodoRpcException error;
+
+    BatchResult(String method, Object value, KomodoRpcException error) {
+      this.method = method;
+      this.value = value;
+      this.error = error;
+    }
+
+    public String method() {
+      return method;
+    }
 
-      if (nr == -1)
-        break;
-      if (nr == 0)
-        throw new IOException("Read timed out");
+    public boolean isError() {
+      return error != null;
+    }
 
-      o.write(buffer, 0, nr);
+    public KomodoRpcException error() {
+      return error;
+    }
+
+    /**
+     * @param <T> the type returned by the equivalent {@link KomododRpcClient}
+     * method
+     * @return the converted result
+     * @throws KomodoRpcException the error returned for this call
+     */
+    public <T> T get() throws KomodoRpcException {
+      if (error != null)
+        throw error;
+      return (T) value;
+    }
+
+    @Override
+    public String toString() {
+      return method + ": " + (error != null ? error.getMessage() : String.valueOf(value));
     }
-    return o.toByteArray();
   }
 
-  public Object loadResponse(InputStream in, Object expectedID, boolean close) throws IOException, KomodoRpcException {
-    try {
-      String r = new String(loadStream(in, close), QUERY_CHARSET);
-      logger.log(Level.FINE, "Komodo JSON-RPC response:\n{0}", r);
-      try {
-        Map response = (Map) JSON.parse(r);
+  public class Batch {
 
-        if (!expectedID.equals(response.get("id")))
-          throw new KomodoRPC2Exception("Wrong response ID (expected: " + String.valueOf(expectedID) + ", response: " + response.get("id") + ")");
+    private final List<BatchCall> calls = new ArrayList<>();
 
-        if (response.get("error") != null)
-          throw new KomodoRpcException(JSON.stringify(response.get("error")));
+    private Batch add(BatchCall call) {
+      calls.add(call);
+      return this;
+    }
 
-        return response.get("result");
-      } catch (ClassCastException ex) {
-        throw new KomodoRPC2Exception("Invalid server response format (data: \"" + r + "\")");
-      }
-    } finally {
-      if (close)
-        in.close();
+    /**
+     * Queues a call whose result is returned unconverted, as
+     * {@link KomodoJSONRPCClient#query(String, Object...)} would
+     */
+    public Batch call(String method, Object... params) {
+      return add(new BatchCall(method, params));
     }
-  }
 
-  public Object query(String method, Object... o) throws KomodoRpcException {
-    HttpURLConnection conn;
-    try {
-      conn = (HttpURLConnection) noAuthURL.openConnection();
+    public Batch getBlockHash(int height) {
+      return call("getblockhash", height);
+    }
 
-      conn.setDoOutput(true);
-      conn.setDoInput(true);
+    public Batch getBlock(String blockHash) {
+      return add(new BatchCall("getblock", new Object[]{blockHash}) {
+        @Override
+        Object convert(Object result) {
+          return decode(blockDecoder, result);
+        }
+      });
+    }
 
-      if (conn instanceof HttpsURLConnection) {
-        if (hostnameVerifier != null)
-          ((HttpsURLConnection) conn).setHostnameVerifier(hostnameVerifier);
-        if (sslSocketFactory != null)
-          ((HttpsURLConnection) conn).setSSLSocketFactory(sslSocketFactory);
+    public Batch getBlockCount() {
+      return add(new BatchCall("getblockcount", new Object[0]) {
+        @Override
+        Object convert(Object result) {
+          return ((Number) result).intValue();
+        }
+      });
+    }
+
+    public Batch getBestBlockHash() {
+      return call("getbestblockhash");
+    }
+
+    public Batch getRawTransactionHex(String txId) {
+      return call("getrawtransaction", txId);
+    }
+
+    public Batch getRawTransaction(String txId) {
+      if (localDecoding)
+        return add(new BatchCall("getrawtransaction", new Object[]{txId}) {
+          @Override
+          Object convert(Object result) {
+            return decode((String) result);
+          }
+        });
+      return add(new BatchCall("getrawtransaction", new Object[]{txId, 1}) {
+        @Override
+        Object convert(Object result) {
+          return decode(rawTransactionDecoder, result);
+        }
+      });
+    }
+
+    public Batch getRawMemPool() {
+      return call("getrawmempool");
+    }
+
+    public Batch validateAddress(String address) {
+      return add(new BatchCall("validateaddress", new Object[]{address}) {
+        @Override
+        Object convert(Object result) {
+          return new AddressValidationResultWrapper((Map) result);
+        }
+      });
+    }
+
+    public int size() {
+      return calls.size();
+    }
+
+    /**
+     * Sends all the queued calls in one request
+     *
+     * @return one result per queued call, in queuing order
+     * @throws KomodoRpcException if the request as a whole fails
+     */
+    public List<BatchResult> execute() throws KomodoRpcException {
+      if (calls.isEmpty())
+        return new ArrayList<>();
+      final List<BatchCall> c = new ArrayList<>(calls);
+      JSONWriter w = requestWriter.get().reset().writeRaw("[");
+      for (int i = 0; i < c.size(); i++) {
+        if (i > 0)
+          w.writeRaw(",");
+        w.writeRaw("{\"method\":").write(c.get(i).method)
+            .writeRaw(",\"params\":").write(c.get(i).params)
+            .writeRaw(",\"id\":").write(i)
+            .writeRaw("}");
       }
+      byte[] r = w.writeRaw("]").toByteArray();
+      final String method = "batch(" + c.size() + ")";
+      if (logger.isLoggable(Level.FINE))
+        logger.log(Level.FINE, "Komodo JSON-RPC batch request:\n{0}", new String(r, QUERY_CHARSET));
+      List responses = post("batch", method, null, r, new KomodoRpcTransport.ResponseHandler<List>() {
+        @Override
+        public List handle(int responseCode, String responseMessage, InputStream in) throws IOException {
+          if (responseCode != 200)
+            throw new KomodoRPC2Exception(method, null, responseCode, responseMessage, in == null ? null : new String(loadStream(in, false)));
+          Object o;
+          if (logger.isLoggable(Level.FINE)) {
+            String response = new String(loadStream(in, false), QUERY_CHARSET);
+            logger.log(Level.FINE, "Komodo JSON-RPC batch response:\n{0}", response);
+            o = JSON.parse(response);
+          } else
+            o = JSON.parse(in);
+          if (!(o instanceof List))
+            throw new KomodoRPC2Exception("Invalid server response format (data: \"" + JSON.stringify(o) + "\")");
+          return (List) o;
+        }
+      });
 
-//            conn.connect();
-      ((HttpURLConnection) conn).setRequestProperty("Authorization", "Basic " + authStr);
-      byte[] r = prepareRequest(method, o);
-      logger.log(Level.FINE, "Komodo JSON-RPC request:\n{0}", new String(r, QUERY_CHARSET));
-      conn.getOutputStream().write(r);
-      conn.getOutputStream().close();
-      int responseCode = conn.getResponseCode();
-      if (responseCode != 200)
-        throw new KomodoRPC2Exception(method, Arrays.deepToString(o), responseCode, conn.getResponseMessage(), new String(loadStream(conn.getErrorStream(), true)));
-      return loadResponse(conn.getInputStream(), "1", true);
-    } catch (IOException ex) {
-      throw new KomodoRPC2Exception(method, Arrays.deepToString(o), ex);
+      BatchResult[] results = new BatchResult[c.size()];
+      for (Object o : responses) {
+        if (!(o instanceof Map) || !(((Map) o).get("id") instanceof Number))
+          throw new KomodoRPC2Exception("Invalid batch response element: " + o);
+        Map response = (Map) o;
+        int id = ((Number) response.get("id")).intValue();
+        if (id < 0 || id >= results.length || results[id] != null)
+          throw new KomodoRPC2Exception("Unexpected batch response ID: " + response.get("id"));
+        BatchCall call = c.get(id);
+        if (response.get("error") != null)
+          results[id] = new BatchResult(call.method, null, new KomodoRpcException(JSON.stringify(response.get("error"))));
+        else
+          try {
+            results[id] = new BatchResult(call.method, call.convert(response.get("result")), null);
+          } catch (ClassCastException | IllegalArgumentException ex) {
+            results[id] = new BatchResult(call.method, null, new KomodoRPC2Exception("Invalid server response format (data: \"" + response.get("result") + "\")"));
+          }
+      }
+      for (int i = 0; i < results.length; i++)
+        if (results[i] == null)
+          results[i] = new BatchResult(c.get(i).method, null, new KomodoRPC2Exception("Missing batch response for ID " + i));
+      return Arrays.asList(results);
     }
   }
 
   @Override
   public String createRawTransaction(List<TxInput> inputs, List<TxOutput> outputs) throws KomodoRpcException {
+    return (String) query("createrawtransaction", createRawTransactionParams(inputs, outputs));
+  }
+
+  static Object[] createRawTransactionParams(List<TxInput> inputs, List<TxOutput> outputs) {
     List<Map> pInputs = new ArrayList<>();
 
     for (final TxInput txInput : inputs) {
@@ -245,16 +1150,20 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
       });
     }
 
-    Map<String, Double> pOutputs = new LinkedHashMap();
+    Map<String, Long> satoshis = new LinkedHashMap<>();
 
-    Double oldValue;
+    Long oldValue;
     for (TxOutput txOutput : outputs) {
-      if ((oldValue = pOutputs.put(txOutput.address(), txOutput.amount())) != null)
-        pOutputs.put(txOutput.address(), KomodoUtil.normalizeAmount(oldValue + txOutput.amount()));
+      if ((oldValue = satoshis.put(txOutput.address(), txOutput.satoshis())) != null)
+        satoshis.put(txOutput.address(), oldValue + txOutput.satoshis());
 //                throw new KomodoRpcException("Duplicate output");
     }
 
-    return (String) query("createrawtransaction", pInputs, pOutputs);
+    Map<String, BigDecimal> pOutputs = new LinkedHashMap<>();
+    for (Map.Entry<String, Long> e : satoshis.entrySet())
+      pOutputs.put(e.getKey(), KomodoUtil.toAmount(e.getValue()));
+
+    return new Object[]{pInputs, pOutputs};
   }
 
   @Override
@@ -292,6 +1201,21 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
     return ((Number) query("getbalance", account, minConf)).doubleValue();
   }
 
+  @Override
+  public long getBalanceSatoshis() throws KomodoRpcException {
+    return query(satoshisDecoder, "getbalance");
+  }
+
+  @Override
+  public long getBalanceSatoshis(String account) throws KomodoRpcException {
+    return query(satoshisDecoder, "getbalance", account);
+  }
+
+  @Override
+  public long getBalanceSatoshis(String account, int minConf) throws KomodoRpcException {
+    return query(satoshisDecoder, "getbalance", account, minConf);
+  }
+
   @Override
   public double z_getBalance() throws KomodoRpcException {
     return ((Number) query("z_getbalance")).doubleValue();
@@ -317,133 +1241,244 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
     return (List<String>) query("z_listaddresses");
   }
 
-  private class InfoWrapper extends MapWrapper implements Info, Serializable {
-
-    public InfoWrapper(Map m) {
-      super(m);
-    }
-
-    @Override
-    public double balance() {
-      return mapDouble("balance");
-    }
+  private static class InfoData implements Info {
+
+    private static final long serialVersionUID = 1L;
+
+    long version;
+    long protocolVersion;
+    String KMDversion;
+    int notarized;
+    String notarizedHash;
+    String notarizedTxId;
+    String notarizedTxIdHeight;
+    int notarizedConfirms;
+    long walletVersion;
+    double balance;
+    double interest;
+    int blocks;
+    int longestChain;
+    int timeOffset;
+    long tipTime;
+    int connections;
+    String proxy;
+    double difficulty;
+    boolean testnet;
+    long keyPoolOldest;
+    long keyPoolSize;
+    double payTxFee;
+    double relayFee;
+    String errors;
 
     @Override
-    public int blocks() {
-      return mapInt("blocks");
+    public long version() {
+      return version;
     }
 
     @Override
-    public int connections() {
-      return mapInt("connections");
+    public long protocolVersion() {
+      return protocolVersion;
     }
 
     @Override
-    public double difficulty() {
-      return mapDouble("difficulty");
+    public String KMDversion() {
+      return KMDversion;
     }
 
     @Override
-    public String errors() {
-      return mapStr("errors");
+    public int notarized() {
+      return notarized;
     }
 
     @Override
-    public double interest() {
-      return mapDouble("interest");
+    public String notarizedhash() {
+      return notarizedHash;
     }
 
     @Override
-    public long keyPoolOldest() {
-      return mapLong("keypoololdest");
+    public String notarizedtxid() {
+      return notarizedTxId;
     }
 
     @Override
-    public long keyPoolSize() {
-      return mapLong("keypoolsize");
+    public String notarizedtxid_height() {
+      return notarizedTxIdHeight;
     }
 
     @Override
-    public String KMDversion() {
-      return mapStr("KMDversion");
+    public int notarized_confirms() {
+      return notarizedConfirms;
     }
 
     @Override
-    public int longestchain() {
-      return mapInt("longestchain");
+    public long walletVersion() {
+      return walletVersion;
     }
 
     @Override
-    public int notarized() {
-      return mapInt("notarized");
+    public double balance() {
+      return balance;
     }
 
     @Override
-    public String notarizedhash() {
-      return mapStr("notarizedhash");
+    public double interest() {
+      return interest;
     }
 
     @Override
-    public String notarizedtxid() {
-      return mapStr("notarizedtxid");
+    public int blocks() {
+      return blocks;
     }
 
     @Override
-    public int notarized_confirms() {
-      return mapInt("notarized_confirms");
+    public int longestchain() {
+      return longestChain;
     }
 
     @Override
-    public String notarizedtxid_height() {
-      return mapStr("notarizedtxid_height");
+    public int timeOffset() {
+      return timeOffset;
     }
 
     @Override
-    public double payTxFee() {
-      return mapDouble("paytxfee");
+    public long tiptime() {
+      return tipTime;
     }
 
     @Override
-    public long protocolVersion() {
-      return mapLong("protocolversion");
+    public int connections() {
+      return connections;
     }
 
     @Override
     public String proxy() {
-      return mapStr("proxy");
+      return proxy;
     }
 
     @Override
-    public double relayFee() {
-      return mapDouble("relayfee");
+    public double difficulty() {
+      return difficulty;
     }
 
     @Override
     public boolean testnet() {
-      return mapBool("testnet");
+      return testnet;
     }
 
     @Override
-    public long tiptime() {
-      return mapLong("tiptime");
+    public long keyPoolOldest() {
+      return keyPoolOldest;
     }
 
     @Override
-    public int timeOffset() {
-      return mapInt("timeoffset");
+    public long keyPoolSize() {
+      return keyPoolSize;
     }
 
     @Override
-    public long version() {
-      return mapLong("version");
+    public double payTxFee() {
+      return payTxFee;
     }
 
     @Override
-    public long walletVersion() {
-      return mapLong("walletversion");
+    public double relayFee() {
+      return relayFee;
     }
 
-  }
+    @Override
+    public String errors() {
+      return errors;
+    }
+
+  }
+
+  private static final ResultDecoder<Info> infoDecoder = new ResultDecoder<Info>() {
+    @Override
+    public Info decode(JSONStreamParser p) throws IOException {
+      InfoData i = new InfoData();
+      p.beginObject();
+      for (String key; (key = p.nextKey()) != null;)
+        switch (key) {
+          case "version":
+            i.version = p.nextLong();
+            break;
+          case "protocolversion":
+            i.protocolVersion = p.nextLong();
+            break;
+          case "KMDversion":
+            i.KMDversion = p.nextString();
+            break;
+          case "notarized":
+            i.notarized = p.nextInt();
+            break;
+          case "notarizedhash":
+            i.notarizedHash = p.nextString();
+            break;
+          case "notarizedtxid":
+            i.notarizedTxId = p.nextString();
+            break;
+          case "notarizedtxid_height":
+            // a height, or "mempool"
+            Object height = p.nextValue();
+            i.notarizedTxIdHeight = height == null ? null : height.toString();
+            break;
+          case "notarized_confirms":
+            i.notarizedConfirms = p.nextInt();
+            break;
+          case "walletversion":
+            i.walletVersion = p.nextLong();
+            break;
+          case "balance":
+            i.balance = p.nextDouble();
+            break;
+          case "interest":
+            i.interest = p.nextDouble();
+            break;
+          case "blocks":
+            i.blocks = p.nextInt();
+            break;
+          case "longestchain":
+            i.longestChain = p.nextInt();
+            break;
+          case "timeoffset":
+            i.timeOffset = p.nextInt();
+            break;
+          case "tiptime":
+            i.tipTime = p.nextLong();
+            break;
+          case "connections":
+            i.connections = p.nextInt();
+            break;
+          case "proxy":
+            i.proxy = p.nextString();
+            break;
+          case "difficulty":
+            i.difficulty = p.nextDouble();
+            break;
+          case "testnet":
+            i.testnet = p.nextBoolean();
+            break;
+          case "keypoololdest":
+            i.keyPoolOldest = p.nextLong();
+            break;
+          case "keypoolsize":
+            i.keyPoolSize = p.nextLong();
+            break;
+          case "paytxfee":
+            i.payTxFee = p.nextDouble();
+            break;
+          case "relayfee":
+            i.relayFee = p.nextDouble();
+            break;
+          case "errors":
+            i.errors = p.nextString();
+            break;
+          default:
+            p.skipValue();
+        }
+      return i;
+    }
+  };
 
   private class TxOutSetInfoWrapper extends MapWrapper implements TxOutSetInfo, Serializable {
 
@@ -851,117 +1886,372 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
     }
   }
 
-  private class BlockMapWrapper extends MapWrapper implements Block, Serializable {
+  private class BlockData implements Block, KomodoCache.Weighable {
 
-    public BlockMapWrapper(Map m) {
-      super(m);
-    }
+    private static final long serialVersionUID = 1L;
+
+    String hash;
+    int confirmations;
+    int size;
+    int height;
+    int version;
+    String merkleRoot;
+    String[] tx = new String[0];
+    long time = Long.MIN_VALUE;
+    long nonce;
+    String bits;
+    double difficulty;
+    String previousHash;
+    String nextHash;
+    String chainwork;
 
     @Override
     public String hash() {
-      return mapStr("hash");
+      return hash;
     }
 
     @Override
     public int confirmations() {
-      return mapInt("confirmations");
+      return confirmations;
     }
 
     @Override
     public int size() {
-      return mapInt("size");
+      return size;
     }
 
     @Override
     public int height() {
-      return mapInt("height");
+      return height;
     }
 
     @Override
     public int version() {
-      return mapInt("version");
+      return version;
     }
 
     @Override
     public String merkleRoot() {
-      return mapStr("merkleroot");
+      return merkleRoot;
     }
 
     @Override
     public String chainwork() {
-      return mapStr("chainwork");
+      return chainwork;
     }
 
     @Override
     public List<String> tx() {
-      return (List<String>) m.get("tx");
+      return Collections.unmodifiableList(Arrays.asList(tx));
     }
 
     @Override
     public Date time() {
-      return mapCTime("time");
+      return cTime(time);
     }
 
     @Override
     public long nonce() {
-      return mapLong("nonce");
+      return nonce;
     }
 
     @Override
     public String bits() {
-      return mapStr("bits");
+      return bits;
     }
 
     @Override
     public double difficulty() {
-      return mapDouble("difficulty");
+      return difficulty;
     }
 
     @Override
     public String previousHash() {
-      return mapStr("previousblockhash");
+      return previousHash;
     }
 
     @Override
     public String nextHash() {
-      return mapStr("nextblockhash");
+      return nextHash;
     }
 
     @Override
     public Block previous() throws KomodoRpcException {
-      if (!m.containsKey("previousblockhash"))
-        return null;
-      return getBlock(previousHash());
+      return previousHash == null ? null : getBlock(previousHash);
     }
 
     @Override
     public Block next() throws KomodoRpcException {
-      if (!m.containsKey("nextblockhash"))
-        return null;
-      return getBlock(nextHash());
+      return nextHash == null ? null : getBlock(nextHash);
+    }
+
+    @Override
+    public long estimateSize() {
+      long s = 96 + 32L * (tx.length + 1) + 112L * tx.length;
+      for (String v : new String[]{hash, merkleRoot, bits, previousHash, nextHash, chainwork})
+        s += KomodoCache.estimateSize(v);
+      return s;
+    }
+
+    @Override
+    public String toString() {
+      return "{hash=" + hash + ", height=" + height + ", tx=" + tx.length + "}";
+    }
+  }
+
+  private final ResultDecoder<Block> blockDecoder = new ResultDecoder<Block>() {
+    @Override
+    public Block decode(JSONStreamParser p) throws IOException {
+      BlockData b = new BlockData();
+      p.beginObject();
+      for (String key; (key = p.nextKey()) != null;)
+        switch (key) {
+          case "hash":
+            b.hash = p.nextString();
+            break;
+          case "confirmations":
+            b.confirmations = p.nextInt();
+            break;
+          case "size":
+            b.size = p.nextInt();
+            break;
+          case "height":
+            b.height = p.nextInt();
+            break;
+          case "version":
+            b.version = p.nextInt();
+            break;
+          case "merkleroot":
+            b.merkleRoot = p.nextString();
+            break;
+          case "tx":
+            b.tx = nextStrings(p);
+            break;
+          case "time":
+            b.time = p.nextLong();
+            break;
+          case "nonce":
+            // a 256 bit hex string on Komodo
+            Object nonce = p.nextValue();
+            b.nonce = nonce instanceof Number ? ((Number) nonce).longValue() : 0;
+            break;
+          case "bits":
+            b.bits = p.nextString();
+            break;
+          case "difficulty":
+            b.difficulty = p.nextDouble();
+            break;
+          case "previousblockhash":
+            b.previousHash = p.nextString();
+            break;
+          case "nextblockhash":
+            b.nextHash = p.nextString();
+            break;
+          case "chainwork":
+            b.chainwork = p.nextString();
+            break;
+          default:
+            p.skipValue();
+        }
+      return b;
     }
-
-  }
+  };
 
   @Override
   public Block getBlock(int height) throws KomodoRpcException {
-    String hash = (String) query("getblockhash", height);
-    return getBlock(hash);
+    return getBlock(getBlockHash(height));
   }
 
   @Override
   public Block getBlock(String blockHash) throws KomodoRpcException {
-    return new BlockMapWrapper((Map) query("getblock", blockHash));
+    KomodoCache<String, Object> c = cache;
+    Block b = c == null ? null : (Block) c.get("block:" + blockHash);
+    if (b == null) {
+      b = query(blockDecoder, "getblock", blockHash);
+      // the tip's nextblockhash is still unknown
+      if (c != null && b.nextHash() != null)
+        c.put("block:" + blockHash, b);
+    }
+    return b;
+  }
+
+  private static abstract class Call<T> implements Callable<T> {
+
+    @Override
+    public abstract T call() throws KomodoRpcException;
+  }
+
+  /**
+   * Runs blocking calls concurrently on the executor, at most
+   * {@link #getMaxConcurrency()} at a time
+   *
+   * @return their results, in order
+   */
+  private <T> List<T> fanOut(ExecutorService executor, List<Call<T>> calls) throws KomodoRpcException {
+    final Semaphore permits = new Semaphore(getMaxConcurrency());
+    List<Future<T>> futures = new ArrayList<>(calls.size());
+    try {
+      for (final Call<T> c : calls) {
+        permits.acquire();
+        try {
+          futures.add(executor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+              try {
+                return c.call();
+              } finally {
+                permits.release();
+              }
+            }
+          }));
+        } catch (RuntimeException ex) {
+          permits.release();
+          throw ex;
+        }
+      }
+      List<T> results = new ArrayList<>(futures.size());
+      for (Future<T> f : futures)
+        results.add(f.get());
+      return results;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new KomodoRpcException("Interrupted", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException)
+        throw (RuntimeException) ex.getCause();
+      throw new KomodoRpcException(ex.getCause());
+    } finally {
+      for (Future<T> f : futures)
+        f.cancel(true);
+    }
+  }
+
+  /**
+   * Fetches blocks concurrently, each on its own task of the
+   * {@link #getExecutor() executor}, or in batches without one. Both ways
+   * go through the {@link #setBlockIndex(KomodoBlockIndex) block index} and
+   * the {@link #setCache(KomodoCache) cache} when set.
+   *
+   * @return the blocks, in the order of the heights
+   */
+  public List<Block> getBlocks(Collection<Integer> heights) throws KomodoRpcException {
+    ExecutorService e = executor;
+    if (e != null) {
+      List<Call<Block>> calls = new ArrayList<>(heights.size());
+      for (final int h : heights)
+        calls.add(new Call<Block>() {
+          @Override
+          public Block call() throws KomodoRpcException {
+            return getBlock(h);
+          }
+        });
+      return fanOut(e, calls);
+    }
+    List<String> hashes = new ArrayList<>(heights.size());
+    KomodoBlockIndex index = blockIndex;
+    if (index != null)
+      for (int h : heights)
+        hashes.add(index.getBlockHash(h));
+    else {
+      Batch b = batch();
+      for (int h : heights)
+        b.getBlockHash(h);
+      for (BatchResult r : b.execute())
+        hashes.add(r.<String>get());
+    }
+    KomodoCache<String, Object> c = cache;
+    Block[] result = new Block[hashes.size()];
+    List<Integer> missing = new ArrayList<>();
+    Batch b = batch();
+    for (int i = 0; i < result.length; i++) {
+      result[i] = c == null ? null : (Block) c.get("block:" + hashes.get(i));
+      if (result[i] == null) {
+        missing.add(i);
+        b.getBlock(hashes.get(i));
+      }
+    }
+    List<BatchResult> blocks = b.execute();
+    for (int i = 0; i < missing.size(); i++) {
+      Block block = blocks.get(i).get();
+      result[missing.get(i)] = block;
+      // the tip's nextblockhash is still unknown
+      if (c != null && block.nextHash() != null)
+        c.put("block:" + block.hash(), block);
+    }
+    return Arrays.asList(result);
+  }
+
+  /**
+   * Fetches transactions concurrently, each on its own task of the
+   * {@link #getExecutor() executor}, or in a batch without one. Both ways
+   * decode locally when {@link #setLocalDecoding(boolean) set} and go
+   * through the {@link #setCache(KomodoCache) cache} when set.
+   *
+   * @return the transactions, in the order of the txids
+   */
+  public List<RawTransaction> getRawTransactions(Collection<String> txIds) throws KomodoRpcException {
+    ExecutorService e = executor;
+    if (e != null) {
+      List<Call<RawTransaction>> calls = new ArrayList<>(txIds.size());
+      for (final String txId : txIds)
+        calls.add(new Call<RawTransaction>() {
+          @Override
+          public RawTransaction call() throws KomodoRpcException {
+            return getRawTransaction(txId);
+          }
+        });
+      return fanOut(e, calls);
+    }
+    KomodoCache<String, Object> c = cache;
+    boolean local = localDecoding;
+    List<String> ids = new ArrayList<>(txIds);
+    RawTransaction[] result = new RawTransaction[ids.size()];
+    List<Integer> missing = new ArrayList<>();
+    Batch b = batch();
+    for (int i = 0; i < result.length; i++) {
+      String txId = ids.get(i);
+      if (local) {
+        String hex = c == null ? null : (String) c.get("hex:" + txId);
+        if (hex != null)
+          result[i] = decode(txId, hex);
+      } else
+        result[i] = c == null ? null : (RawTransaction) c.get("tx:" + txId);
+      if (result[i] == null) {
+        missing.add(i);
+        if (local)
+          b.getRawTransactionHex(txId);
+        else
+          b.getRawTransaction(txId);
+      }
+    }
+    List<BatchResult> fetched = b.execute();
+    for (int i = 0; i < missing.size(); i++) {
+      String txId = ids.get(missing.get(i));
+      if (local) {
+        String hex = fetched.get(i).get();
+        result[missing.get(i)] = decode(txId, hex);
+        if (c != null)
+          c.put("hex:" + txId, hex);
+      } else {
+        RawTransaction t = fetched.get(i).get();
+        result[missing.get(i)] = t;
+        // mempool transactions get their block fields once mined
+        if (c != null && t.blockHash() != null)
+          c.put("tx:" + txId, t);
+      }
+    }
+    return Arrays.asList(result);
   }
 
   @Override
   public String getBlockHash(int height) throws KomodoRpcException {
-    return (String) query("getblockhash", height);
+    KomodoBlockIndex index = blockIndex;
+    return index != null ? index.getBlockHash(height) : (String) query("getblockhash", height);
   }
 
   @Override
   public BlockChainInfo getBlockChainInfo() throws KomodoRpcException {
-    return new BlockChainInfoMapWrapper((Map) query("getblockchaininfo"));
+    return blockChainInfoConverter.convert(query("getblockchaininfo"));
   }
 
   @Override
@@ -971,43 +2261,37 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   @Override
   public Info getInfo() throws KomodoRpcException {
-    return new InfoWrapper((Map) query("getinfo"));
+    return query(infoDecoder, "getinfo");
   }
 
   @Override
   public TxOutSetInfo getTxOutSetInfo() throws KomodoRpcException {
-    return new TxOutSetInfoWrapper((Map) query("gettxoutsetinfo"));
+    return txOutSetInfoConverter.convert(query("gettxoutsetinfo"));
   }
 
   @Override
   public NetworkInfo getNetworkInfo() throws KomodoRpcException {
-    return new NetworkInfoWrapper((Map) query("getnetworkinfo"));
+    return networkInfoConverter.convert(query("getnetworkinfo"));
   }
 
   @Override
   public MiningInfo getMiningInfo() throws KomodoRpcException {
-    return new MiningInfoWrapper((Map) query("getmininginfo"));
+    return miningInfoConverter.convert(query("getmininginfo"));
   }
 
   @Override
   public List<NodeInfo> getAddedNodeInfo(boolean dummy, String node) throws KomodoRpcException {
-    List<Map> list = ((List<Map>) query("getaddednodeinfo", dummy, node));
-    List<NodeInfo> nodeInfoList = new LinkedList<NodeInfo>();
-    for(Map m: list){
-      NodeInfoWrapper niw = new NodeInfoWrapper(m);
-      nodeInfoList.add(niw);
-    }
-    return nodeInfoList;
+    return nodeInfoConverter.convert(query("getaddednodeinfo", dummy, node));
   }
 
   @Override
   public MultiSig createMultiSig(int nRequired, List<String> keys) throws KomodoRpcException {
-    return new MultiSigWrapper ((Map) query("createmultisig", nRequired, keys));
+    return multiSigConverter.convert(query("createmultisig", nRequired, keys));
   }
 
   @Override
   public WalletInfo getWalletInfo() {
-    return new WalletInfoWrapper((Map) query("getwalletinfo"));
+    return walletInfoConverter.convert(query("getwalletinfo"));
   }
 
   @Override
@@ -1037,80 +2321,103 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   @Override
   public String getRawTransactionHex(String txId) throws KomodoRpcException {
-    return (String) query("getrawtransaction", txId);
+    KomodoCache<String, Object> c = cache;
+    String hex = c == null ? null : (String) c.get("hex:" + txId);
+    if (hex == null) {
+      hex = (String) query("getrawtransaction", txId);
+      if (c != null)
+        c.put("hex:" + txId, hex);
+    }
+    return hex;
   }
 
-  private class RawTransactionImpl extends MapWrapper implements RawTransaction, Serializable {
+  private class RawTransactionData implements RawTransaction, KomodoCache.Weighable {
 
-    public RawTransactionImpl(Map<String, Object> tx) {
-      super(tx);
-    }
+    private static final long serialVersionUID = 1L;
+
+    String hex;
+    String txId;
+    int version;
+    long lockTime;
+    String hash;
+    long size;
+    long vsize;
+    InData[] vIn = new InData[0];
+    OutData[] vOut = new OutData[0];
+    String blockHash;
+    int confirmations;
+    long time = Long.MIN_VALUE;
+    long blocktime = Long.MIN_VALUE;
 
     @Override
     public String hex() {
-      return mapStr("hex");
+      return hex;
     }
 
     @Override
     public String txId() {
-      return mapStr("txid");
+      return txId;
     }
 
     @Override
     public int version() {
-      return mapInt("version");
+      return version;
     }
 
     @Override
     public long lockTime() {
-      return mapLong("locktime");
+      return lockTime;
     }
 
     @Override
     public String hash() {
-      return mapStr("hash");
+      return hash;
     }
 
     @Override
     public long size() {
-      return mapLong("size");
+      return size;
     }
 
     @Override
     public long vsize() {
-      return mapLong("vsize");
+      return vsize;
     }
 
-    private class InImpl extends MapWrapper implements In, Serializable {
+    private class InData implements In {
 
-      public InImpl(Map m) {
-        super(m);
-      }
+      private static final long serialVersionUID = 1L;
+
+      String txid;
+      int vout;
+      Map<String, Object> scriptSig;
+      long sequence;
+      String scriptPubKey;
 
       @Override
       public String txid() {
-        return mapStr("txid");
+        return txid;
       }
 
       @Override
       public int vout() {
-        return mapInt("vout");
+        return vout;
       }
 
       @Override
       public Map<String, Object> scriptSig() {
-        return (Map) m.get("scriptSig");
+        return scriptSig;
       }
 
       @Override
       public long sequence() {
-        return mapLong("sequence");
+        return sequence;
       }
 
       @Override
       public RawTransaction getTransaction() {
         try {
-          return getRawTransaction(mapStr("txid"));
+          return getRawTransaction(txid);
         } catch (KomodoRpcException ex) {
           throw new RuntimeException(ex);
         }
@@ -1118,137 +2425,284 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
       @Override
       public Out getTransactionOutput() {
-        return getTransaction().vOut().get(mapInt("vout"));
+        return getTransaction().vOut().get(vout);
       }
 
       @Override
       public String scriptPubKey() {
-        return mapStr("scriptPubKey");
+        return scriptPubKey;
       }
 
     }
 
     @Override
     public List<In> vIn() {
-      final List<Map<String, Object>> vIn = (List<Map<String, Object>>) m.get("vin");
-      return new AbstractList<In>() {
-
-        @Override
-        public In get(int index) {
-          return new InImpl(vIn.get(index));
-        }
-
-        @Override
-        public int size() {
-          return vIn.size();
-        }
-      };
+      return Collections.<In>unmodifiableList(Arrays.asList(vIn));
     }
 
-    private class OutImpl extends MapWrapper implements Out, Serializable {
+    private class OutData implements Out {
 
-      public OutImpl(Map m) {
-        super(m);
-      }
+      private static final long serialVersionUID = 1L;
+
+      long value;
+      int n;
+      ScriptPubKeyData scriptPubKey;
 
       @Override
       public double value() {
-        return mapDouble("value");
+        return KomodoUtil.fromSatoshis(value);
       }
 
       @Override
-      public int n() {
-        return mapInt("n");
+      public long satoshis() {
+        return value;
       }
 
-      private class ScriptPubKeyImpl extends MapWrapper implements ScriptPubKey, Serializable {
-
-        public ScriptPubKeyImpl(Map m) {
-          super(m);
-        }
-
-        @Override
-        public String asm() {
-          return mapStr("asm");
-        }
-
-        @Override
-        public String hex() {
-          return mapStr("hex");
-        }
-
-        @Override
-        public int reqSigs() {
-          return mapInt("reqSigs");
-        }
-
-        @Override
-        public String type() {
-          return mapStr("type");
-        }
-
-        @Override
-        public List<String> addresses() {
-          return (List) m.get("addresses");
-        }
-
+      @Override
+      public int n() {
+        return n;
       }
 
       @Override
       public ScriptPubKey scriptPubKey() {
-        return new ScriptPubKeyImpl((Map) m.get("scriptPubKey"));
+        return scriptPubKey;
       }
 
       @Override
       public TxInput toInput() {
-        return new BasicTxInput(transaction().txId(), n());
+        return new BasicTxInput(txId, n);
       }
 
       @Override
       public RawTransaction transaction() {
-        return RawTransactionImpl.this;
+        return RawTransactionData.this;
       }
 
     }
 
     @Override
-    public List<Out> vOut() {
-      final List<Map<String, Object>> vOut = (List<Map<String, Object>>) m.get("vout");
-      return new AbstractList<Out>() {
+    public List<Out> vOut() {
+      return Collections.<Out>unmodifiableList(Arrays.asList(vOut));
+    }
+
+    @Override
+    public String blockHash() {
+      return blockHash;
+    }
+
+    @Override
+    public int confirmations() {
+      return confirmations;
+    }
+
+    @Override
+    public Date time() {
+      return cTime(time);
+    }
+
+    @Override
+    public Date blocktime() {
+      return cTime(blocktime);
+    }
 
-        @Override
-        public Out get(int index) {
-          return new OutImpl(vOut.get(index));
-        }
+    @Override
+    public long estimateSize() {
+      long s = 120 + 32L * (vIn.length + vOut.length);
+      for (String v : new String[]{hex, txId, hash, blockHash})
+        s += KomodoCache.estimateSize(v);
+      for (InData i : vIn)
+        s += 64 + KomodoCache.estimateSize(i.txid) + KomodoCache.estimateSize(i.scriptSig) + KomodoCache.estimateSize(i.scriptPubKey);
+      for (OutData o : vOut)
+        s += 40 + (o.scriptPubKey == null ? 0 : o.scriptPubKey.estimateSize());
+      return s;
+    }
 
-        @Override
-        public int size() {
-          return vOut.size();
-        }
-      };
+    @Override
+    public String toString() {
+      return "{txid=" + txId + ", vin=" + vIn.length + ", vout=" + vOut.length + "}";
     }
+  }
+
+  private static class ScriptPubKeyData implements RawTransaction.Out.ScriptPubKey {
+
+    private static final long serialVersionUID = 1L;
+
+    String asm;
+    String hex;
+    int reqSigs;
+    String type;
+    String[] addresses;
 
     @Override
-    public String blockHash() {
-      return mapStr("blockhash");
+    public String asm() {
+      return asm;
     }
 
     @Override
-    public int confirmations() {
-      return mapInt("confirmations");
+    public String hex() {
+      return hex;
     }
 
     @Override
-    public Date time() {
-      return mapCTime("time");
+    public int reqSigs() {
+      return reqSigs;
     }
 
     @Override
-    public Date blocktime() {
-      return mapCTime("blocktime");
+    public String type() {
+      return type;
     }
 
-  }
+    @Override
+    public List<String> addresses() {
+      return addresses == null ? null : Collections.unmodifiableList(Arrays.asList(addresses));
+    }
+
+    long estimateSize() {
+      long s = 56 + KomodoCache.estimateSize(asm) + KomodoCache.estimateSize(hex) + KomodoCache.estimateSize(type);
+      if (addresses != null)
+        for (String a : addresses)
+          s += 8 + KomodoCache.estimateSize(a);
+      return s;
+    }
+  }
+
+  private static String[] nextStrings(JSONStreamParser p) throws IOException {
+    List<String> l = new ArrayList<>();
+    p.beginArray();
+    while (p.hasNext())
+      l.add(p.nextString());
+    return l.toArray(new String[l.size()]);
+  }
+
+  private final ResultDecoder<RawTransaction> rawTransactionDecoder = new ResultDecoder<RawTransaction>() {
+    @Override
+    public RawTransaction decode(JSONStreamParser p) throws IOException {
+      RawTransactionData t = new RawTransactionData();
+      p.beginObject();
+      for (String key; (key = p.nextKey()) != null;)
+        switch (key) {
+          case "hex":
+            t.hex = p.nextString();
+            break;
+          case "txid":
+            t.txId = p.nextString();
+            break;
+          case "version":
+            t.version = p.nextInt();
+            break;
+          case "locktime":
+            t.lockTime = p.nextLong();
+            break;
+          case "hash":
+            t.hash = p.nextString();
+            break;
+          case "size":
+            t.size = p.nextLong();
+            break;
+          case "vsize":
+            t.vsize = p.nextLong();
+            break;
+          case "vin":
+            List<RawTransactionData.InData> vIn = new ArrayList<>();
+            p.beginArray();
+            while (p.hasNext())
+              vIn.add(decodeIn(t, p));
+            t.vIn = vIn.toArray(new RawTransactionData.InData[vIn.size()]);
+            break;
+          case "vout":
+            List<RawTransactionData.OutData> vOut = new ArrayList<>();
+            p.beginArray();
+            while (p.hasNext())
+              vOut.add(decodeOut(t, p));
+            t.vOut = vOut.toArray(new RawTransactionData.OutData[vOut.size()]);
+            break;
+          case "blockhash":
+            t.blockHash = p.nextString();
+            break;
+          case "confirmations":
+            t.confirmations = p.nextInt();
+            break;
+          case "time":
+            t.time = p.nextLong();
+            break;
+          case "blocktime":
+            t.blocktime = p.nextLong();
+            break;
+          default:
+            p.skipValue();
+        }
+      return t;
+    }
+
+    private RawTransactionData.InData decodeIn(RawTransactionData t, JSONStreamParser p) throws IOException {
+      RawTransactionData.InData i = t.new InData();
+      p.beginObject();
+      for (String key; (key = p.nextKey()) != null;)
+        switch (key) {
+          case "txid":
+            i.txid = p.nextString();
+            break;
+          case "vout":
+            i.vout = p.nextInt();
+            break;
+          case "scriptSig":
+            i.scriptSig = (Map<String, Object>) p.nextValue();
+            break;
+          case "sequence":
+            i.sequence = p.nextLong();
+            break;
+          case "scriptPubKey":
+            i.scriptPubKey = p.nextString();
+            break;
+          default:
+            p.skipValue();
+        }
+      return i;
+    }
+
+    private RawTransactionData.OutData decodeOut(RawTransactionData t, JSONStreamParser p) throws IOException {
+      RawTransactionData.OutData o = t.new OutData();
+      p.beginObject();
+      for (String key; (key = p.nextKey()) != null;)
+        switch (key) {
+          case "value":
+            o.value = p.nextFixed(8);
+            break;
+          case "n":
+            o.n = p.nextInt();
+            break;
+          case "scriptPubKey":
+            ScriptPubKeyData s = new ScriptPubKeyData();
+            p.beginObject();
+            for (String k; (k = p.nextKey()) != null;)
+              switch (k) {
+                case "asm":
+                  s.asm = p.nextString();
+                  break;
+                case "hex":
+                  s.hex = p.nextString();
+                  break;
+                case "reqSigs":
+                  s.reqSigs = p.nextInt();
+                  break;
+                case "type":
+                  s.type = p.nextString();
+                  break;
+                case "addresses":
+                  s.addresses = nextStrings(p);
+                  break;
+                default:
+                  p.skipValue();
+              }
+            o.scriptPubKey = s;
+            break;
+          default:
+            p.skipValue();
+        }
+      return o;
+    }
+  };
 
   public class DecodedScriptImpl extends MapWrapper implements DecodedScript, Serializable {
 
@@ -1355,7 +2809,25 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   @Override
   public RawTransaction getRawTransaction(String txId) throws KomodoRpcException {
-    return new RawTransactionImpl((Map) query("getrawtransaction", txId, 1));
+    if (localDecoding)
+      return decode(txId, getRawTransactionHex(txId));
+    KomodoCache<String, Object> c = cache;
+    RawTransaction t = c == null ? null : (RawTransaction) c.get("tx:" + txId);
+    if (t == null) {
+      t = query(rawTransactionDecoder, "getrawtransaction", txId, 1);
+      // mempool transactions get their block fields once mined
+      if (c != null && t.blockHash() != null)
+        c.put("tx:" + txId, t);
+    }
+    return t;
+  }
+
+  private RawTransaction decode(String txId, String hex) throws KomodoRpcException {
+    try {
+      return decode(hex);
+    } catch (IllegalArgumentException ex) {
+      throw new KomodoRPC2Exception("Invalid transaction " + txId + ": " + ex.getMessage());
+    }
   }
 
   @Override
@@ -1368,6 +2840,16 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
     return ((Number) query("getreceivedbyaddress", address, minConf)).doubleValue();
   }
 
+  @Override
+  public long getReceivedByAddressSatoshis(String address) throws KomodoRpcException {
+    return query(satoshisDecoder, "getreceivedbyaddress", address);
+  }
+
+  @Override
+  public long getReceivedByAddressSatoshis(String address, int minConf) throws KomodoRpcException {
+    return query(satoshisDecoder, "getreceivedbyaddress", address, minConf);
+  }
+
   @Override
   public void importPrivKey(String komodoPrivKey) throws KomodoRpcException {
     query("importprivkey", komodoPrivKey);
@@ -1442,17 +2924,17 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   @Override
   public List<ReceivedAddress> listReceivedByAddress() throws KomodoRpcException {
-    return new ReceivedAddressListWrapper((List) query("listreceivedbyaddress"));
+    return receivedAddressConverter.convert(query("listreceivedbyaddress"));
   }
 
   @Override
   public List<ReceivedAddress> listReceivedByAddress(int minConf) throws KomodoRpcException {
-    return new ReceivedAddressListWrapper((List) query("listreceivedbyaddress", minConf));
+    return receivedAddressConverter.convert(query("listreceivedbyaddress", minConf));
   }
 
   @Override
   public List<ReceivedAddress> listReceivedByAddress(int minConf, boolean includeEmpty) throws KomodoRpcException {
-    return new ReceivedAddressListWrapper((List) query("listreceivedbyaddress", minConf, includeEmpty));
+    return receivedAddressConverter.convert(query("listreceivedbyaddress", minConf, includeEmpty));
   }
 
   private static class z_ReceivedAddressListWrapper extends AbstractList<z_ReceivedAddress> {
@@ -1500,128 +2982,201 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   @Override
   public List<z_ReceivedAddress> z_listReceivedByAddress(String address) throws KomodoRpcException {
-    return new z_ReceivedAddressListWrapper((List) query("z_listreceivedbyaddress", address));
+    return z_receivedAddressConverter.convert(query("z_listreceivedbyaddress", address));
   }
 
   @Override
   public List<z_ReceivedAddress> z_listReceivedByAddress(String address, int minConf) throws KomodoRpcException {
-    return new z_ReceivedAddressListWrapper((List) query("z_listreceivedbyaddress", address, minConf));
+    return z_receivedAddressConverter.convert(query("z_listreceivedbyaddress", address, minConf));
   }
 
 
 
-  private class TransactionListMapWrapper extends ListMapWrapper<Transaction> {
-
-    public TransactionListMapWrapper(List<Map> list) {
-      super(list);
-    }
-
-    @Override
-    protected Transaction wrap(final Map m) {
-      return new Transaction() {
-
-        @Override
-        public String account() {
-          return mapStr(m, "account");
-        }
+  private class TransactionData implements Transaction {
 
-        @Override
-        public String address() {
-          return mapStr(m, "address");
-        }
+    private static final long serialVersionUID = 1L;
 
-        @Override
-        public String category() {
-          return mapStr(m, "category");
-        }
+    String account;
+    String address;
+    String category;
+    long amount;
+    long fee;
+    int confirmations;
+    String blockHash;
+    int blockIndex;
+    long blockTime = Long.MIN_VALUE;
+    String txId;
+    int vout = -1;
+    long time = Long.MIN_VALUE;
+    long timeReceived = Long.MIN_VALUE;
+    String comment;
+    String commentTo;
 
-        @Override
-        public double amount() {
-          return mapDouble(m, "amount");
-        }
+    @Override
+    public String account() {
+      return account;
+    }
 
-        @Override
-        public double fee() {
-          return mapDouble(m, "fee");
-        }
+    @Override
+    public String address() {
+      return address;
+    }
 
-        @Override
-        public int confirmations() {
-          return mapInt(m, "confirmations");
-        }
+    @Override
+    public String category() {
+      return category;
+    }
 
-        @Override
-        public String blockHash() {
-          return mapStr(m, "blockhash");
-        }
+    @Override
+    public double amount() {
+      return KomodoUtil.fromSatoshis(amount);
+    }
 
-        @Override
-        public int blockIndex() {
-          return mapInt(m, "blockindex");
-        }
+    @Override
+    public long satoshis() {
+      return amount;
+    }
 
-        @Override
-        public Date blockTime() {
-          return mapCTime(m, "blocktime");
-        }
+    @Override
+    public double fee() {
+      return KomodoUtil.fromSatoshis(fee);
+    }
 
-        @Override
-        public String txId() {
-          return mapStr(m, "txid");
-        }
+    @Override
+    public long feeSatoshis() {
+      return fee;
+    }
 
-        @Override
-        public Date time() {
-          return mapCTime(m, "time");
-        }
+    @Override
+    public int confirmations() {
+      return confirmations;
+    }
 
-        @Override
-        public Date timeReceived() {
-          return mapCTime(m, "timereceived");
-        }
+    @Override
+    public String blockHash() {
+      return blockHash;
+    }
 
-        @Override
-        public String comment() {
-          return mapStr(m, "comment");
-        }
+    @Override
+    public int blockIndex() {
+      return blockIndex;
+    }
 
-        @Override
-        public String commentTo() {
-          return mapStr(m, "to");
-        }
+    @Override
+    public Date blockTime() {
+      return cTime(blockTime);
+    }
 
-        private RawTransaction raw = null;
+    @Override
+    public String txId() {
+      return txId;
+    }
 
-        @Override
-        public RawTransaction raw() {
-          if (raw == null)
-            try {
-              raw = getRawTransaction(txId());
-            } catch (KomodoRpcException ex) {
-              throw new RuntimeException(ex);
-            }
-          return raw;
-        }
+    @Override
+    public int vout() {
+      return vout;
+    }
 
-        @Override
-        public String toString() {
-          return m.toString();
+    @Override
+    public Date time() {
+      return cTime(time);
+    }
+
+    @Override
+    public Date timeReceived() {
+      return cTime(timeReceived);
+    }
+
+    @Override
+    public String comment() {
+      return comment;
+    }
+
+    @Override
+    public String commentTo() {
+      return commentTo;
+    }
+
+    private RawTransaction raw = null;
+
+    @Override
+    public RawTransaction raw() {
+      if (raw == null)
+        raw = getRawTransaction(txId);
+      return raw;
+    }
+
+    @Override
+    public String toString() {
+      return "{txid=" + txId + ", vout=" + vout + ", category=" + category + ", amount=" + KomodoUtil.toAmount(amount) + ", confirmations=" + confirmations + "}";
+    }
+  }
+
+  private final ResultDecoder<Transaction> transactionDecoder = new ResultDecoder<Transaction>() {
+    @Override
+    public Transaction decode(JSONStreamParser p) throws IOException {
+      TransactionData t = new TransactionData();
+      p.beginObject();
+      for (String key; (key = p.nextKey()) != null;)
+        switch (key) {
+          case "account":
+            t.account = p.nextString();
+            break;
+          case "address":
+            t.address = p.nextString();
+            break;
+          case "category":
+            t.category = p.nextString();
+            break;
+          case "amount":
+            t.amount = p.nextFixed(8);
+            break;
+          case "fee":
+            t.fee = p.nextFixed(8);
+            break;
+          case "confirmations":
+            t.confirmations = p.nextInt();
+            break;
+          case "blockhash":
+            t.blockHash = p.nextString();
+            break;
+          case "blockindex":
+            t.blockIndex = p.nextInt();
+            break;
+          case "blocktime":
+            t.blockTime = p.nextLong();
+            break;
+          case "txid":
+            t.txId = p.nextString();
+            break;
+          case "vout":
+            t.vout = p.nextInt();
+            break;
+          case "time":
+            t.time = p.nextLong();
+            break;
+          case "timereceived":
+            t.timeReceived = p.nextLong();
+            break;
+          case "comment":
+            t.comment = p.nextString();
+            break;
+          case "to":
+            t.commentTo = p.nextString();
+            break;
+          default:
+            p.skipValue();
         }
-
-      };
+      return t;
     }
+  };
 
-  }
-
-  private class TransactionsSinceBlockImpl implements TransactionsSinceBlock, Serializable {
+  private final ResultDecoder<List<Transaction>> transactionsDecoder = listOf(transactionDecoder);
 
-    public final List<Transaction> transactions;
-    public final String lastBlock;
+  private static class TransactionsSinceBlockImpl implements TransactionsSinceBlock, Serializable {
 
-    public TransactionsSinceBlockImpl(Map r) {
-      this.transactions = new TransactionListMapWrapper((List) r.get("transactions"));
-      this.lastBlock = (String) r.get("lastblock");
-    }
+    public List<Transaction> transactions = new ArrayList<>();
+    public String lastBlock;
 
     @Override
     public List<Transaction> transactions() {
@@ -1635,108 +3190,172 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   }
 
+  private final ResultDecoder<TransactionsSinceBlock> sinceBlockDecoder = new ResultDecoder<TransactionsSinceBlock>() {
+    @Override
+    public TransactionsSinceBlock decode(JSONStreamParser p) throws IOException {
+      TransactionsSinceBlockImpl r = new TransactionsSinceBlockImpl();
+      p.beginObject();
+      for (String key; (key = p.nextKey()) != null;)
+        switch (key) {
+          case "transactions":
+            r.transactions = transactionsDecoder.decode(p);
+            break;
+          case "lastblock":
+            r.lastBlock = p.nextString();
+            break;
+          default:
+            p.skipValue();
+        }
+      return r;
+    }
+  };
+
   @Override
   public TransactionsSinceBlock listSinceBlock() throws KomodoRpcException {
-    return new TransactionsSinceBlockImpl((Map) query("listsinceblock"));
+    return query(sinceBlockDecoder, "listsinceblock");
   }
 
   @Override
   public TransactionsSinceBlock listSinceBlock(String blockHash) throws KomodoRpcException {
-    return new TransactionsSinceBlockImpl((Map) query("listsinceblock", blockHash));
+    return query(sinceBlockDecoder, "listsinceblock", blockHash);
   }
 
   @Override
   public TransactionsSinceBlock listSinceBlock(String blockHash, int targetConfirmations) throws KomodoRpcException {
-    return new TransactionsSinceBlockImpl((Map) query("listsinceblock", blockHash, targetConfirmations));
+    return query(sinceBlockDecoder, "listsinceblock", blockHash, targetConfirmations);
   }
 
   @Override
   public List<Transaction> listTransactions() throws KomodoRpcException {
-    return new TransactionListMapWrapper((List) query("listtransactions"));
+    return query(transactionsDecoder, "listtransactions");
   }
 
   @Override
   public List<Transaction> listTransactions(String account) throws KomodoRpcException {
-    return new TransactionListMapWrapper((List) query("listtransactions", account));
+    return query(transactionsDecoder, "listtransactions", account);
   }
 
   @Override
   public List<Transaction> listTransactions(String account, int count) throws KomodoRpcException {
-    return new TransactionListMapWrapper((List) query("listtransactions", account, count));
+    return query(transactionsDecoder, "listtransactions", account, count);
   }
 
   @Override
   public List<Transaction> listTransactions(String account, int count, int from) throws KomodoRpcException {
-    return new TransactionListMapWrapper((List) query("listtransactions", account, count, from));
+    return query(transactionsDecoder, "listtransactions", account, count, from);
   }
 
-  private class UnspentListWrapper extends ListMapWrapper<Unspent> {
+  private static class UnspentData implements Unspent {
 
-    public UnspentListWrapper(List<Map> list) {
-      super(list);
-    }
+    private static final long serialVersionUID = 1L;
+
+    String txid;
+    int vout;
+    String address;
+    String account;
+    String scriptPubKey;
+    long amount;
+    int confirmations;
 
     @Override
-    protected Unspent wrap(final Map m) {
-      return new Unspent() {
+    public String txid() {
+      return txid;
+    }
 
-        @Override
-        public String txid() {
-          return mapStr(m, "txid");
-        }
+    @Override
+    public int vout() {
+      return vout;
+    }
 
-        @Override
-        public int vout() {
-          return mapInt(m, "vout");
-        }
+    @Override
+    public String address() {
+      return address;
+    }
 
-        @Override
-        public String address() {
-          return mapStr(m, "address");
-        }
+    @Override
+    public String scriptPubKey() {
+      return scriptPubKey;
+    }
 
-        @Override
-        public String scriptPubKey() {
-          return mapStr(m, "scriptPubKey");
-        }
+    @Override
+    public String account() {
+      return account;
+    }
 
-        @Override
-        public String account() {
-          return mapStr(m, "account");
-        }
+    @Override
+    public double amount() {
+      return KomodoUtil.fromSatoshis(amount);
+    }
 
-        @Override
-        public double amount() {
-          return MapWrapper.mapDouble(m, "amount");
-        }
+    @Override
+    public long satoshis() {
+      return amount;
+    }
 
-        @Override
-        public int confirmations() {
-          return mapInt(m, "confirmations");
+    @Override
+    public int confirmations() {
+      return confirmations;
+    }
+
+    @Override
+    public String toString() {
+      return "{txid=" + txid + ", vout=" + vout + ", amount=" + KomodoUtil.toAmount(amount) + ", confirmations=" + confirmations + "}";
+    }
+  }
+
+  private static final ResultDecoder<List<Unspent>> unspentDecoder = listOf(new ResultDecoder<Unspent>() {
+    @Override
+    public Unspent decode(JSONStreamParser p) throws IOException {
+      UnspentData u = new UnspentData();
+      p.beginObject();
+      for (String key; (key = p.nextKey()) != null;)
+        switch (key) {
+          case "txid":
+            u.txid = p.nextString();
+            break;
+          case "vout":
+            u.vout = p.nextInt();
+            break;
+          case "address":
+            u.address = p.nextString();
+            break;
+          case "account":
+            u.account = p.nextString();
+            break;
+          case "scriptPubKey":
+            u.scriptPubKey = p.nextString();
+            break;
+          case "amount":
+            u.amount = p.nextFixed(8);
+            break;
+          case "confirmations":
+            u.confirmations = p.nextInt();
+            break;
+          default:
+            p.skipValue();
         }
-
-      };
+      return u;
     }
-  }
+  });
 
   @Override
   public List<Unspent> listUnspent() throws KomodoRpcException {
-    return new UnspentListWrapper((List) query("listunspent"));
+    return query(unspentDecoder, "listunspent");
   }
 
   @Override
   public List<Unspent> listUnspent(int minConf) throws KomodoRpcException {
-    return new UnspentListWrapper((List) query("listunspent", minConf));
+    return query(unspentDecoder, "listunspent", minConf);
   }
 
   @Override
   public List<Unspent> listUnspent(int minConf, int maxConf) throws KomodoRpcException {
-    return new UnspentListWrapper((List) query("listunspent", minConf, maxConf));
+    return query(unspentDecoder, "listunspent", minConf, maxConf);
   }
 
   @Override
   public List<Unspent> listUnspent(int minConf, int maxConf, String... addresses) throws KomodoRpcException {
-    return new UnspentListWrapper((List) query("listunspent", minConf, maxConf, addresses));
+    return query(unspentDecoder, "listunspent", minConf, maxConf, addresses);
   }
 
   @Override
@@ -1774,6 +3393,48 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
     return (String) query("sendfrom", fromAccount, toKomodoAddress, amount, minConf, comment, commentTo);
   }
 
+  @Override
+  public String sendFromSatoshis(String fromAccount, String toKomodoAddress, long satoshis) throws KomodoRpcException {
+    return (String) query("sendfrom", fromAccount, toKomodoAddress, KomodoUtil.toAmount(satoshis));
+  }
+
+  @Override
+  public String sendFromSatoshis(String fromAccount, String toKomodoAddress, long satoshis, int minConf) throws KomodoRpcException {
+    return (String) query("sendfrom", fromAccount, toKomodoAddress, KomodoUtil.toAmount(satoshis), minConf);
+  }
+
+  @Override
+  public String sendFromSatoshis(String fromAccount, String toKomodoAddress, long satoshis, int minConf, String comment, String commentTo) throws KomodoRpcException {
+    return (String) query("sendfrom", fromAccount, toKomodoAddress, KomodoUtil.toAmount(satoshis), minConf, comment, commentTo);
+  }
+
+  @Override
+  public String sendMany(String fromAccount, Map<String, Double> amounts) throws KomodoRpcException {
+    return (String) query("sendmany", fromAccount, amounts);
+  }
+
+  @Override
+  public String sendMany(String fromAccount, Map<String, Double> amounts, int minConf) throws KomodoRpcException {
+    return (String) query("sendmany", fromAccount, amounts, minConf);
+  }
+
+  private static Map<String, BigDecimal> toAmounts(Map<String, Long> satoshis) {
+    Map<String, BigDecimal> amounts = new LinkedHashMap<>();
+    for (Map.Entry<String, Long> e : satoshis.entrySet())
+      amounts.put(e.getKey(), KomodoUtil.toAmount(e.getValue()));
+    return amounts;
+  }
+
+  @Override
+  public String sendManySatoshis(String fromAccount, Map<String, Long> amounts) throws KomodoRpcException {
+    return (String) query("sendmany", fromAccount, toAmounts(amounts));
+  }
+
+  @Override
+  public String sendManySatoshis(String fromAccount, Map<String, Long> amounts, int minConf) throws KomodoRpcException {
+    return (String) query("sendmany", fromAccount, toAmounts(amounts), minConf);
+  }
+
   @Override
   public String sendRawTransaction(String hex) throws KomodoRpcException {
     return (String) query("sendrawtransaction", hex);
@@ -1794,6 +3455,16 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
     return (String) query("sendtoaddress", toAddress, amount, comment, commentTo);
   }
 
+  @Override
+  public String sendToAddressSatoshis(String toAddress, long satoshis) throws KomodoRpcException {
+    return (String) query("sendtoaddress", toAddress, KomodoUtil.toAmount(satoshis));
+  }
+
+  @Override
+  public String sendToAddressSatoshis(String toAddress, long satoshis, String comment, String commentTo) throws KomodoRpcException {
+    return (String) query("sendtoaddress", toAddress, KomodoUtil.toAmount(satoshis), comment, commentTo);
+  }
+
   public String signRawTransaction(String hex) throws KomodoRpcException {
     return signRawTransaction(hex, null, null, "ALL");
   }
@@ -1804,6 +3475,11 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
   }
 
   public String signRawTransaction(String hex, List<ExtendedTxInput> inputs, List<String> privateKeys, String sigHashType) {
+    //if sigHashType is null it will return the default "ALL"
+    return signedConverter.convert(query("signrawtransaction", signRawTransactionParams(hex, inputs, privateKeys, sigHashType)));
+  }
+
+  static Object[] signRawTransactionParams(String hex, List<ExtendedTxInput> inputs, List<String> privateKeys, String sigHashType) {
     List<Map> pInputs = null;
 
     if (inputs != null) {
@@ -1821,65 +3497,85 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
       }
     }
 
-    Map result = (Map) query("signrawtransaction", hex, pInputs, privateKeys, sigHashType); //if sigHashType is null it will return the default "ALL"
-    if ((Boolean) result.get("complete"))
-      return (String) result.get("hex");
-    else
-      throw new KomodoRpcException("Incomplete");
+    return new Object[]{hex, pInputs, privateKeys, sigHashType};
   }
 
   public RawTransaction decodeRawTransaction(String hex) throws KomodoRpcException {
-    Map result = (Map) query("decoderawtransaction", hex);
-    RawTransaction rawTransaction = new RawTransactionImpl(result);
-    return rawTransaction.vOut().get(0).transaction();
+    try {
+      return decode(hex);
+    } catch (IllegalArgumentException ex) {
+      // not a format decoded locally, let komodod try
+    }
+    return query(rawTransactionDecoder, "decoderawtransaction", hex);
   }
 
-  @Override
-  public AddressValidationResult validateAddress(String address) throws KomodoRpcException {
-    final Map validationResult = (Map) query("validateaddress", address);
-    return new AddressValidationResult() {
+  private static class AddressValidationResultWrapper implements AddressValidationResult {
 
-      @Override
-      public boolean isValid() {
-        return ((Boolean) validationResult.get("isvalid"));
-      }
+    private final Map validationResult;
 
-      @Override
-      public String address() {
-        return (String) validationResult.get("address");
-      }
+    AddressValidationResultWrapper(Map validationResult) {
+      this.validationResult = validationResult;
+    }
 
-      @Override
-      public boolean isMine() {
-        return ((Boolean) validationResult.get("ismine"));
-      }
+    @Override
+    public boolean isValid() {
+      return ((Boolean) validationResult.get("isvalid"));
+    }
 
-      @Override
-      public boolean isScript() {
-        return ((Boolean) validationResult.get("isscript"));
-      }
+    @Override
+    public String address() {
+      return (String) validationResult.get("address");
+    }
 
-      @Override
-      public String pubKey() {
-        return (String) validationResult.get("pubkey");
-      }
+    @Override
+    public boolean isMine() {
+      return ((Boolean) validationResult.get("ismine"));
+    }
 
-      @Override
-      public boolean isCompressed() {
-        return ((Boolean) validationResult.get("iscompressed"));
-      }
+    @Override
+    public boolean isScript() {
+      return ((Boolean) validationResult.get("isscript"));
+    }
 
-      @Override
-      public String account() {
-        return (String) validationResult.get("account");
-      }
+    @Override
+    public String pubKey() {
+      return (String) validationResult.get("pubkey");
+    }
 
-      @Override
-      public String toString() {
-        return validationResult.toString();
-      }
+    @Override
+    public boolean isCompressed() {
+      return ((Boolean) validationResult.get("iscompressed"));
+    }
 
-    };
+    @Override
+    public String account() {
+      return (String) validationResult.get("account");
+    }
+
+    @Override
+    public String toString() {
+      return validationResult.toString();
+    }
+
+  }
+
+  @Override
+  public AddressValidationResult validateAddress(String address) throws KomodoRpcException {
+    KomodoAddressValidator v = addressValidator;
+    if (v != null)
+      return v.validate(address);
+    return addressValidationConverter.convert(query("validateaddress", address));
+  }
+
+  /**
+   * Validates a transparent or Sapling address, locally with the
+   * {@link #getAddressValidator() address validator} if there is one
+   */
+  public AddressValidationResult z_validateAddress(String address) throws KomodoRpcException {
+    KomodoAddressValidator v = addressValidator;
+    if (v != null)
+      return v.z_validate(address);
+    return addressValidationConverter.convert(query("z_validateaddress", address));
   }
 
   @Override
@@ -2050,23 +3746,7 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   @Override
   public List<PeerInfoResult> getPeerInfo() throws KomodoRpcException {
-    final List<Map> l = (List<Map>) query("getpeerinfo");
-//    final List<PeerInfoResult> res = new ArrayList<>(l.size());
-//    for (Map m : l)
-//      res.add(new PeerInfoWrapper(m));
-//    return res;
-    return new AbstractList<PeerInfoResult>() {
-
-      @Override
-      public PeerInfoResult get(int index) {
-        return new PeerInfoWrapper(l.get(index));
-      }
-
-      @Override
-      public int size() {
-        return l.size();
-      }
-    };
+    return peerInfoConverter.convert(query("getpeerinfo"));
   }
 
   @Override
@@ -2100,12 +3780,12 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   @Override
   public NetTotals getNetTotals() throws KomodoRpcException {
-    return new NetTotalsImpl((Map) query("getnettotals"));
+    return netTotalsConverter.convert(query("getnettotals"));
   }
 
   @Override
   public DecodedScript decodeScript(String hex) throws KomodoRpcException {
-    return new DecodedScriptImpl((Map) query("decodescript", hex));
+    return decodedScriptConverter.convert(query("decodescript", hex));
   }
 
   @Override
@@ -2176,7 +3856,7 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
   }
 
   public BigDecimal getReceivedByAccount(String account, int minConf) throws KomodoRpcException {
-    return new BigDecimal((String)query("getreceivedbyaccount", account, minConf));
+    return bigDecimalConverter.convert(query("getreceivedbyaccount", account, minConf));
   }
 
   @Override
@@ -2225,11 +3905,11 @@ public class KomodoJSONRPCClient implements KomododRpcClient {
 
   @Override
   public TxOut getTxOut(String txId, long vout) throws KomodoRpcException {
-    return new TxOutWrapper((Map) query("gettxout"));
+    return txOutConverter.convert(query("gettxout"));
   }
 
   public TxOut getTxOut(String txId, long vout, boolean includemempool) throws KomodoRpcException {
-    return new TxOutWrapper((Map) query("gettxout"));
+    return txOutConverter.convert(query("gettxout"));
   }
 
 
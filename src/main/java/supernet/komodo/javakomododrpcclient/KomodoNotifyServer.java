@@ -0,0 +1,245 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local TCP endpoint receiving the notifications of komodod's
+ * <code>-blocknotify</code>, <code>-walletnotify</code> and
+ * <code>-alertnotify</code> hooks.
+ *
+ * Every line received is a notification: a type, like <code>block</code>
+ * or <code>wallet</code>, optionally followed by a space and an argument. For
+ * example in komodo.conf:
+ * <pre>
+ * blocknotify=bash -c "echo block %s &gt;/dev/tcp/127.0.0.1/7780"
+ * walletnotify=bash -c "echo wallet %s &gt;/dev/tcp/127.0.0.1/7780"
+ * </pre>
+ * and in Java:
+ * <pre>
+ * KomodoNotifyServer notify = new KomodoNotifyServer(7780);
+ * notify.addListener(acceptor);
+ * new Thread(acceptor).start();
+ * </pre>
+ *
+ * Connections are read by a few worker threads, so that a client staying
+ * silent or sending slowly only holds one of them, for at most the read
+ * timeout per line. Lines longer than 1024 characters are dropped.
+ */
+public class KomodoNotifyServer implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(KomodoNotifyServer.class.getCanonicalName());
+
+  private static final Charset CHARSET = Charset.forName("ISO8859-1");
+
+  private static final int MAX_LINE = 1024;
+
+  private static final int WORKERS = 4;
+
+  // connections waiting for a worker, further ones are closed
+  private static final int QUEUE = 64;
+
+  public static interface Listener {
+
+    /**
+     * Called on a worker thread, one notification at a time, so it should
+     * return quickly
+     *
+     * @param type the first word of the line, like "block" or "wallet"
+     * @param argument the rest of the line, like the block hash or the txid,
+     * or null
+     */
+    void notification(String type, String argument);
+  }
+
+  private final ServerSocket server;
+  private final Thread thread;
+  private final ThreadPoolExecutor workers;
+  private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+  private volatile int readTimeout = 2000;
+
+  /**
+   * Listens on the given local address
+   */
+  public KomodoNotifyServer(InetSocketAddress address) throws IOException {
+    server = new ServerSocket();
+    server.bind(address);
+    final String name = "komodo-notify-" + server.getLocalPort();
+    workers = new ThreadPoolExecutor(WORKERS, WORKERS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, name + "-worker");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    workers.allowCoreThreadTimeOut(true);
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        accept();
+      }
+    }, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Listens on the loopback interface
+   *
+   * @param port the port, 0 for any free one
+   */
+  public KomodoNotifyServer(int port) throws IOException {
+    this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+  }
+
+  public int getPort() {
+    return server.getLocalPort();
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  /**
+   * @param readTimeout milliseconds a connection may take to send a line
+   * before it is dropped
+   */
+  public void setReadTimeout(int readTimeout) {
+    this.readTimeout = readTimeout;
+  }
+
+  private void accept() {
+    while (!server.isClosed()) {
+      final Socket s;
+      try {
+        s = server.accept();
+      } catch (IOException ex) {
+        if (!server.isClosed())
+          logger.log(Level.FINE, null, ex);
+        continue;
+      }
+      try {
+        workers.execute(new Runnable() {
+          @Override
+          public void run() {
+            serve(s);
+          }
+        });
+      } catch (RejectedExecutionException ex) {
+        logger.log(Level.WARNING, "Too many notify connections, dropping one from {0}", s.getRemoteSocketAddress());
+        close(s);
+      }
+    }
+  }
+
+  private void serve(Socket s) {
+    try {
+      InputStream in = new BufferedInputStream(s.getInputStream(), 256);
+      byte[] line = new byte[MAX_LINE];
+      int n = 0;
+      boolean tooLong = false;
+      long deadline = System.currentTimeMillis() + readTimeout;
+      for (;;) {
+        if (in.available() == 0) {
+          long left = deadline - System.currentTimeMillis();
+          if (left <= 0)
+            throw new SocketTimeoutException("No complete line within " + readTimeout + " ms");
+          s.setSoTimeout((int) left);
+        }
+        int b = in.read();
+        if (b == '\n' || b < 0) {
+          if (!tooLong)
+            dispatch(new String(line, 0, n, CHARSET).trim());
+          if (b < 0)
+            return;
+          n = 0;
+          tooLong = false;
+          deadline = System.currentTimeMillis() + readTimeout;
+        } else if (n < MAX_LINE)
+          line[n++] = (byte) b;
+        else
+          tooLong = true;
+      }
+    } catch (IOException ex) {
+      if (!server.isClosed())
+        logger.log(Level.FINE, null, ex);
+    } finally {
+      close(s);
+    }
+  }
+
+  private static void close(Socket s) {
+    try {
+      s.close();
+    } catch (IOException ex) {
+      logger.log(Level.FINE, null, ex);
+    }
+  }
+
+  private void dispatch(String line) {
+    if (line.isEmpty())
+      return;
+    int sp = line.indexOf(' ');
+    String type = sp < 0 ? line : line.substring(0, sp);
+    String argument = sp < 0 ? null : line.substring(sp + 1).trim();
+    logger.log(Level.FINE, "komodod notification: {0}", line);
+    synchronized (listeners) {
+      for (Listener l : listeners)
+        try {
+          l.notification(type, argument);
+        } catch (RuntimeException ex) {
+          logger.log(Level.SEVERE, null, ex);
+        }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+    workers.shutdownNow();
+  }
+
+}
@@ -0,0 +1,614 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import supernet.komodo.krotjson.Base64Coder;
+
+/**
+ * HTTP/1.1 transport keeping a bounded pool of persistent connections to a
+ * single komodod endpoint.
+ *
+ * Idle connections are reused most-recently-used first, closed after
+ * {@link #getIdleTimeout()} and checked for a server side close before reuse
+ * when they have been idle for longer than
+ * {@link #getValidateAfterInactivity()}. komodod drops idle RPC connections
+ * after <code>-rpcservertimeout</code> (30 seconds by default), so the idle
+ * timeout should stay below that value.
+ *
+ * The pool is guarded by a {@link ReentrantLock} rather than monitors, so
+ * virtual threads waiting for a connection do not pin their carrier thread.
+ *
+ * Usage:
+ * <pre>
+ * KomodoJSONRPCClient client = new KomodoJSONRPCClient(url);
+ * client.setTransport(new KomodoPooledTransport(url, 16));
+ * </pre>
+ */
+public class KomodoPooledTransport implements KomodoRpcTransport {
+
+  private static final Logger logger = Logger.getLogger(KomodoPooledTransport.class.getCanonicalName());
+
+  private static final Charset HEADER_CHARSET = Charset.forName("ISO8859-1");
+
+  public final URL rpcURL;
+
+  private final String host;
+  private final int port;
+  private final boolean secure;
+  private final byte[] requestHead;
+
+  private int maxConnections;
+  private long idleTimeout = 15000;
+  private long validateAfterInactivity = 2000;
+  private long acquireTimeout = 30000;
+  private int connectTimeout = 10000;
+  private int readTimeout = 0;
+
+  private HostnameVerifier hostnameVerifier = null;
+  private SSLSocketFactory sslSocketFactory = null;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+  private int open = 0;
+  private boolean closed = false;
+
+  public KomodoPooledTransport(URL rpc, int maxConnections) {
+    if (!"http".equals(rpc.getProtocol()) && !"https".equals(rpc.getProtocol()))
+      throw new IllegalArgumentException(rpc.toString());
+    if (maxConnections < 1)
+      throw new IllegalArgumentException("maxConnections: " + maxConnections);
+    this.rpcURL = rpc;
+    this.maxConnections = maxConnections;
+    this.secure = "https".equals(rpc.getProtocol());
+    this.host = rpc.getHost();
+    this.port = rpc.getPort() == -1 ? rpc.getDefaultPort() : rpc.getPort();
+
+    String path = rpc.getPath() == null || rpc.getPath().isEmpty() ? "/" : rpc.getPath();
+    if (rpc.getQuery() != null)
+      path += "?" + rpc.getQuery();
+
+    StringBuilder b = new StringBuilder();
+    b.append("POST ").append(path).append(" HTTP/1.1\r\n");
+    b.append("Host: ").append(host).append(':').append(port).append("\r\n");
+    if (rpc.getUserInfo() != null)
+      b.append("Authorization: Basic ").append(Base64Coder.encode(rpc.getUserInfo().getBytes(HEADER_CHARSET))).append("\r\n");
+    b.append("Content-Type: application/json\r\n");
+    b.append("Connection: keep-alive\r\n");
+    b.append("Content-Length: ");
+    this.requestHead = b.toString().getBytes(HEADER_CHARSET);
+  }
+
+  public KomodoPooledTransport(URL rpc) {
+    this(rpc, 8);
+  }
+
+  public int getMaxConnections() {
+    lock.lock();
+    try {
+      return maxConnections;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void setMaxConnections(int maxConnections) {
+    if (maxConnections < 1)
+      throw new IllegalArgumentException("maxConnections: " + maxConnections);
+    lock.lock();
+    try {
+      this.maxConnections = maxConnections;
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return milliseconds after which an unused connection is closed
+   */
+  public long getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public void setIdleTimeout(long idleTimeout) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  /**
+   * @return milliseconds of inactivity after which a pooled connection is
+   * checked for a server side close before being reused
+   */
+  public long getValidateAfterInactivity() {
+    return validateAfterInactivity;
+  }
+
+  public void setValidateAfterInactivity(long validateAfterInactivity) {
+    this.validateAfterInactivity = validateAfterInactivity;
+  }
+
+  /**
+   * @return milliseconds a request waits for a free connection when all
+   * {@link #getMaxConnections()} are in use
+   */
+  public long getAcquireTimeout() {
+    return acquireTimeout;
+  }
+
+  public void setAcquireTimeout(long acquireTimeout) {
+    this.acquireTimeout = acquireTimeout;
+  }
+
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public void setConnectTimeout(int connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  public void setReadTimeout(int readTimeout) {
+    this.readTimeout = readTimeout;
+  }
+
+  public HostnameVerifier getHostnameVerifier() {
+    return hostnameVerifier;
+  }
+
+  public void setHostnameVerifier(HostnameVerifier hostnameVerifier) {
+    this.hostnameVerifier = hostnameVerifier;
+  }
+
+  public SSLSocketFactory getSslSocketFactory() {
+    return sslSocketFactory;
+  }
+
+  public void setSslSocketFactory(SSLSocketFactory sslSocketFactory) {
+    this.sslSocketFactory = sslSocketFactory;
+  }
+
+  /**
+   * @return connections currently open, leased and idle
+   */
+  public int getOpenConnections() {
+    lock.lock();
+    try {
+      return open;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getIdleConnections() {
+    lock.lock();
+    try {
+      return idle.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private class Connection {
+
+    final Socket socket;
+    final InputStream in;
+    final OutputStream out;
+    long lastUsed;
+    long requests = 0;
+
+    Connection(Socket socket) throws IOException {
+      this.socket = socket;
+      this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+      this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+    }
+
+    boolean isStale() {
+      if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown())
+        return true;
+      try {
+        if (in.available() > 0)
+          return true;
+        socket.setSoTimeout(1);
+        try {
+          in.read();
+          return true;
+        } catch (SocketTimeoutException ex) {
+          return false;
+        } finally {
+          socket.setSoTimeout(readTimeout);
+        }
+      } catch (IOException ex) {
+        return true;
+      }
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException ex) {
+        logger.log(Level.FINE, null, ex);
+      }
+    }
+  }
+
+  private Connection connect() throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setKeepAlive(true);
+      socket.connect(new InetSocketAddress(host, port), connectTimeout);
+      socket.setSoTimeout(readTimeout);
+      if (secure) {
+        SSLSocketFactory f = sslSocketFactory == null ? (SSLSocketFactory) SSLSocketFactory.getDefault() : sslSocketFactory;
+        SSLSocket ssl = (SSLSocket) f.createSocket(socket, host, port, true);
+        ssl.startHandshake();
+        HostnameVerifier v = hostnameVerifier == null ? HttpsURLConnection.getDefaultHostnameVerifier() : hostnameVerifier;
+        if (!v.verify(host, ssl.getSession()))
+          throw new IOException("Hostname " + host + " not verified");
+        socket = ssl;
+      }
+      return new Connection(socket);
+    } catch (IOException ex) {
+      socket.close();
+      throw ex;
+    }
+  }
+
+  private Connection acquire() throws IOException {
+    long deadline = System.currentTimeMillis() + acquireTimeout;
+    for (;;) {
+      Connection c = null;
+      lock.lock();
+      try {
+        if (closed)
+          throw new IOException("Transport closed");
+        evictExpired();
+        if (!idle.isEmpty())
+          c = idle.pollFirst();
+        else if (open < maxConnections)
+          open++;
+        else {
+          long wait = deadline - System.currentTimeMillis();
+          if (wait <= 0)
+            throw new IOException("Timed out waiting for a connection to " + host + ":" + port + " (max: " + maxConnections + ")");
+          try {
+            released.await(wait, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a connection", ex);
+          }
+          continue;
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (c == null)
+        try {
+          return connect();
+        } catch (IOException ex) {
+          discarded();
+          throw ex;
+        }
+      if (System.currentTimeMillis() - c.lastUsed < validateAfterInactivity || !c.isStale())
+        return c;
+      c.close();
+      discarded();
+    }
+  }
+
+  private void evictExpired() {
+    long now = System.currentTimeMillis();
+    for (Iterator<Connection> i = idle.iterator(); i.hasNext();) {
+      Connection c = i.next();
+      if (now - c.lastUsed >= idleTimeout) {
+        i.remove();
+        c.close();
+        open--;
+      }
+    }
+  }
+
+  private void discarded() {
+    lock.lock();
+    try {
+      open--;
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release(Connection c, boolean reusable) {
+    lock.lock();
+    try {
+      if (reusable && !closed) {
+        c.lastUsed = System.currentTimeMillis();
+        idle.addFirst(c);
+        released.signalAll();
+        return;
+      }
+      open--;
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    c.close();
+  }
+
+  /**
+   * Sends the request. When a reused connection turns out to be closed by
+   * komodod, a request made of {@link KomodoRpcTransport#isRetryable(byte[])
+   * read-only} calls is sent once more on another connection; any other one
+   * fails, as komodod may have run it already.
+   */
+  @Override
+  public <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+    boolean retry = KomodoRpcTransport.isRetryable(request);
+    for (;;) {
+      Connection c = acquire();
+      boolean reused = c.requests++ > 0;
+      boolean reusable = false;
+      try {
+        try {
+          c.out.write(requestHead);
+          c.out.write(String.valueOf(request.length).getBytes(HEADER_CHARSET));
+          c.out.write('\r');
+          c.out.write('\n');
+          c.out.write('\r');
+          c.out.write('\n');
+          c.out.write(request);
+          c.out.flush();
+        } catch (IOException ex) {
+          if (reused && retry) {
+            retry = false;
+            logger.log(Level.FINE, "Retrying request on another connection", ex);
+            continue;
+          }
+          throw ex;
+        }
+
+        String status = readLine(c.in);
+        if (status == null) {
+          // the server closed a kept alive connection, maybe without reading the request
+          if (reused && retry) {
+            retry = false;
+            continue;
+          }
+          throw new IOException("Connection closed by " + host + ":" + port);
+        }
+        if (!status.startsWith("HTTP/1.") || status.length() < 12)
+          throw new IOException("Invalid HTTP status line: " + status);
+        int responseCode = Integer.parseInt(status.substring(9, 12));
+        String responseMessage = status.length() > 13 ? status.substring(13) : "";
+        boolean keepAlive = status.startsWith("HTTP/1.1");
+
+        long contentLength = -1;
+        boolean chunked = false;
+        String line;
+        while ((line = readLine(c.in)) != null && !line.isEmpty()) {
+          int i = line.indexOf(':');
+          if (i == -1)
+            continue;
+          String name = line.substring(0, i).trim();
+          String value = line.substring(i + 1).trim();
+          if ("Content-Length".equalsIgnoreCase(name))
+            contentLength = Long.parseLong(value);
+          else if ("Transfer-Encoding".equalsIgnoreCase(name))
+            chunked = "chunked".equalsIgnoreCase(value);
+          else if ("Connection".equalsIgnoreCase(name))
+            keepAlive = "keep-alive".equalsIgnoreCase(value) || (keepAlive && !"close".equalsIgnoreCase(value));
+        }
+        if (line == null)
+          throw new IOException("Unexpected end of HTTP headers");
+
+        BodyInputStream body;
+        if (chunked)
+          body = new ChunkedInputStream(c.in);
+        else if (contentLength >= 0)
+          body = new FixedLengthInputStream(c.in, contentLength);
+        else {
+          body = new FixedLengthInputStream(c.in, Long.MAX_VALUE);
+          keepAlive = false;
+        }
+
+        T result = handler.handle(responseCode, responseMessage, body);
+        reusable = keepAlive && body.drain();
+        return result;
+      } finally {
+        release(c, reusable);
+      }
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder b = new StringBuilder();
+    int ch;
+    while ((ch = in.read()) != -1) {
+      if (ch == '\n') {
+        int l = b.length();
+        if (l > 0 && b.charAt(l - 1) == '\r')
+          b.setLength(l - 1);
+        return b.toString();
+      }
+      b.append((char) ch);
+    }
+    if (b.length() == 0)
+      return null;
+    throw new IOException("Unexpected end of stream");
+  }
+
+  private static abstract class BodyInputStream extends InputStream {
+
+    protected final InputStream in;
+
+    BodyInputStream(InputStream in) {
+      this.in = in;
+    }
+
+    /**
+     * Skips the unread part of the body
+     *
+     * @return true if the body has been fully consumed and the connection is
+     * positioned on the next response
+     */
+    boolean drain() {
+      byte[] buffer = new byte[1024];
+      try {
+        while (read(buffer, 0, buffer.length) != -1) {
+        }
+        return true;
+      } catch (IOException ex) {
+        return false;
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public void close() {
+      // the connection is released by the transport
+    }
+  }
+
+  private static class FixedLengthInputStream extends BodyInputStream {
+
+    private long remaining;
+
+    FixedLengthInputStream(InputStream in, long length) {
+      super(in);
+      this.remaining = length;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0)
+        return -1;
+      int nr = in.read(b, off, (int) Math.min(len, remaining));
+      if (nr == -1) {
+        if (remaining != Long.MAX_VALUE)
+          throw new IOException("Premature end of response body");
+        remaining = 0;
+        return -1;
+      }
+      remaining -= nr;
+      return nr;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+  }
+
+  private static class ChunkedInputStream extends BodyInputStream {
+
+    private long chunk = 0;
+    private boolean eof = false;
+
+    ChunkedInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (eof)
+        return -1;
+      if (chunk == 0) {
+        String size = readLine(in);
+        if (size == null)
+          throw new IOException("Premature end of chunked body");
+        int i = size.indexOf(';');
+        chunk = Long.parseLong((i == -1 ? size : size.substring(0, i)).trim(), 16);
+        if (chunk == 0) {
+          String trailer;
+          while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+          }
+          eof = true;
+          return -1;
+        }
+      }
+      int nr = in.read(b, off, (int) Math.min(len, chunk));
+      if (nr == -1)
+        throw new IOException("Premature end of chunked body");
+      chunk -= nr;
+      if (chunk == 0)
+        readLine(in);
+      return nr;
+    }
+  }
+
+  /**
+   * Closes idle connections unused for longer than the idle timeout
+   */
+  public void closeExpiredConnections() {
+    lock.lock();
+    try {
+      evictExpired();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      for (Connection c : idle) {
+        c.close();
+        open--;
+      }
+      idle.clear();
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
@@ -17,12 +17,57 @@ import java.util.Set;
 public class KomodoRawTxBuilder {
 
   public final KomododRpcClient komodo;
+  public final KomodoUtxoIndex utxos;
 
   public KomodoRawTxBuilder(KomododRpcClient komodo) {
+    this(komodo, null);
+  }
+
+  /**
+   * @param utxos the index to select inputs from and to take their values
+   * from, instead of asking komodod for every transaction
+   */
+  public KomodoRawTxBuilder(KomododRpcClient komodo, KomodoUtxoIndex utxos) {
     this.komodo = komodo;
+    this.utxos = utxos;
   }
   public Set<KomododRpcClient.TxInput> inputs = new LinkedHashSet<>();
   public List<KomododRpcClient.TxOutput> outputs = new ArrayList<>();
+  public KomodoCoinSelector selector = KomodoCoinSelector.DEFAULT;
+  /**
+   * komodod's default <code>-txexpirydelta</code>
+   */
+  public static final int EXPIRY_DELTA = 20;
+  /**
+   * Seconds before now of the default lock time
+   */
+  public static final int LOCK_TIME_LAG = 777;
+
+  /**
+   * Writes the unsigned transaction locally, with {@link #lockTime} and
+   * {@link #expiryHeight}; if null, the default, komodod's
+   * createrawtransaction does. Transactions with outputs the serializer
+   * cannot write still go to komodod.
+   */
+  public KomodoRawTxSerializer serializer = null;
+  /**
+   * The lock time written by the {@link #serializer}, or -1, the default, for
+   * a time shortly before now, which komodod sets on KMD so that the inputs
+   * can claim their rewards; asset chains use 0
+   */
+  public long lockTime = -1;
+  /**
+   * The expiry height written by the {@link #serializer}, or -1, the
+   * default, for the next block's height plus {@link #EXPIRY_DELTA}, as
+   * komodod sets it
+   */
+  public long expiryHeight = -1;
+  /**
+   * Change up to these satoshis goes to the fee rather than to a dust
+   * output; picking inputs raises it to the selector's
+   * {@link KomodoCoinSelector#costOfChange()}
+   */
+  public long minChange = 0;
 
   private class Input extends KomododRpcClient.BasicTxInput {
 
@@ -68,23 +113,56 @@ public class KomodoRawTxBuilder {
     return this;
   }
 
+  public KomodoRawTxBuilder outSatoshis(String address, long satoshis) {
+    if (satoshis <= 0)
+      return this;
+    outputs.add(new KomododRpcClient.SatoshiTxOutput(address, satoshis));
+    return this;
+  }
+
   public KomodoRawTxBuilder in(double value) throws KomodoRpcException {
     return in(value, 6);
   }
 
   public KomodoRawTxBuilder in(double value, int minConf) throws KomodoRpcException {
-    List<KomododRpcClient.Unspent> unspent = komodo.listUnspent(minConf);
-    double v = value;
-    for (KomododRpcClient.Unspent o : unspent) {
-      if (!inputs.contains(new Input(o))) {
-        in(o);
-        v = KomodoUtil.normalizeAmount(v - o.amount());
-      }
-      if (v < 0)
-        break;
+    return in(value, minConf, selector);
+  }
+
+  public KomodoRawTxBuilder in(double value, int minConf, KomodoCoinSelector selector) throws KomodoRpcException {
+    return inSatoshis(KomodoUtil.toSatoshis(value), minConf, selector);
+  }
+
+  public KomodoRawTxBuilder inSatoshis(long target, int minConf) throws KomodoRpcException {
+    return inSatoshis(target, minConf, selector);
+  }
+
+  /**
+   * Adds inputs covering the target, picked among the outputs not yet spent
+   * by this transaction
+   */
+  public KomodoRawTxBuilder inSatoshis(long target, int minConf, KomodoCoinSelector selector) throws KomodoRpcException {
+    minChange = Math.max(minChange, selector.costOfChange());
+    if (utxos != null) {
+      KomodoUtxoIndex.Candidates c = utxos.candidates(minConf, inputs);
+      int[] selected = selector.select(c.amounts, target);
+      if (selected == null)
+        throw new KomodoRpcException("Not enough komodos (" + KomodoUtil.toAmount(target) + ")");
+      for (int i : selected)
+        in(c.get(i));
+      return this;
     }
-    if (v > 0)
-      throw new KomodoRpcException("Not enough komodos (" + v + "/" + value + ")");
+    List<KomododRpcClient.Unspent> unspent = new ArrayList<>();
+    for (KomododRpcClient.Unspent o : komodo.listUnspent(minConf))
+      if (!inputs.contains(new Input(o)))
+        unspent.add(o);
+    long[] amounts = new long[unspent.size()];
+    for (int i = 0; i < amounts.length; i++)
+      amounts[i] = unspent.get(i).satoshis();
+    int[] selected = selector.select(amounts, target);
+    if (selected == null)
+      throw new KomodoRpcException("Not enough komodos (" + KomodoUtil.toAmount(target) + ")");
+    for (int i : selected)
+      in(unspent.get(i));
     return this;
   }
 
@@ -99,23 +177,51 @@ public class KomodoRawTxBuilder {
     return tx;
   }
 
+  private long value(KomododRpcClient.TxInput i) throws KomodoRpcException {
+    long amount = utxos == null ? -1 : utxos.amount(i.txid(), i.vout());
+    if (amount >= 0)
+      return amount;
+    return tx(i.txid()).vOut().get(i.vout()).satoshis();
+  }
+
   public KomodoRawTxBuilder outChange(String address) throws KomodoRpcException {  //proper exceptionhandling
     return outChange(address, 0d);
   }
 
   public KomodoRawTxBuilder outChange(String address, double fee) throws KomodoRpcException {
-    double is = 0d;
+    return outChangeSatoshis(address, KomodoUtil.toSatoshis(fee));
+  }
+
+  public KomodoRawTxBuilder outChangeSatoshis(String address, long fee) throws KomodoRpcException {
+    long is = 0;
     for (KomododRpcClient.TxInput i : inputs)
-      is = KomodoUtil.normalizeAmount(is + tx(i.txid()).vOut().get(i.vout()).value());
-    double os = fee;
+      is += value(i);
+    long os = fee;
     for (KomododRpcClient.TxOutput o : outputs)
-      os = KomodoUtil.normalizeAmount(os + o.amount());
-    if (os < is)
-      out(address, KomodoUtil.normalizeAmount(is - os));
-    return this;
+      os += o.satoshis();
+    if (is - os <= minChange)
+      return this;
+    return outSatoshis(address, is - os);
   }
 
   public String create() throws KomodoRpcException {
+    KomodoRawTxSerializer s = serializer;
+    if (s != null) {
+      try {
+        for (KomododRpcClient.TxOutput o : outputs)
+          s.outputScript(o.address());
+      } catch (IllegalArgumentException ex) {
+        // not an address the serializer knows
+        return komodo.createRawTransaction(new ArrayList<>(inputs), outputs);
+      }
+      long l = lockTime >= 0 ? lockTime : System.currentTimeMillis() / 1000 - LOCK_TIME_LAG;
+      long e = expiryHeight >= 0 ? expiryHeight : komodo.getBlockCount() + 1 + EXPIRY_DELTA;
+      try {
+        return s.serializeHex(inputs, outputs, l, e);
+      } catch (IllegalArgumentException ex) {
+        throw new KomodoRpcException(ex.getMessage(), ex);
+      }
+    }
     return komodo.createRawTransaction(new ArrayList<>(inputs), outputs);
   }
 
@@ -124,7 +230,11 @@ public class KomodoRawTxBuilder {
   }
 
   public String send() throws KomodoRpcException {
-    return komodo.sendRawTransaction(sign());
+    String txId = komodo.sendRawTransaction(sign());
+    if (utxos != null)
+      for (KomododRpcClient.TxInput i : inputs)
+        utxos.markSpent(i.txid(), i.vout());
+    return txId;
   }
 
 }
@@ -0,0 +1,215 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Writes unsigned transparent transactions in the Komodo (Zcash) format, as
+ * <code>createrawtransaction</code> returns them: inputs with empty
+ * scriptSigs, outputs paying base58 P2PKH or P2SH addresses, and no shielded
+ * parts.
+ *
+ * Version 1 and 2 transactions have the Bitcoin layout, plus an empty
+ * JoinSplit list for version 2. Overwinter (3) and Sapling (4) ones have the
+ * overwintered flag and version group id in the header and an expiry height
+ * after the lock time; Sapling ones also have a zero value balance and empty
+ * shielded spend and output lists.
+ */
+public class KomodoRawTxSerializer {
+
+  public static final int OVERWINTER_VERSION = 3;
+  public static final int SAPLING_VERSION = 4;
+  public static final int OVERWINTER_VERSION_GROUP_ID = 0x03C48270;
+  public static final int SAPLING_VERSION_GROUP_ID = 0x892F2085;
+
+  /**
+   * Base58 version bytes of Komodo addresses
+   */
+  public static final int PUBKEY_ADDRESS = 60;
+  public static final int SCRIPT_ADDRESS = 85;
+
+  private static final int OVERWINTERED = 0x80000000;
+
+  public final int version;
+  public final int pubKeyAddress;
+  public final int scriptAddress;
+
+  /**
+   * Writes Sapling transactions for Komodo addresses
+   */
+  public KomodoRawTxSerializer() {
+    this(SAPLING_VERSION, PUBKEY_ADDRESS, SCRIPT_ADDRESS);
+  }
+
+  /**
+   * @param version the transaction version, from 1 to 4
+   * @param pubKeyAddress the version byte of P2PKH addresses
+   * @param scriptAddress the version byte of P2SH addresses
+   */
+  public KomodoRawTxSerializer(int version, int pubKeyAddress, int scriptAddress) {
+    if (version < 1 || version > SAPLING_VERSION)
+      throw new IllegalArgumentException("version: " + version);
+    this.version = version;
+    this.pubKeyAddress = pubKeyAddress;
+    this.scriptAddress = scriptAddress;
+  }
+
+  private static class Writer {
+
+    byte[] b = new byte[256];
+    int len = 0;
+
+    void ensure(int n) {
+      if (len + n > b.length)
+        b = Arrays.copyOf(b, Math.max(b.length * 2, len + n));
+    }
+
+    void write(int v) {
+      ensure(1);
+      b[len++] = (byte) v;
+    }
+
+    void write(byte[] v) {
+      ensure(v.length);
+      System.arraycopy(v, 0, b, len, v.length);
+      len += v.length;
+    }
+
+    void writeInt(long v) {
+      ensure(4);
+      for (int i = 0; i < 4; i++)
+        b[len++] = (byte) (v >>> (i * 8));
+    }
+
+    void writeLong(long v) {
+      ensure(8);
+      for (int i = 0; i < 8; i++)
+        b[len++] = (byte) (v >>> (i * 8));
+    }
+
+    void writeCompactSize(long n) {
+      if (n < 0xfd)
+        write((int) n);
+      else if (n <= 0xffff) {
+        write(0xfd);
+        write((int) n);
+        write((int) (n >>> 8));
+      } else if (n <= 0xffffffffL) {
+        write(0xfe);
+        writeInt(n);
+      } else {
+        write(0xff);
+        writeLong(n);
+      }
+    }
+  }
+
+  /**
+   * @return the script paying to a base58 address
+   * @throws IllegalArgumentException if the address is not a P2PKH or P2SH
+   * one of this chain
+   */
+  public byte[] outputScript(String address) {
+    byte[] a = KomodoUtil.decodeBase58Check(address);
+    if (a.length != 21)
+      throw new IllegalArgumentException("Invalid address length: " + address);
+    int v = a[0] & 0xff;
+    byte[] s;
+    if (v == pubKeyAddress) {
+      // OP_DUP OP_HASH160 <hash> OP_EQUALVERIFY OP_CHECKSIG
+      s = new byte[25];
+      s[0] = 0x76;
+      s[1] = (byte) 0xa9;
+      s[2] = 20;
+      System.arraycopy(a, 1, s, 3, 20);
+      s[23] = (byte) 0x88;
+      s[24] = (byte) 0xac;
+    } else if (v == scriptAddress) {
+      // OP_HASH160 <hash> OP_EQUAL
+      s = new byte[23];
+      s[0] = (byte) 0xa9;
+      s[1] = 20;
+      System.arraycopy(a, 1, s, 2, 20);
+      s[22] = (byte) 0x87;
+    } else
+      throw new IllegalArgumentException("Unknown address version " + v + ": " + address);
+    return s;
+  }
+
+  /**
+   * @param lockTime the lock time; if it is not 0, the inputs' sequence
+   * numbers enable it
+   * @param expiryHeight the height after which an Overwinter or Sapling
+   * transaction is invalid, 0 for none
+   * @return the unsigned transaction
+   */
+  public byte[] serialize(Collection<? extends KomododRpcClient.TxInput> inputs, Collection<? extends KomododRpcClient.TxOutput> outputs, long lockTime, long expiryHeight) {
+    Writer w = new Writer();
+    if (version >= OVERWINTER_VERSION) {
+      w.writeInt(version | OVERWINTERED);
+      w.writeInt(version == SAPLING_VERSION ? SAPLING_VERSION_GROUP_ID : OVERWINTER_VERSION_GROUP_ID);
+    } else
+      w.writeInt(version);
+
+    w.writeCompactSize(inputs.size());
+    byte[] hash = new byte[32];
+    for (KomododRpcClient.TxInput in : inputs) {
+      KomodoUtil.decodeHex(in.txid(), hash, 0);
+      // txids are shown byte-reversed
+      for (int i = 31; i >= 0; i--)
+        w.write(hash[i]);
+      w.writeInt(in.vout());
+      w.writeCompactSize(0);
+      w.writeInt(lockTime != 0 ? 0xfffffffeL : 0xffffffffL);
+    }
+
+    w.writeCompactSize(outputs.size());
+    for (KomododRpcClient.TxOutput out : outputs) {
+      w.writeLong(out.satoshis());
+      byte[] script = outputScript(out.address());
+      w.writeCompactSize(script.length);
+      w.write(script);
+    }
+
+    w.writeInt(lockTime);
+    if (version >= OVERWINTER_VERSION)
+      w.writeInt(expiryHeight);
+    if (version == SAPLING_VERSION) {
+      // value balance, shielded spends and outputs
+      w.writeLong(0);
+      w.writeCompactSize(0);
+      w.writeCompactSize(0);
+    }
+    if (version >= 2)
+      // JoinSplits
+      w.writeCompactSize(0);
+    return Arrays.copyOf(w.b, w.len);
+  }
+
+  /**
+   * @return the hex of the unsigned transaction
+   * @see #serialize(Collection, Collection, long, long)
+   */
+  public String serializeHex(Collection<? extends KomododRpcClient.TxInput> inputs, Collection<? extends KomododRpcClient.TxOutput> outputs, long lockTime, long expiryHeight) {
+    return KomodoUtil.encodeHex(serialize(inputs, outputs, lockTime, expiryHeight));
+  }
+
+}
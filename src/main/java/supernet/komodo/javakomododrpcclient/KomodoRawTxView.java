@@ -0,0 +1,736 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link KomododRpcClient.RawTransaction} read straight from the raw bytes of
+ * a transaction, in the Komodo (Zcash) format up to Sapling.
+ *
+ * The constructor only walks the bytes to find where the inputs and outputs
+ * start; everything else is read from the buffer when asked for, and the
+ * inputs, outputs and scripts are small views over it. Scripts are shown as
+ * komodod shows them: asm, type and addresses of the standard forms.
+ *
+ * The fields komodod adds from the chain, the block hash, confirmations and
+ * times, are not part of the bytes: they are null, or 0 for the
+ * confirmations.
+ */
+public class KomodoRawTxView implements KomododRpcClient.RawTransaction {
+
+  private static final long serialVersionUID = 1L;
+
+  // sizes of the shielded parts, which are skipped
+  private static final int SPEND_DESCRIPTION = 384;
+  private static final int OUTPUT_DESCRIPTION = 948;
+  private static final int JOINSPLIT_PHGR = 1802;
+  private static final int JOINSPLIT_GROTH = 1698;
+
+  private transient ByteBuffer b;
+  private transient int[] inputs;
+  private transient int[] outputs;
+  private transient int lockTimeOffset;
+  private transient int spends;
+  private transient int shieldedOutputs;
+  private transient int joinSplits;
+  private transient String txId;
+  private final int pubKeyAddress;
+  private final int scriptAddress;
+  transient KomododRpcClient komodo;
+
+  /**
+   * Reads a transaction with Komodo addresses
+   *
+   * @param buffer the transaction, from its position to its limit; it must
+   * not change while the view is in use
+   * @throws IllegalArgumentException if the bytes are not a transaction
+   */
+  public KomodoRawTxView(ByteBuffer buffer) {
+    this(buffer, KomodoRawTxSerializer.PUBKEY_ADDRESS, KomodoRawTxSerializer.SCRIPT_ADDRESS);
+  }
+
+  /**
+   * @param pubKeyAddress the version byte of P2PKH addresses
+   * @param scriptAddress the version byte of P2SH addresses
+   */
+  public KomodoRawTxView(ByteBuffer buffer, int pubKeyAddress, int scriptAddress) {
+    this.pubKeyAddress = pubKeyAddress;
+    this.scriptAddress = scriptAddress;
+    parse(buffer.slice());
+  }
+
+  public static KomodoRawTxView decode(String hex) {
+    return new KomodoRawTxView(ByteBuffer.wrap(KomodoUtil.decodeHex(hex)));
+  }
+
+  private transient int p;
+
+  private void need(long n) {
+    if (n < 0 || p + n > b.limit())
+      throw new IllegalArgumentException("Truncated transaction at " + p);
+  }
+
+  private long compactSize() {
+    need(1);
+    int c = b.get(p++) & 0xff;
+    long n;
+    if (c < 0xfd)
+      return c;
+    if (c == 0xfd) {
+      need(2);
+      n = b.getShort(p) & 0xffff;
+      p += 2;
+    } else if (c == 0xfe) {
+      need(4);
+      n = b.getInt(p) & 0xffffffffL;
+      p += 4;
+    } else {
+      need(8);
+      n = b.getLong(p);
+      p += 8;
+    }
+    return n;
+  }
+
+  private void skip(long n) {
+    need(n);
+    p += n;
+  }
+
+  private int count(int minSize) {
+    long n = compactSize();
+    // each element takes at least minSize bytes
+    need(n * minSize);
+    return (int) n;
+  }
+
+  private void parse(ByteBuffer buffer) {
+    b = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    p = 0;
+    need(4);
+    int header = b.getInt(0);
+    p = 4;
+    if (header < 0) {
+      need(4);
+      int group = b.getInt(4);
+      int v = header & 0x7fffffff;
+      if (!(v == KomodoRawTxSerializer.OVERWINTER_VERSION && group == KomodoRawTxSerializer.OVERWINTER_VERSION_GROUP_ID)
+          && !(v == KomodoRawTxSerializer.SAPLING_VERSION && group == KomodoRawTxSerializer.SAPLING_VERSION_GROUP_ID))
+        throw new IllegalArgumentException("Unknown transaction version " + v + ", group " + Integer.toHexString(group));
+      p = 8;
+    }
+    inputs = new int[count(41)];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = p;
+      skip(36);
+      skip(compactSize());
+      skip(4);
+    }
+    outputs = new int[count(9)];
+    for (int i = 0; i < outputs.length; i++) {
+      outputs[i] = p;
+      skip(8);
+      skip(compactSize());
+    }
+    lockTimeOffset = p;
+    skip(4);
+    if (overwintered())
+      skip(4);
+    if (sapling()) {
+      skip(8);
+      spends = count(SPEND_DESCRIPTION);
+      skip((long) spends * SPEND_DESCRIPTION);
+      shieldedOutputs = count(OUTPUT_DESCRIPTION);
+      skip((long) shieldedOutputs * OUTPUT_DESCRIPTION);
+    }
+    if (version() >= 2) {
+      int size = sapling() ? JOINSPLIT_GROTH : JOINSPLIT_PHGR;
+      joinSplits = count(size);
+      skip((long) joinSplits * size);
+      if (joinSplits > 0)
+        // joinSplitPubKey and joinSplitSig
+        skip(96);
+    }
+    if (sapling() && spends + shieldedOutputs > 0)
+      // bindingSig
+      skip(64);
+    if (p != b.limit())
+      throw new IllegalArgumentException("Trailing bytes after transaction at " + p);
+  }
+
+  public boolean overwintered() {
+    return b.getInt(0) < 0;
+  }
+
+  private boolean sapling() {
+    return overwintered() && version() == KomodoRawTxSerializer.SAPLING_VERSION;
+  }
+
+  /**
+   * @return the version group id, or 0 if the transaction is not
+   * overwintered
+   */
+  public int versionGroupId() {
+    return overwintered() ? b.getInt(4) : 0;
+  }
+
+  /**
+   * @return the expiry height, or 0 if the transaction is not overwintered
+   */
+  public long expiryHeight() {
+    return overwintered() ? b.getInt(lockTimeOffset + 4) & 0xffffffffL : 0;
+  }
+
+  /**
+   * @return the net satoshis leaving the Sapling pool
+   */
+  public long valueBalance() {
+    return sapling() ? b.getLong(lockTimeOffset + 8) : 0;
+  }
+
+  public int shieldedSpends() {
+    return spends;
+  }
+
+  public int shieldedOutputs() {
+    return shieldedOutputs;
+  }
+
+  public int joinSplits() {
+    return joinSplits;
+  }
+
+  @Override
+  public String hex() {
+    byte[] a = new byte[b.limit()];
+    b.duplicate().get(a);
+    return KomodoUtil.encodeHex(a);
+  }
+
+  private String reversedHex(int offset) {
+    char[] c = new char[64];
+    String h = KomodoUtil.encodeHex(bytes(offset, 32));
+    for (int i = 0; i < 32; i++) {
+      c[i * 2] = h.charAt(62 - i * 2);
+      c[i * 2 + 1] = h.charAt(63 - i * 2);
+    }
+    return new String(c);
+  }
+
+  private byte[] bytes(int offset, int len) {
+    byte[] a = new byte[len];
+    ByteBuffer d = b.duplicate();
+    d.position(offset);
+    d.get(a);
+    return a;
+  }
+
+  @Override
+  public String txId() {
+    if (txId == null) {
+      byte[] a = new byte[b.limit()];
+      b.duplicate().get(a);
+      byte[] h = KomodoUtil.sha256d(a, 0, a.length);
+      for (int i = 0; i < 16; i++) {
+        byte t = h[i];
+        h[i] = h[31 - i];
+        h[31 - i] = t;
+      }
+      txId = KomodoUtil.encodeHex(h);
+    }
+    return txId;
+  }
+
+  @Override
+  public int version() {
+    return b.getInt(0) & 0x7fffffff;
+  }
+
+  @Override
+  public long lockTime() {
+    return b.getInt(lockTimeOffset) & 0xffffffffL;
+  }
+
+  @Override
+  public long size() {
+    return b.limit();
+  }
+
+  @Override
+  public long vsize() {
+    return b.limit();
+  }
+
+  @Override
+  public String hash() {
+    return txId();
+  }
+
+  private int scriptOffset(int offset) {
+    int c = b.get(offset) & 0xff;
+    return offset + (c < 0xfd ? 1 : c == 0xfd ? 3 : c == 0xfe ? 5 : 9);
+  }
+
+  private int scriptLength(int offset) {
+    int c = b.get(offset) & 0xff;
+    return c < 0xfd ? c : c == 0xfd ? b.getShort(offset + 1) & 0xffff : b.getInt(offset + 1);
+  }
+
+  private class InView implements In {
+
+    private static final long serialVersionUID = 1L;
+
+    final int o;
+
+    InView(int o) {
+      this.o = o;
+    }
+
+    boolean coinbase() {
+      if (b.getInt(o + 32) != -1)
+        return false;
+      for (int i = 0; i < 32; i++)
+        if (b.get(o + i) != 0)
+          return false;
+      return true;
+    }
+
+    /**
+     * @return null for the input of a coinbase
+     */
+    @Override
+    public String txid() {
+      return coinbase() ? null : reversedHex(o);
+    }
+
+    @Override
+    public int vout() {
+      return b.getInt(o + 32);
+    }
+
+    @Override
+    public Map<String, Object> scriptSig() {
+      int s = scriptOffset(o + 36);
+      int len = scriptLength(o + 36);
+      Map<String, Object> m = new LinkedHashMap<>();
+      if (coinbase())
+        m.put("coinbase", KomodoUtil.encodeHex(bytes(s, len)));
+      else {
+        m.put("asm", asm(s, len, true));
+        m.put("hex", KomodoUtil.encodeHex(bytes(s, len)));
+      }
+      return m;
+    }
+
+    @Override
+    public long sequence() {
+      int s = o + 36;
+      return b.getInt(scriptOffset(s) + scriptLength(s)) & 0xffffffffL;
+    }
+
+    @Override
+    public KomododRpcClient.RawTransaction getTransaction() {
+      if (komodo == null)
+        throw new IllegalStateException("No client to fetch " + txid());
+      return komodo.getRawTransaction(txid());
+    }
+
+    @Override
+    public Out getTransactionOutput() {
+      return getTransaction().vOut().get(vout());
+    }
+
+    @Override
+    public String scriptPubKey() {
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return txid() + ":" + vout();
+    }
+  }
+
+  @Override
+  public List<In> vIn() {
+    return new AbstractList<In>() {
+      @Override
+      public In get(int index) {
+        return new InView(inputs[index]);
+      }
+
+      @Override
+      public int size() {
+        return inputs.length;
+      }
+    };
+  }
+
+  private class OutView implements Out {
+
+    private static final long serialVersionUID = 1L;
+
+    final int n;
+
+    OutView(int n) {
+      this.n = n;
+    }
+
+    @Override
+    public long satoshis() {
+      return b.getLong(outputs[n]);
+    }
+
+    @Override
+    public double value() {
+      return KomodoUtil.fromSatoshis(satoshis());
+    }
+
+    @Override
+    public int n() {
+      return n;
+    }
+
+    @Override
+    public ScriptPubKey scriptPubKey() {
+      int o = outputs[n] + 8;
+      return new ScriptView(scriptOffset(o), scriptLength(o));
+    }
+
+    @Override
+    public KomododRpcClient.TxInput toInput() {
+      return new KomododRpcClient.BasicTxInput(txId(), n);
+    }
+
+    @Override
+    public KomododRpcClient.RawTransaction transaction() {
+      return KomodoRawTxView.this;
+    }
+
+    @Override
+    public String toString() {
+      return n + ": " + value();
+    }
+  }
+
+  @Override
+  public List<Out> vOut() {
+    return new AbstractList<Out>() {
+      @Override
+      public Out get(int index) {
+        if (index < 0 || index >= outputs.length)
+          throw new IndexOutOfBoundsException("Output " + index);
+        return new OutView(index);
+      }
+
+      @Override
+      public int size() {
+        return outputs.length;
+      }
+    };
+  }
+
+  private static final int OP_0 = 0x00;
+  private static final int OP_PUSHDATA1 = 0x4c;
+  private static final int OP_PUSHDATA2 = 0x4d;
+  private static final int OP_PUSHDATA4 = 0x4e;
+  private static final int OP_1 = 0x51;
+  private static final int OP_16 = 0x60;
+  private static final int OP_RETURN = 0x6a;
+  private static final int OP_DUP = 0x76;
+  private static final int OP_EQUAL = 0x87;
+  private static final int OP_EQUALVERIFY = 0x88;
+  private static final int OP_HASH160 = 0xa9;
+  private static final int OP_CHECKSIG = 0xac;
+  private static final int OP_CHECKMULTISIG = 0xae;
+  private static final int OP_CHECKCRYPTOCONDITION = 0xcc;
+
+  private static final String[] OP_NAMES = new String[256];
+
+  static {
+    OP_NAMES[0x4f] = "-1";
+    OP_NAMES[0x50] = "OP_RESERVED";
+    for (int i = OP_1; i <= OP_16; i++)
+      OP_NAMES[i] = String.valueOf(i - OP_1 + 1);
+    String[] names = {
+      "OP_NOP", "OP_VER", "OP_IF", "OP_NOTIF", "OP_VERIF", "OP_VERNOTIF", "OP_ELSE", "OP_ENDIF",
+      "OP_VERIFY", "OP_RETURN", "OP_TOALTSTACK", "OP_FROMALTSTACK", "OP_2DROP", "OP_2DUP", "OP_3DUP", "OP_2OVER",
+      "OP_2ROT", "OP_2SWAP", "OP_IFDUP", "OP_DEPTH", "OP_DROP", "OP_DUP", "OP_NIP", "OP_OVER",
+      "OP_PICK", "OP_ROLL", "OP_ROT", "OP_SWAP", "OP_TUCK", "OP_CAT", "OP_SUBSTR", "OP_LEFT",
+      "OP_RIGHT", "OP_SIZE", "OP_INVERT", "OP_AND", "OP_OR", "OP_XOR", "OP_EQUAL", "OP_EQUALVERIFY",
+      "OP_RESERVED1", "OP_RESERVED2", "OP_1ADD", "OP_1SUB", "OP_2MUL", "OP_2DIV", "OP_NEGATE", "OP_ABS",
+      "OP_NOT", "OP_0NOTEQUAL", "OP_ADD", "OP_SUB", "OP_MUL", "OP_DIV", "OP_MOD", "OP_LSHIFT",
+      "OP_RSHIFT", "OP_BOOLAND", "OP_BOOLOR", "OP_NUMEQUAL", "OP_NUMEQUALVERIFY", "OP_NUMNOTEQUAL", "OP_LESSTHAN", "OP_GREATERTHAN",
+      "OP_LESSTHANOREQUAL", "OP_GREATERTHANOREQUAL", "OP_MIN", "OP_MAX", "OP_WITHIN", "OP_RIPEMD160", "OP_SHA1", "OP_SHA256",
+      "OP_HASH160", "OP_HASH256", "OP_CODESEPARATOR", "OP_CHECKSIG", "OP_CHECKSIGVERIFY", "OP_CHECKMULTISIG", "OP_CHECKMULTISIGVERIFY", "OP_NOP1",
+      "OP_CHECKLOCKTIMEVERIFY", "OP_NOP3", "OP_NOP4", "OP_NOP5", "OP_NOP6", "OP_NOP7", "OP_NOP8", "OP_NOP9",
+      "OP_NOP10"};
+    System.arraycopy(names, 0, OP_NAMES, 0x61, names.length);
+    OP_NAMES[OP_CHECKCRYPTOCONDITION] = "OP_CHECKCRYPTOCONDITION";
+    OP_NAMES[0xcd] = "OP_CHECKCRYPTOCONDITIONVERIFY";
+  }
+
+  private static final String[] SIGHASH = {null, "ALL", "NONE", "SINGLE"};
+
+  /**
+   * @return the offset after the operation at o, or -1 if a push runs past
+   * the end of the script
+   */
+  private int next(int o, int end) {
+    int op = b.get(o) & 0xff;
+    int len;
+    int data = o + 1;
+    if (op < OP_PUSHDATA1)
+      len = op;
+    else if (op == OP_PUSHDATA1) {
+      if (data + 1 > end)
+        return -1;
+      len = b.get(data) & 0xff;
+      data += 1;
+    } else if (op == OP_PUSHDATA2) {
+      if (data + 2 > end)
+        return -1;
+      len = b.getShort(data) & 0xffff;
+      data += 2;
+    } else if (op == OP_PUSHDATA4) {
+      if (data + 4 > end)
+        return -1;
+      len = b.getInt(data);
+      data += 4;
+    } else
+      return o + 1;
+    return len < 0 || data + len > end ? -1 : data + len;
+  }
+
+  private String asm(int offset, int len, boolean signatures) {
+    StringBuilder s = new StringBuilder();
+    int end = offset + len;
+    for (int o = offset; o < end;) {
+      if (s.length() > 0)
+        s.append(' ');
+      int op = b.get(o) & 0xff;
+      int n = next(o, end);
+      if (n < 0) {
+        s.append("[error]");
+        break;
+      }
+      if (op <= OP_PUSHDATA4) {
+        int dataLen = n - dataOffset(o);
+        int data = n - dataLen;
+        if (dataLen <= 4) {
+          // small pushes are shown as numbers
+          long v = 0;
+          for (int i = 0; i < dataLen; i++)
+            v |= (long) (b.get(data + i) & 0xff) << (8 * i);
+          if (dataLen > 0 && (v & (0x80L << (8 * (dataLen - 1)))) != 0)
+            v = -(v & ~(0x80L << (8 * (dataLen - 1))));
+          s.append(v);
+        } else if (signatures && isSignature(data, dataLen)) {
+          int hashType = b.get(data + dataLen - 1) & 0xff;
+          String name = SIGHASH[hashType & 3];
+          s.append(KomodoUtil.encodeHex(bytes(data, dataLen - 1)));
+          if ((hashType & 0x7c) == 0 && name != null)
+            s.append('[').append(name).append((hashType & 0x80) != 0 ? "|ANYONECANPAY" : "").append(']');
+          else
+            s.append(KomodoUtil.encodeHex(bytes(data + dataLen - 1, 1)));
+        } else
+          s.append(KomodoUtil.encodeHex(bytes(data, dataLen)));
+      } else
+        s.append(OP_NAMES[op] != null ? OP_NAMES[op] : "OP_UNKNOWN");
+      o = n;
+    }
+    return s.toString();
+  }
+
+  private int dataOffset(int o) {
+    int op = b.get(o) & 0xff;
+    return o + (op < OP_PUSHDATA1 ? 1 : op == OP_PUSHDATA1 ? 2 : op == OP_PUSHDATA2 ? 3 : 5);
+  }
+
+  // a DER signature followed by the hash type
+  private boolean isSignature(int data, int len) {
+    return len >= 9 && len <= 73 && b.get(data) == 0x30 && (b.get(data + 1) & 0xff) == len - 3;
+  }
+
+  private class ScriptView implements Out.ScriptPubKey {
+
+    private static final long serialVersionUID = 1L;
+
+    final int o;
+    final int len;
+
+    ScriptView(int o, int len) {
+      this.o = o;
+      this.len = len;
+    }
+
+    int op(int i) {
+      return b.get(o + i) & 0xff;
+    }
+
+    boolean isPubKeyPush(int i) {
+      return i < len && (op(i) == 33 || op(i) == 65) && i + 1 + op(i) <= len;
+    }
+
+    @Override
+    public String asm() {
+      return KomodoRawTxView.this.asm(o, len, false);
+    }
+
+    @Override
+    public String hex() {
+      return KomodoUtil.encodeHex(bytes(o, len));
+    }
+
+    @Override
+    public String type() {
+      if (len == 25 && op(0) == OP_DUP && op(1) == OP_HASH160 && op(2) == 20 && op(23) == OP_EQUALVERIFY && op(24) == OP_CHECKSIG)
+        return "pubkeyhash";
+      if (len == 23 && op(0) == OP_HASH160 && op(1) == 20 && op(22) == OP_EQUAL)
+        return "scripthash";
+      if (isPubKeyPush(0) && len == op(0) + 2 && op(len - 1) == OP_CHECKSIG)
+        return "pubkey";
+      if (len > 0 && op(0) == OP_RETURN)
+        return "nulldata";
+      if (multisig() > 0)
+        return "multisig";
+      if (len > 0 && op(len - 1) == OP_CHECKCRYPTOCONDITION)
+        return "cryptocondition";
+      return "nonstandard";
+    }
+
+    // the number of signatures required, or 0 if the script is not m-of-n
+    int multisig() {
+      if (len < 3 || op(len - 1) != OP_CHECKMULTISIG)
+        return 0;
+      int m = op(0), n = op(len - 2);
+      if (m < OP_1 || m > OP_16 || n < OP_1 || n > OP_16 || m > n)
+        return 0;
+      int i = 1;
+      for (int k = 0; k < n - OP_1 + 1; k++) {
+        if (!isPubKeyPush(i))
+          return 0;
+        i += 1 + op(i);
+      }
+      return i == len - 2 ? m - OP_1 + 1 : 0;
+    }
+
+    @Override
+    public int reqSigs() {
+      switch (type()) {
+        case "pubkeyhash":
+        case "scripthash":
+        case "pubkey":
+          return 1;
+        case "multisig":
+          return multisig();
+        default:
+          return 0;
+      }
+    }
+
+    private String address(int version, byte[] hash) {
+      byte[] a = new byte[21];
+      a[0] = (byte) version;
+      System.arraycopy(hash, 0, a, 1, 20);
+      return KomodoUtil.encodeBase58Check(a);
+    }
+
+    /**
+     * @return the addresses the script pays to, or null if it is not a
+     * standard form with addresses
+     */
+    @Override
+    public List<String> addresses() {
+      switch (type()) {
+        case "pubkeyhash":
+          return Collections.singletonList(address(pubKeyAddress, bytes(o + 3, 20)));
+        case "scripthash":
+          return Collections.singletonList(address(scriptAddress, bytes(o + 2, 20)));
+        case "pubkey":
+          return Collections.singletonList(address(pubKeyAddress, KomodoUtil.hash160(bytes(o + 1, op(0)), 0, op(0))));
+        case "multisig":
+          List<String> l = new ArrayList<>();
+          for (int i = 1; i < len - 2; i += 1 + op(i))
+            l.add(address(pubKeyAddress, KomodoUtil.hash160(bytes(o + i + 1, op(i)), 0, op(i))));
+          return l;
+        default:
+          return null;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return asm();
+    }
+  }
+
+  @Override
+  public String blockHash() {
+    return null;
+  }
+
+  @Override
+  public int confirmations() {
+    return 0;
+  }
+
+  @Override
+  public Date time() {
+    return null;
+  }
+
+  @Override
+  public Date blocktime() {
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return txId();
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    byte[] a = new byte[b.limit()];
+    b.duplicate().get(a);
+    out.writeInt(a.length);
+    out.write(a);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    byte[] a = new byte[in.readInt()];
+    in.readFully(a);
+    parse(ByteBuffer.wrap(a));
+  }
+
+}
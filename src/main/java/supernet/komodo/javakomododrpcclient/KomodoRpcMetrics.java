@@ -0,0 +1,513 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms, byte counts, error counts and in-flight gauges of RPC
+ * calls, per method.
+ *
+ * Latencies go to log-linear histograms like HdrHistogram's: 32 buckets for
+ * each power of two, so percentiles are off by at most about 3%. Recording
+ * takes a few atomic updates and allocates nothing once a method has been
+ * seen. Values are read with {@link #snapshot(String)}, or through JMX once
+ * {@link #register(String)} is called:
+ * <pre>
+ * KomodoRpcMetrics.Snapshot s = komodo.getMetrics().snapshot("getblock");
+ * System.out.println(s.count + " calls, p99 " + s.percentile(99) / 1e6 + " ms");
+ * </pre>
+ */
+public class KomodoRpcMetrics {
+
+  private static final Logger logger = Logger.getLogger(KomodoRpcMetrics.class.getCanonicalName());
+
+  private static final int SUB_BITS = 5;
+  private static final int SUB = 1 << SUB_BITS;
+  // latencies are recorded up to about 68 seconds
+  private static final long MAX_VALUE = (1L << 36) - 1;
+  private static final int BUCKETS = index(MAX_VALUE) + 1;
+  // HTTP status codes; the last slot counts the errors without one
+  private static final int CODES = 600;
+
+  static int index(long value) {
+    if (value < SUB)
+      return (int) value;
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    return (shift + 1) * SUB + (int) ((value >>> shift) - SUB);
+  }
+
+  /**
+   * @return the highest value of the bucket
+   */
+  static long value(int index) {
+    if (index < SUB)
+      return index;
+    int shift = index / SUB - 1;
+    return ((SUB + (long) (index % SUB)) << shift) + (1L << shift) - 1;
+  }
+
+  /**
+   * JMX view of a method
+   */
+  public static interface MethodMXBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    int getInFlight();
+
+    long getRequestBytes();
+
+    long getResponseBytes();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    /**
+     * @return error counts by HTTP status code, -1 for errors without one,
+     * like komodod's errors in 200 responses
+     */
+    Map<Integer, Long> getErrorsByCode();
+
+    void reset();
+  }
+
+  public final class Method implements MethodMXBean {
+
+    public final String name;
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray codes = new AtomicLongArray(CODES + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private Method(String name) {
+      this.name = name;
+    }
+
+    /**
+     * @return the start time to pass to {@link #succeeded(long, long)} or
+     * {@link #failed(long, long, int)}
+     */
+    public long start(long requestBytes) {
+      inFlight.incrementAndGet();
+      this.requestBytes.addAndGet(requestBytes);
+      return System.nanoTime();
+    }
+
+    public void succeeded(long start, long responseBytes) {
+      record(System.nanoTime() - start, responseBytes);
+    }
+
+    /**
+     * @param responseCode the HTTP status code, or -1 if there is none
+     */
+    public void failed(long start, long responseBytes, int responseCode) {
+      record(System.nanoTime() - start, responseBytes);
+      errors.incrementAndGet();
+      codes.incrementAndGet(responseCode >= 0 && responseCode < CODES ? responseCode : CODES);
+    }
+
+    private void record(long nanos, long responseBytes) {
+      inFlight.decrementAndGet();
+      this.responseBytes.addAndGet(responseBytes);
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      histogram.incrementAndGet(index(Math.min(Math.max(nanos, 0), MAX_VALUE)));
+      for (long max = maxNanos.get(); nanos > max && !maxNanos.compareAndSet(max, nanos);)
+        max = maxNanos.get();
+    }
+
+    public Snapshot snapshot() {
+      return new Snapshot(this);
+    }
+
+    @Override
+    public void reset() {
+      for (int i = 0; i < BUCKETS; i++)
+        histogram.set(i, 0);
+      for (int i = 0; i <= CODES; i++)
+        codes.set(i, 0);
+      count.set(0);
+      errors.set(0);
+      totalNanos.set(0);
+      maxNanos.set(0);
+      requestBytes.set(0);
+      responseBytes.set(0);
+    }
+
+    @Override
+    public long getCount() {
+      return count.get();
+    }
+
+    @Override
+    public long getErrorCount() {
+      return errors.get();
+    }
+
+    @Override
+    public int getInFlight() {
+      return inFlight.get();
+    }
+
+    @Override
+    public long getRequestBytes() {
+      return requestBytes.get();
+    }
+
+    @Override
+    public long getResponseBytes() {
+      return responseBytes.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+      return snapshot().mean() / 1e6;
+    }
+
+    @Override
+    public double getP50Millis() {
+      return snapshot().percentile(50) / 1e6;
+    }
+
+    @Override
+    public double getP90Millis() {
+      return snapshot().percentile(90) / 1e6;
+    }
+
+    @Override
+    public double getP99Millis() {
+      return snapshot().percentile(99) / 1e6;
+    }
+
+    @Override
+    public double getP999Millis() {
+      return snapshot().percentile(99.9) / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis() {
+      return maxNanos.get() / 1e6;
+    }
+
+    @Override
+    public Map<Integer, Long> getErrorsByCode() {
+      return snapshot().errorsByCode;
+    }
+  }
+
+  /**
+   * Values of a method at one point in time; the counters are read one by
+   * one, so calls completing meanwhile may show in some but not others
+   */
+  public static class Snapshot {
+
+    public final String method;
+    public final long count;
+    public final long errors;
+    public final int inFlight;
+    public final long requestBytes;
+    public final long responseBytes;
+    public final long totalNanos;
+    public final long maxNanos;
+    public final Map<Integer, Long> errorsByCode;
+    private final long[] histogram;
+    private final long recorded;
+
+    private Snapshot(Method m) {
+      method = m.name;
+      count = m.count.get();
+      errors = m.errors.get();
+      inFlight = m.inFlight.get();
+      requestBytes = m.requestBytes.get();
+      responseBytes = m.responseBytes.get();
+      totalNanos = m.totalNanos.get();
+      maxNanos = m.maxNanos.get();
+      histogram = new long[BUCKETS];
+      long n = 0;
+      for (int i = 0; i < BUCKETS; i++)
+        n += histogram[i] = m.histogram.get(i);
+      recorded = n;
+      Map<Integer, Long> c = new TreeMap<>();
+      for (int i = 0; i <= CODES; i++) {
+        long v = m.codes.get(i);
+        if (v != 0)
+          c.put(i == CODES ? -1 : i, v);
+      }
+      errorsByCode = Collections.unmodifiableMap(c);
+    }
+
+    /**
+     * @return the mean latency in nanoseconds
+     */
+    public double mean() {
+      return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    /**
+     * @param percent from 0 to 100
+     * @return the latency in nanoseconds which the given percentage of calls
+     * did not exceed
+     */
+    public long percentile(double percent) {
+      if (recorded == 0)
+        return 0;
+      long rank = Math.max(1, (long) Math.ceil(percent / 100 * recorded));
+      long n = 0;
+      for (int i = 0; i < BUCKETS; i++)
+        if ((n += histogram[i]) >= rank)
+          return Math.min(value(i), maxNanos);
+      return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+      return method + ": " + count + " calls, " + errors + " errors " + errorsByCode + ", " + inFlight + " in flight, mean "
+          + String.format("%.3f", mean() / 1e6) + " ms, p50 " + percentile(50) / 1e6 + " ms, p99 " + percentile(99) / 1e6
+          + " ms, max " + maxNanos / 1e6 + " ms, " + requestBytes + " bytes sent, " + responseBytes + " received";
+    }
+  }
+
+  private final ConcurrentHashMap<String, Method> methods = new ConcurrentHashMap<>();
+  private volatile String jmxName;
+
+  /**
+   * @return the metrics of the method, created on its first use
+   */
+  public Method method(String name) {
+    Method m = methods.get(name);
+    if (m != null)
+      return m;
+    Method created = new Method(name);
+    m = methods.putIfAbsent(name, created);
+    if (m != null)
+      return m;
+    String jmx = jmxName;
+    if (jmx != null)
+      register(jmx, created);
+    return created;
+  }
+
+  public Snapshot snapshot(String method) {
+    Method m = methods.get(method);
+    return m == null ? null : m.snapshot();
+  }
+
+  /**
+   * @return snapshots of all methods seen, by method name
+   */
+  public Map<String, Snapshot> snapshots() {
+    Map<String, Snapshot> s = new TreeMap<>();
+    for (Method m : methods.values())
+      s.put(m.name, m.snapshot());
+    return s;
+  }
+
+  public void reset() {
+    for (Method m : methods.values())
+      m.reset();
+  }
+
+  private static ObjectName objectName(String name, String method) throws JMException {
+    return new ObjectName(KomodoRpcMetrics.class.getPackage().getName() + ":type=KomodoRpcMetrics,name=" + ObjectName.quote(name)
+        + ",method=" + ObjectName.quote(method));
+  }
+
+  private static void register(String name, Method m) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName o = objectName(name, m.name);
+      if (!server.isRegistered(o))
+        server.registerMBean(m, o);
+    } catch (JMException ex) {
+      logger.log(Level.WARNING, null, ex);
+    }
+  }
+
+  /**
+   * Exposes every method, those seen later included, as an MXBean of the
+   * platform MBean server, named
+   * <code>supernet.komodo.javakomododrpcclient:type=KomodoRpcMetrics,name="name",method="method"</code>
+   *
+   * @param name distinguishes the clients of a process
+   */
+  public synchronized void register(String name) {
+    unregister();
+    jmxName = name;
+    for (Method m : methods.values())
+      register(name, m);
+  }
+
+  public synchronized void unregister() {
+    String name = jmxName;
+    if (name == null)
+      return;
+    jmxName = null;
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (Method m : methods.values())
+      try {
+        ObjectName o = objectName(name, m.name);
+        if (server.isRegistered(o))
+          server.unregisterMBean(o);
+      } catch (JMException ex) {
+        logger.log(Level.WARNING, null, ex);
+      }
+  }
+
+  /**
+   * Counts the bytes of a response
+   */
+  static class CountingInputStream extends FilterInputStream {
+
+    long count = 0;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    void reset(InputStream in) {
+      this.in = in;
+      count = 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0)
+        count++;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0)
+        count += n;
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long s = super.skip(n);
+      count += s;
+      return s;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+
+  /**
+   * Passes the response to a handler, counting its bytes
+   */
+  static class CountingHandler<T> implements KomodoRpcTransport.ResponseHandler<T> {
+
+    KomodoRpcTransport.ResponseHandler<T> handler;
+    long bytes = 0;
+    private final CountingInputStream counter = new CountingInputStream(null);
+
+    CountingHandler(KomodoRpcTransport.ResponseHandler<T> handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public T handle(int responseCode, String responseMessage, InputStream in) throws IOException {
+      if (in == null)
+        return handler.handle(responseCode, responseMessage, null);
+      counter.reset(in);
+      try {
+        return handler.handle(responseCode, responseMessage, counter);
+      } finally {
+        bytes = counter.count;
+        counter.reset(null);
+      }
+    }
+
+    /**
+     * Lets the thread reuse the handler for its next call
+     */
+    void release() {
+      handler = null;
+    }
+  }
+
+  // blocking calls record through the handler of their thread
+  private static final ThreadLocal<CountingHandler<Object>> countingHandlers = new ThreadLocal<CountingHandler<Object>>() {
+    @Override
+    protected CountingHandler<Object> initialValue() {
+      return new CountingHandler<>(null);
+    }
+  };
+
+  /**
+   * @return the counting handler of the calling thread, or a new one if an
+   * enclosing call of the thread uses it; to be released once the call is
+   * recorded
+   */
+  @SuppressWarnings("unchecked")
+  static <T> CountingHandler<T> counting(KomodoRpcTransport.ResponseHandler<T> handler) {
+    CountingHandler<T> c = (CountingHandler<T>) (CountingHandler) countingHandlers.get();
+    if (c.handler != null)
+      return new CountingHandler<>(handler);
+    c.handler = handler;
+    c.bytes = 0;
+    return c;
+  }
+
+  /**
+   * @return the status code of a failure, or -1
+   */
+  static int responseCode(Throwable failure) {
+    return failure instanceof KomodoRPC2Exception ? ((KomodoRPC2Exception) failure).getResponseCode() : -1;
+  }
+
+}
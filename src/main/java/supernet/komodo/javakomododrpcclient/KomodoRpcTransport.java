@@ -0,0 +1,84 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Carries a serialized JSON-RPC request to komodod and hands the HTTP
+ * response over to a {@link ResponseHandler}.
+ *
+ * The response stream is only valid inside the handler; the transport is free
+ * to reuse the underlying connection as soon as the handler returns.
+ */
+public interface KomodoRpcTransport extends Closeable {
+
+  public interface ResponseHandler<T> {
+
+    /**
+     * @param responseCode the HTTP status code
+     * @param responseMessage the HTTP reason phrase
+     * @param body the response body, or the error body for non 2xx codes
+     * @return the handled response
+     * @throws IOException
+     */
+    public T handle(int responseCode, String responseMessage, InputStream body) throws IOException;
+  }
+
+  public <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException;
+
+  /**
+   * Tells whether a request can be sent again when it is unknown if komodod
+   * received it: only if all of its calls are
+   * {@link KomodoClusterClient#READ_ONLY_METHODS}, so that sends and other
+   * wallet calls never run twice
+   */
+  public static boolean isRetryable(byte[] request) {
+    byte[] key = "\"method\":\"".getBytes(StandardCharsets.ISO_8859_1);
+    boolean found = false;
+    outer:
+    for (int i = 0; i + key.length <= request.length; i++) {
+      for (int j = 0; j < key.length; j++)
+        if (request[i + j] != key[j])
+          continue outer;
+      int start = i + key.length;
+      int end = start;
+      while (end < request.length && request[end] != '"')
+        end++;
+      if (end == request.length)
+        return false;
+      String method = new String(request, start, end - start, StandardCharsets.ISO_8859_1);
+      if (!KomodoClusterClient.READ_ONLY_METHODS.contains(method))
+        return false;
+      found = true;
+      i = end;
+    }
+    return found;
+  }
+
+  /**
+   * Releases any connection kept open by this transport
+   */
+  @Override
+  public void close();
+
+}
@@ -0,0 +1,361 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of transaction ids, each with an int value, stored as 32 raw bytes in
+ * open addressing tables of primitive arrays.
+ *
+ * Entries live in two generations. New entries go to the current one;
+ * {@link #rotate()} drops the previous generation and makes the current one
+ * previous. Generations rotate by themselves when the current one is older
+ * than the window or holds the maximum number of entries, so an entry is
+ * kept for at least the window unless more than the maximum entries are
+ * added in the meantime, and memory never exceeds two tables of the maximum
+ * size. Updating an entry of the previous generation moves it to the
+ * current one.
+ *
+ * Removed entries leave a tombstone in their slot until the table grows.
+ *
+ * Lookups take no lock; updates are serialized.
+ *
+ * Ids which are not 64 hex digits are reduced to 32 bytes with SHA-256.
+ */
+public class KomodoTxIdTable {
+
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
+  private static final int MIN_SLOTS = 16;
+
+  private static final long TOMBSTONE = 2;
+
+  private static class Table {
+
+    final int mask;
+    final long[] keys;
+    // 0 for a free slot, TOMBSTONE for a removed entry, otherwise the value
+    // shifted left by one, plus one; written after the key so that readers
+    // see complete keys
+    final AtomicLongArray states;
+    final long created;
+    int size = 0;
+    // slots of entries and tombstones
+    int used = 0;
+
+    Table(int slots, long created) {
+      mask = slots - 1;
+      keys = new long[slots * 4];
+      states = new AtomicLongArray(slots);
+      this.created = created;
+    }
+
+    int find(long k0, long k1, long k2, long k3) {
+      for (int i = (int) (k0 ^ (k0 >>> 32)) & mask;; i = (i + 1) & mask) {
+        long s = states.get(i);
+        if (s == 0)
+          return ~i;
+        int o = i * 4;
+        if (s != TOMBSTONE && keys[o] == k0 && keys[o + 1] == k1 && keys[o + 2] == k2 && keys[o + 3] == k3)
+          return i;
+      }
+    }
+
+    void insert(int slot, long k0, long k1, long k2, long k3, int value) {
+      int o = slot * 4;
+      keys[o] = k0;
+      keys[o + 1] = k1;
+      keys[o + 2] = k2;
+      keys[o + 3] = k3;
+      states.set(slot, ((long) value << 1) | 1);
+      size++;
+      used++;
+    }
+
+    /**
+     * @return the value in the slot, or -1 if it was removed meanwhile
+     */
+    int value(int slot) {
+      long s = states.get(slot);
+      return (s & 1) != 0 ? (int) (s >> 1) : -1;
+    }
+  }
+
+  public final int maxEntries;
+  public final long window;
+
+  private volatile Table current;
+  private volatile Table previous;
+
+  /**
+   * @param maxEntries the number of entries after which a generation rotates
+   * @param window milliseconds after which a generation rotates, 0 to rotate
+   * only by size or explicitly
+   */
+  public KomodoTxIdTable(int maxEntries, long window) {
+    if (maxEntries < 1)
+      throw new IllegalArgumentException("maxEntries: " + maxEntries);
+    this.maxEntries = maxEntries;
+    this.window = window;
+    long now = System.currentTimeMillis();
+    current = new Table(MIN_SLOTS, now);
+    previous = new Table(MIN_SLOTS, now);
+  }
+
+  private static long parse(CharSequence s, int from) {
+    long v = 0;
+    for (int i = from; i < from + 16; i++) {
+      int d = Character.digit(s.charAt(i), 16);
+      if (d < 0)
+        return -1;
+      v = (v << 4) | d;
+    }
+    return v;
+  }
+
+  private static boolean isHex(CharSequence s) {
+    if (s.length() != 64)
+      return false;
+    for (int i = 0; i < 64; i++)
+      if (Character.digit(s.charAt(i), 16) < 0)
+        return false;
+    return true;
+  }
+
+  private static long[] key(CharSequence txId) {
+    if (isHex(txId))
+      return new long[]{parse(txId, 0), parse(txId, 16), parse(txId, 32), parse(txId, 48)};
+    try {
+      byte[] d = MessageDigest.getInstance("SHA-256").digest(txId.toString().getBytes(CHARSET));
+      long[] k = new long[4];
+      for (int i = 0; i < 32; i++)
+        k[i >> 3] = (k[i >> 3] << 8) | (d[i] & 0xff);
+      return k;
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * @return the value of the txid, or -1 if it is not in the table
+   */
+  public int get(CharSequence txId) {
+    long[] k = key(txId);
+    Table c = current;
+    int i = c.find(k[0], k[1], k[2], k[3]);
+    if (i >= 0)
+      return c.value(i);
+    Table p = previous;
+    i = p.find(k[0], k[1], k[2], k[3]);
+    return i >= 0 ? p.value(i) : -1;
+  }
+
+  public boolean contains(CharSequence txId) {
+    return get(txId) >= 0;
+  }
+
+  /**
+   * Sets the value of a txid
+   *
+   * @param value a value from 0 to Integer.MAX_VALUE
+   * @return the previous value, or -1 if the txid was not in the table
+   */
+  public int put(CharSequence txId, int value) {
+    if (value < 0)
+      throw new IllegalArgumentException("value: " + value);
+    long[] k = key(txId);
+    Table t = current;
+    int s = t.find(k[0], k[1], k[2], k[3]);
+    if (s >= 0 && t.states.get(s) == (((long) value << 1) | 1))
+      return value;
+    return put(k, value);
+  }
+
+  private synchronized int put(long[] k, int value) {
+    expire();
+    Table c = current;
+    int i = c.find(k[0], k[1], k[2], k[3]);
+    if (i >= 0) {
+      long old = c.states.get(i);
+      c.states.set(i, ((long) value << 1) | 1);
+      return (int) (old >> 1);
+    }
+    int old = -1;
+    int j = previous.find(k[0], k[1], k[2], k[3]);
+    if (j >= 0)
+      old = (int) (previous.states.get(j) >> 1);
+    if (c.size >= maxEntries) {
+      rotate();
+      c = current;
+    } else if ((c.used + 1) * 2 > c.mask + 1) {
+      c = grow(c);
+      current = c;
+    }
+    c.insert(~c.find(k[0], k[1], k[2], k[3]), k[0], k[1], k[2], k[3], value);
+    return old;
+  }
+
+  /**
+   * Adds a txid with the value 0, or keeps its value if it is already in the
+   * table
+   *
+   * @return true if the txid was not in the table
+   */
+  public boolean add(CharSequence txId) {
+    long[] k = key(txId);
+    if (current.find(k[0], k[1], k[2], k[3]) >= 0)
+      return false;
+    synchronized (this) {
+      int v = get(txId);
+      put(k, Math.max(v, 0));
+      return v < 0;
+    }
+  }
+
+  /**
+   * Removes a txid from both generations
+   *
+   * @return true if the txid was in the table
+   */
+  public synchronized boolean remove(CharSequence txId) {
+    long[] k = key(txId);
+    boolean removed = false;
+    for (Table t : new Table[]{current, previous}) {
+      int i = t.find(k[0], k[1], k[2], k[3]);
+      if (i >= 0) {
+        t.states.set(i, TOMBSTONE);
+        t.size--;
+        removed = true;
+      }
+    }
+    return removed;
+  }
+
+  private Table grow(Table t) {
+    // tombstones are dropped, so a table mostly of them keeps its size
+    Table g = new Table((t.mask + 1) * ((t.size + 1) * 4 > t.mask + 1 ? 2 : 1), t.created);
+    for (int i = 0; i <= t.mask; i++) {
+      long s = t.states.get(i);
+      if ((s & 1) != 0) {
+        int o = i * 4;
+        int slot = ~g.find(t.keys[o], t.keys[o + 1], t.keys[o + 2], t.keys[o + 3]);
+        g.insert(slot, t.keys[o], t.keys[o + 1], t.keys[o + 2], t.keys[o + 3], (int) (s >> 1));
+      }
+    }
+    return g;
+  }
+
+  private void expire() {
+    if (window > 0 && System.currentTimeMillis() - current.created >= window) {
+      rotate();
+      if (System.currentTimeMillis() - previous.created >= window)
+        rotate();
+    }
+  }
+
+  /**
+   * Starts a new generation, dropping the entries of the previous one
+   */
+  public synchronized void rotate() {
+    previous = current;
+    current = new Table(MIN_SLOTS, System.currentTimeMillis());
+  }
+
+  public synchronized void clear() {
+    rotate();
+    rotate();
+  }
+
+  /**
+   * @return the number of entries of both generations
+   */
+  public synchronized int size() {
+    return current.size + previous.size;
+  }
+
+  /**
+   * @return a view of the txids of the table as a set, which cannot be
+   * iterated as only the bytes of the ids are kept; it equals only itself
+   */
+  public Set<String> asSet() {
+    return new AbstractSet<String>() {
+      @Override
+      public boolean add(String txId) {
+        return KomodoTxIdTable.this.add(txId);
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof CharSequence && KomodoTxIdTable.this.contains((CharSequence) o);
+      }
+
+      @Override
+      public boolean remove(Object o) {
+        return o instanceof CharSequence && KomodoTxIdTable.this.remove((CharSequence) o);
+      }
+
+      @Override
+      public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c)
+          changed |= remove(o);
+        return changed;
+      }
+
+      @Override
+      public int size() {
+        return KomodoTxIdTable.this.size();
+      }
+
+      @Override
+      public void clear() {
+        KomodoTxIdTable.this.clear();
+      }
+
+      @Override
+      public Iterator<String> iterator() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean equals(Object o) {
+        return o == this;
+      }
+
+      @Override
+      public int hashCode() {
+        return System.identityHashCode(this);
+      }
+
+      @Override
+      public String toString() {
+        return "KomodoTxIdTable{size=" + size() + ", maxEntries=" + maxEntries + ", window=" + window + '}';
+      }
+    };
+  }
+
+}
@@ -18,14 +18,310 @@
 
 package supernet.komodo.javakomododrpcclient;
 
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import supernet.komodo.krotjson.JSONStreamParser;
+
 /**
  *
  * @author Mikhail Yevchenko m.ṥῥẚɱ.ѓѐḿởύḙ@azazar.com
  */
 public class KomodoUtil {
 
+    /**
+     * @return the amount rounded to whole satoshis; amounts kept as satoshis
+     * need no rounding
+     */
     public static double normalizeAmount(double amount) {
-        return (long)(0.5d + (amount / 0.00000001)) * 0.00000001;
+        return fromSatoshis(toSatoshis(amount));
+    }
+
+    public static final long COIN = 100000000L;
+
+    /**
+     * @return the amount rounded to whole satoshis
+     */
+    public static long toSatoshis(double amount) {
+        return Math.round(amount * COIN);
+    }
+
+    public static double fromSatoshis(long satoshis) {
+        return (double) satoshis / COIN;
+    }
+
+    /**
+     * Parses a decimal amount, like "0.00012", exactly
+     */
+    public static long parseSatoshis(CharSequence amount) {
+        return JSONStreamParser.parseFixed(amount, 8);
+    }
+
+    /**
+     * @return the exact decimal amount, which JSON.stringify writes without
+     * an exponent
+     */
+    public static BigDecimal toAmount(long satoshis) {
+        return BigDecimal.valueOf(satoshis, 8);
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Decodes hex digits into a byte array
+     *
+     * @param hex an even number of hex digits
+     * @param dest where to write the hex.length() / 2 bytes
+     * @param offset the position of the first byte in dest
+     */
+    public static void decodeHex(CharSequence hex, byte[] dest, int offset) {
+        int l = hex.length();
+        if ((l & 1) != 0)
+            throw new IllegalArgumentException("Odd number of hex digits: " + hex);
+        for (int i = 0; i < l; i += 2)
+            dest[offset++] = (byte) ((hexDigit(hex, i) << 4) | hexDigit(hex, i + 1));
+    }
+
+    public static byte[] decodeHex(CharSequence hex) {
+        byte[] b = new byte[hex.length() / 2];
+        decodeHex(hex, b, 0);
+        return b;
+    }
+
+    private static int hexDigit(CharSequence hex, int i) {
+        int d = Character.digit(hex.charAt(i), 16);
+        if (d < 0)
+            throw new IllegalArgumentException("Invalid hex digit at " + i + ": " + hex);
+        return d;
+    }
+
+    /**
+     * @return the lowercase hex digits of len bytes of b from offset
+     */
+    public static String encodeHex(byte[] b, int offset, int len) {
+        char[] c = new char[len * 2];
+        for (int i = 0; i < len; i++) {
+            int v = b[offset + i] & 0xff;
+            c[i * 2] = HEX[v >>> 4];
+            c[i * 2 + 1] = HEX[v & 15];
+        }
+        return new String(c);
+    }
+
+    public static String encodeHex(byte[] b) {
+        return encodeHex(b, 0, b.length);
+    }
+
+    /**
+     * @return SHA-256 applied twice to len bytes of b from offset
+     */
+    public static byte[] sha256d(byte[] b, int offset, int len) {
+        try {
+            MessageDigest d = MessageDigest.getInstance("SHA-256");
+            d.update(b, offset, len);
+            return d.digest(d.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final int[] RL = {
+        0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+        7, 4, 13, 1, 10, 6, 15, 3, 12, 0, 9, 5, 2, 14, 11, 8,
+        3, 10, 14, 4, 9, 15, 8, 1, 2, 7, 0, 6, 13, 11, 5, 12,
+        1, 9, 11, 10, 0, 8, 12, 4, 13, 3, 7, 15, 14, 5, 6, 2,
+        4, 0, 5, 9, 7, 12, 2, 10, 14, 1, 3, 8, 11, 6, 15, 13};
+    private static final int[] RR = {
+        5, 14, 7, 0, 9, 2, 11, 4, 13, 6, 15, 8, 1, 10, 3, 12,
+        6, 11, 3, 7, 0, 13, 5, 10, 14, 15, 8, 12, 4, 9, 1, 2,
+        15, 5, 1, 3, 7, 14, 6, 9, 11, 8, 12, 2, 10, 0, 4, 13,
+        8, 6, 4, 1, 3, 11, 15, 0, 5, 12, 2, 13, 9, 7, 10, 14,
+        12, 15, 10, 4, 1, 5, 8, 7, 6, 2, 13, 14, 0, 3, 9, 11};
+    private static final int[] SL = {
+        11, 14, 15, 12, 5, 8, 7, 9, 11, 13, 14, 15, 6, 7, 9, 8,
+        7, 6, 8, 13, 11, 9, 7, 15, 7, 12, 15, 9, 11, 7, 13, 12,
+        11, 13, 6, 7, 14, 9, 13, 15, 14, 8, 13, 6, 5, 12, 7, 5,
+        11, 12, 14, 15, 14, 15, 9, 8, 9, 14, 5, 6, 8, 6, 5, 12,
+        9, 15, 5, 11, 6, 8, 13, 12, 5, 12, 13, 14, 11, 8, 5, 6};
+    private static final int[] SR = {
+        8, 9, 9, 11, 13, 15, 15, 5, 7, 7, 8, 11, 14, 14, 12, 6,
+        9, 13, 15, 7, 12, 8, 9, 11, 7, 7, 12, 7, 6, 15, 13, 11,
+        9, 7, 15, 11, 8, 6, 6, 14, 12, 13, 5, 14, 13, 13, 7, 5,
+        15, 5, 8, 11, 14, 14, 6, 14, 6, 9, 12, 9, 12, 5, 15, 8,
+        8, 5, 12, 9, 12, 5, 14, 6, 8, 13, 6, 5, 15, 13, 11, 11};
+    private static final int[] KL = {0, 0x5a827999, 0x6ed9eba1, 0x8f1bbcdc, 0xa953fd4e};
+    private static final int[] KR = {0x50a28be6, 0x5c4dd124, 0x6d703ef3, 0x7a6d76e9, 0};
+
+    private static int ripemdF(int j, int x, int y, int z) {
+        switch (j >> 4) {
+            case 0:
+                return x ^ y ^ z;
+            case 1:
+                return (x & y) | (~x & z);
+            case 2:
+                return (x | ~y) ^ z;
+            case 3:
+                return (x & z) | (y & ~z);
+            default:
+                return x ^ (y | ~z);
+        }
+    }
+
+    /**
+     * RIPEMD-160, which the JDK does not provide
+     */
+    public static byte[] ripemd160(byte[] b, int offset, int len) {
+        int blocks = (len + 8) / 64 + 1;
+        byte[] m = new byte[blocks * 64];
+        System.arraycopy(b, offset, m, 0, len);
+        m[len] = (byte) 0x80;
+        long bits = (long) len * 8;
+        for (int i = 0; i < 8; i++)
+            m[m.length - 8 + i] = (byte) (bits >>> (i * 8));
+        int[] h = {0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476, 0xc3d2e1f0};
+        int[] x = new int[16];
+        for (int block = 0; block < blocks; block++) {
+            for (int i = 0; i < 16; i++) {
+                int o = block * 64 + i * 4;
+                x[i] = (m[o] & 0xff) | (m[o + 1] & 0xff) << 8 | (m[o + 2] & 0xff) << 16 | (m[o + 3] & 0xff) << 24;
+            }
+            int al = h[0], bl = h[1], cl = h[2], dl = h[3], el = h[4];
+            int ar = al, br = bl, cr = cl, dr = dl, er = el;
+            for (int j = 0; j < 80; j++) {
+                int t = Integer.rotateLeft(al + ripemdF(j, bl, cl, dl) + x[RL[j]] + KL[j >> 4], SL[j]) + el;
+                al = el;
+                el = dl;
+                dl = Integer.rotateLeft(cl, 10);
+                cl = bl;
+                bl = t;
+                t = Integer.rotateLeft(ar + ripemdF(79 - j, br, cr, dr) + x[RR[j]] + KR[j >> 4], SR[j]) + er;
+                ar = er;
+                er = dr;
+                dr = Integer.rotateLeft(cr, 10);
+                cr = br;
+                br = t;
+            }
+            int t = h[1] + cl + dr;
+            h[1] = h[2] + dl + er;
+            h[2] = h[3] + el + ar;
+            h[3] = h[4] + al + br;
+            h[4] = h[0] + bl + cr;
+            h[0] = t;
+        }
+        byte[] r = new byte[20];
+        for (int i = 0; i < 20; i++)
+            r[i] = (byte) (h[i >> 2] >>> ((i & 3) * 8));
+        return r;
+    }
+
+    /**
+     * @return RIPEMD-160 of SHA-256, the hash of a public key in an address
+     */
+    public static byte[] hash160(byte[] b, int offset, int len) {
+        try {
+            MessageDigest d = MessageDigest.getInstance("SHA-256");
+            d.update(b, offset, len);
+            byte[] h = d.digest();
+            return ripemd160(h, 0, h.length);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final char[] BASE58 = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+    private static final int[] BASE58_DIGITS = new int[128];
+
+    static {
+        Arrays.fill(BASE58_DIGITS, -1);
+        for (int i = 0; i < BASE58.length; i++)
+            BASE58_DIGITS[BASE58[i]] = i;
+    }
+
+    /**
+     * @return the value of a base58 digit, or -1 if c is not one
+     */
+    static int base58Digit(char c) {
+        return c < 128 ? BASE58_DIGITS[c] : -1;
+    }
+
+    /**
+     * @throws IllegalArgumentException if s has a character which is not a
+     * base58 digit
+     */
+    public static byte[] decodeBase58(CharSequence s) {
+        int zeros = 0;
+        while (zeros < s.length() && s.charAt(zeros) == '1')
+            zeros++;
+        // log(58) / log(256), rounded up
+        byte[] b = new byte[(s.length() - zeros) * 733 / 1000 + 1];
+        int len = 0;
+        for (int i = zeros; i < s.length(); i++) {
+            char c = s.charAt(i);
+            int carry = base58Digit(c);
+            if (carry < 0)
+                throw new IllegalArgumentException("Invalid base58 digit at " + i + ": " + s);
+            int j = 0;
+            for (; j < len || carry != 0; j++) {
+                carry += 58 * (b[b.length - 1 - j] & 0xff);
+                b[b.length - 1 - j] = (byte) carry;
+                carry >>>= 8;
+            }
+            len = j;
+        }
+        byte[] r = new byte[zeros + len];
+        System.arraycopy(b, b.length - len, r, zeros, len);
+        return r;
+    }
+
+    public static String encodeBase58(byte[] b) {
+        int zeros = 0;
+        while (zeros < b.length && b[zeros] == 0)
+            zeros++;
+        // log(256) / log(58), rounded up
+        char[] d = new char[(b.length - zeros) * 138 / 100 + 1];
+        int[] digits = new int[d.length];
+        int len = 0;
+        for (int i = zeros; i < b.length; i++) {
+            int carry = b[i] & 0xff;
+            int j = 0;
+            for (; j < len || carry != 0; j++) {
+                carry += digits[j] << 8;
+                digits[j] = carry % 58;
+                carry /= 58;
+            }
+            len = j;
+        }
+        StringBuilder s = new StringBuilder(zeros + len);
+        for (int i = 0; i < zeros; i++)
+            s.append('1');
+        for (int i = len - 1; i >= 0; i--)
+            s.append(BASE58[digits[i]]);
+        return s.toString();
+    }
+
+    /**
+     * Decodes base58 with a four byte checksum, like an address
+     *
+     * @return the payload, without the checksum
+     * @throws IllegalArgumentException if s is not base58 or the checksum does
+     * not match
+     */
+    public static byte[] decodeBase58Check(CharSequence s) {
+        byte[] b = decodeBase58(s);
+        if (b.length < 4)
+            throw new IllegalArgumentException("Too short for base58check: " + s);
+        byte[] h = sha256d(b, 0, b.length - 4);
+        for (int i = 0; i < 4; i++)
+            if (h[i] != b[b.length - 4 + i])
+                throw new IllegalArgumentException("Invalid base58check checksum: " + s);
+        return Arrays.copyOf(b, b.length - 4);
+    }
+
+    public static String encodeBase58Check(byte[] payload) {
+        byte[] b = Arrays.copyOf(payload, payload.length + 4);
+        System.arraycopy(sha256d(payload, 0, payload.length), 0, b, payload.length, 4);
+        return encodeBase58(b);
     }
 
 //    public static void main(String[] args) {
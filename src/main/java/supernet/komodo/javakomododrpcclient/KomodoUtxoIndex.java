@@ -0,0 +1,474 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The wallet's unspent outputs, kept locally so that coin selection and change
+ * computation need no RPC.
+ *
+ * The index is loaded once with <code>listunspent</code> and then kept up to
+ * date by {@link #update()} from the <code>listsinceblock</code> deltas:
+ * received outputs are added, and the inputs of the wallet's sends are
+ * removed, their change outputs added. Outputs spent by a
+ * {@link KomodoRawTxBuilder} are removed as soon as it sends. Coinbase
+ * outputs maturing and conflicted sends coming back are only seen by
+ * {@link #reload()}.
+ *
+ * Outputs are held in primitive arrays, ordered by amount, largest first, and
+ * by confirmations, most first. Amounts are in satoshis.
+ */
+public class KomodoUtxoIndex {
+
+  private static final int UNCONFIRMED = Integer.MAX_VALUE;
+
+  /**
+   * Number of blocks for which a spent output is remembered, so that its
+   * receive listed again does not bring it back
+   */
+  public static final int SPENT_DEPTH = 100;
+
+  public static class Utxo extends KomododRpcClient.BasicTxInput {
+
+    public final String address;
+    public final long amount;
+    public final int confirmations;
+
+    public Utxo(String txid, int vout, String scriptPubKey, String address, long amount, int confirmations) {
+      super(txid, vout, scriptPubKey);
+      this.address = address;
+      this.amount = amount;
+      this.confirmations = confirmations;
+    }
+
+    @Override
+    public String toString() {
+      return txid + ":" + vout + " " + KomodoUtil.toAmount(amount) + " (" + confirmations + ")";
+    }
+  }
+
+  public final KomododRpcClient komodo;
+
+  private String[] txIds = new String[16];
+  private int[] vouts = new int[16];
+  private String[] scripts = new String[16];
+  private String[] addresses = new String[16];
+  private long[] amounts = new long[16];
+  private int[] heights = new int[16];
+  private int slots = 0;
+  private int[] free = new int[16];
+  private int freeCount = 0;
+  // slots in selection order
+  private int[] order = new int[16];
+  private int size = 0;
+  private long total = 0;
+
+  private final HashMap<String, Integer> index = new HashMap<>();
+  // outpoint -> tip when it was spent
+  private final HashMap<String, Integer> spent = new HashMap<>();
+  // confirmations + 1 of the sends already resolved
+  private final KomodoTxIdTable resolved = new KomodoTxIdTable(1 << 16, 0);
+
+  private final Object updateLock = new Object();
+  private int tip = -1;
+  private String lastBlock = null;
+
+  public KomodoUtxoIndex(KomododRpcClient komodo) {
+    this.komodo = komodo;
+  }
+
+  private static String key(String txId, int vout) {
+    return txId + ":" + vout;
+  }
+
+  private int height(int confirmations) {
+    return confirmations <= 0 ? UNCONFIRMED : tip - confirmations + 1;
+  }
+
+  private int confirmations(int slot) {
+    return heights[slot] == UNCONFIRMED ? 0 : tip - heights[slot] + 1;
+  }
+
+  private int compare(int a, int b) {
+    if (amounts[a] != amounts[b])
+      return amounts[a] > amounts[b] ? -1 : 1;
+    if (heights[a] != heights[b])
+      return heights[a] < heights[b] ? -1 : 1;
+    return Integer.compare(a, b);
+  }
+
+  private int position(int slot) {
+    int lo = 0, hi = size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = compare(order[mid], slot);
+      if (c < 0)
+        lo = mid + 1;
+      else if (c > 0)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return ~lo;
+  }
+
+  private void link(int slot) {
+    int p = ~position(slot);
+    if (size == order.length)
+      order = Arrays.copyOf(order, size * 2);
+    System.arraycopy(order, p, order, p + 1, size - p);
+    order[p] = slot;
+    size++;
+    total += amounts[slot];
+  }
+
+  private void unlink(int slot) {
+    int p = position(slot);
+    System.arraycopy(order, p + 1, order, p, size - p - 1);
+    size--;
+    total -= amounts[slot];
+  }
+
+  private int allocate() {
+    if (freeCount > 0)
+      return free[--freeCount];
+    if (slots == txIds.length) {
+      int n = slots * 2;
+      txIds = Arrays.copyOf(txIds, n);
+      vouts = Arrays.copyOf(vouts, n);
+      scripts = Arrays.copyOf(scripts, n);
+      addresses = Arrays.copyOf(addresses, n);
+      amounts = Arrays.copyOf(amounts, n);
+      heights = Arrays.copyOf(heights, n);
+    }
+    return slots++;
+  }
+
+  private void add(String txId, int vout, String script, String address, long amount, int height) {
+    String k = key(txId, vout);
+    if (spent.containsKey(k))
+      return;
+    Integer s = index.get(k);
+    if (s != null) {
+      if (heights[s] != height) {
+        unlink(s);
+        heights[s] = height;
+        link(s);
+      }
+      return;
+    }
+    link(store(k, txId, vout, script, address, amount, height));
+  }
+
+  private int store(String k, String txId, int vout, String script, String address, long amount, int height) {
+    int slot = allocate();
+    txIds[slot] = txId;
+    vouts[slot] = vout;
+    scripts[slot] = script;
+    addresses[slot] = address;
+    amounts[slot] = amount;
+    heights[slot] = height;
+    index.put(k, slot);
+    return slot;
+  }
+
+  /**
+   * Orders all the slots at once, rather than inserting them one by one
+   * into the order, which costs a copy of the order each
+   */
+  private void sort() {
+    Integer[] sorted = new Integer[slots];
+    for (int i = 0; i < slots; i++)
+      sorted[i] = i;
+    Arrays.sort(sorted, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return KomodoUtxoIndex.this.compare(a, b);
+      }
+    });
+    if (order.length < slots)
+      order = new int[slots];
+    total = 0;
+    for (int i = 0; i < slots; i++) {
+      order[i] = sorted[i];
+      total += amounts[sorted[i]];
+    }
+    size = slots;
+  }
+
+  private boolean remove(String key) {
+    Integer s = index.remove(key);
+    if (s == null)
+      return false;
+    unlink(s);
+    txIds[s] = null;
+    scripts[s] = null;
+    addresses[s] = null;
+    if (freeCount == free.length)
+      free = Arrays.copyOf(free, freeCount * 2);
+    free[freeCount++] = s;
+    return true;
+  }
+
+  private void clear() {
+    index.clear();
+    spent.clear();
+    resolved.clear();
+    Arrays.fill(txIds, null);
+    Arrays.fill(scripts, null);
+    Arrays.fill(addresses, null);
+    slots = 0;
+    freeCount = 0;
+    size = 0;
+    total = 0;
+  }
+
+  /**
+   * Loads the index from scratch with <code>listunspent</code>
+   */
+  public void reload() throws KomodoRpcException {
+    synchronized (updateLock) {
+      String best;
+      int count;
+      List<KomododRpcClient.Unspent> unspent;
+      int attempts = 0;
+      do {
+        best = komodo.getBestBlockHash();
+        count = komodo.getBlockCount();
+        unspent = komodo.listUnspent(0);
+        // a block found meanwhile would shift the confirmations
+      } while (komodo.getBlockCount() != count && ++attempts < 3);
+      synchronized (this) {
+        clear();
+        tip = count;
+        for (KomododRpcClient.Unspent u : unspent) {
+          String k = key(u.txid(), u.vout());
+          Integer s = index.get(k);
+          if (s != null)
+            heights[s] = height(u.confirmations());
+          else
+            store(k, u.txid(), u.vout(), u.scriptPubKey(), u.address(), u.satoshis(), height(u.confirmations()));
+        }
+        sort();
+        lastBlock = best;
+      }
+    }
+  }
+
+  /**
+   * Applies the wallet transactions since the last update, or loads the index
+   * if it was never loaded
+   */
+  public void update() throws KomodoRpcException {
+    synchronized (updateLock) {
+      if (lastBlock == null) {
+        reload();
+        return;
+      }
+      int count;
+      KomododRpcClient.TransactionsSinceBlock since;
+      int attempts = 0;
+      do {
+        count = komodo.getBlockCount();
+        since = komodo.listSinceBlock(lastBlock);
+      } while (komodo.getBlockCount() != count && ++attempts < 3);
+
+      // sends to resolve, with the outputs which went to others
+      Map<String, Set<Integer>> sent = new LinkedHashMap<>();
+      Map<String, Integer> sentConfirmations = new HashMap<>();
+      for (KomododRpcClient.Transaction t : since.transactions()) {
+        if (!"send".equals(t.category()) || t.confirmations() < 0 || resolved.get(t.txId()) == t.confirmations() + 1)
+          continue;
+        Set<Integer> others = sent.get(t.txId());
+        if (others == null) {
+          others = new HashSet<>();
+          sent.put(t.txId(), others);
+          sentConfirmations.put(t.txId(), t.confirmations());
+        }
+        others.add(t.vout());
+      }
+      List<KomododRpcClient.RawTransaction> raw = fetch(sent.keySet());
+
+      synchronized (this) {
+        tip = count;
+        for (KomododRpcClient.Transaction t : since.transactions()) {
+          if (!"receive".equals(t.category()) || t.vout() < 0)
+            continue;
+          if (t.confirmations() < 0)
+            remove(key(t.txId(), t.vout()));
+          else
+            add(t.txId(), t.vout(), null, t.address(), t.satoshis(), height(t.confirmations()));
+        }
+        for (KomododRpcClient.RawTransaction tx : raw) {
+          String txId = tx.txId();
+          int confirmations = sentConfirmations.get(txId);
+          for (KomododRpcClient.RawTransaction.In in : tx.vIn())
+            markSpent(in.txid(), in.vout());
+          // what a wallet send does not pay to others is its change
+          Set<Integer> others = sent.get(txId);
+          for (KomododRpcClient.RawTransaction.Out out : tx.vOut()) {
+            if (others.contains(out.n()))
+              continue;
+            List<String> a = out.scriptPubKey().addresses();
+            add(txId, out.n(), out.scriptPubKey().hex(), a == null || a.isEmpty() ? null : a.get(0), out.satoshis(), height(confirmations));
+          }
+          resolved.put(txId, confirmations + 1);
+        }
+        for (Iterator<Integer> i = spent.values().iterator(); i.hasNext();)
+          if (i.next() < tip - SPENT_DEPTH)
+            i.remove();
+        lastBlock = since.lastBlock();
+      }
+    }
+  }
+
+  private List<KomododRpcClient.RawTransaction> fetch(Collection<String> txIds) throws KomodoRpcException {
+    if (komodo instanceof KomodoJSONRPCClient)
+      return ((KomodoJSONRPCClient) komodo).getRawTransactions(txIds);
+    List<KomododRpcClient.RawTransaction> transactions = new ArrayList<>(txIds.size());
+    for (String txId : txIds)
+      transactions.add(komodo.getRawTransaction(txId));
+    return transactions;
+  }
+
+  /**
+   * Removes an output spent by a transaction of this process
+   */
+  public synchronized void markSpent(String txId, int vout) {
+    String k = key(txId, vout);
+    remove(k);
+    spent.put(k, tip);
+  }
+
+  /**
+   * @return the amount of an unspent output in satoshis, or -1 if it is not
+   * in the index
+   */
+  public synchronized long amount(String txId, int vout) {
+    Integer s = index.get(key(txId, vout));
+    return s == null ? -1 : amounts[s];
+  }
+
+  /**
+   * @return the sum of all the unspent outputs in satoshis
+   */
+  public synchronized long total() {
+    return total;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized int getTipHeight() {
+    return tip;
+  }
+
+  public synchronized String getLastBlock() {
+    return lastBlock;
+  }
+
+  private Utxo utxo(int slot) {
+    return new Utxo(txIds[slot], vouts[slot], scripts[slot], addresses[slot], amounts[slot], confirmations(slot));
+  }
+
+  /**
+   * @return the unspent outputs with at least minConf confirmations, largest
+   * first
+   */
+  public synchronized List<Utxo> unspent(int minConf) {
+    List<Utxo> l = new ArrayList<>();
+    for (int i = 0; i < size; i++)
+      if (confirmations(order[i]) >= minConf)
+        l.add(utxo(order[i]));
+    return l;
+  }
+
+  /**
+   * Snapshot of the outputs eligible for a transaction, with their amounts in
+   * a plain array for {@link KomodoCoinSelector}
+   */
+  public static class Candidates {
+
+    public final long[] amounts;
+    private final String[] txIds;
+    private final int[] vouts;
+    private final String[] scripts;
+    private final String[] addresses;
+    private final int[] confirmations;
+
+    Candidates(int n) {
+      amounts = new long[n];
+      txIds = new String[n];
+      vouts = new int[n];
+      scripts = new String[n];
+      addresses = new String[n];
+      confirmations = new int[n];
+    }
+
+    public int size() {
+      return amounts.length;
+    }
+
+    public Utxo get(int i) {
+      return new Utxo(txIds[i], vouts[i], scripts[i], addresses[i], amounts[i], confirmations[i]);
+    }
+  }
+
+  /**
+   * @param minConf the confirmations an output needs
+   * @param exclude outputs to leave out, like those already in a transaction
+   * @return the eligible outputs, largest first
+   */
+  public synchronized Candidates candidates(int minConf, Collection<? extends KomododRpcClient.TxInput> exclude) {
+    Set<String> x = new HashSet<>();
+    for (KomododRpcClient.TxInput i : exclude)
+      x.add(key(i.txid(), i.vout()));
+    int[] eligible = new int[size];
+    int n = 0;
+    for (int i = 0; i < size; i++) {
+      int s = order[i];
+      if (confirmations(s) >= minConf && (x.isEmpty() || !x.contains(key(txIds[s], vouts[s]))))
+        eligible[n++] = s;
+    }
+    Candidates c = new Candidates(n);
+    for (int i = 0; i < n; i++) {
+      int s = eligible[i];
+      c.amounts[i] = amounts[s];
+      c.txIds[i] = txIds[s];
+      c.vouts[i] = vouts[s];
+      c.scripts[i] = scripts[s];
+      c.addresses[i] = addresses[s];
+      c.confirmations[i] = confirmations(s);
+    }
+    return c;
+  }
+
+}
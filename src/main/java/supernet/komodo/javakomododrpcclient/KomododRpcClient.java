@@ -122,6 +122,13 @@ public interface KomododRpcClient {
     public String address();
 
     public double amount();
+
+    /**
+     * @return the exact amount in satoshis
+     */
+    public default long satoshis() {
+      return KomodoUtil.toSatoshis(amount());
+    }
   }
 
   public static class BasicTxOutput implements TxOutput {
@@ -145,6 +152,36 @@ public interface KomododRpcClient {
     }
   }
 
+  /**
+   * An output holding its amount in satoshis, which keeps sums of outputs
+   * exact
+   */
+  public static class SatoshiTxOutput implements TxOutput {
+
+    public String address;
+    public long satoshis;
+
+    public SatoshiTxOutput(String address, long satoshis) {
+      this.address = address;
+      this.satoshis = satoshis;
+    }
+
+    @Override
+    public String address() {
+      return address;
+    }
+
+    @Override
+    public double amount() {
+      return KomodoUtil.fromSatoshis(satoshis);
+    }
+
+    @Override
+    public long satoshis() {
+      return satoshis;
+    }
+  }
+
   /*
    * Use KomodoRawTxBuilder , which is more convenient
    *
@@ -180,6 +217,15 @@ public interface KomododRpcClient {
    */
   public double getBalance(String account, int minConf) throws KomodoRpcException;
 
+  /**
+   * @return the server's total available balance in satoshis, read exactly
+   */
+  public long getBalanceSatoshis() throws KomodoRpcException;
+
+  public long getBalanceSatoshis(String account) throws KomodoRpcException;
+
+  public long getBalanceSatoshis(String account, int minConf) throws KomodoRpcException;
+
   /**
    * @return returns the server's total available z_balance
    * @throws KomodoRpcException
@@ -593,6 +639,13 @@ public interface KomododRpcClient {
 
       public double value();
 
+      /**
+       * @return the value in satoshis
+       */
+      public default long satoshis() {
+        return KomodoUtil.toSatoshis(value());
+      }
+
       public int n();
 
       public interface ScriptPubKey extends Serializable {
@@ -647,6 +700,13 @@ public interface KomododRpcClient {
    */
   public double getReceivedByAddress(String address, int minConf) throws KomodoRpcException;
 
+  /**
+   * @return what {@link #getReceivedByAddress(String)} returns, in satoshis
+   */
+  public long getReceivedByAddressSatoshis(String address) throws KomodoRpcException;
+
+  public long getReceivedByAddressSatoshis(String address, int minConf) throws KomodoRpcException;
+
   public void importPrivKey(String komodoPrivKey) throws KomodoRpcException;
 
   public void importPrivKey(String komodoPrivKey, String label) throws KomodoRpcException;
@@ -707,8 +767,22 @@ public interface KomododRpcClient {
 
     public double amount();
 
+    /**
+     * @return the amount in satoshis, negative for sends
+     */
+    public default long satoshis() {
+      return KomodoUtil.toSatoshis(amount());
+    }
+
     public double fee();
 
+    /**
+     * @return the fee in satoshis, negative like the amount of sends
+     */
+    public default long feeSatoshis() {
+      return KomodoUtil.toSatoshis(fee());
+    }
+
     public int confirmations();
 
     public String blockHash();
@@ -719,6 +793,14 @@ public interface KomododRpcClient {
 
     public String txId();
 
+    /**
+     * @return the output index the entry is about, or -1 if the entry does not
+     * name one
+     */
+    public default int vout() {
+      return -1;
+    }
+
     public Date time();
 
     public Date timeReceived();
@@ -807,6 +889,33 @@ public interface KomododRpcClient {
    */
   public String sendFrom(String fromAccount, String toKomodoAddress, double amount, int minConf, String comment, String commentTo) throws KomodoRpcException;
 
+  public String sendFromSatoshis(String fromAccount, String toKomodoAddress, long satoshis) throws KomodoRpcException;
+
+  public String sendFromSatoshis(String fromAccount, String toKomodoAddress, long satoshis, int minConf) throws KomodoRpcException;
+
+  /**
+   * Like {@link #sendFrom(String, String, double, int, String, String)},
+   * with the amount in satoshis, sent as an exact decimal
+   */
+  public String sendFromSatoshis(String fromAccount, String toKomodoAddress, long satoshis, int minConf, String comment, String commentTo) throws KomodoRpcException;
+
+  /**
+   * Sends to several addresses in one transaction
+   *
+   * @param amounts the amount for each address
+   * @return the transaction ID if successful
+   */
+  public String sendMany(String fromAccount, Map<String, Double> amounts) throws KomodoRpcException;
+
+  public String sendMany(String fromAccount, Map<String, Double> amounts, int minConf) throws KomodoRpcException;
+
+  /**
+   * @param amounts the satoshis for each address
+   */
+  public String sendManySatoshis(String fromAccount, Map<String, Long> amounts) throws KomodoRpcException;
+
+  public String sendManySatoshis(String fromAccount, Map<String, Long> amounts, int minConf) throws KomodoRpcException;
+
   public String sendRawTransaction(String hex) throws KomodoRpcException;
 
   public String sendToAddress(String toAddress, double amount) throws KomodoRpcException;
@@ -823,6 +932,14 @@ public interface KomododRpcClient {
    */
   public String sendToAddress(String toAddress, double amount, String comment, String commentTo) throws KomodoRpcException;
 
+  public String sendToAddressSatoshis(String toAddress, long satoshis) throws KomodoRpcException;
+
+  /**
+   * Like {@link #sendToAddress(String, double, String, String)}, with the
+   * amount in satoshis, sent as an exact decimal
+   */
+  public String sendToAddressSatoshis(String toAddress, long satoshis, String comment, String commentTo) throws KomodoRpcException;
+
   public String signRawTransaction(String hex, List<ExtendedTxInput> inputs, List<String> privateKeys) throws KomodoRpcException;
 
   public static interface AddressValidationResult extends Serializable {
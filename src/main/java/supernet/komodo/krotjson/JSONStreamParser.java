@@ -0,0 +1,685 @@
+/*
+ * KrotJSON License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.krotjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Single pass parser accepting the same syntax as
+ * {@link CrippledJavaScriptParser} and producing the same objects, reading
+ * straight from a stream through a fixed size buffer.
+ *
+ * Bytes read from an {@link InputStream} or a {@link ByteBuffer} are mapped to
+ * chars as ISO-8859-1, the charset the RPC client uses on the wire.
+ */
+public class JSONStreamParser {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final Reader reader;
+    private final ByteBuffer byteBuffer;
+    private final String string;
+
+    private final char[] buf;
+    private byte[] bytes;
+    private int pos = 0;
+    private int limit = 0;
+    private int stringOffset = 0;
+
+    private final StringBuilder token = new StringBuilder();
+
+    public JSONStreamParser(InputStream in) {
+        this.in = in;
+        this.reader = null;
+        this.byteBuffer = null;
+        this.string = null;
+        this.buf = new char[BUFFER_SIZE];
+        this.bytes = new byte[BUFFER_SIZE];
+    }
+
+    public JSONStreamParser(Reader reader) {
+        this.in = null;
+        this.reader = reader;
+        this.byteBuffer = null;
+        this.string = null;
+        this.buf = new char[BUFFER_SIZE];
+    }
+
+    public JSONStreamParser(ByteBuffer byteBuffer) {
+        this.in = null;
+        this.reader = null;
+        this.byteBuffer = byteBuffer;
+        this.string = null;
+        this.buf = new char[BUFFER_SIZE];
+    }
+
+    public JSONStreamParser(String string) {
+        this.in = null;
+        this.reader = null;
+        this.byteBuffer = null;
+        this.string = string;
+        this.buf = new char[Math.min(BUFFER_SIZE, Math.max(string.length(), 16))];
+    }
+
+    public static Object parse(String s) {
+        try {
+            return new JSONStreamParser(s).parse();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (pos < limit)
+            return true;
+        pos = 0;
+        limit = 0;
+        if (string != null) {
+            int n = Math.min(buf.length, string.length() - stringOffset);
+            if (n <= 0)
+                return false;
+            string.getChars(stringOffset, stringOffset + n, buf, 0);
+            stringOffset += n;
+            limit = n;
+        } else if (byteBuffer != null) {
+            int n = Math.min(buf.length, byteBuffer.remaining());
+            if (n <= 0)
+                return false;
+            for (int i = 0; i < n; i++)
+                buf[i] = (char) (byteBuffer.get() & 0xff);
+            limit = n;
+        } else if (in != null) {
+            int n = in.read(bytes, 0, bytes.length);
+            if (n == 0)
+                throw new IOException("Read timed out");
+            if (n < 0)
+                return false;
+            for (int i = 0; i < n; i++)
+                buf[i] = (char) (bytes[i] & 0xff);
+            limit = n;
+        } else {
+            int n = reader.read(buf, 0, buf.length);
+            if (n < 0)
+                return false;
+            limit = n;
+        }
+        return true;
+    }
+
+    private boolean isEmpty() throws IOException {
+        return !fill();
+    }
+
+    private char peek() throws IOException {
+        if (!fill())
+            throw new IllegalArgumentException("Unexpected end of input");
+        return buf[pos];
+    }
+
+    private char poll() throws IOException {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void trim() throws IOException {
+        while (fill()) {
+            if (buf[pos] > ' ')
+                return;
+            pos++;
+        }
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isIdStart(char ch) {
+        return ch == '_' || (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private static boolean isId(char ch) {
+        return isDigit(ch) || isIdStart(ch);
+    }
+
+    private static int hex(char ch) {
+        if (ch >= '0' && ch <= '9')
+            return ch - '0';
+        if (ch >= 'a' && ch <= 'f')
+            return ch - 'a' + 10;
+        if (ch >= 'A' && ch <= 'F')
+            return ch - 'A' + 10;
+        return -1;
+    }
+
+    private String parseString(char delim) throws IOException {
+        StringBuilder b = token;
+        b.setLength(0);
+        while (fill()) {
+            // copy runs of plain chars at once
+            int start = pos;
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == delim || c == '\\')
+                    break;
+                pos++;
+            }
+            b.append(buf, start, pos - start);
+            if (pos == limit)
+                continue;
+            char sc = buf[pos++];
+            if (sc == delim)
+                return b.toString();
+            char cc = poll();
+            switch (cc) {
+                case 't':
+                    b.append('\t');
+                    break;
+                case 'r':
+                    b.append('\r');
+                    break;
+                case 'n':
+                    b.append('\n');
+                    break;
+                case 'f':
+                    b.append('\f');
+                    break;
+                case 'b':
+                    b.append('\b');
+                    break;
+                case 'u':
+                    char[] digits = new char[4];
+                    int v = 0;
+                    int read = 0;
+                    while (read < 4 && fill() && hex(buf[pos]) >= 0) {
+                        digits[read] = buf[pos++];
+                        v = (v << 4) | hex(digits[read++]);
+                    }
+                    if (read == 4)
+                        b.append((char) v);
+                    else
+                        b.append("\\u").append(digits, 0, read);
+                    break;
+                default:
+                    b.append(cc);
+            }
+        }
+        return b.toString();
+    }
+
+    private List parseArray() throws IOException {
+        ArrayList rv = new ArrayList();
+        trim();
+        if (peek() == ']') {
+            pos++;
+            return rv;
+        }
+        while (!isEmpty()) {
+            rv.add(parseValue());
+            trim();
+            if (!isEmpty()) {
+                char ch = poll();
+                if (ch == ']')
+                    return rv;
+                if (ch != ',')
+                    throw new RuntimeException("Unexpected '" + ch + "' in array");
+                trim();
+            }
+        }
+        return rv;
+    }
+
+    private String parseId() throws IOException {
+        StringBuilder b = token;
+        b.setLength(0);
+        b.append(poll());
+        while (fill() && isId(buf[pos]))
+            b.append(buf[pos++]);
+        return b.toString();
+    }
+
+    private LinkedHashMap parseHash() throws IOException {
+        LinkedHashMap rv = new LinkedHashMap();
+        trim();
+        if (peek() == '}') {
+            pos++;
+            return rv;
+        }
+        while (!isEmpty()) {
+            Object key;
+            if (isIdStart(peek()))
+                key = parseId();
+            else
+                key = parseValue();
+            trim();
+            if (isEmpty())
+                throw new IllegalArgumentException();
+            if (peek() != ':')
+                throw new RuntimeException("Unexpected '" + peek() + "' after key " + key);
+            pos++;
+            trim();
+            Object value = parseValue();
+            rv.put(key, value);
+            trim();
+            if (!isEmpty()) {
+                char ch = poll();
+                if (ch == '}')
+                    return rv;
+                if (ch != ',')
+                    throw new RuntimeException("Unexpected '" + ch + "' in hash");
+                trim();
+            }
+        }
+        return rv;
+    }
+
+    private Object parseNumber(char start) throws IOException {
+        StringBuilder b = token;
+        b.setLength(0);
+        boolean negative = start == '-';
+        if (start != '+')
+            b.append(start);
+        long value = isDigit(start) ? start - '0' : 0;
+        boolean overflow = false;
+        boolean exp = false;
+        boolean dot = false;
+        char psc = start;
+        while (fill()) {
+            char sc = buf[pos];
+            if (isDigit(sc)) {
+                if (!dot && !exp) {
+                    if (value > (Long.MAX_VALUE - 9) / 10)
+                        overflow = true;
+                    value = value * 10 + (sc - '0');
+                }
+            } else if (sc == 'E' || sc == 'e') {
+                if (exp)
+                    throw new NumberFormatException(b.toString() + sc);
+                exp = true;
+            } else if (sc == '.') {
+                if (dot || exp)
+                    throw new NumberFormatException(b.toString() + sc);
+                dot = true;
+            } else if (!((sc == '-' || sc == '+') && (psc == 'E' || psc == 'e')))
+                break;
+            b.append(sc);
+            pos++;
+            psc = sc;
+        }
+        if (dot || exp)
+            return Double.parseDouble(b.toString());
+        if (overflow || b.length() == 0 || (b.length() == 1 && !isDigit(b.charAt(0))))
+            return Long.parseLong(b.toString());
+        return negative ? -value : value;
+    }
+
+    private static final String[] KEYWORDS = {"null", "true", "false"};
+    private static final Object[] KEYWORD_VALUES = {null, Boolean.TRUE, Boolean.FALSE};
+
+    private boolean skipKeyword(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (!fill() || buf[pos] != rest.charAt(i))
+                return false;
+            pos++;
+        }
+        return true;
+    }
+
+    private Object parseValue() throws IOException {
+        if (isEmpty())
+            throw new IllegalArgumentException();
+        trim();
+        char start = poll();
+        if (start == '[')
+            return parseArray();
+        if (start == '{')
+            return parseHash();
+        if (start == '\'' || start == '\"')
+            return parseString(start);
+        if (isDigit(start) || start == '-' || start == '+')
+            return parseNumber(start);
+        if (start == 'n' && fill() && buf[pos] == 'e') {
+            if (!skipKeyword("ew Date("))
+                throw new UnsupportedOperationException("Unparsable javascript expression near \"" + start + "\"");
+            Number date = (Number) parseValue();
+            trim();
+            if (poll() != ')')
+                throw new RuntimeException("Invalid date");
+            return new Date(date.longValue());
+        }
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            String keyword = KEYWORDS[k];
+            if (start == keyword.charAt(0)) {
+                if (!skipKeyword(keyword.substring(1)) || (fill() && isId(buf[pos])))
+                    throw new IllegalArgumentException("Unparsable javascript expression near \"" + start + "\"");
+                return KEYWORD_VALUES[k];
+            }
+        }
+        throw new UnsupportedOperationException("Unparsable javascript expression near \"" + start + "\"");
+    }
+
+    private void expect(char c) throws IOException {
+        trim();
+        char ch = poll();
+        if (ch != c)
+            throw new IllegalArgumentException("Expected '" + c + "' but found '" + ch + "'");
+    }
+
+    /**
+     * Enters an object; its fields are then read with {@link #nextKey()} and
+     * one of the value methods each
+     */
+    public void beginObject() throws IOException {
+        expect('{');
+    }
+
+    /**
+     * @return the key of the next field of the current object, or null at its
+     * end, which is then left
+     */
+    public String nextKey() throws IOException {
+        trim();
+        char ch = peek();
+        if (ch == '}') {
+            pos++;
+            return null;
+        }
+        if (ch == ',') {
+            pos++;
+            trim();
+            ch = peek();
+        }
+        String key;
+        if (isIdStart(ch))
+            key = parseId();
+        else {
+            pos++;
+            if (ch != '"' && ch != '\'')
+                throw new IllegalArgumentException("Unexpected '" + ch + "' in hash");
+            key = parseString(ch);
+        }
+        expect(':');
+        return key;
+    }
+
+    /**
+     * @return whether the next value is an object, which is left unread
+     */
+    public boolean nextIsObject() throws IOException {
+        trim();
+        return peek() == '{';
+    }
+
+    /**
+     * Enters an array; its elements are then read with {@link #hasNext()} and
+     * one of the value methods each
+     */
+    public void beginArray() throws IOException {
+        expect('[');
+    }
+
+    /**
+     * @return whether the current array has another element, otherwise the
+     * array is left
+     */
+    public boolean hasNext() throws IOException {
+        trim();
+        char ch = peek();
+        if (ch == ']') {
+            pos++;
+            return false;
+        }
+        if (ch == ',')
+            pos++;
+        return true;
+    }
+
+    /**
+     * Reads the next value if it is null
+     *
+     * @return whether it was null
+     */
+    public boolean nextNull() throws IOException {
+        trim();
+        if (peek() != 'n')
+            return false;
+        pos++;
+        if (!skipKeyword("ull"))
+            throw new IllegalArgumentException("Unparsable javascript expression near \"n\"");
+        return true;
+    }
+
+    /**
+     * @return the next value, which must be a string or null
+     */
+    public String nextString() throws IOException {
+        if (nextNull())
+            return null;
+        trim();
+        char ch = poll();
+        if (ch != '"' && ch != '\'')
+            throw new IllegalArgumentException("Expected a string but found '" + ch + "'");
+        return parseString(ch);
+    }
+
+    private Number nextNumber() throws IOException {
+        trim();
+        char ch = poll();
+        if (!isDigit(ch) && ch != '-' && ch != '+')
+            throw new IllegalArgumentException("Expected a number but found '" + ch + "'");
+        return (Number) parseNumber(ch);
+    }
+
+    public long nextLong() throws IOException {
+        return nextNumber().longValue();
+    }
+
+    public int nextInt() throws IOException {
+        return nextNumber().intValue();
+    }
+
+    public double nextDouble() throws IOException {
+        return nextNumber().doubleValue();
+    }
+
+    /**
+     * Reads a number as a fixed point value without going through a double,
+     * like an amount of 0.00012 with 8 decimals as 12000
+     *
+     * @param decimals the decimals kept; the value is rounded half away from
+     * zero to them
+     */
+    public long nextFixed(int decimals) throws IOException {
+        trim();
+        char ch = poll();
+        if (!isDigit(ch) && ch != '-' && ch != '+')
+            throw new IllegalArgumentException("Expected a number but found '" + ch + "'");
+        StringBuilder b = token;
+        b.setLength(0);
+        b.append(ch);
+        char psc = ch;
+        while (fill()) {
+            char sc = buf[pos];
+            if (!isDigit(sc) && sc != '.' && sc != 'E' && sc != 'e' && !((sc == '-' || sc == '+') && (psc == 'E' || psc == 'e')))
+                break;
+            b.append(sc);
+            pos++;
+            psc = sc;
+        }
+        return parseFixed(b, decimals);
+    }
+
+    /**
+     * Parses a decimal number, with an optional exponent, as a fixed point
+     * value
+     *
+     * @see #nextFixed(int)
+     */
+    public static long parseFixed(CharSequence s, int decimals) {
+        int n = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < n && (s.charAt(i) == '-' || s.charAt(i) == '+'))
+            negative = s.charAt(i++) == '-';
+        long m = 0;
+        int scale = 0;
+        // the first digit dropped, -1 if none
+        int round = -1;
+        boolean digits = false;
+        boolean dot = false;
+        for (; i < n; i++) {
+            char ch = s.charAt(i);
+            if (isDigit(ch)) {
+                digits = true;
+                if (m <= (Long.MAX_VALUE - 9) / 10) {
+                    m = m * 10 + (ch - '0');
+                    if (dot)
+                        scale++;
+                } else if (!dot)
+                    throw new NumberFormatException("Out of range: " + s);
+                else if (round < 0)
+                    round = ch - '0';
+            } else if (ch == '.' && !dot)
+                dot = true;
+            else if (ch == 'E' || ch == 'e')
+                break;
+            else
+                throw new NumberFormatException(s.toString());
+        }
+        if (!digits)
+            throw new NumberFormatException(s.toString());
+        int exp = 0;
+        if (i < n) {
+            i++;
+            boolean negativeExp = false;
+            if (i < n && (s.charAt(i) == '-' || s.charAt(i) == '+'))
+                negativeExp = s.charAt(i++) == '-';
+            if (i == n)
+                throw new NumberFormatException(s.toString());
+            for (; i < n; i++) {
+                char ch = s.charAt(i);
+                if (!isDigit(ch))
+                    throw new NumberFormatException(s.toString());
+                if (exp < 1000)
+                    exp = exp * 10 + (ch - '0');
+            }
+            if (negativeExp)
+                exp = -exp;
+        }
+        round = Math.max(round, 0);
+        int shift = decimals - scale + exp;
+        if (m != 0)
+            for (; shift > 0; shift--) {
+                if (m > Long.MAX_VALUE / 10)
+                    throw new NumberFormatException("Out of range: " + s);
+                m *= 10;
+            }
+        for (; shift < 0 && (m != 0 || round != 0); shift++) {
+            round = (int) (m % 10);
+            m /= 10;
+        }
+        if (round >= 5)
+            m++;
+        return negative ? -m : m;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        trim();
+        char ch = poll();
+        if (ch == 't' && skipKeyword("rue"))
+            return true;
+        if (ch == 'f' && skipKeyword("alse"))
+            return false;
+        throw new IllegalArgumentException("Expected a boolean near '" + ch + "'");
+    }
+
+    /**
+     * @return the next value, parsed like {@link #parse()}
+     */
+    public Object nextValue() throws IOException {
+        return parseValue();
+    }
+
+    private void skipString(char delim) throws IOException {
+        for (;;) {
+            char ch = poll();
+            if (ch == '\\')
+                poll();
+            else if (ch == delim)
+                return;
+        }
+    }
+
+    /**
+     * Passes over the next value without building it
+     */
+    public void skipValue() throws IOException {
+        trim();
+        char ch = peek();
+        if (ch == 'n') {
+            parseValue();
+            return;
+        }
+        pos++;
+        if (ch == '"' || ch == '\'') {
+            skipString(ch);
+            return;
+        }
+        if (ch == '{' || ch == '[') {
+            int depth = 1;
+            while (depth > 0) {
+                char c = poll();
+                if (c == '"' || c == '\'')
+                    skipString(c);
+                else if (c == '{' || c == '[')
+                    depth++;
+                else if (c == '}' || c == ']')
+                    depth--;
+            }
+            return;
+        }
+        // a number or a keyword
+        while (fill() && isNumberOrId(buf[pos]))
+            pos++;
+    }
+
+    private static boolean isNumberOrId(char ch) {
+        return isId(ch) || ch == '.' || ch == '-' || ch == '+';
+    }
+
+    /**
+     * Parses the next value of the input
+     *
+     * @return a LinkedHashMap, List, String, Long, Double, Boolean, Date or
+     * null
+     * @throws IOException if reading the underlying stream fails
+     */
+    public Object parse() throws IOException {
+        return parseValue();
+    }
+
+}
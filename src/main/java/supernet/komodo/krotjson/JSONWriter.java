@@ -0,0 +1,315 @@
+/*
+ * KrotJSON License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.krotjson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Serializes values in the format of {@link JSON#stringify(Object)} in one
+ * pass into a growable byte buffer which can be reset and reused.
+ *
+ * The output is ASCII, so it reads the same in any charset: chars outside
+ * 0x20-0x7f are written as &#92;uXXXX escapes.
+ */
+public class JSONWriter {
+
+    private static final Charset CHARSET = Charset.forName("ISO8859-1");
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int RETAINED_CAPACITY = 1 << 20;
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] DATE = {'n', 'e', 'w', ' ', 'D', 'a', 't', 'e', '('};
+    private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes(CHARSET);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(CHARSET);
+
+    private byte[] buf;
+    private int count = 0;
+
+    public JSONWriter(int capacity) {
+        buf = new byte[Math.max(capacity, 16)];
+    }
+
+    public JSONWriter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Empties the writer, keeping its buffer unless it grew above 1 MB
+     */
+    public JSONWriter reset() {
+        count = 0;
+        if (buf.length > RETAINED_CAPACITY)
+            buf = new byte[INITIAL_CAPACITY];
+        return this;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private void ensure(int extra) {
+        if (count + extra > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+    }
+
+    private void put(byte b) {
+        if (count == buf.length)
+            ensure(1);
+        buf[count++] = b;
+    }
+
+    private void put(byte[] b) {
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, count, b.length);
+        count += b.length;
+    }
+
+    /**
+     * Appends ASCII text as it is, without quoting
+     */
+    public JSONWriter writeRaw(String s) {
+        int l = s.length();
+        ensure(l);
+        for (int i = 0; i < l; i++)
+            buf[count++] = (byte) s.charAt(i);
+        return this;
+    }
+
+    public JSONWriter write(Object o) {
+        if (o == null)
+            put(NULL);
+        else if (o instanceof String)
+            write((String) o);
+        else if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte)
+            write(((Number) o).longValue());
+        else if (o instanceof BigDecimal)
+            write((BigDecimal) o);
+        else if ((o instanceof Number) || (o instanceof Boolean)) {
+            if (o instanceof Boolean)
+                put(((Boolean) o) ? TRUE : FALSE);
+            else
+                writeRaw(String.valueOf(o));
+        } else if (o instanceof Date) {
+            put(DATE);
+            write(((Date) o).getTime());
+            put((byte) ')');
+        } else if (o instanceof Map)
+            write((Map) o);
+        else if (o instanceof Iterable)
+            write((Iterable) o);
+        else if (o instanceof Object[])
+            write((Object[]) o);
+        else
+            write(String.valueOf(o));
+        return this;
+    }
+
+    public JSONWriter write(long v) {
+        if (v == Long.MIN_VALUE) {
+            put(MIN_LONG);
+            return this;
+        }
+        ensure(20);
+        if (v < 0) {
+            buf[count++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long p = 10; digits < 19 && v >= p; p *= 10)
+            digits++;
+        int end = count + digits;
+        for (int i = end - 1; i >= count; i--) {
+            buf[i] = (byte) ('0' + (v % 10));
+            v /= 10;
+        }
+        count = end;
+        return this;
+    }
+
+    /**
+     * Writes the plain decimal notation of the value, never an exponent
+     */
+    public JSONWriter write(BigDecimal d) {
+        BigInteger unscaled = d.unscaledValue();
+        if (unscaled.bitLength() > 62) {
+            writeRaw(d.toPlainString());
+            return this;
+        }
+        long u = unscaled.longValue();
+        int scale = d.scale();
+        if (scale <= 0) {
+            write(u);
+            if (u != 0)
+                for (int i = scale; i < 0; i++)
+                    put((byte) '0');
+            return this;
+        }
+        if (u < 0) {
+            put((byte) '-');
+            u = -u;
+        }
+        int start = count;
+        write(u);
+        int digits = count - start;
+        if (digits <= scale) {
+            // 0.000ddd
+            int zeros = scale - digits;
+            ensure(zeros + 2);
+            System.arraycopy(buf, start, buf, start + zeros + 2, digits);
+            buf[start] = '0';
+            buf[start + 1] = '.';
+            Arrays.fill(buf, start + 2, start + 2 + zeros, (byte) '0');
+            count = start + 2 + zeros + digits;
+        } else {
+            ensure(1);
+            int point = start + digits - scale;
+            System.arraycopy(buf, point, buf, point + 1, scale);
+            buf[point] = '.';
+            count++;
+        }
+        return this;
+    }
+
+    public JSONWriter write(String s) {
+        int l = s.length();
+        ensure(l + 2);
+        buf[count++] = '"';
+        for (int i = 0; i < l; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\t':
+                    escape('t');
+                    break;
+                case '\r':
+                    escape('r');
+                    break;
+                case '\n':
+                    escape('n');
+                    break;
+                case '\f':
+                    escape('f');
+                    break;
+                case '\b':
+                    escape('b');
+                    break;
+                case '"':
+                case '\\':
+                    escape(c);
+                    break;
+                default:
+                    // the output stays ASCII, valid in any charset
+                    if (c < 0x20 || c > 0x7f)
+                        unicodeEscape(c);
+                    else
+                        put((byte) c);
+            }
+        }
+        put((byte) '"');
+        return this;
+    }
+
+    private void escape(char c) {
+        ensure(2);
+        buf[count++] = '\\';
+        buf[count++] = (byte) c;
+    }
+
+    private void unicodeEscape(char c) {
+        ensure(6);
+        buf[count++] = '\\';
+        buf[count++] = 'u';
+        buf[count++] = HEX[c >> 12];
+        buf[count++] = HEX[(c >> 8) & 0xf];
+        buf[count++] = HEX[(c >> 4) & 0xf];
+        buf[count++] = HEX[c & 0xf];
+    }
+
+    public JSONWriter write(Map m) {
+        put((byte) '{');
+        boolean first = true;
+        for (Map.Entry e : ((Map<Object, Object>) m).entrySet()) {
+            if (first)
+                first = false;
+            else
+                put((byte) ',');
+            write(e.getKey().toString());
+            put((byte) ':');
+            write(e.getValue());
+        }
+        put((byte) '}');
+        return this;
+    }
+
+    public JSONWriter write(Iterable c) {
+        put((byte) '[');
+        boolean first = true;
+        for (Object o : c) {
+            if (first)
+                first = false;
+            else
+                put((byte) ',');
+            write(o);
+        }
+        put((byte) ']');
+        return this;
+    }
+
+    public JSONWriter write(Object[] c) {
+        put((byte) '[');
+        for (int i = 0; i < c.length; i++) {
+            if (i > 0)
+                put((byte) ',');
+            write(c[i]);
+        }
+        put((byte) ']');
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * @return a view of the written bytes, valid until the writer is reused
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, count, CHARSET);
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Komodo-JSON-RPC-Client License
+ *
+ * Copyright (c) 2013, Mikhail Yevchenko.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the
+ * Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject
+ * to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ * ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package supernet.komodo.javakomododrpcclient;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors for blocking komodod calls which depend on the Java runtime.
+ *
+ * This is the version for Java 21 and later: a blocking call costs a virtual
+ * thread, which unmounts from its carrier while waiting for komodod.
+ */
+public final class KomodoExecutors {
+
+  private static final ExecutorService PER_CALL = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("komodo-rpc-", 0).factory());
+
+  private KomodoExecutors() {
+  }
+
+  /**
+   * @return true if {@link #perCallExecutor()} runs every call on its own
+   * virtual thread
+   */
+  public static boolean isVirtual() {
+    return true;
+  }
+
+  /**
+   * @return a shared executor starting a virtual thread for every task, not
+   * to be shut down
+   */
+  public static ExecutorService perCallExecutor() {
+    return PER_CALL;
+  }
+
+}
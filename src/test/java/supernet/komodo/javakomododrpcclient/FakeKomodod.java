@@ -0,0 +1,687 @@
+package supernet.komodo.javakomododrpcclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import supernet.komodo.krotjson.Base64Coder;
+import supernet.komodo.krotjson.JSON;
+import supernet.komodo.javakomododrpcclient.FakeRpcTransport.RpcError;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process komodod stand-in: an HTTP JSON-RPC server with basic
+ * authentication serving a synthetic chain and wallet.
+ *
+ * Blocks are mined on demand with {@link #mine(int)} or the generate call;
+ * each pays a coinbase of 3 KMD, spendable after 100 confirmations, to a
+ * wallet address and confirms the mempool. Funds arrive with
+ * {@link #receive(String, long)}, and transactions sent with
+ * sendrawtransaction spend wallet outputs, so the client, KomodoAcceptor,
+ * KomodoUtxoIndex and KomodoRawTxBuilder can run end to end. Transactions
+ * are real serialized ones, decodable by {@link KomodoRawTxView}; signatures
+ * are neither made nor checked.
+ *
+ * Latency and failures are injected per HTTP request with
+ * {@link #setLatency(long, long)}, {@link #setErrorRate(double)} and
+ * {@link #setDropRate(double)}.
+ */
+public class FakeKomodod implements Closeable {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final String ZERO = "0000000000000000000000000000000000000000000000000000000000000000";
+    public static final long COINBASE = 3 * KomodoUtil.COIN;
+    public static final int COINBASE_MATURITY = 100;
+
+    static {
+        // otherwise Nagle's algorithm holds every response for a delayed ack
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    static class Output {
+
+        final String address;
+        final long satoshis;
+        final String script;
+
+        Output(String address, long satoshis, String script) {
+            this.address = address;
+            this.satoshis = satoshis;
+            this.script = script;
+        }
+    }
+
+    static class Tx {
+
+        final String txid;
+        final String hex;
+        final List<KomododRpcClient.TxInput> inputs;
+        final List<Output> outputs = new ArrayList<>();
+        final long time;
+        final boolean coinbase;
+        // whether the wallet funded it
+        final boolean sent;
+        Block block;
+
+        Tx(String hex, List<KomododRpcClient.TxInput> inputs, boolean coinbase, boolean sent) {
+            this.hex = hex;
+            this.txid = KomodoRawTxView.decode(hex).txId();
+            this.inputs = inputs;
+            this.coinbase = coinbase;
+            this.sent = sent;
+            this.time = System.currentTimeMillis() / 1000;
+        }
+    }
+
+    static class Block {
+
+        final String hash;
+        final int height;
+        final long time;
+        final List<Tx> txs = new ArrayList<>();
+
+        Block(String hash, int height, long time) {
+            this.hash = hash;
+            this.height = height;
+            this.time = time;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String authorization;
+    private final Random random = new Random(1);
+    private final KomodoRawTxSerializer serializer = new KomodoRawTxSerializer();
+
+    private final List<Block> blocks = new ArrayList<>();
+    private final Map<String, Block> blocksByHash = new HashMap<>();
+    private final Map<String, Tx> txs = new HashMap<>();
+    private final List<Tx> mempool = new ArrayList<>();
+    private final Set<String> wallet = new LinkedHashSet<>();
+    private final Set<String> spent = new HashSet<>();
+    // wallet transactions in the order the wallet saw them
+    private final List<Tx> walletTxs = new ArrayList<>();
+
+    private volatile long minLatency = 0;
+    private volatile long maxLatency = 0;
+    private volatile double errorRate = 0;
+    private volatile double dropRate = 0;
+
+    public final AtomicLong requests = new AtomicLong();
+    public final AtomicLong calls = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // the most HTTP requests served at once
+    public final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Listens on a free loopback port
+     *
+     * @param threads the threads serving requests
+     */
+    public FakeKomodod(String user, String password, int threads) throws IOException {
+        authorization = "Basic " + String.valueOf(Base64Coder.encode((user + ":" + password).getBytes(CHARSET)));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+        synchronized (this) {
+            mine(1);
+        }
+    }
+
+    public FakeKomodod() throws IOException {
+        this("user", "password", 16);
+    }
+
+    public URL getUrl() {
+        try {
+            String userInfo = new String(Base64Coder.decode(authorization.substring(6)), CHARSET);
+            return new URL("http://" + userInfo + "@127.0.0.1:" + server.getAddress().getPort() + "/");
+        } catch (MalformedURLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Delays every HTTP response by a uniformly random time
+     */
+    public void setLatency(long minMillis, long maxMillis) {
+        this.minLatency = minMillis;
+        this.maxLatency = maxMillis;
+    }
+
+    /**
+     * @param errorRate the share of HTTP requests answered with a 500 error
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param dropRate the share of HTTP requests whose connection is closed
+     * without a response
+     */
+    public void setDropRate(double dropRate) {
+        this.dropRate = dropRate;
+    }
+
+    private String hash() {
+        byte[] b = new byte[32];
+        random.nextBytes(b);
+        return KomodoUtil.encodeHex(b);
+    }
+
+    public synchronized String newAddress() {
+        byte[] payload = new byte[21];
+        random.nextBytes(payload);
+        payload[0] = (byte) KomodoRawTxSerializer.PUBKEY_ADDRESS;
+        String address = KomodoUtil.encodeBase58Check(payload);
+        wallet.add(address);
+        return address;
+    }
+
+    /**
+     * @return an address outside of the wallet
+     */
+    public synchronized String externalAddress() {
+        byte[] payload = new byte[21];
+        random.nextBytes(payload);
+        payload[0] = (byte) KomodoRawTxSerializer.PUBKEY_ADDRESS;
+        return KomodoUtil.encodeBase58Check(payload);
+    }
+
+    private Tx add(List<KomododRpcClient.TxInput> inputs, List<KomododRpcClient.TxOutput> outputs, long expiryHeight, boolean coinbase, boolean sent) {
+        Tx tx = new Tx(serializer.serializeHex(inputs, outputs, 0, expiryHeight), inputs, coinbase, sent);
+        for (KomododRpcClient.TxOutput o : outputs)
+            tx.outputs.add(new Output(o.address(), o.satoshis(), KomodoUtil.encodeHex(serializer.outputScript(o.address()))));
+        txs.put(tx.txid, tx);
+        if (sent || isMine(tx))
+            walletTxs.add(tx);
+        return tx;
+    }
+
+    private boolean isMine(Tx tx) {
+        for (Output o : tx.outputs)
+            if (wallet.contains(o.address))
+                return true;
+        return false;
+    }
+
+    /**
+     * Adds a transaction from outside paying the wallet to the mempool
+     *
+     * @return its txid
+     */
+    public synchronized String receive(String address, long satoshis) {
+        wallet.add(address);
+        List<KomododRpcClient.TxInput> in = Collections.<KomododRpcClient.TxInput>singletonList(new KomododRpcClient.BasicTxInput(hash(), 0));
+        List<KomododRpcClient.TxOutput> out = Arrays.<KomododRpcClient.TxOutput>asList(
+            new KomododRpcClient.SatoshiTxOutput(address, satoshis),
+            new KomododRpcClient.SatoshiTxOutput(externalAddress(), 100000));
+        Tx tx = add(in, out, 0, false, false);
+        mempool.add(tx);
+        return tx.txid;
+    }
+
+    /**
+     * Mines blocks, the first one confirming the mempool
+     *
+     * @return the hash of the last one
+     */
+    public synchronized String mine(int count) {
+        for (int i = 0; i < count; i++) {
+            int height = blocks.size();
+            Block b = new Block(hash(), height, 1500000000L + height * 60L);
+            List<KomododRpcClient.TxInput> in = Collections.<KomododRpcClient.TxInput>singletonList(new KomododRpcClient.BasicTxInput(ZERO, -1));
+            List<KomododRpcClient.TxOutput> out = Collections.<KomododRpcClient.TxOutput>singletonList(
+                new KomododRpcClient.SatoshiTxOutput(wallet.isEmpty() ? newAddress() : wallet.iterator().next(), COINBASE));
+            Tx coinbase = add(in, out, height + 1, true, false);
+            b.txs.add(coinbase);
+            b.txs.addAll(mempool);
+            mempool.clear();
+            for (Tx tx : b.txs)
+                tx.block = b;
+            blocks.add(b);
+            blocksByHash.put(b.hash, b);
+        }
+        return blocks.get(blocks.size() - 1).hash;
+    }
+
+    public synchronized int getBlockCount() {
+        return blocks.size() - 1;
+    }
+
+    public synchronized List<String> getMempool() {
+        List<String> l = new ArrayList<>();
+        for (Tx tx : mempool)
+            l.add(tx.txid);
+        return l;
+    }
+
+    /**
+     * @return the txids of all transactions, in no particular order
+     */
+    public synchronized List<String> getTxIds() {
+        return new ArrayList<>(txs.keySet());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // HTTP
+
+    private final FakeRpcTransport rpc = new FakeRpcTransport() {
+        @Override
+        protected Object result(String method, List params) {
+            FakeKomodod.this.calls.incrementAndGet();
+            synchronized (FakeKomodod.this) {
+                return dispatch(method, params);
+            }
+        }
+    };
+
+    private void serve(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int n = inFlight.incrementAndGet();
+        while (maxInFlight.get() < n)
+            maxInFlight.compareAndSet(maxInFlight.get(), n);
+        try {
+            if (!authorization.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                send(exchange, 401, new byte[0]);
+                return;
+            }
+            byte[] request = KomodoJSONRPCClient.loadStream(exchange.getRequestBody(), false);
+            long latency = maxLatency;
+            if (latency > 0)
+                Thread.sleep(minLatency + (latency > minLatency ? ThreadLocalRandom.current().nextLong(latency - minLatency) : 0));
+            if (dropRate > 0 && ThreadLocalRandom.current().nextDouble() < dropRate)
+                return;
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                Object o = JSON.parse(new String(request, CHARSET));
+                send(exchange, 500, FakeRpcTransport.response(FakeRpcTransport.error(-1, "Injected failure"), null, o instanceof Map ? ((Map) o).get("id") : null));
+                return;
+            }
+            rpc.post(request, new KomodoRpcTransport.ResponseHandler<Void>() {
+                @Override
+                public Void handle(int responseCode, String responseMessage, InputStream in) throws IOException {
+                    send(exchange, responseCode, KomodoJSONRPCClient.loadStream(in, false));
+                    return null;
+                }
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            send(exchange, 500, FakeRpcTransport.response(FakeRpcTransport.error(-32700, "Parse error"), null, null));
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0)
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+    }
+
+    private static Object param(List params, int i, Object defaultValue) {
+        return i < params.size() && params.get(i) != null ? params.get(i) : defaultValue;
+    }
+
+    private static int intParam(List params, int i, int defaultValue) {
+        Object o = param(params, i, defaultValue);
+        return o instanceof Boolean ? ((Boolean) o ? 1 : 0) : ((Number) o).intValue();
+    }
+
+    private Block block(Object hash) {
+        Block b = blocksByHash.get(hash);
+        if (b == null)
+            throw new RpcError(-5, 500, "Block not found");
+        return b;
+    }
+
+    private Tx tx(Object txid) {
+        Tx tx = txs.get(txid);
+        if (tx == null)
+            throw new RpcError(-5, 500, "No information available about transaction");
+        return tx;
+    }
+
+    private int confirmations(Tx tx) {
+        return tx.block == null ? 0 : blocks.size() - tx.block.height;
+    }
+
+    private Object dispatch(String method, List params) {
+        switch (method) {
+            case "getblockcount":
+                return getBlockCount();
+            case "getbestblockhash":
+                return blocks.get(blocks.size() - 1).hash;
+            case "getblockhash": {
+                int h = intParam(params, 0, 0);
+                if (h < 0 || h >= blocks.size())
+                    throw new RpcError(-8, 500, "Block height out of range");
+                return blocks.get(h).hash;
+            }
+            case "getblock":
+                return intParam(params, 1, 1) == 0 ? blockHex(block(params.get(0))) : block(block(params.get(0)), true);
+            case "getblockheader":
+                return block(block(params.get(0)), false);
+            case "getinfo":
+                return info();
+            case "getrawmempool":
+                return getMempool();
+            case "getrawtransaction": {
+                Tx tx = tx(params.get(0));
+                return intParam(params, 1, 0) == 0 ? tx.hex : verbose(tx);
+            }
+            case "decoderawtransaction":
+                return verbose(new Tx((String) params.get(0), Collections.<KomododRpcClient.TxInput>emptyList(), false, false));
+            case "createrawtransaction":
+                return createRawTransaction((List) params.get(0), (Map) params.get(1));
+            case "signrawtransaction": {
+                Map<String, Object> r = new LinkedHashMap<>();
+                r.put("hex", params.get(0));
+                r.put("complete", true);
+                return r;
+            }
+            case "sendrawtransaction":
+                return sendRawTransaction((String) params.get(0));
+            case "generate": {
+                List<String> l = new ArrayList<>();
+                for (int i = intParam(params, 0, 1); i > 0; i--)
+                    l.add(mine(1));
+                return l;
+            }
+            case "getnewaddress":
+                return newAddress();
+            case "validateaddress": {
+                Map<String, Object> r = new LinkedHashMap<>();
+                r.put("isvalid", true);
+                r.put("address", params.get(0));
+                r.put("ismine", wallet.contains(params.get(0)));
+                return r;
+            }
+            case "getbalance": {
+                long s = 0;
+                for (Map<String, Object> u : unspent(1, Integer.MAX_VALUE, null))
+                    s += (Long) u.get("satoshis");
+                return KomodoUtil.toAmount(s);
+            }
+            case "listunspent": {
+                List<Map<String, Object>> l = unspent(intParam(params, 0, 1), intParam(params, 1, 9999999), (List) param(params, 2, null));
+                for (Map<String, Object> u : l)
+                    u.remove("satoshis");
+                return l;
+            }
+            case "listsinceblock":
+                return listSinceBlock((String) param(params, 0, null), intParam(params, 1, 1));
+            case "listtransactions": {
+                List<Map<String, Object>> l = entries(-1);
+                int count = intParam(params, 1, 10);
+                int from = intParam(params, 2, 0);
+                int end = Math.max(0, l.size() - from);
+                return new ArrayList<>(l.subList(Math.max(0, end - count), end));
+            }
+            default:
+                throw new RpcError(-32601, 404, "Method not found");
+        }
+    }
+
+    private Map<String, Object> info() {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("version", 3000000);
+        r.put("protocolversion", 170009);
+        r.put("walletversion", 60000);
+        r.put("blocks", getBlockCount());
+        r.put("longestchain", getBlockCount());
+        r.put("connections", 8);
+        r.put("difficulty", 1.0);
+        r.put("testnet", false);
+        r.put("relayfee", 0.000001);
+        r.put("errors", "");
+        r.put("name", "KMD");
+        return r;
+    }
+
+    private String blockHex(Block b) {
+        StringBuilder s = new StringBuilder();
+        for (Tx tx : b.txs)
+            s.append(tx.hex);
+        return s.toString();
+    }
+
+    private Map<String, Object> block(Block b, boolean txs) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("hash", b.hash);
+        r.put("confirmations", blocks.size() - b.height);
+        r.put("height", b.height);
+        r.put("version", 4);
+        r.put("merkleroot", ZERO);
+        if (txs) {
+            r.put("size", blockHex(b).length() / 2 + 1487);
+            List<String> ids = new ArrayList<>();
+            for (Tx tx : b.txs)
+                ids.add(tx.txid);
+            r.put("tx", ids);
+        }
+        r.put("time", b.time);
+        r.put("nonce", ZERO);
+        r.put("bits", "200f0f0f");
+        r.put("difficulty", 1.0);
+        r.put("chainwork", ZERO);
+        if (b.height > 0)
+            r.put("previousblockhash", blocks.get(b.height - 1).hash);
+        if (b.height + 1 < blocks.size())
+            r.put("nextblockhash", blocks.get(b.height + 1).hash);
+        return r;
+    }
+
+    private Map<String, Object> verbose(Tx tx) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("hex", tx.hex);
+        r.put("txid", tx.txid);
+        r.put("version", 4);
+        r.put("locktime", 0);
+        List<Object> vin = new ArrayList<>();
+        for (KomododRpcClient.TxInput i : tx.inputs) {
+            Map<String, Object> in = new LinkedHashMap<>();
+            if (tx.coinbase)
+                in.put("coinbase", "");
+            else {
+                in.put("txid", i.txid());
+                in.put("vout", i.vout());
+                Map<String, Object> sig = new LinkedHashMap<>();
+                sig.put("asm", "");
+                sig.put("hex", "");
+                in.put("scriptSig", sig);
+            }
+            in.put("sequence", 4294967295L);
+            vin.add(in);
+        }
+        r.put("vin", vin);
+        List<Object> vout = new ArrayList<>();
+        for (int n = 0; n < tx.outputs.size(); n++) {
+            Output o = tx.outputs.get(n);
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("value", KomodoUtil.toAmount(o.satoshis));
+            out.put("valueSat", o.satoshis);
+            out.put("n", n);
+            Map<String, Object> script = new LinkedHashMap<>();
+            script.put("asm", "");
+            script.put("hex", o.script);
+            script.put("reqSigs", 1);
+            script.put("type", "pubkeyhash");
+            script.put("addresses", Collections.singletonList(o.address));
+            out.put("scriptPubKey", script);
+            vout.add(out);
+        }
+        r.put("vout", vout);
+        if (tx.block != null) {
+            r.put("blockhash", tx.block.hash);
+            r.put("confirmations", confirmations(tx));
+            r.put("time", tx.block.time);
+            r.put("blocktime", tx.block.time);
+        }
+        return r;
+    }
+
+    private String createRawTransaction(List inputs, Map outputs) {
+        List<KomododRpcClient.TxInput> in = new ArrayList<>();
+        for (Object o : inputs)
+            in.add(new KomododRpcClient.BasicTxInput((String) ((Map) o).get("txid"), ((Number) ((Map) o).get("vout")).intValue()));
+        List<KomododRpcClient.TxOutput> out = new ArrayList<>();
+        for (Object e : outputs.entrySet())
+            out.add(new KomododRpcClient.SatoshiTxOutput((String) ((Map.Entry) e).getKey(), KomodoUtil.parseSatoshis(String.valueOf(((Map.Entry) e).getValue()))));
+        return serializer.serializeHex(in, out, 0, 0);
+    }
+
+    private String sendRawTransaction(String hex) {
+        KomodoRawTxView view;
+        try {
+            view = KomodoRawTxView.decode(hex);
+        } catch (RuntimeException ex) {
+            throw new RpcError(-22, 500, "TX decode failed");
+        }
+        if (txs.containsKey(view.txId()))
+            throw new RpcError(-27, 500, "transaction already in block chain");
+        List<KomododRpcClient.TxInput> in = new ArrayList<>();
+        boolean sent = false;
+        for (KomododRpcClient.RawTransaction.In i : view.vIn()) {
+            Tx prev = txs.get(i.txid());
+            if (prev == null || i.vout() >= prev.outputs.size() || spent.contains(i.txid() + ":" + i.vout()))
+                throw new RpcError(-25, 500, "Missing inputs");
+            sent |= wallet.contains(prev.outputs.get(i.vout()).address);
+            in.add(new KomododRpcClient.BasicTxInput(i.txid(), i.vout()));
+        }
+        for (KomododRpcClient.TxInput i : in)
+            spent.add(i.txid() + ":" + i.vout());
+        Tx tx = new Tx(hex, in, false, sent);
+        for (KomododRpcClient.RawTransaction.Out o : view.vOut()) {
+            List<String> a = o.scriptPubKey().addresses();
+            tx.outputs.add(new Output(a == null || a.isEmpty() ? null : a.get(0), o.satoshis(), o.scriptPubKey().hex()));
+        }
+        txs.put(tx.txid, tx);
+        if (sent || isMine(tx))
+            walletTxs.add(tx);
+        mempool.add(tx);
+        return tx.txid;
+    }
+
+    private List<Map<String, Object>> unspent(int minConf, int maxConf, List addresses) {
+        List<Map<String, Object>> l = new ArrayList<>();
+        for (Tx tx : walletTxs)
+            for (int n = 0; n < tx.outputs.size(); n++) {
+                Output o = tx.outputs.get(n);
+                int c = confirmations(tx);
+                if (!wallet.contains(o.address) || spent.contains(tx.txid + ":" + n) || c < minConf || c > maxConf)
+                    continue;
+                if (addresses != null && !addresses.contains(o.address))
+                    continue;
+                if (tx.coinbase && c < COINBASE_MATURITY)
+                    continue;
+                Map<String, Object> u = new LinkedHashMap<>();
+                u.put("txid", tx.txid);
+                u.put("vout", n);
+                u.put("generated", tx.coinbase);
+                u.put("address", o.address);
+                u.put("account", "");
+                u.put("scriptPubKey", o.script);
+                u.put("amount", KomodoUtil.toAmount(o.satoshis));
+                u.put("confirmations", c);
+                u.put("spendable", true);
+                u.put("satoshis", o.satoshis);
+                l.add(u);
+            }
+        return l;
+    }
+
+    /**
+     * @return the wallet entries of transactions above the height, oldest
+     * first
+     */
+    private List<Map<String, Object>> entries(int aboveHeight) {
+        List<Map<String, Object>> l = new ArrayList<>();
+        for (Tx tx : walletTxs) {
+            if (tx.block != null && tx.block.height <= aboveHeight)
+                continue;
+            for (int n = 0; n < tx.outputs.size(); n++) {
+                Output o = tx.outputs.get(n);
+                boolean mine = wallet.contains(o.address);
+                String category;
+                if (tx.sent && !mine)
+                    category = "send";
+                else if (!tx.sent && mine)
+                    category = tx.coinbase ? (confirmations(tx) >= COINBASE_MATURITY ? "generate" : "immature") : "receive";
+                else
+                    continue;
+                Map<String, Object> e = new LinkedHashMap<>();
+                e.put("account", "");
+                e.put("address", o.address);
+                e.put("category", category);
+                e.put("amount", KomodoUtil.toAmount(category.equals("send") ? -o.satoshis : o.satoshis));
+                e.put("vout", n);
+                if (category.equals("send"))
+                    e.put("fee", KomodoUtil.toAmount(0));
+                e.put("confirmations", confirmations(tx));
+                if (tx.block != null) {
+                    e.put("blockhash", tx.block.hash);
+                    e.put("blockindex", tx.block.txs.indexOf(tx));
+                    e.put("blocktime", tx.block.time);
+                }
+                e.put("txid", tx.txid);
+                e.put("walletconflicts", Collections.emptyList());
+                e.put("time", tx.time);
+                e.put("timereceived", tx.time);
+                l.add(e);
+            }
+        }
+        return l;
+    }
+
+    private Map<String, Object> listSinceBlock(String blockHash, int targetConfirmations) {
+        int height = blockHash == null || blockHash.isEmpty() ? -1 : block(blockHash).height;
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("transactions", entries(height));
+        r.put("lastblock", blocks.get(Math.max(0, blocks.size() - Math.max(1, targetConfirmations))).hash);
+        return r;
+    }
+
+}
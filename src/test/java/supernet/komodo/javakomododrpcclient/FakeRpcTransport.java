@@ -0,0 +1,123 @@
+package supernet.komodo.javakomododrpcclient;
+
+import supernet.komodo.krotjson.JSON;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A komodod answering in process: parses single and batched JSON-RPC
+ * requests and answers each call with {@link #result(String, List)}.
+ *
+ * An {@link RpcError} thrown there becomes the error of the call, sent with
+ * its HTTP status when the call is not batched, as komodod does; other
+ * runtime exceptions become a -8 error.
+ */
+public abstract class FakeRpcTransport implements KomodoRpcTransport {
+
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    static class RpcError extends RuntimeException {
+
+        final int code;
+        final int status;
+
+        RpcError(int code, int status, String message) {
+            super(message);
+            this.code = code;
+            this.status = status;
+        }
+    }
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong calls = new AtomicLong();
+    // the method of each call, and "batch" before the calls of a batch
+    final List<String> methods = Collections.synchronizedList(new ArrayList<String>());
+    // answers batches last call first, as komodod is free to
+    volatile boolean reverseBatches = false;
+    // fails every request as if komodod had reset the connection
+    volatile boolean down = false;
+
+    /**
+     * @param params the params of the call, empty if it has none
+     */
+    protected abstract Object result(String method, List params);
+
+    static Map<String, Object> error(int code, String message) {
+        Map<String, Object> e = new LinkedHashMap<>();
+        e.put("code", code);
+        e.put("message", message);
+        return e;
+    }
+
+    static byte[] response(Object error, Object result, Object id) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("result", result);
+        r.put("error", error);
+        r.put("id", id);
+        return JSON.stringify(r).getBytes(CHARSET);
+    }
+
+    /**
+     * @return the status and the response of a call
+     */
+    private Map<String, Object> answer(Map call) {
+        calls.incrementAndGet();
+        String method = (String) call.get("method");
+        methods.add(method);
+        Map<String, Object> response = new LinkedHashMap<>();
+        Map<String, Object> r = new LinkedHashMap<>();
+        List params = call.get("params") instanceof List ? (List) call.get("params") : Collections.emptyList();
+        try {
+            response.put("result", result(method, params));
+            response.put("error", null);
+            r.put("status", 200);
+        } catch (RpcError ex) {
+            response.put("result", null);
+            response.put("error", error(ex.code, ex.getMessage()));
+            r.put("status", ex.status);
+        } catch (RuntimeException ex) {
+            response.put("result", null);
+            response.put("error", error(-8, String.valueOf(ex)));
+            r.put("status", 500);
+        }
+        response.put("id", call.get("id"));
+        r.put("response", response);
+        return r;
+    }
+
+    @Override
+    public <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+        requests.incrementAndGet();
+        if (down)
+            throw new IOException("Connection reset");
+        Object o = JSON.parse(new String(request, CHARSET));
+        int status = 200;
+        Object response;
+        if (o instanceof List) {
+            methods.add("batch");
+            List<Object> responses = new ArrayList<>();
+            for (Object call : (List) o)
+                responses.add(answer((Map) call).get("response"));
+            if (reverseBatches)
+                Collections.reverse(responses);
+            response = responses;
+        } else {
+            Map<String, Object> r = answer((Map) o);
+            status = (Integer) r.get("status");
+            response = r.get("response");
+        }
+        return handler.handle(status, status == 200 ? "OK" : "Internal Server Error", new ByteArrayInputStream(JSON.stringify(response).getBytes(CHARSET)));
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,203 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import supernet.komodo.krotjson.JSON;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class KomodoAcceptorTest {
+
+    /**
+     * A wallet without transactions on a chain whose block at height h has
+     * the hash "b" + h
+     */
+    static class WalletTransport extends FakeRpcTransport {
+
+        final AtomicInteger polls = new AtomicInteger();
+        volatile int tip = 100;
+        volatile Object sinceBlock;
+        volatile String transactions = "";
+
+        @Override
+        protected Object result(String method, List params) {
+            switch (method) {
+                case "listsinceblock":
+                    polls.incrementAndGet();
+                    sinceBlock = params.isEmpty() ? null : params.get(0);
+                    return JSON.parse("{\"transactions\":[" + transactions + "],\"lastblock\":\"b" + tip + "\"}");
+                case "getblockheader":
+                    int h = Integer.parseInt(((String) params.get(0)).substring(1));
+                    return JSON.parse("{\"height\":" + h + ",\"previousblockhash\":\"b" + (h - 1) + "\"}");
+                case "getblockhash":
+                    return "b" + params.get(0);
+                default:
+                    throw new RpcError(-32601, 404, "Method not found");
+            }
+        }
+
+        @Override
+        public synchronized <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+            return super.post(request, handler);
+        }
+    }
+
+    WalletTransport wallet;
+    KomodoAcceptor acceptor;
+    KomodoNotifyServer notify;
+    Thread thread;
+
+    @Before
+    public void setUp() throws Exception {
+        wallet = new WalletTransport();
+        KomodoJSONRPCClient client = new KomodoJSONRPCClient(false);
+        client.setTransport(wallet);
+        acceptor = new KomodoAcceptor(client, null, 6);
+        acceptor.setCheckInterval(60000);
+        notify = new KomodoNotifyServer(0);
+        notify.addListener(acceptor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        acceptor.stopAccepting();
+        if (thread != null)
+            thread.join(5000);
+        notify.close();
+    }
+
+    void start() {
+        thread = new Thread(acceptor);
+        thread.start();
+    }
+
+    void waitForPolls(int n) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (wallet.polls.get() < n && System.currentTimeMillis() < end)
+            Thread.sleep(5);
+    }
+
+    @Test
+    public void checksOnNotificationAndCoalescesBursts() throws Exception {
+        start();
+        waitForPolls(1);
+        assertEquals(1, wallet.polls.get());
+        wallet.tip = 101;
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), notify.getPort())) {
+            OutputStream out = s.getOutputStream();
+            for (int i = 0; i < 5; i++)
+                out.write(("wallet tx" + i + "\nblock b101\n").getBytes("ISO8859-1"));
+        }
+        waitForPolls(2);
+        Thread.sleep(300);
+        assertEquals(2, wallet.polls.get());
+        assertEquals("b101", acceptor.getLastBlock());
+    }
+
+    @Test
+    public void servesNotificationsPastSilentClients() throws Exception {
+        final List<String> received = new ArrayList<>();
+        notify.addListener(new KomodoNotifyServer.Listener() {
+            @Override
+            public void notification(String type, String argument) {
+                synchronized (received) {
+                    received.add(type + " " + argument);
+                }
+            }
+        });
+        char[] junk = new char[5000];
+        Arrays.fill(junk, 'x');
+        try (Socket silent = new Socket(InetAddress.getLoopbackAddress(), notify.getPort());
+             Socket s = new Socket(InetAddress.getLoopbackAddress(), notify.getPort())) {
+            s.getOutputStream().write(("block " + new String(junk) + "\nblock b102\n").getBytes("ISO8859-1"));
+            long end = System.currentTimeMillis() + 1000;
+            while (System.currentTimeMillis() < end) {
+                synchronized (received) {
+                    if (!received.isEmpty())
+                        break;
+                }
+                Thread.sleep(5);
+            }
+            synchronized (received) {
+                assertEquals(Arrays.asList("block b102"), received);
+            }
+        }
+    }
+
+    @Test
+    public void stopsPromptly() throws Exception {
+        start();
+        waitForPolls(1);
+        acceptor.stopAccepting();
+        thread.join(1000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void resolvesMonitorBlockFromHeaderRing() {
+        acceptor.checkPayments();
+        acceptor.checkPayments();
+        assertEquals("b94", wallet.sinceBlock);
+        // the first tip needs one header and one batch of hashes
+        assertEquals(1, count("getblockheader"));
+        assertEquals(1, count("batch"));
+
+        for (int tip = 101; tip <= 110; tip++) {
+            wallet.tip = tip;
+            acceptor.checkPayments();
+            acceptor.checkPayments();
+            assertEquals("b" + (tip - 6), wallet.sinceBlock);
+        }
+        // later tips only need their own header
+        assertEquals(11, count("getblockheader"));
+        assertEquals(1, count("batch"));
+        assertEquals(0, count("getblock"));
+    }
+
+    static String receive(String txId, int confirmations) {
+        return "{\"txid\":\"" + txId + "\",\"category\":\"receive\",\"confirmations\":" + confirmations + "}";
+    }
+
+    @Test
+    public void passesTransactionsAgainOnlyWhenConfirmationsChange() {
+        final List<String> passed = new ArrayList<>();
+        acceptor.addListener(new SimpleKomodoPaymentListener() {
+            @Override
+            public void transaction(KomododRpcClient.Transaction transaction) {
+                passed.add(transaction.txId().substring(63) + transaction.confirmations());
+            }
+        });
+        String a = "a09e41ad19ebfdb14c7ef78b39389369b459b5d2ec24ffffc110a9ac4f24b2b1";
+        String b = "a09e41ad19ebfdb14c7ef78b39389369b459b5d2ec24ffffc110a9ac4f24b2b2";
+        wallet.transactions = receive(a, 0);
+        acceptor.checkPayments();
+        acceptor.checkPayments();
+        wallet.tip = 101;
+        wallet.transactions = receive(a, 1) + "," + receive(b, 0);
+        acceptor.checkPayments();
+        acceptor.checkPayments();
+        wallet.tip = 102;
+        wallet.transactions = receive(a, 2) + "," + receive(b, 0);
+        acceptor.checkPayments();
+        acceptor.checkPayments();
+        assertEquals(Arrays.asList("10", "11", "20", "12"), passed);
+    }
+
+    int count(String method) {
+        int n = 0;
+        for (String m : wallet.methods)
+            if (m.equals(method))
+                n++;
+        return n;
+    }
+}
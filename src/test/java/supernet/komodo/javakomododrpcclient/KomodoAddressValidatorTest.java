@@ -0,0 +1,81 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Test;
+import supernet.komodo.krotjson.JSON;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KomodoAddressValidatorTest {
+
+    static final String HASH = "010966776006953d5567439e5e39f86a0d273bee";
+
+    // 43 bytes from 0 to 42, bech32 encoded
+    static final String SAPLING = "zs1qqqsyqcyq5rqwzqfpg9scrgwpugpzysnzs23v9ccrydpk8qarc0jqgfzyvjz2f389q5j5ctfvp5";
+
+    final KomodoAddressValidator validator = new KomodoAddressValidator(null);
+
+    @Test
+    public void validatesTransparentAddresses() {
+        String p2pkh = KomodoRawTxSerializerTest.address(60, HASH);
+        String p2sh = KomodoRawTxSerializerTest.address(85, HASH);
+        assertTrue(validator.isValid(p2pkh));
+        assertTrue(validator.validate(p2pkh).isValid());
+        assertFalse(validator.validate(p2pkh).isScript());
+        assertTrue(validator.validate(p2sh).isScript());
+        assertEquals(p2sh, validator.validate(p2sh).address());
+
+        char[] c = p2pkh.toCharArray();
+        c[10] = c[10] == 'a' ? 'b' : 'a';
+        assertFalse(validator.isValid(new String(c)));
+        assertFalse(validator.isValid("16UwLL9Risc3QfPqBUvKofHmBQ7wMtjvM"));
+        assertFalse(validator.isValid("1" + p2pkh));
+        assertFalse(validator.isValid(p2pkh + "1"));
+        assertFalse(validator.isValid("R0OIl"));
+        assertFalse(validator.isValid(""));
+        assertFalse(validator.isValid(null));
+        assertFalse(validator.validate("nonsense").isValid());
+        assertFalse(validator.validate("nonsense").isMine());
+    }
+
+    @Test
+    public void validatesSaplingAddresses() {
+        assertTrue(validator.z_isValid(SAPLING));
+        assertTrue(validator.z_isValid(SAPLING.toUpperCase()));
+        assertFalse(validator.z_isValid(SAPLING.substring(0, 10) + SAPLING.substring(10).toUpperCase()));
+        assertFalse(validator.z_isValid(SAPLING.replace('q', 'p')));
+        assertFalse(validator.z_isValid(SAPLING.substring(0, SAPLING.length() - 1)));
+        assertFalse(validator.z_isValid("zt" + SAPLING.substring(2)));
+        assertTrue(validator.z_validate(SAPLING).isValid());
+        assertFalse(validator.z_validate(SAPLING).isScript());
+        // validateaddress only knows transparent addresses
+        assertFalse(validator.isValid(SAPLING));
+        assertFalse(validator.validate(SAPLING).isValid());
+    }
+
+    @Test
+    public void asksTheWalletOnlyForItsFields() {
+        FakeRpcTransport wallet = new FakeRpcTransport() {
+            @Override
+            protected Object result(String method, List params) {
+                return JSON.parse("{\"isvalid\":true,\"ismine\":true,\"account\":\"hot\"}");
+            }
+        };
+        List<String> methods = wallet.methods;
+        KomodoJSONRPCClient client = new KomodoJSONRPCClient(false);
+        client.setTransport(wallet);
+        assertNull(client.getAddressValidator());
+        client.setAddressValidator(new KomodoAddressValidator(client));
+        KomododRpcClient.AddressValidationResult r = client.validateAddress(KomodoRawTxSerializerTest.address(60, HASH));
+        assertTrue(r.isValid());
+        assertTrue(methods.isEmpty());
+        assertTrue(r.isMine());
+        assertEquals("hot", r.account());
+        assertEquals("[validateaddress]", methods.toString());
+
+        assertFalse(client.validateAddress(SAPLING).isValid());
+        assertTrue(client.z_validateAddress(SAPLING).isMine());
+        assertEquals("[validateaddress, z_validateaddress]", methods.toString());
+    }
+}
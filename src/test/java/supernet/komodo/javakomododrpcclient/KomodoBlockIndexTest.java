@@ -0,0 +1,118 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class KomodoBlockIndexTest {
+
+    /**
+     * Answers getblockhash, getblockchaininfo, getbestblockhash and
+     * getblockcount from a list of hashes, single or batched
+     */
+    static class ChainTransport extends FakeRpcTransport {
+
+        final List<String> chain = new ArrayList<>();
+
+        static String hash(String fork, int height) {
+            String s = fork + Integer.toHexString(height);
+            StringBuilder b = new StringBuilder();
+            while (b.length() + s.length() < 64)
+                b.append('0');
+            return b.append(s).toString();
+        }
+
+        void grow(String fork, int from, int to) {
+            while (chain.size() > from)
+                chain.remove(chain.size() - 1);
+            for (int h = from; h <= to; h++)
+                chain.add(hash(fork, h));
+        }
+
+        @Override
+        protected Object result(String method, List params) {
+            switch (method) {
+                case "getblockchaininfo":
+                    Map info = new LinkedHashMap();
+                    info.put("blocks", chain.size() - 1);
+                    info.put("bestblockhash", chain.get(chain.size() - 1));
+                    return info;
+                case "getbestblockhash":
+                    return chain.get(chain.size() - 1);
+                case "getblockcount":
+                    return chain.size() - 1;
+                case "getblockhash":
+                    int h = ((Number) params.get(0)).intValue();
+                    if (h >= chain.size())
+                        throw new RpcError(-8, 500, "Block height out of range");
+                    return chain.get(h);
+                default:
+                    throw new RpcError(-32601, 404, "Method not found");
+            }
+        }
+
+        @Override
+        public synchronized <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+            return super.post(request, handler);
+        }
+    }
+
+    ChainTransport chain;
+    KomodoJSONRPCClient client;
+    KomodoBlockIndex index;
+
+    @Before
+    public void setUp() {
+        chain = new ChainTransport();
+        chain.grow("a", 0, 5000);
+        client = new KomodoJSONRPCClient(false);
+        client.setTransport(chain);
+        index = new KomodoBlockIndex(client);
+        index.setSyncInterval(Long.MAX_VALUE);
+        client.setBlockIndex(index);
+    }
+
+    @Test
+    public void fillsInBatches() {
+        for (int h = 0; h <= 5000; h++)
+            assertEquals(ChainTransport.hash("a", h), client.getBlockHash(h));
+        assertEquals(5001, index.size());
+        // one sync, which also stores the tip, and one batch per 1000 heights
+        assertEquals(1 + 5, chain.requests.get());
+    }
+
+    @Test
+    public void dropsHashesAboveForkPoint() {
+        index.fill(0, 5000);
+        chain.grow("b", 4990, 5003);
+        index.sync();
+        assertEquals(4990 + 1, index.size());
+        assertEquals(5003, index.getTipHeight());
+        assertEquals(ChainTransport.hash("a", 4989), index.getBlockHash(4989));
+        assertEquals(ChainTransport.hash("b", 4995), index.getBlockHash(4995));
+    }
+
+    @Test
+    public void extendsWithoutRefetching() {
+        index.fill(0, 5000);
+        long calls = chain.calls.get();
+        chain.grow("a", 5001, 5001);
+        index.sync();
+        // the tip and the old tip
+        assertEquals(calls + 2, chain.calls.get());
+        assertEquals(5002, index.size());
+        assertEquals(ChainTransport.hash("a", 5001), index.getBlockHash(5001));
+    }
+
+    @Test(expected = KomodoRpcException.class)
+    public void passesOutOfRangeHeightsToNode() {
+        client.getBlockHash(6000);
+    }
+}
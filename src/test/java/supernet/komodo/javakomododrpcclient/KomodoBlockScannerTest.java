@@ -0,0 +1,104 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class KomodoBlockScannerTest {
+
+    /**
+     * Serves blocks of two transactions at every height, answering after a
+     * random delay so that requests complete out of order
+     */
+    static class BlockTransport extends FakeRpcTransport {
+
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final AtomicInteger fetchedBlocks = new AtomicInteger();
+        final Random random = new Random(1);
+
+        @Override
+        protected Object result(String method, List params) {
+            Object p = params.get(0);
+            switch (method) {
+                case "getblockhash":
+                    return "h" + p;
+                case "getblock":
+                    fetchedBlocks.incrementAndGet();
+                    Map b = new LinkedHashMap();
+                    b.put("hash", p);
+                    b.put("height", Long.parseLong(((String) p).substring(1)));
+                    b.put("tx", Arrays.asList(p + "-0", p + "-1"));
+                    return b;
+                default:
+                    Map t = new LinkedHashMap();
+                    t.put("txid", p);
+                    return t;
+            }
+        }
+
+        @Override
+        public <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+            int a = active.incrementAndGet();
+            maxActive.accumulateAndGet(a, Math::max);
+            try {
+                Thread.sleep(random.nextInt(3));
+                return super.post(request, handler);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    @Test
+    public void deliversInOrderWithBoundedPrefetch() {
+        final BlockTransport transport = new BlockTransport();
+        KomodoJSONRPCClient client = new KomodoJSONRPCClient(false);
+        client.setTransport(transport);
+        KomodoBlockScanner scanner = new KomodoBlockScanner(client, 4);
+        scanner.setPrefetch(8);
+        scanner.setFetchTransactions(true);
+        final int[] expected = {100};
+        scanner.scan(100, 600, new KomodoBlockScanner.BlockConsumer() {
+            @Override
+            public void block(KomododRpcClient.Block block, List<KomododRpcClient.RawTransaction> transactions) {
+                assertEquals(expected[0]++, block.height());
+                assertEquals(block.hash() + "-1", transactions.get(1).txId());
+                assertTrue(transport.fetchedBlocks.get() <= block.height() - 100 + 1 + 8);
+            }
+        });
+        assertEquals(601, expected[0]);
+        assertTrue(transport.maxActive.get() <= 4);
+        assertTrue(transport.maxActive.get() > 1);
+    }
+
+    @Test
+    public void stopsOnConsumerFailure() {
+        KomodoJSONRPCClient client = new KomodoJSONRPCClient(false);
+        client.setTransport(new BlockTransport());
+        final AtomicInteger consumed = new AtomicInteger();
+        try {
+            new KomodoBlockScanner(client, 2).scan(0, 1000, new KomodoBlockScanner.BlockConsumer() {
+                @Override
+                public void block(KomododRpcClient.Block block, List<KomododRpcClient.RawTransaction> transactions) throws Exception {
+                    if (consumed.incrementAndGet() == 10)
+                        throw new Exception("stop");
+                }
+            });
+            fail();
+        } catch (KomodoRpcException ex) {
+            assertEquals("stop", ex.getCause().getMessage());
+        }
+        assertEquals(10, consumed.get());
+    }
+}
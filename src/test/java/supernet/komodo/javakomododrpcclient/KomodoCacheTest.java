@@ -0,0 +1,110 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Test;
+import supernet.komodo.krotjson.JSON;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KomodoCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        KomodoCache<String, String> c = new KomodoCache<>(3, KomodoCache.ENTRIES, KomodoCache.Policy.LRU, false);
+        c.put("a", "1");
+        c.put("b", "2");
+        c.put("c", "3");
+        assertEquals("1", c.get("a"));
+        c.put("d", "4");
+        assertNull(c.get("b"));
+        assertEquals("1", c.get("a"));
+        assertEquals(3, c.size());
+        assertEquals(2, c.getHitCount());
+        assertEquals(1, c.getMissCount());
+        assertEquals(1, c.getEvictionCount());
+    }
+
+    @Test
+    public void tinyLfuResistsScans() {
+        KomodoCache<Integer, Integer> c = new KomodoCache<>(100);
+        for (int round = 0; round < 5; round++)
+            for (int i = 0; i < 50; i++)
+                if (c.get(i) == null)
+                    c.put(i, i);
+        for (int i = 1000; i < 11000; i++)
+            if (c.get(i) == null)
+                c.put(i, i);
+        int hot = 0;
+        for (int i = 0; i < 50; i++)
+            if (c.get(i) != null)
+                hot++;
+        assertTrue("hot entries kept: " + hot, hot >= 45);
+        assertTrue(c.size() <= 100);
+    }
+
+    @Test
+    public void rejectsBeforeEvicting() {
+        KomodoCache<String, Integer> c = new KomodoCache<>(200, new KomodoCache.Weigher<String, Integer>() {
+            @Override
+            public long weigh(String key, Integer value) {
+                return value;
+            }
+        }, KomodoCache.Policy.TINY_LFU, false);
+        c.put("rare", 99);
+        c.put("hot", 99);
+        for (int i = 0; i < 5; i++)
+            assertNotNull(c.get("hot"));
+        c.get("new");
+        c.get("new");
+        // more popular than "rare" but not than "hot", which it would need to evict too
+        c.put("new", 150);
+        assertNull(c.get("new"));
+        assertEquals(99, (int) c.get("rare"));
+        assertEquals(99, (int) c.get("hot"));
+    }
+
+    @Test
+    public void boundsEstimatedBytes() {
+        KomodoCache<String, Object> c = new KomodoCache<>(100000, KomodoCache.ESTIMATED_BYTES, KomodoCache.Policy.TINY_LFU, true);
+        for (int i = 0; i < 1000; i++)
+            c.put("tx:" + i, JSON.parse("{\"txid\":\"" + i + "\",\"vout\":[{\"n\":0,\"value\":0.5}]}"));
+        assertTrue(c.weight() <= 100000);
+        assertTrue(c.size() > 100);
+    }
+
+    static class CountingClient extends KomodoJSONRPCClient {
+
+        final List<String> calls = new ArrayList<>();
+
+        CountingClient() {
+            super(false);
+        }
+
+        @Override
+        public Object query(String method, Object... o) throws KomodoRpcException {
+            calls.add(method);
+            if (method.equals("getblock") && o[0].equals("tip"))
+                return JSON.parse("{\"hash\":\"tip\",\"height\":2,\"previousblockhash\":\"b1\"}");
+            if (method.equals("getblock"))
+                return JSON.parse("{\"hash\":\"" + o[0] + "\",\"height\":1,\"nextblockhash\":\"tip\"}");
+            return JSON.parse("{\"txid\":\"" + o[0] + "\"" + (o[0].equals("mined") ? ",\"blockhash\":\"b1\"" : "") + "}");
+        }
+    }
+
+    @Test
+    public void clientCachesImmutableLookups() {
+        CountingClient client = new CountingClient();
+        client.setCache(new KomodoCache<String, Object>(1000));
+        assertEquals("b1", client.getBlock("tip").previous().hash());
+        assertEquals("b1", client.getBlock("tip").previous().hash());
+        assertEquals(1, client.getBlock("b1").height());
+        client.getRawTransaction("mined");
+        client.getRawTransaction("mined");
+        client.getRawTransaction("mempool");
+        client.getRawTransaction("mempool");
+        // the tip and the mempool transaction are not cached
+        assertEquals(6, client.calls.size());
+    }
+}
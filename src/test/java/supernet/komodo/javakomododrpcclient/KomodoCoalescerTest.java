@@ -0,0 +1,188 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Before;
+import org.junit.Test;
+import supernet.komodo.krotjson.JSON;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class KomodoCoalescerTest {
+
+    /**
+     * Answers with the number of requests so far, holding them until released
+     */
+    static class SlowTransport implements KomodoRpcTransport {
+
+        final AtomicInteger posts = new AtomicInteger();
+        volatile CountDownLatch release = new CountDownLatch(0);
+        volatile boolean fail = false;
+
+        @Override
+        public <T> T post(byte[] request, ResponseHandler<T> handler) throws IOException {
+            int n = posts.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            Map call = (Map) JSON.parse(new String(request, "ISO8859-1"));
+            String response = fail
+                ? "{\"result\":null,\"error\":{\"code\":-28,\"message\":\"Loading\"},\"id\":\"1\"}"
+                : "{\"result\":" + n + ",\"error\":null,\"id\":" + JSON.stringify(call.get("id")) + "}";
+            return handler.handle(200, "OK", new ByteArrayInputStream(response.getBytes("ISO8859-1")));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    SlowTransport transport;
+    KomodoJSONRPCClient client;
+    KomodoCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        transport = new SlowTransport();
+        client = new KomodoJSONRPCClient(false);
+        client.setTransport(transport);
+        coalescer = new KomodoCoalescer();
+        client.setCoalescer(coalescer);
+    }
+
+    List<Thread> callConcurrently(int threads, final List<Object> results) {
+        List<Thread> l = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Object r;
+                    try {
+                        r = client.getBlockCount();
+                    } catch (KomodoRpcException ex) {
+                        r = ex;
+                    }
+                    synchronized (results) {
+                        results.add(r);
+                    }
+                }
+            });
+            t.start();
+            l.add(t);
+        }
+        return l;
+    }
+
+    void waitForShared(long n) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (coalescer.getSharedCount() < n && System.currentTimeMillis() < end)
+            Thread.sleep(1);
+    }
+
+    @Test
+    public void sharesCallsInFlight() throws Exception {
+        transport.release = new CountDownLatch(1);
+        List<Object> results = new ArrayList<>();
+        List<Thread> threads = callConcurrently(8, results);
+        waitForShared(7);
+        transport.release.countDown();
+        for (Thread t : threads)
+            t.join();
+        assertEquals(1, transport.posts.get());
+        assertEquals(8, results.size());
+        for (Object r : results)
+            assertEquals(1, r);
+
+        // reused within the time to live
+        assertEquals(1, client.getBlockCount());
+        assertEquals(1, coalescer.getCachedCount());
+        coalescer.invalidateAll();
+        assertEquals(2, client.getBlockCount());
+
+        // other params, other methods
+        client.query("getblockhash", 1);
+        client.query("getblockhash", 2);
+        client.query("getblockhash", 1);
+        client.query("getbalance");
+        client.query("getbalance");
+        assertEquals(6, transport.posts.get());
+    }
+
+    @Test
+    public void sharesErrorsWithoutKeepingThem() throws Exception {
+        transport.release = new CountDownLatch(1);
+        transport.fail = true;
+        List<Object> results = new ArrayList<>();
+        List<Thread> threads = callConcurrently(4, results);
+        waitForShared(3);
+        transport.release.countDown();
+        for (Thread t : threads)
+            t.join();
+        assertEquals(1, transport.posts.get());
+        for (Object r : results)
+            assertTrue(r instanceof KomodoRpcException);
+
+        transport.fail = false;
+        assertEquals(2, client.getBlockCount());
+    }
+
+    @Test
+    public void releasesWaitersOnAnyFailure() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Throwable> thrown = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        coalescer.call(null, "getblockcount", new Object[0], new Callable<Object>() {
+                            @Override
+                            public Object call() throws Exception {
+                                release.await();
+                                throw new StackOverflowError();
+                            }
+                        });
+                    } catch (Throwable ex) {
+                        synchronized (thrown) {
+                            thrown.add(ex);
+                        }
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        waitForShared(1);
+        release.countDown();
+        for (Thread t : threads)
+            t.join(5000);
+        assertEquals(2, thrown.size());
+        for (Throwable ex : thrown)
+            assertTrue(ex instanceof StackOverflowError);
+        assertEquals(1, client.getBlockCount());
+    }
+
+    @Test
+    public void expiresAfterTtl() throws Exception {
+        coalescer.setTtl("getblockcount", 20);
+        assertEquals(1, client.getBlockCount());
+        assertEquals(1, client.getBlockCount());
+        Thread.sleep(40);
+        assertEquals(2, client.getBlockCount());
+
+        coalescer.setTtl("getblockcount", -1);
+        assertFalse(coalescer.coalesces("getblockcount"));
+        assertEquals(3, client.getBlockCount());
+        assertEquals(4, client.getBlockCount());
+    }
+}
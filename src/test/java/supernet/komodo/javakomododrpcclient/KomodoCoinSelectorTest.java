@@ -0,0 +1,76 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class KomodoCoinSelectorTest {
+
+    static long sum(long[] amounts, int[] selection) {
+        Set<Integer> distinct = new HashSet<>();
+        long v = 0;
+        for (int i : selection) {
+            assertTrue(distinct.add(i));
+            v += amounts[i];
+        }
+        return v;
+    }
+
+    @Test
+    public void findsExactMatch() {
+        long[] amounts = {500, 3000, 7000, 1200, 2500, 900};
+        int[] s = new KomodoCoinSelector.BranchAndBound(0, 100).select(amounts, 4600);
+        assertEquals(4600, sum(amounts, s));
+        // within the cost of change
+        s = new KomodoCoinSelector.BranchAndBound(50, 100).select(amounts, 4560);
+        assertEquals(4600, sum(amounts, s));
+        assertNull(new KomodoCoinSelector.BranchAndBound(0, 100).select(amounts, 100));
+        assertNull(new KomodoCoinSelector.BranchAndBound(0, 100).select(amounts, 20000));
+    }
+
+    @Test
+    public void ordersByAmount() {
+        long[] amounts = {500, 3000, 7000, 1200};
+        assertArrayEquals(new int[]{2}, new KomodoCoinSelector.LargestFirst(100).select(amounts, 6000));
+        assertArrayEquals(new int[]{0, 3, 1}, new KomodoCoinSelector.SmallestFirst(10, 100).select(amounts, 2000));
+        assertNull(new KomodoCoinSelector.SmallestFirst(2, 100).select(amounts, 2000));
+    }
+
+    @Test
+    public void improvesTowardsTwiceTheTarget() {
+        long[] amounts = new long[1000];
+        for (int i = 0; i < amounts.length; i++)
+            amounts[i] = 1000;
+        int[] s = new KomodoCoinSelector.RandomImprove(100, new Random(1)).select(amounts, 10000);
+        assertEquals(20000, sum(amounts, s));
+    }
+
+    @Test
+    public void selectsAmongManyOutputs() {
+        Random r = new Random(1);
+        long[] amounts = new long[100000];
+        long total = 0;
+        for (int i = 0; i < amounts.length; i++)
+            total += amounts[i] = 10000 + (long) (Math.abs(r.nextGaussian()) * 100000000L);
+        long target = 123456789012L;
+        KomodoCoinSelector[] selectors = {
+            new KomodoCoinSelector.BranchAndBound(10000, 200),
+            new KomodoCoinSelector.LargestFirst(200),
+            new KomodoCoinSelector.SmallestFirst(100000, 200),
+            new KomodoCoinSelector.RandomImprove(200, new Random(1)),
+            KomodoCoinSelector.DEFAULT
+        };
+        for (KomodoCoinSelector selector : selectors) {
+            int[] s = selector.select(amounts, target);
+            if (s != null)
+                assertTrue(sum(amounts, s) >= target);
+            else
+                assertTrue(selector instanceof KomodoCoinSelector.BranchAndBound);
+        }
+        assertNull(KomodoCoinSelector.DEFAULT.select(amounts, total + 1));
+    }
+}
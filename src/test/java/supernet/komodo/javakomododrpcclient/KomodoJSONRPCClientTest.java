@@ -4,7 +4,12 @@ import org.junit.Before;
 import org.junit.Test;
 import supernet.komodo.krotjson.JSON;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.core.Is.is;
@@ -97,4 +102,149 @@ public class KomodoJSONRPCClientTest {
         assertEquals("0100000001b8b2244faca910c1ffff24ecd2b559b4699338398bf77e4cb1fdeb19ad419ea0010000006b483045022100b68b7fe9cfabb32949af6747b6769dffcf2aa4170e4df2f0e9d0a4571989e94e02204cf506c210cdb6b6b4413bf251a0b57ebcf1b1b2d303ba6183239b557ef0a310012102ab46e1d7b997d8094e97bc06a21a054c2ef485fac512e2dc91eb9831af55af4effffffff012e2600000000000017a9140b2d7ed4e5076383ba8e98b9b3bce426b7a2ea1e8700000000",
                     hex);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void batchTest() throws Exception {
+        final StringBuilder request = new StringBuilder();
+        KomodoJSONRPCClient batchClient = new KomodoJSONRPCClient(false);
+        FakeRpcTransport fake = new FakeRpcTransport() {
+            @Override
+            public <T> T post(byte[] r, ResponseHandler<T> handler) throws IOException {
+                request.append(new String(r, CHARSET));
+                return super.post(r, handler);
+            }
+
+            @Override
+            protected Object result(String method, List params) {
+                if (method.equals("getblock"))
+                    return JSON.parse("{\"hash\":\"00000a1b\",\"height\":5,\"previousblockhash\":\"00000f00\"}");
+                if (((Number) params.get(0)).intValue() > 5)
+                    throw new RpcError(-8, 500, "Block height out of range");
+                return "00000a1b";
+            }
+        };
+        fake.reverseBatches = true;
+        batchClient.setTransport(fake);
+        List<KomodoJSONRPCClient.BatchResult> results = batchClient.batch()
+                .getBlockHash(5)
+                .getBlockHash(999999999)
+                .getBlock("00000a1b")
+                .execute();
+        assertEquals("[{\"method\":\"getblockhash\",\"params\":[5],\"id\":0}," +
+                "{\"method\":\"getblockhash\",\"params\":[999999999],\"id\":1}," +
+                "{\"method\":\"getblock\",\"params\":[\"00000a1b\"],\"id\":2}]", request.toString());
+        assertEquals(3, results.size());
+        assertEquals("00000a1b", results.get(0).get());
+        assertTrue(results.get(1).isError());
+        KomododRpcClient.Block block = results.get(2).get();
+        assertEquals(5, block.height());
+        assertEquals("00000f00", block.previousHash());
+    }
+
+    @Test
+    public void decodesLocally() throws Exception {
+        String hex = "0100000001b8b2244faca910c1ffff24ecd2b559b4699338398bf77e4cb1fdeb19ad419ea0010000006b483045022100b68b7fe9cfabb32949af6747b6769dffcf2aa4170e4df2f0e9d0a4571989e94e02204cf506c210cdb6b6b4413bf251a0b57ebcf1b1b2d303ba6183239b557ef0a310012102ab46e1d7b997d8094e97bc06a21a054c2ef485fac512e2dc91eb9831af55af4effffffff012e2600000000000017a9140b2d7ed4e5076383ba8e98b9b3bce426b7a2ea1e8700000000";
+        client = new MyClientTest(false, "getrawtransaction", null, "\"" + hex + "\"");
+        client.setLocalDecoding(true);
+        KomododRpcClient.RawTransaction tx = client.getRawTransaction("00");
+        assertEquals("a09e41ad19ebfdb14c7ef78b39389369b459b5d2ec24ffffc110a9ac4f24b2b8", tx.vIn().get(0).txid());
+        assertEquals(1, tx.vIn().get(0).vout());
+        assertTrue(((String) tx.vIn().get(0).scriptSig().get("asm")).endsWith("ef0a310[ALL] 02ab46e1d7b997d8094e97bc06a21a054c2ef485fac512e2dc91eb9831af55af4e"));
+        assertEquals(0.00009774, tx.vOut().get(0).value(), 1e-12);
+        assertEquals("scripthash", tx.vOut().get(0).scriptPubKey().type());
+        assertNull(tx.blockHash());
+        assertEquals(hex, client.decodeRawTransaction(hex).hex());
+    }
+
+    @Test
+    public void decodesTypedResultsWhileReading() throws Exception {
+        final StringBuilder filler = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+            filler.append("{\"asm\":\"OP_DUP\",\"n\":").append(i).append("},");
+        KomodoJSONRPCClient typed = new KomodoJSONRPCClient(false);
+        typed.setTransport(new FakeRpcTransport() {
+            @Override
+            protected Object result(String method, List params) {
+                return JSON.parse(method.equals("getblock")
+                        ? "{\"hash\":\"00000a1b\",\"height\":5,\"nonce\":\"0000ff\",\"time\":1500000000,\"tx\":[\"aa\",\"bb\"],\"solution\":\"ffff\"}"
+                        : "[{\"txid\":\"aa\",\"vout\":1,\"unknown\":[" + filler + "null],\"amount\":0.5,\"confirmations\":3}]");
+            }
+        });
+        List<KomododRpcClient.Unspent> unspent = typed.listUnspent();
+        assertEquals(1, unspent.size());
+        assertEquals("aa", unspent.get(0).txid());
+        assertEquals(1, unspent.get(0).vout());
+        assertEquals(0.5, unspent.get(0).amount(), 0);
+        assertEquals(50000000, unspent.get(0).satoshis());
+        assertEquals(3, unspent.get(0).confirmations());
+        KomododRpcClient.Block block = typed.getBlock("00000a1b");
+        assertEquals(5, block.height());
+        assertEquals(0, block.nonce());
+        assertEquals(1500000000000L, block.time().getTime());
+        assertEquals(Arrays.asList("aa", "bb"), block.tx());
+        assertNull(block.nextHash());
+    }
+
+    @Test
+    public void decodesVerboseTransactionsExactly() throws Exception {
+        client = new MyClientTest(false, "getrawtransaction", null,
+                "{\"txid\":\"cc\",\"version\":4,\"locktime\":7,\"vin\":[{\"txid\":\"aa\",\"vout\":1,\"scriptSig\":{\"asm\":\"\"},\"sequence\":4294967295}],"
+                        + "\"vout\":[{\"value\":92233720.36854775,\"valueSat\":9223372036854775,\"n\":0,"
+                        + "\"scriptPubKey\":{\"type\":\"pubkeyhash\",\"reqSigs\":1,\"addresses\":[\"RXL3YXG2ceaB6C5hfJcN4fvmLH2C34knhA\"]}}],\"blockhash\":\"bb\",\"time\":1500000000}");
+        KomododRpcClient.RawTransaction tx = client.getRawTransaction("cc");
+        assertEquals("cc", tx.txId());
+        assertEquals(7, tx.lockTime());
+        assertEquals("aa", tx.vIn().get(0).txid());
+        assertEquals(4294967295L, tx.vIn().get(0).sequence());
+        KomododRpcClient.RawTransaction.Out out = tx.vOut().get(0);
+        // a double would round it to ...776
+        assertEquals(9223372036854775L, out.satoshis());
+        assertEquals("pubkeyhash", out.scriptPubKey().type());
+        assertEquals(Arrays.asList("RXL3YXG2ceaB6C5hfJcN4fvmLH2C34knhA"), out.scriptPubKey().addresses());
+        assertSame(tx, out.transaction());
+        assertEquals("cc", out.toInput().txid());
+        assertEquals(1500000000000L, tx.time().getTime());
+        assertNull(tx.blocktime());
+
+        client = new MyClientTest(false, "getinfo", null,
+                "{\"version\":1001550,\"KMDversion\":\"0.5.0\",\"notarizedtxid_height\":\"mempool\",\"balance\":1.5,\"blocks\":12,\"testnet\":false,\"unknown\":{}}");
+        KomododRpcClient.Info info = client.getInfo();
+        assertEquals(1001550, info.version());
+        assertEquals("0.5.0", info.KMDversion());
+        assertEquals("mempool", info.notarizedtxid_height());
+        assertEquals(1.5, info.balance(), 0);
+        assertEquals(12, info.blocks());
+        assertFalse(info.testnet());
+    }
+
+    @Test
+    public void movesSatoshisExactly() throws Exception {
+        final StringBuilder request = new StringBuilder();
+        KomodoJSONRPCClient exact = new KomodoJSONRPCClient(false);
+        exact.setTransport(new FakeRpcTransport() {
+            @Override
+            public <T> T post(byte[] r, ResponseHandler<T> handler) throws IOException {
+                request.setLength(0);
+                request.append(new String(r, CHARSET));
+                return super.post(r, handler);
+            }
+
+            @Override
+            protected Object result(String method, List params) {
+                return method.startsWith("send") ? "cc" : JSON.parse("92233720.36854775");
+            }
+        });
+        // a double would round both to ...776
+        assertEquals(9223372036854775L, exact.getBalanceSatoshis());
+        assertEquals(9223372036854775L, exact.getReceivedByAddressSatoshis("RA", 1));
+        assertEquals("cc", exact.sendToAddressSatoshis("RA", 9223372036854775L));
+        assertTrue(request.toString().contains("\"params\":[\"RA\",92233720.36854775]"));
+        assertEquals("cc", exact.sendFromSatoshis("", "RA", 1, 6));
+        assertTrue(request.toString().contains("\"params\":[\"\",\"RA\",0.00000001,6]"));
+        Map<String, Long> amounts = new LinkedHashMap<>();
+        amounts.put("RA", 150000000L);
+        amounts.put("RB", 9223372036854775L);
+        assertEquals("cc", exact.sendManySatoshis("", amounts));
+        assertTrue(request.toString().contains("\"params\":[\"\",{\"RA\":1.50000000,\"RB\":92233720.36854775}]"));
+    }
+}
@@ -0,0 +1,74 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KomodoRawTxSerializerTest {
+
+    static final String TXID = "0e3e2357e806b6cdb1f70b54c3a3a17b6714ee1f0e68bebb44a74b1efd512098";
+
+    static String address(int version, String hash) {
+        byte[] a = new byte[21];
+        a[0] = (byte) version;
+        KomodoUtil.decodeHex(hash, a, 1);
+        return KomodoUtil.encodeBase58Check(a);
+    }
+
+    @Test
+    public void decodesBase58Check() {
+        assertEquals("00010966776006953d5567439e5e39f86a0d273bee", KomodoUtil.encodeHex(KomodoUtil.decodeBase58Check("16UwLL9Risc3QfPqBUvKofHmBQ7wMtjvM")));
+        assertEquals("16UwLL9Risc3QfPqBUvKofHmBQ7wMtjvM", address(0, "010966776006953d5567439e5e39f86a0d273bee"));
+        try {
+            KomodoUtil.decodeBase58Check("16UwLL9Risc3QfPqBUvKofHmBQ7wMtjvN");
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+        assertTrue(address(60, "010966776006953d5567439e5e39f86a0d273bee").startsWith("R"));
+        assertTrue(address(85, "010966776006953d5567439e5e39f86a0d273bee").startsWith("b"));
+    }
+
+    @Test
+    public void writesSaplingTransaction() {
+        String pkh = "010966776006953d5567439e5e39f86a0d273bee";
+        String sh = "f815b036d9bbbce5e9f2a00abd1bf3dc91e95510";
+        List<KomododRpcClient.TxInput> inputs = Arrays.<KomododRpcClient.TxInput>asList(new KomododRpcClient.BasicTxInput(TXID, 1));
+        List<KomododRpcClient.TxOutput> outputs = Arrays.<KomododRpcClient.TxOutput>asList(
+                new KomododRpcClient.BasicTxOutput(address(60, pkh), 1.5),
+                new KomododRpcClient.BasicTxOutput(address(85, sh), 0.0001));
+        String hex = new KomodoRawTxSerializer().serializeHex(inputs, outputs, 0x5f5e0ff, 1200000);
+        assertEquals("04000080" + "85202f89"
+                + "01" + "982051fd1e4ba744bbbe680e1fee14677ba1a3c3540bf7b1cdb606e857233e0e" + "01000000" + "00" + "feffffff"
+                + "02"
+                + "80d1f00800000000" + "19" + "76a914" + pkh + "88ac"
+                + "1027000000000000" + "17" + "a914" + sh + "87"
+                + "ffe0f505" + "804f1200"
+                + "0000000000000000" + "00" + "00" + "00", hex);
+    }
+
+    @Test
+    public void writesOlderVersions() {
+        List<KomododRpcClient.TxInput> inputs = Arrays.<KomododRpcClient.TxInput>asList(new KomododRpcClient.BasicTxInput(TXID, 0));
+        List<KomododRpcClient.TxOutput> outputs = Collections.emptyList();
+        String in = "01" + "982051fd1e4ba744bbbe680e1fee14677ba1a3c3540bf7b1cdb606e857233e0e" + "00000000" + "00" + "ffffffff" + "00";
+        assertEquals("01000000" + in + "00000000",
+                new KomodoRawTxSerializer(1, 60, 85).serializeHex(inputs, outputs, 0, 0));
+        assertEquals("02000000" + in + "00000000" + "00",
+                new KomodoRawTxSerializer(2, 60, 85).serializeHex(inputs, outputs, 0, 0));
+        assertEquals("03000080" + "7082c403" + in + "00000000" + "0a000000" + "00",
+                new KomodoRawTxSerializer(3, 60, 85).serializeHex(inputs, outputs, 0, 10));
+    }
+
+    @Test
+    public void rejectsForeignAddresses() {
+        try {
+            new KomodoRawTxSerializer().outputScript("16UwLL9Risc3QfPqBUvKofHmBQ7wMtjvM");
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KomodoRawTxViewTest {
+
+    // the coinbase of Bitcoin's genesis block, a version 1 transaction
+    static final String GENESIS = "01000000010000000000000000000000000000000000000000000000000000000000000000ffffffff4d04ffff001d0104455468652054696d65732030332f4a616e2f32303039204368616e63656c6c6f72206f6e206272696e6b206f66207365636f6e64206261696c6f757420666f722062616e6b73ffffffff0100f2052a01000000434104678afdb0fe5548271967f1a67130b7105cd6a828e03909a67962e0ea1f61deb649f6bc3f4cef38c4f35504e51ec112de5c384df7ba0b8d578a4c702b6bf11d5fac00000000";
+
+    @Test
+    public void hashesRipemd160() {
+        assertEquals("9c1185a5c5e9fc54612808977ee8f548b2258d31", KomodoUtil.encodeHex(KomodoUtil.ripemd160(new byte[0], 0, 0)));
+        byte[] abc = {'a', 'b', 'c'};
+        assertEquals("8eb208f7e05d987a9b044a8e98c6b087f15a0bfc", KomodoUtil.encodeHex(KomodoUtil.ripemd160(abc, 0, 3)));
+    }
+
+    @Test
+    public void readsCoinbase() {
+        KomodoRawTxView tx = new KomodoRawTxView(ByteBuffer.wrap(KomodoUtil.decodeHex(GENESIS)), 0, 5);
+        assertEquals("4a5e1e4baab89f3a32518a88c31bc87f618f76673e2cc77ab2127b7afdeda33b", tx.txId());
+        assertEquals(1, tx.version());
+        assertFalse(tx.overwintered());
+        assertEquals(204, tx.size());
+        assertNull(tx.vIn().get(0).txid());
+        assertTrue(((String) tx.vIn().get(0).scriptSig().get("coinbase")).startsWith("04ffff001d"));
+        assertEquals(0xffffffffL, tx.vIn().get(0).sequence());
+        KomododRpcClient.RawTransaction.Out out = tx.vOut().get(0);
+        assertEquals(50, out.value(), 0);
+        assertEquals("pubkey", out.scriptPubKey().type());
+        assertEquals(1, out.scriptPubKey().reqSigs());
+        assertEquals(Collections.singletonList("1A1zP1eP5QGefi2DMPTfTL5SLmv7DivfNa"), out.scriptPubKey().addresses());
+        assertTrue(out.scriptPubKey().asm().endsWith("1d5f OP_CHECKSIG"));
+        assertEquals(GENESIS, tx.hex());
+    }
+
+    @Test
+    public void readsWhatTheSerializerWrites() throws Exception {
+        String pkh = "010966776006953d5567439e5e39f86a0d273bee";
+        String to = KomodoRawTxSerializerTest.address(60, pkh);
+        String sh = KomodoRawTxSerializerTest.address(85, "f815b036d9bbbce5e9f2a00abd1bf3dc91e95510");
+        List<KomododRpcClient.TxInput> inputs = Arrays.<KomododRpcClient.TxInput>asList(
+                new KomododRpcClient.BasicTxInput(KomodoRawTxSerializerTest.TXID, 1),
+                new KomododRpcClient.BasicTxInput(KomodoRawTxSerializerTest.TXID, 300));
+        List<KomododRpcClient.TxOutput> outputs = Arrays.<KomododRpcClient.TxOutput>asList(
+                new KomododRpcClient.BasicTxOutput(to, 1.5),
+                new KomododRpcClient.BasicTxOutput(sh, 0.0001));
+        String hex = new KomodoRawTxSerializer().serializeHex(inputs, outputs, 1234, 1200000);
+        KomodoRawTxView tx = KomodoRawTxView.decode(hex);
+        assertEquals(4, tx.version());
+        assertTrue(tx.overwintered());
+        assertEquals(KomodoRawTxSerializer.SAPLING_VERSION_GROUP_ID, tx.versionGroupId());
+        assertEquals(1234, tx.lockTime());
+        assertEquals(1200000, tx.expiryHeight());
+        assertEquals(0, tx.valueBalance());
+        assertEquals(2, tx.vIn().size());
+        assertEquals(KomodoRawTxSerializerTest.TXID, tx.vIn().get(1).txid());
+        assertEquals(300, tx.vIn().get(1).vout());
+        assertEquals(0xfffffffeL, tx.vIn().get(1).sequence());
+        assertEquals("", tx.vIn().get(0).scriptSig().get("asm"));
+        assertEquals(2, tx.vOut().size());
+        assertEquals(1.5, tx.vOut().get(0).value(), 0);
+        assertEquals("pubkeyhash", tx.vOut().get(0).scriptPubKey().type());
+        assertEquals("OP_DUP OP_HASH160 " + pkh + " OP_EQUALVERIFY OP_CHECKSIG", tx.vOut().get(0).scriptPubKey().asm());
+        assertEquals(Collections.singletonList(to), tx.vOut().get(0).scriptPubKey().addresses());
+        assertEquals("scripthash", tx.vOut().get(1).scriptPubKey().type());
+        assertEquals(Collections.singletonList(sh), tx.vOut().get(1).scriptPubKey().addresses());
+        assertEquals(KomodoUtil.encodeHex(reverse(KomodoUtil.sha256d(KomodoUtil.decodeHex(hex), 0, hex.length() / 2))), tx.txId());
+        assertEquals(hex, tx.hex());
+
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        new ObjectOutputStream(b).writeObject(tx);
+        KomodoRawTxView copy = (KomodoRawTxView) new ObjectInputStream(new ByteArrayInputStream(b.toByteArray())).readObject();
+        assertEquals(tx.txId(), copy.txId());
+        assertEquals(sh, copy.vOut().get(1).scriptPubKey().addresses().get(0));
+    }
+
+    static byte[] reverse(byte[] b) {
+        for (int i = 0; i < b.length / 2; i++) {
+            byte t = b[i];
+            b[i] = b[b.length - 1 - i];
+            b[b.length - 1 - i] = t;
+        }
+        return b;
+    }
+
+    @Test
+    public void rejectsMalformedBytes() {
+        for (String hex : new String[]{"", "01000000", GENESIS + "00", GENESIS.substring(0, GENESIS.length() - 2), "0400008000000000"})
+            try {
+                KomodoRawTxView.decode(hex);
+                fail(hex);
+            } catch (IllegalArgumentException ex) {
+            }
+    }
+}
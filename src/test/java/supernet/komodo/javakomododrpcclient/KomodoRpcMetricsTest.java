@@ -0,0 +1,145 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KomodoRpcMetricsTest {
+
+    @Test
+    public void bucketsStayWithinThreePercent() {
+        int last = -1;
+        for (long v = 0; v < (1L << 36); v = v < 100 ? v + 1 : v + v / 7) {
+            int i = KomodoRpcMetrics.index(v);
+            assertTrue(i >= last);
+            last = i;
+            long high = KomodoRpcMetrics.value(i);
+            assertTrue(v + " <= " + high, v <= high);
+            assertTrue(v + " ~ " + high, high - v <= Math.max(1, v / 32));
+        }
+    }
+
+    @Test
+    public void percentilesOfRecordedLatencies() {
+        KomodoRpcMetrics.Method m = new KomodoRpcMetrics().method("getblock");
+        for (int i = 1; i <= 1000; i++) {
+            long start = m.start(10);
+            // latencies of 1 to 1000 microseconds
+            m.succeeded(start - i * 1000L, 100);
+        }
+        KomodoRpcMetrics.Snapshot s = m.snapshot();
+        assertEquals(1000, s.count);
+        assertEquals(0, s.inFlight);
+        assertEquals(10000, s.requestBytes);
+        assertEquals(100000, s.responseBytes);
+        assertEquals(500e3, s.percentile(50), 20e3);
+        assertEquals(990e3, s.percentile(99), 35e3);
+        assertTrue(s.maxNanos >= 1000000);
+        assertTrue(s.percentile(100) <= s.maxNanos);
+    }
+
+    @Test
+    public void recordsWithoutAllocating() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return;
+        com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+        KomodoRpcMetrics metrics = new KomodoRpcMetrics();
+        for (int i = 0; i < 20000; i++)
+            metrics.method("getblockcount").failed(metrics.method("getblockcount").start(1), 1, 500);
+        long before = t.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 100000; i++) {
+            KomodoRpcMetrics.Method m = metrics.method("getblockcount");
+            long start = m.start(64);
+            if ((i & 1) == 0)
+                m.succeeded(start, 128);
+            else
+                m.failed(start, 128, 500);
+        }
+        long allocated = t.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        assertTrue(allocated + " bytes", allocated < 100000);
+    }
+
+    @Test
+    public void reusesCountingHandlerOfThread() throws Exception {
+        KomodoRpcTransport.ResponseHandler<Integer> read = new KomodoRpcTransport.ResponseHandler<Integer>() {
+            @Override
+            public Integer handle(int responseCode, String responseMessage, InputStream in) throws IOException {
+                return in.read(new byte[16]);
+            }
+        };
+        KomodoRpcMetrics.CountingHandler<Integer> c = KomodoRpcMetrics.counting(read);
+        // an enclosing call holds it
+        KomodoRpcMetrics.CountingHandler<Integer> nested = KomodoRpcMetrics.counting(read);
+        assertNotSame(c, nested);
+        assertEquals(3, (int) nested.handle(200, "OK", new ByteArrayInputStream(new byte[3])));
+        assertEquals(3, nested.bytes);
+        nested.release();
+        c.release();
+        KomodoRpcMetrics.CountingHandler<Integer> again = KomodoRpcMetrics.counting(read);
+        assertSame(c, again);
+        assertEquals(0, again.bytes);
+        again.handle(200, "OK", new ByteArrayInputStream(new byte[5]));
+        assertEquals(5, again.bytes);
+        again.release();
+    }
+
+    @Test
+    public void recordsClientCallsAndServesJmx() throws Exception {
+        KomodoJSONRPCClient client = new KomodoJSONRPCClient(false);
+        client.setTransport(new FakeRpcTransport() {
+            @Override
+            protected Object result(String method, List params) {
+                switch (method) {
+                    case "getblockcount":
+                        return 7;
+                    case "getblockhash":
+                        // an RPC error in a successful HTTP response
+                        throw new RpcError(-8, 200, "Block height out of range");
+                    default:
+                        throw new RpcError(-32603, 500, "Internal error");
+                }
+            }
+        });
+        KomodoRpcMetrics metrics = client.getMetrics();
+        metrics.register("test");
+        try {
+            for (int i = 0; i < 3; i++)
+                assertEquals(7, client.getBlockCount());
+            try {
+                client.getBlockHash(99);
+                fail();
+            } catch (KomodoRpcException expected) {
+            }
+            try {
+                client.getBestBlockHash();
+                fail();
+            } catch (KomodoRPC2Exception expected) {
+            }
+
+            KomodoRpcMetrics.Snapshot s = metrics.snapshot("getblockcount");
+            assertEquals(3, s.count);
+            assertEquals(0, s.errors);
+            assertEquals(3 * "{\"result\":7,\"error\":null,\"id\":\"1\"}".length(), s.responseBytes);
+            assertTrue(s.requestBytes > 0);
+            assertEquals(1, (long) metrics.snapshot("getblockhash").errorsByCode.get(-1));
+            assertEquals(1, (long) metrics.snapshot("getbestblockhash").errorsByCode.get(500));
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("supernet.komodo.javakomododrpcclient:type=KomodoRpcMetrics,name=\"test\",method=\"getbestblockhash\"");
+            assertEquals(1L, server.getAttribute(name, "ErrorCount"));
+            assertEquals(3L, server.getAttribute(new ObjectName("supernet.komodo.javakomododrpcclient:type=KomodoRpcMetrics,name=\"test\",method=\"getblockcount\""), "Count"));
+        } finally {
+            metrics.unregister();
+        }
+        assertTrue(ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName("supernet.komodo.javakomododrpcclient:type=KomodoRpcMetrics,*"), null).isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class KomodoTxIdTableTest {
+
+    static String txId(Random r) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 4; i++)
+            b.append(String.format("%016x", r.nextLong()));
+        return b.toString();
+    }
+
+    @Test
+    public void addsAndGrows() {
+        KomodoTxIdTable t = new KomodoTxIdTable(100000, 0);
+        Random r = new Random(1);
+        for (int i = 0; i < 10000; i++)
+            assertTrue(t.add(txId(r)));
+        r = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            String txId = txId(r);
+            assertFalse(t.add(txId));
+            assertTrue(t.contains(txId.toUpperCase()));
+        }
+        assertFalse(t.contains(txId(new Random(2))));
+        assertEquals(10000, t.size());
+        assertTrue(t.add("not a txid"));
+        assertFalse(t.add("not a txid"));
+    }
+
+    @Test
+    public void keepsValues() {
+        KomodoTxIdTable t = new KomodoTxIdTable(10, 0);
+        String a = txId(new Random(1));
+        assertEquals(-1, t.put(a, 3));
+        assertEquals(3, t.put(a, 4));
+        t.rotate();
+        assertEquals(4, t.get(a));
+        // moved back to the current generation
+        assertEquals(4, t.put(a, 5));
+        t.rotate();
+        assertEquals(5, t.get(a));
+        t.rotate();
+        assertEquals(-1, t.get(a));
+    }
+
+    @Test
+    public void boundsEntries() {
+        KomodoTxIdTable t = new KomodoTxIdTable(1000, 0);
+        Random r = new Random(1);
+        for (int i = 0; i < 100000; i++)
+            t.add(txId(r));
+        assertTrue(t.size() <= 2000);
+        assertTrue(t.size() >= 1000);
+    }
+
+    @Test
+    public void expiresAfterWindow() throws Exception {
+        KomodoTxIdTable t = new KomodoTxIdTable(1000, 50);
+        String a = txId(new Random(1));
+        t.add(a);
+        Thread.sleep(120);
+        t.add(txId(new Random(2)));
+        assertFalse(t.contains(a));
+    }
+
+    @Test
+    public void servesAsSet() {
+        KomodoTxIdTable t = new KomodoTxIdTable(10, 0);
+        Set<String> s = t.asSet();
+        String a = txId(new Random(1));
+        assertTrue(s.add(a));
+        assertFalse(s.add(a));
+        assertTrue(s.contains(a));
+        assertTrue(t.contains(a));
+        assertFalse(s.contains(txId(new Random(2))));
+        assertEquals(1, s.size());
+        assertTrue(s.remove(a));
+        assertFalse(s.remove(a));
+        assertFalse(t.contains(a));
+        assertTrue(s.add(a));
+        s.clear();
+        assertTrue(s.isEmpty());
+    }
+
+    @Test
+    public void removesFromBothGenerations() {
+        KomodoTxIdTable t = new KomodoTxIdTable(100000, 0);
+        Random r = new Random(1);
+        for (int i = 0; i < 1000; i++)
+            t.add(txId(r));
+        t.rotate();
+        // tombstones do not fill the table nor hide the entries after them
+        for (int round = 0; round < 100; round++) {
+            r = new Random(1);
+            for (int i = 0; i < 1000; i++) {
+                String txId = txId(r);
+                assertTrue(t.contains(txId));
+                assertTrue(t.remove(txId));
+                assertFalse(t.contains(txId));
+                assertEquals(-1, t.put(txId, round));
+            }
+        }
+        assertEquals(1000, t.size());
+        assertEquals(99, t.get(txId(new Random(1))));
+    }
+}
@@ -0,0 +1,162 @@
+package supernet.komodo.javakomododrpcclient;
+
+import org.junit.Before;
+import org.junit.Test;
+import supernet.komodo.krotjson.JSON;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KomodoUtxoIndexTest {
+
+    static String txId(int n) {
+        return String.format("%064x", n);
+    }
+
+    static String unspent(int tx, int vout, String amount, int confirmations) {
+        return "{\"txid\":\"" + txId(tx) + "\",\"vout\":" + vout + ",\"address\":\"RA\",\"scriptPubKey\":\"76a9\",\"amount\":" + amount + ",\"confirmations\":" + confirmations + "}";
+    }
+
+    static class WalletTransport extends FakeRpcTransport {
+
+        int tip = 100;
+        String unspent = "";
+        String transactions = "";
+        Map<String, String> raw = new LinkedHashMap<>();
+
+        @Override
+        protected Object result(String method, List params) {
+            switch (method) {
+                case "getbestblockhash":
+                    return "b" + tip;
+                case "getblockcount":
+                    return tip;
+                case "listunspent":
+                    return JSON.parse("[" + unspent + "]");
+                case "listsinceblock":
+                    return JSON.parse("{\"transactions\":[" + transactions + "],\"lastblock\":\"b" + tip + "\"}");
+                case "getrawtransaction":
+                    return JSON.parse(raw.get((String) params.get(0)));
+                default:
+                    throw new RpcError(-32601, 404, "Method not found");
+            }
+        }
+    }
+
+    WalletTransport wallet;
+    KomodoJSONRPCClient client;
+    KomodoUtxoIndex utxos;
+
+    @Before
+    public void setUp() throws Exception {
+        wallet = new WalletTransport();
+        wallet.unspent = unspent(1, 0, "1.5", 10) + "," + unspent(2, 1, "0.25", 3) + "," + unspent(3, 0, "1.5", 20) + "," + unspent(4, 0, "7", 0);
+        client = new KomodoJSONRPCClient(false);
+        client.setTransport(wallet);
+        utxos = new KomodoUtxoIndex(client);
+        utxos.reload();
+    }
+
+    @Test
+    public void ordersByAmountThenConfirmations() {
+        List<KomodoUtxoIndex.Utxo> l = utxos.unspent(1);
+        assertEquals(3, l.size());
+        assertEquals(txId(3), l.get(0).txid());
+        assertEquals(txId(1), l.get(1).txid());
+        assertEquals(txId(2), l.get(2).txid());
+        assertEquals(25000000L, l.get(2).amount);
+        assertEquals(1025000000L, utxos.total());
+        assertEquals(150000000L, utxos.amount(txId(1), 0));
+        assertEquals(-1, utxos.amount(txId(1), 1));
+    }
+
+    @Test
+    public void loadsOutputsInAnyOrder() {
+        Random r = new Random(1);
+        StringBuilder b = new StringBuilder();
+        long total = 0;
+        for (int i = 0; i < 20000; i++) {
+            long amount = 1 + r.nextInt(1000) * 100000L;
+            total += amount;
+            if (i > 0)
+                b.append(',');
+            b.append(unspent(100 + i, i % 3, KomodoUtil.toAmount(amount).toPlainString(), r.nextInt(50)));
+        }
+        wallet.unspent = b.toString();
+        utxos.reload();
+        assertEquals(20000, utxos.size());
+        assertEquals(total, utxos.total());
+        assertOrdered(utxos.unspent(0));
+        // updates still insert into the order
+        wallet.tip = 101;
+        wallet.transactions = "{\"txid\":\"" + txId(5) + "\",\"vout\":0,\"address\":\"RA\",\"category\":\"receive\",\"amount\":0.5,\"confirmations\":1}";
+        utxos.update();
+        assertEquals(total + 50000000L, utxos.total());
+        assertEquals(50000000L, utxos.amount(txId(5), 0));
+        assertOrdered(utxos.unspent(0));
+    }
+
+    static void assertOrdered(List<KomodoUtxoIndex.Utxo> l) {
+        for (int i = 1; i < l.size(); i++) {
+            KomodoUtxoIndex.Utxo p = l.get(i - 1), u = l.get(i);
+            assertTrue(p.amount > u.amount || p.amount == u.amount && p.confirmations >= u.confirmations);
+        }
+    }
+
+    @Test
+    public void buildsWithoutRpc() {
+        KomodoRawTxBuilder b = new KomodoRawTxBuilder(client, utxos);
+        wallet.methods.clear();
+        b.in(2, 6).out("RB", 2).outChange("RC", 0.0001);
+        assertTrue(wallet.methods.isEmpty());
+        assertEquals(2, b.inputs.size());
+        assertEquals(0.9999, b.outputs.get(1).amount(), 1e-9);
+        try {
+            b.in(1, 6);
+            fail();
+        } catch (KomodoRpcException ex) {
+        }
+    }
+
+    @Test
+    public void leavesChangeBelowItsCostToFee() {
+        wallet.unspent = unspent(5, 0, "1.00015", 10);
+        utxos.reload();
+        KomodoRawTxBuilder b = new KomodoRawTxBuilder(client, utxos);
+        // a match without change, 5000 satoshis over the target
+        b.in(1.0001, 6).out("RB", 1.0).outChange("RC", 0.0001);
+        assertEquals(1, b.inputs.size());
+        assertEquals(1, b.outputs.size());
+        assertEquals(KomodoUtil.COIN, b.outputs.get(0).satoshis());
+    }
+
+    @Test
+    public void appliesDeltas() {
+        wallet.tip = 101;
+        wallet.raw.put(txId(9), "{\"txid\":\"" + txId(9) + "\",\"vin\":[{\"txid\":\"" + txId(3) + "\",\"vout\":0}],"
+                + "\"vout\":[{\"value\":1.0,\"n\":0,\"scriptPubKey\":{\"hex\":\"a9\",\"addresses\":[\"RX\"]}},"
+                + "{\"value\":0.4999,\"n\":1,\"scriptPubKey\":{\"hex\":\"76a9\",\"addresses\":[\"RC\"]}}]}");
+        wallet.transactions = "{\"txid\":\"" + txId(5) + "\",\"vout\":2,\"address\":\"RA\",\"category\":\"receive\",\"amount\":3,\"confirmations\":1},"
+                + "{\"txid\":\"" + txId(2) + "\",\"vout\":1,\"address\":\"RA\",\"category\":\"receive\",\"amount\":0.25,\"confirmations\":-1},"
+                + "{\"txid\":\"" + txId(9) + "\",\"vout\":0,\"address\":\"RX\",\"category\":\"send\",\"amount\":-1,\"confirmations\":0}";
+        utxos.update();
+        assertEquals(-1, utxos.amount(txId(3), 0));
+        assertEquals(-1, utxos.amount(txId(2), 1));
+        assertEquals(300000000L, utxos.amount(txId(5), 2));
+        assertEquals(49990000L, utxos.amount(txId(9), 1));
+        assertEquals(-1, utxos.amount(txId(9), 0));
+        assertEquals(txId(5), utxos.unspent(1).get(0).txid());
+        assertEquals(1, utxos.unspent(1).get(0).confirmations);
+
+        // the same send listed again is not fetched again, a spent output does not come back
+        wallet.methods.clear();
+        wallet.transactions += ",{\"txid\":\"" + txId(3) + "\",\"vout\":0,\"address\":\"RA\",\"category\":\"receive\",\"amount\":1.5,\"confirmations\":21}";
+        utxos.update();
+        assertFalse(wallet.methods.contains("getrawtransaction"));
+        assertEquals(-1, utxos.amount(txId(3), 0));
+    }
+}
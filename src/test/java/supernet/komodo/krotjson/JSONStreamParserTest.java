@@ -0,0 +1,139 @@
+package supernet.komodo.krotjson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JSONStreamParserTest {
+
+    static final String[] SAMPLES = {
+        "[ ]",
+        "[]",
+        "[1,2,3]",
+        "{ 1:1, 2:2, 3:\"cds\", 'asc': 'dvaev', 'x': null }",
+        "[null, 15765 , 16167 , -111 , +16289 , 'veffv' , \"\\'sadasd\\'\" ]",
+        "[ [], [ ], {}, { }, { 'x': 'y', 'y': 'z', id: 'value' }, { 1:2 }, {3:2, 4:[1,2,3,-1,111,-111,true,false,null]} ]",
+        "{\"result\":{\"amount\":-0.00012,\"fee\":1.5E-4,\"big\":9223372036854775807,\"small\":-9223372036854775808},\"error\":null,\"id\":\"1\"}",
+        "{\"s\":\"tab\\there \\\"quoted\\\" \\u00e9 \\uZZ \\\\ \\/\"}",
+        "\n  {\"a\" :\t[ true , false ]  }  ",
+    };
+
+    /**
+     * Feeds the parser one byte per read to exercise buffer refills
+     */
+    static class TrickleInputStream extends InputStream {
+
+        final InputStream in;
+
+        TrickleInputStream(byte[] b) {
+            in = new ByteArrayInputStream(b);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, Math.min(len, 1));
+        }
+    }
+
+    @Test
+    public void sameResultAsCrippledJavaScriptParser() throws Exception {
+        for (String sample : SAMPLES) {
+            Object expected = CrippledJavaScriptParser.parseJSExpr(sample);
+            assertEquals(sample, expected, JSON.parse(sample));
+            assertEquals(sample, expected, JSON.parse(new TrickleInputStream(sample.getBytes("ISO8859-1"))));
+        }
+    }
+
+    @Test
+    public void parsesDates() {
+        assertEquals(new Date(1234), ((List) JSON.parse("[new Date(1234), null]")).get(0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void rejectsGarbage() {
+        JSON.parse("[#]");
+    }
+
+    @Test
+    public void parsesLargeResponsesInLinearTime() throws Exception {
+        StringBuilder b = new StringBuilder("{\"result\":[");
+        for (int i = 0; i < 200000; i++) {
+            if (i > 0)
+                b.append(',');
+            b.append("{\"txid\":\"a09e41ad19ebfdb14c7ef78b39389369b459b5d2ec24ffffc110a9ac4f24b2b8\",\"vout\":").append(i).append(",\"amount\":0.001}");
+        }
+        b.append("],\"error\":null,\"id\":\"1\"}");
+        long start = System.currentTimeMillis();
+        Map r = (Map) JSON.parse(new ByteArrayInputStream(b.toString().getBytes("ISO8859-1")));
+        assertEquals(200000, ((List) r.get("result")).size());
+        assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
+    @Test
+    public void pullsValuesAndSkipsTheRest() throws Exception {
+        String json = "{\"skip\":{\"a\":[1,\"x]}\",{\"b\":null}],\"c\":true},\"n\":-12,\"d\":1.5E-4,\"s\":null,\"l\":[\"p\",\"q\"],\"t\":false}";
+        for (JSONStreamParser p : new JSONStreamParser[]{new JSONStreamParser(json), new JSONStreamParser(new TrickleInputStream(json.getBytes("UTF-8")))}) {
+            p.beginObject();
+            assertEquals("skip", p.nextKey());
+            assertTrue(p.nextIsObject());
+            p.skipValue();
+            assertEquals("n", p.nextKey());
+            assertEquals(-12, p.nextInt());
+            assertEquals("d", p.nextKey());
+            assertEquals(0.00015, p.nextDouble(), 1e-12);
+            assertEquals("s", p.nextKey());
+            assertNull(p.nextString());
+            assertEquals("l", p.nextKey());
+            assertFalse(p.nextIsObject());
+            p.beginArray();
+            assertTrue(p.hasNext());
+            assertEquals("p", p.nextString());
+            assertTrue(p.hasNext());
+            assertEquals("q", p.nextString());
+            assertFalse(p.hasNext());
+            assertEquals("t", p.nextKey());
+            assertFalse(p.nextBoolean());
+            assertNull(p.nextKey());
+        }
+    }
+
+    @Test
+    public void readsFixedPointExactly() throws Exception {
+        assertEquals(12000, JSONStreamParser.parseFixed("0.00012", 8));
+        assertEquals(15000, JSONStreamParser.parseFixed("1.5E-4", 8));
+        assertEquals(-2100000000000000L, JSONStreamParser.parseFixed("-21000000", 8));
+        assertEquals(1, JSONStreamParser.parseFixed("0.000000005", 8));
+        assertEquals(0, JSONStreamParser.parseFixed("0.0000000049999999999999999999", 8));
+        assertEquals(1, JSONStreamParser.parseFixed("0.00000000500000000000000000001", 8));
+        assertEquals(200000000, JSONStreamParser.parseFixed("2e0", 8));
+        assertEquals(123, JSONStreamParser.parseFixed("1.23e-6", 8));
+        for (String bad : new String[]{"", "-", "1.2.3", "1e", "0x10", "99999999999999999999"})
+            try {
+                JSONStreamParser.parseFixed(bad, 8);
+                fail(bad);
+            } catch (NumberFormatException expected) {
+            }
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++)
+            json.append(i == 0 ? "" : ",").append("0.1");
+        JSONStreamParser p = new JSONStreamParser(new TrickleInputStream(json.append("]").toString().getBytes("UTF-8")));
+        long sum = 0;
+        p.beginArray();
+        while (p.hasNext())
+            sum += p.nextFixed(8);
+        assertEquals(100 * 100000000L, sum);
+    }
+}
@@ -0,0 +1,59 @@
+package supernet.komodo.krotjson;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JSONWriterTest {
+
+    @Test
+    public void stringifiesValues() {
+        Map m = new LinkedHashMap();
+        m.put("s", "tab\there \"quoted\" \\ \r\n\f\b");
+        m.put(1, Arrays.asList(1, -2L, Long.MIN_VALUE, Long.MAX_VALUE, 0.5d, true, false, null));
+        m.put("a", new Object[]{"x", new Date(1234)});
+        assertEquals("{\"s\":\"tab\\there \\\"quoted\\\" \\\\ \\r\\n\\f\\b\",\"1\":[1,-2,-9223372036854775808,9223372036854775807,0.5,true,false,null],\"a\":[\"x\",new Date(1234)]}",
+                JSON.stringify(m));
+    }
+
+    @Test
+    public void escapesNonAsciiCharacters() throws Exception {
+        String s = "caf\u00e9 \u20ac\ud83d\ude00\u0001\u007f";
+        assertEquals("\"caf\\u00e9 \\u20ac\\ud83d\\ude00\\u0001\u007f\"", JSON.stringify(s));
+        assertEquals(s, JSON.parse(JSON.stringify(s)));
+        assertEquals(s, new JSONStreamParser(JSON.stringify(s)).nextString());
+    }
+
+    @Test
+    public void writesPlainBigDecimals() {
+        assertEquals("0.00000001", JSON.stringify(new BigDecimal("1E-8")));
+        assertEquals("-0.00012", JSON.stringify(new BigDecimal("-0.00012")));
+        assertEquals("123.45600000", JSON.stringify(new BigDecimal("123.45600000")));
+        assertEquals("1000", JSON.stringify(new BigDecimal("1E+3")));
+        assertEquals("0", JSON.stringify(BigDecimal.ZERO));
+        assertEquals("123456789012345678901234567890.5", JSON.stringify(new BigDecimal("123456789012345678901234567890.5")));
+    }
+
+    @Test
+    public void reusesBuffer() {
+        JSONWriter w = new JSONWriter(4);
+        assertEquals("[\"abc\",7]", w.write(new Object[]{"abc", 7}).toString());
+        assertEquals("\"d\"", w.reset().write("d").toString());
+        assertArrayEquals("\"d\"".getBytes(), w.toByteArray());
+    }
+
+    @Test
+    public void stringifiesLargeHexInLinearTime() {
+        char[] hex = new char[4 << 20];
+        Arrays.fill(hex, 'a');
+        long start = System.currentTimeMillis();
+        assertEquals(hex.length + 2, JSON.stringify(new String(hex)).length());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+}